@@ -0,0 +1,221 @@
+package com.example.brandonkbarnes.storedatabase;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.net.Uri;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.Choreographer;
+import android.widget.ImageView;
+import android.widget.ListView;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryDbHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Flings through a catalog of 10,000 items with images and logs the frames dropped, first
+ * with empty thumbnail caches and then with warm ones. The catalog is read from its own store
+ * location, shown in the catalog activity's list with the app's adapter.
+ */
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = Build.VERSION_CODES.JELLY_BEAN)
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class CatalogScrollBenchmarkTest {
+
+    private static final String LOG_TAG = CatalogScrollBenchmarkTest.class.getSimpleName();
+
+    private static final String LOCATION = "scroll_bench";
+
+    private static final int ITEMS = 10000;
+
+    // Distinct images, each stored for many items
+    private static final int IMAGES = 32;
+
+    // Flings per pass, and the time each one takes
+    private static final int FLINGS = 10;
+    private static final int FLING_MILLIS = 1500;
+
+    private Instrumentation instrumentation;
+    private Context context;
+    private Uri uri;
+    private File cacheDirectory;
+    private Activity activity;
+    private Cursor cursor;
+
+    @Before
+    public void setUp() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(InventoryDbHelper.getDatabaseName(LOCATION));
+        uri = InventoryEntry.buildLocationUri(LOCATION);
+        cacheDirectory = new File(context.getCacheDir(), "thumbnails_" + LOCATION);
+        deleteCache();
+
+        byte[][] images = new byte[IMAGES][];
+        for (int i = 0; i < IMAGES; i++) {
+            images[i] = createImage(i);
+        }
+        ContentValues[] batch = new ContentValues[500];
+        for (int start = 0; start < ITEMS; start += batch.length) {
+            for (int i = 0; i < batch.length; i++) {
+                int n = start + i;
+                batch[i] = new ContentValues();
+                batch[i].put(InventoryEntry.COLUMN_ITEM_NAME, "Item " + n);
+                batch[i].put(InventoryEntry.COLUMN_ITEM_PRICE, "$1.00");
+                batch[i].put(InventoryEntry.COLUMN_ITEM_QUANTITY, n % 10);
+                batch[i].put(InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME, "Supplier");
+                batch[i].put(InventoryEntry.COLUMN_ITEM_SUPPLIER_EMAIL, "supplier@example.com");
+                batch[i].put(InventoryEntry.COLUMN_ITEM_SUPPLIER_PHONE, "555-0100");
+                batch[i].put(InventoryEntry.COLUMN_ITEM_IMAGE, images[n % IMAGES]);
+            }
+            assertEquals(batch.length, context.getContentResolver().bulkInsert(uri, batch));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (activity != null) {
+            activity.finish();
+        }
+        if (cursor != null) {
+            cursor.close();
+        }
+        InventoryDbHelper.getInstance(context, LOCATION).close();
+        context.deleteDatabase(InventoryDbHelper.getDatabaseName(LOCATION));
+        deleteCache();
+    }
+
+    @Test
+    public void flingThroughCatalog() {
+        Intent intent = new Intent(context, ItemCatalogActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        activity = instrumentation.startActivitySync(intent);
+        final ListView listView = (ListView) activity.findViewById(R.id.list);
+        cursor = context.getContentResolver().query(uri, InventoryEntry.CATALOG_PROJECTION,
+                null, null, null);
+        assertNotNull(cursor);
+        final InventoryCursorAdapter adapter = new InventoryCursorAdapter(activity, cursor,
+                new ThumbnailLoader(activity, uri, cacheDirectory));
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                listView.setAdapter(adapter);
+                listView.setRecyclerListener(adapter);
+            }
+        });
+        instrumentation.waitForIdleSync();
+
+        long frameNanos = (long) (1e9 / activity.getWindowManager().getDefaultDisplay()
+                .getRefreshRate());
+        int cold = fling(listView, 1, frameNanos);
+        // Back over the same rows
+        int warm = fling(listView, -1, frameNanos);
+        Log.i(LOG_TAG, String.format("Dropped frames over %d flings at %.1f ms per frame:"
+                + " cold caches %d, warm caches %d", FLINGS, frameNanos / 1e6, cold, warm));
+
+        // The visible rows got their thumbnails once the list came to rest
+        SystemClock.sleep(500);
+        instrumentation.waitForIdleSync();
+        ImageView thumbnail = (ImageView) listView.getChildAt(0).findViewById(R.id.item_thumbnail);
+        assertNotNull(thumbnail.getDrawable());
+    }
+
+    /**
+     * Fling the list in the given direction and return the number of frames dropped.
+     */
+    private int fling(final ListView listView, final int direction, long frameNanos) {
+        final List<Long> frameTimes = new ArrayList<Long>();
+        final boolean[] counting = { true };
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        frameTimes.add(frameTimeNanos);
+                        if (counting[0]) {
+                            Choreographer.getInstance().postFrameCallback(this);
+                        }
+                    }
+                });
+            }
+        });
+
+        for (int i = 0; i < FLINGS; i++) {
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    listView.smoothScrollBy(direction * listView.getHeight() * 10, FLING_MILLIS);
+                }
+            });
+            SystemClock.sleep(FLING_MILLIS);
+        }
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                counting[0] = false;
+            }
+        });
+
+        int dropped = 0;
+        for (int i = 1; i < frameTimes.size(); i++) {
+            // A frame that took n intervals dropped n - 1 frames
+            long intervals = Math.round((frameTimes.get(i) - frameTimes.get(i - 1))
+                    / (double) frameNanos);
+            dropped += Math.max(0, intervals - 1);
+        }
+        return dropped;
+    }
+
+    /**
+     * Return a JPEG several times the thumbnail size, so every thumbnail is downsampled.
+     */
+    private static byte[] createImage(int n) {
+        Bitmap bitmap = Bitmap.createBitmap(512, 384, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(Color.HSVToColor(new float[] { n * 360f / IMAGES, 0.6f, 0.9f }));
+        Paint paint = new Paint();
+        paint.setColor(Color.WHITE);
+        paint.setTextSize(200);
+        canvas.drawText(String.valueOf(n), 50, 280, paint);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, 80, out);
+        bitmap.recycle();
+        return out.toByteArray();
+    }
+
+    private void deleteCache() {
+        File[] files = cacheDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        cacheDirectory.delete();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.os.Bundle;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that quantity changes through {@link InventoryEntry#METHOD_ADJUST_QUANTITY} made at
+ * the same time all add up, and that a change taking the quantity below zero isn't made.
+ * Runs against its own store location so the app's data is left alone.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AdjustQuantityTest {
+
+    private static final String LOCATION = "adjust_test";
+
+    private static final int THREADS = 4;
+    private static final int SALES = 50;
+
+    private TestStore store;
+    private ContentResolver resolver;
+    private long id;
+
+    @Before
+    public void setUp() {
+        store = TestStore.open(LOCATION);
+        resolver = store.resolver;
+        id = ContentUris.parseId(resolver.insert(store.uri,
+                TestStore.item("Soap", "$3.00", THREADS * SALES, "Dawn")));
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void concurrentChangesAddUp() throws InterruptedException {
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int sale = 0; sale < SALES; sale++) {
+                        assertTrue(adjust(-1).getBoolean(InventoryEntry.EXTRA_ADJUSTED));
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, adjust(0).getInt(InventoryEntry.EXTRA_QUANTITY));
+    }
+
+    @Test
+    public void quantityStaysAboveZero() {
+        Bundle result = adjust(-THREADS * SALES - 1);
+        assertFalse(result.getBoolean(InventoryEntry.EXTRA_ADJUSTED));
+        assertEquals(THREADS * SALES, result.getInt(InventoryEntry.EXTRA_QUANTITY));
+
+        result = adjust(-3);
+        assertTrue(result.getBoolean(InventoryEntry.EXTRA_ADJUSTED));
+        assertEquals(THREADS * SALES - 3, result.getInt(InventoryEntry.EXTRA_QUANTITY));
+    }
+
+    private Bundle adjust(int delta) {
+        Bundle extras = new Bundle();
+        extras.putLong(InventoryEntry.EXTRA_ITEM_ID, id);
+        extras.putInt(InventoryEntry.EXTRA_QUANTITY_DELTA, delta);
+        return resolver.call(store.uri, InventoryEntry.METHOD_ADJUST_QUANTITY, LOCATION, extras);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.database.Cursor;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the handoff of the prefetched catalog cursor to the first catalog query, and that a
+ * write in between makes that query read fresh rows instead. The prefetch runs on the test's
+ * thread, so it has finished before the write. Runs against its own store location so the
+ * app's data is left alone.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CatalogPrefetchTest {
+
+    private static final String LOCATION = "prefetch_test";
+
+    private static final int ROWS = 20;
+
+    private TestStore store;
+    private CatalogPrefetch prefetch;
+
+    @Before
+    public void setUp() {
+        store = TestStore.open(LOCATION);
+        store.seed(ROWS, TestStore.items(4));
+        prefetch = new CatalogPrefetch(store.context, store.dbHelper);
+        prefetch.prefetch();
+    }
+
+    @After
+    public void tearDown() {
+        prefetch.discard();
+        store.close();
+    }
+
+    @Test
+    public void firstQueryTakesPrefetch() {
+        Cursor cursor = take();
+        assertNotNull(cursor);
+        try {
+            assertEquals(ROWS, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+        // Handed out once only
+        assertNull(take());
+    }
+
+    @Test
+    public void otherQueryDiscardsPrefetch() {
+        assertNull(prefetch.take(InventoryEntry.CATALOG_PROJECTION, null, null,
+                InventoryEntry.COLUMN_ITEM_NAME));
+        assertNull(take());
+    }
+
+    @Test
+    public void providerWriteMakesQueryFresh() {
+        store.resolver.insert(store.uri,
+                TestStore.item("Fresh item", "$1.00", 1, "Supplier 0"));
+        assertFresh();
+    }
+
+    @Test
+    public void writeOutsideProviderMakesQueryFresh() {
+        // Only notifies through the content resolver, which the prefetch hears of later
+        new InventoryRepository(store.context, LOCATION).insertItem(new InventoryRecord(
+                "Fresh item", "$1.00", 1, "Supplier 0", "supplier@example.com", "555-0100"));
+        assertFresh();
+    }
+
+    /**
+     * Assert that the next catalog query reads the new item rather than the prefetched rows.
+     */
+    private void assertFresh() {
+        Cursor cursor = take();
+        assertNull("Stale prefetched cursor was handed out", cursor);
+
+        // The provider runs the query itself instead
+        cursor = store.resolver.query(store.uri, InventoryEntry.CATALOG_PROJECTION, null, null,
+                CatalogQuery.ORDER_BY_ADDED);
+        try {
+            assertEquals(ROWS + 1, cursor.getCount());
+            assertTrue(cursor.moveToLast());
+            assertEquals("Fresh item", cursor.getString(
+                    cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_ITEM_NAME)));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // The catalog loader's first query
+    private Cursor take() {
+        return prefetch.take(InventoryEntry.CATALOG_PROJECTION, null, null,
+                CatalogQuery.ORDER_BY_ADDED);
+    }
+}
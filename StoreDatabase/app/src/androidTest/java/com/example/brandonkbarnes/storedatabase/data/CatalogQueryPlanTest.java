@@ -0,0 +1,150 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that every catalog order and filter is served from a covering index, without a
+ * temporary B-tree for sorting. The queries are compiled by {@link FilterQuery}, as in
+ * {@link InventoryProvider}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CatalogQueryPlanTest {
+
+    private static final String LOCATION = "plan_test";
+
+    private TestStore store;
+    private SQLiteDatabase database;
+
+    @Before
+    public void setUp() {
+        store = TestStore.open(LOCATION);
+        database = store.dbHelper.getWritableDatabase();
+
+        // Give the planner statistics of a realistic catalog, not of an empty table
+        store.seedDirect(1000, new TestStore.Items() {
+            @Override
+            public ContentValues item(int i) {
+                return TestStore.item("Item " + i, "$" + (i % 97) + ".99", i % 13,
+                        "Supplier " + (i % 20));
+            }
+        });
+        database.execSQL("ANALYZE");
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void sortByNameUsesCoveringIndex() {
+        assertCovered(InventoryEntry.buildCatalogUri(InventoryEntry.SORT_NAME, null),
+                "inventory_name_cover");
+    }
+
+    @Test
+    public void sortByQuantityUsesCoveringIndex() {
+        assertCovered(InventoryEntry.buildCatalogUri(InventoryEntry.SORT_QUANTITY, null),
+                "inventory_quantity_cover");
+    }
+
+    @Test
+    public void sortByPriceUsesCoveringIndex() {
+        // Devices without expression indexes sort by price in a temporary B-tree
+        if (!SqliteFeatures.supportsExpressionIndexes(database)) {
+            return;
+        }
+        assertCovered(InventoryEntry.buildCatalogUri(InventoryEntry.SORT_PRICE, null),
+                "inventory_price_cover");
+    }
+
+    @Test
+    public void supplierFilterByNameUsesCoveringIndex() {
+        assertCovered(InventoryEntry.buildCatalogUri(InventoryEntry.SORT_NAME, "Supplier 3"),
+                "inventory_supplier_cover");
+    }
+
+    @Test
+    public void supplierFilterUsesCoveringIndex() {
+        assertCovered(InventoryEntry.buildCatalogUri(null, "Supplier 3"),
+                "inventory_supplier_cover");
+    }
+
+    @Test
+    public void quantityFilterUsesCoveringIndex() {
+        Uri uri = InventoryEntry.appendFilter(
+                InventoryEntry.buildCatalogUri(InventoryEntry.SORT_QUANTITY, null).buildUpon(),
+                InventoryEntry.COLUMN_ITEM_QUANTITY, InventoryEntry.FILTER_LT, "5").build();
+        assertCovered(uri, "inventory_quantity_cover");
+    }
+
+    @Test
+    public void namePrefixUsesCoveringIndex() {
+        Uri uri = InventoryEntry.appendFilter(
+                InventoryEntry.buildCatalogUri(InventoryEntry.SORT_NAME, null).buildUpon(),
+                InventoryEntry.COLUMN_ITEM_NAME, InventoryEntry.FILTER_PREFIX, "item 1").build();
+        assertCovered(uri, "inventory_name_cover");
+    }
+
+    @Test
+    public void addedOrderUsesCoveringIndex() {
+        // The catalog loader's query without a sort parameter
+        String plan = explain(SQLiteQueryBuilder.buildQueryString(false, InventoryEntry.TABLE_NAME,
+                InventoryEntry.CATALOG_PROJECTION, CatalogQuery.SELECTION_NOT_DELETED, null, null,
+                CatalogQuery.ORDER_BY_ADDED, null), null);
+        assertTrue(plan, plan.contains("COVERING INDEX inventory_added_cover"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void nameSuggestionsUseCoveringIndex() {
+        String plan = explain(SuggestionQuery.SQL_NAMES, SuggestionQuery.rangeArgs("ite"));
+        assertTrue(plan, plan.contains("COVERING INDEX inventory_name_cover"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void supplierSuggestionsUseCoveringIndex() {
+        String plan = explain(SuggestionQuery.SQL_SUPPLIERS, SuggestionQuery.rangeArgs("sup"));
+        assertTrue(plan, plan.contains("COVERING INDEX inventory_supplier_suggest"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    /**
+     * Assert that the catalog query for the URI reads only the given index and doesn't sort.
+     */
+    private void assertCovered(Uri uri, String index) {
+        FilterQuery query = FilterQuery.compile(uri, InventoryEntry.CATALOG_PROJECTION);
+        String plan = explain(query.sql, query.args);
+        assertTrue(plan, plan.contains("COVERING INDEX " + index));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    private String explain(String sql, String[] args) {
+        Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        try {
+            // The last column of each row describes one step of the plan
+            StringBuilder plan = new StringBuilder();
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(cursor.getColumnCount() - 1)).append('\n');
+            }
+            return plan.toString();
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.CategoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.ItemCategoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the item counts kept by the category triggers match counting the items, as
+ * items are put in categories, deleted, purged, wiped or change supplier, and that a
+ * category's items are found through its index. Runs against its own store location so the
+ * app's data is left alone.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CategoryCountsTest {
+
+    private static final String LOCATION = "category_test";
+
+    private static final int ITEMS = 300;
+
+    private static final int CATEGORIES = 4;
+
+    private TestStore store;
+    private ContentResolver resolver;
+    private InventoryDbHelper dbHelper;
+    private Uri uri;
+
+    @Before
+    public void setUp() {
+        store = TestStore.open(LOCATION);
+        resolver = store.resolver;
+        dbHelper = store.dbHelper;
+        uri = store.uri;
+        store.seed(ITEMS, TestStore.items(3));
+
+        // Category c holds every item whose id is a multiple of c + 1
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        for (int c = 1; c <= CATEGORIES; c++) {
+            database.execSQL("INSERT INTO " + CategoryEntry.TABLE_NAME + " ("
+                    + CategoryEntry._ID + ", " + CategoryEntry.COLUMN_NAME + ") VALUES (?, ?)",
+                    new Object[] { c, "Category " + c });
+            database.execSQL("INSERT INTO " + ItemCategoryEntry.TABLE_NAME + " SELECT "
+                    + InventoryEntry._ID + ", ? FROM " + InventoryEntry.TABLE_NAME + " WHERE "
+                    + InventoryEntry._ID + " % ? = 0", new Object[] { c, c + 1 });
+        }
+    }
+
+    @After
+    public void tearDown() {
+        store.awaitPurge();
+        store.close();
+    }
+
+    @Test
+    public void countsFollowItemChanges() {
+        assertCountsMatch();
+
+        // Deleted, moved to another supplier, purged and taken out of a category
+        resolver.delete(uri, InventoryEntry._ID + " <= ?", new String[] { "60" });
+        assertCountsMatch();
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME, "Supplier 9");
+        resolver.update(uri, values, InventoryEntry._ID + " > ?", new String[] { "250" });
+        assertCountsMatch();
+        store.awaitPurge();
+        assertCountsMatch();
+        dbHelper.getWritableDatabase().delete(ItemCategoryEntry.TABLE_NAME,
+                ItemCategoryEntry.COLUMN_ITEM_ID + " > ?", new String[] { "280" });
+        assertCountsMatch();
+
+        // Deleting a category takes its items out of it
+        dbHelper.getWritableDatabase().delete(CategoryEntry.TABLE_NAME,
+                CategoryEntry._ID + " = 1", null);
+        assertEquals(0, DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(),
+                ItemCategoryEntry.TABLE_NAME, ItemCategoryEntry.COLUMN_CATEGORY_ID + " = 1"));
+        assertCountsMatch();
+    }
+
+    @Test
+    public void wipeResetsCounts() {
+        // The wipe reports that there were items without counting them
+        assertEquals(1, resolver.delete(uri, null, null));
+        Cursor cursor = facets(CategoryEntry.CONTENT_URI);
+        while (cursor.moveToNext()) {
+            assertEquals(0, cursor.getInt(2));
+        }
+        cursor.close();
+
+        // New items count again, and the wiped ones leave their categories in the purge
+        ContentValues values = TestStore.item("New item", "$2.00", 1, "Supplier 0");
+        long id = Long.parseLong(resolver.insert(uri, values).getLastPathSegment());
+        dbHelper.getWritableDatabase().execSQL("INSERT INTO " + ItemCategoryEntry.TABLE_NAME
+                + " VALUES (?, 2)", new Object[] { id });
+        store.awaitPurge();
+        assertEquals(1, DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(),
+                ItemCategoryEntry.TABLE_NAME));
+        assertCountsMatch();
+    }
+
+    @Test
+    public void categoryItemsAreFoundThroughItsIndex() {
+        Uri itemsUri = CategoryEntry.buildItemsUri(2, InventoryEntry.SORT_NAME, "Supplier 1");
+        Cursor cursor = CategoryQuery.queryItems(dbHelper.getReadableDatabase(), itemsUri, 2,
+                InventoryEntry.CATALOG_PROJECTION, null, null, null);
+        // Category 2 holds the ids that are multiples of 3, which are all Supplier 2's
+        assertEquals(0, cursor.getCount());
+        cursor.close();
+
+        cursor = CategoryQuery.queryItems(dbHelper.getReadableDatabase(),
+                CategoryEntry.buildItemsUri(1, null, null), 1,
+                InventoryEntry.CATALOG_PROJECTION, null, null, CatalogQuery.ORDER_BY_ADDED);
+        assertEquals(ITEMS / 2, cursor.getCount());
+        cursor.close();
+
+        cursor = dbHelper.getReadableDatabase().rawQuery("EXPLAIN QUERY PLAN SELECT "
+                + InventoryEntry.COLUMN_ITEM_NAME + " FROM " + ItemCategoryEntry.TABLE_NAME
+                + " CROSS JOIN " + InventoryEntry.TABLE_NAME + " ON " + InventoryEntry.TABLE_NAME
+                + "." + InventoryEntry._ID + " = " + ItemCategoryEntry.COLUMN_ITEM_ID + " WHERE "
+                + ItemCategoryEntry.COLUMN_CATEGORY_ID + " = 1", null);
+        StringBuilder plan = new StringBuilder();
+        while (cursor.moveToNext()) {
+            plan.append(cursor.getString(cursor.getColumnCount() - 1)).append('\n');
+        }
+        cursor.close();
+        assertTrue(plan.toString(), plan.toString().contains("item_category_category"));
+    }
+
+    /**
+     * Check the kept counts, for all items and per supplier, against counting the items.
+     */
+    private void assertCountsMatch() {
+        SQLiteDatabase database = dbHelper.getReadableDatabase();
+        String[] suppliers = { null, "Supplier 0", "Supplier 1", "Supplier 9" };
+        for (String supplier : suppliers) {
+            Uri facetsUri = CategoryEntry.CONTENT_URI;
+            if (supplier != null) {
+                facetsUri = facetsUri.buildUpon()
+                        .appendQueryParameter(InventoryEntry.QUERY_SUPPLIER, supplier).build();
+            }
+            Cursor cursor = facets(facetsUri);
+            while (cursor.moveToNext()) {
+                String selection = ItemCategoryEntry.COLUMN_CATEGORY_ID + " = "
+                        + cursor.getLong(0) + " AND " + ItemCategoryEntry.COLUMN_ITEM_ID
+                        + " IN (SELECT " + InventoryEntry._ID + " FROM "
+                        + InventoryEntry.TABLE_NAME + " WHERE "
+                        + CatalogQuery.SELECTION_NOT_DELETED
+                        + (supplier == null ? "" : " AND "
+                                + InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME + " = ?") + ")";
+                long counted = DatabaseUtils.queryNumEntries(database,
+                        ItemCategoryEntry.TABLE_NAME, selection,
+                        supplier == null ? null : new String[] { supplier });
+                assertEquals(cursor.getString(1) + " of " + supplier, counted, cursor.getLong(2));
+            }
+            cursor.close();
+
+            // Counting through a filter gives the same
+            if (supplier != null) {
+                Uri filterUri = InventoryEntry.appendFilter(CategoryEntry.CONTENT_URI.buildUpon(),
+                        InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME, InventoryEntry.FILTER_EQ,
+                        supplier).build();
+                Cursor kept = facets(facetsUri);
+                Cursor filtered = facets(filterUri);
+                assertEquals(kept.getCount(), filtered.getCount());
+                while (kept.moveToNext() && filtered.moveToNext()) {
+                    assertEquals(kept.getLong(2), filtered.getLong(2));
+                }
+                kept.close();
+                filtered.close();
+            }
+        }
+    }
+
+    private Cursor facets(Uri facetsUri) {
+        return CategoryQuery.queryFacets(dbHelper.getReadableDatabase(), facetsUri);
+    }
+
+}
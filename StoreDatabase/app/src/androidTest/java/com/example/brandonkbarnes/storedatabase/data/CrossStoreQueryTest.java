@@ -0,0 +1,146 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the cross-store query returns the rows of every location in the projection's
+ * column order, also across more locations than one connection can attach. Runs against store
+ * locations of its own so the app's data is left alone.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CrossStoreQueryTest {
+
+    // One more than a connection can attach, so the query takes two statements
+    private static final int LOCATIONS = 11;
+
+    private static final int ITEMS_PER_LOCATION = 3;
+
+    // Only this test's items, whatever other locations are on the device
+    private static final String SELECTION = InventoryEntry.COLUMN_ITEM_NAME + " LIKE ?";
+    private static final String[] SELECTION_ARGS = { "Cross %" };
+
+    private final List<TestStore> stores = new ArrayList<TestStore>();
+    private CrossStoreQuery query;
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < LOCATIONS; i++) {
+            final TestStore store = TestStore.open("cross_store_" + i);
+            store.seed(ITEMS_PER_LOCATION, new TestStore.Items() {
+                @Override
+                public ContentValues item(int index) {
+                    return TestStore.item("Cross " + store.location + " " + index, "$1.00",
+                            index, "Supplier");
+                }
+            });
+            stores.add(store);
+        }
+        // A deleted item is left out
+        TestStore first = stores.get(0);
+        first.resolver.delete(first.uri, InventoryEntry.COLUMN_ITEM_NAME + " = ?",
+                new String[] { "Cross " + first.location + " 0" });
+        query = new CrossStoreQuery(InstrumentationRegistry.getTargetContext());
+    }
+
+    @After
+    public void tearDown() {
+        for (TestStore store : stores) {
+            store.awaitPurge();
+            store.close();
+        }
+    }
+
+    @Test
+    public void returnsRowsOfEveryLocation() {
+        Cursor cursor = query.query(new String[] {
+                InventoryEntry.COLUMN_ITEM_NAME,
+                InventoryEntry.COLUMN_LOCATION,
+                InventoryEntry.COLUMN_ITEM_QUANTITY }, SELECTION, SELECTION_ARGS, null);
+        try {
+            assertEquals(3, cursor.getColumnCount());
+            assertEquals(InventoryEntry.COLUMN_ITEM_NAME, cursor.getColumnName(0));
+            assertEquals(InventoryEntry.COLUMN_LOCATION, cursor.getColumnName(1));
+            assertEquals(InventoryEntry.COLUMN_ITEM_QUANTITY, cursor.getColumnName(2));
+
+            Map<String, Integer> counts = new HashMap<String, Integer>();
+            while (cursor.moveToNext()) {
+                String location = cursor.getString(1);
+                String prefix = "Cross " + location + " ";
+                assertTrue(cursor.getString(0).startsWith(prefix));
+                assertEquals(cursor.getString(0).substring(prefix.length()),
+                        String.valueOf(cursor.getInt(2)));
+                Integer count = counts.get(location);
+                counts.put(location, count == null ? 1 : count + 1);
+            }
+            assertEquals(LOCATIONS, counts.size());
+            for (TestStore store : stores) {
+                int expected = store == stores.get(0)
+                        ? ITEMS_PER_LOCATION - 1 : ITEMS_PER_LOCATION;
+                assertEquals(Integer.valueOf(expected), counts.get(store.location));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void locationFollowsProjectionWithoutIt() {
+        Cursor cursor = query.query(new String[] {
+                InventoryEntry.COLUMN_ITEM_QUANTITY,
+                InventoryEntry.COLUMN_ITEM_NAME }, SELECTION, SELECTION_ARGS, null);
+        try {
+            assertEquals(3, cursor.getColumnCount());
+            assertEquals(InventoryEntry.COLUMN_ITEM_QUANTITY, cursor.getColumnName(0));
+            assertEquals(InventoryEntry.COLUMN_ITEM_NAME, cursor.getColumnName(1));
+            assertEquals(InventoryEntry.COLUMN_LOCATION, cursor.getColumnName(2));
+            assertEquals(LOCATIONS * ITEMS_PER_LOCATION - 1, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void removedLocationIsDetached() {
+        query.query(null, SELECTION, SELECTION_ARGS, null).close();
+
+        TestStore last = stores.remove(LOCATIONS - 1);
+        last.close();
+        Cursor cursor = query.query(null, SELECTION, SELECTION_ARGS, null);
+        try {
+            int location = cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_LOCATION);
+            assertEquals((LOCATIONS - 1) * ITEMS_PER_LOCATION - 1, cursor.getCount());
+            while (cursor.moveToNext()) {
+                assertFalse(last.location.equals(cursor.getString(location)));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void sortOrderAcrossConnectionsIsRejected() {
+        try {
+            query.query(null, SELECTION, SELECTION_ARGS, InventoryEntry.COLUMN_ITEM_NAME).close();
+            fail("Sorted query across " + LOCATIONS + " locations was run");
+        } catch (IllegalArgumentException expected) {
+            // The rows of two statements can't be sorted together
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.MaintenanceLogEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs maintenance passes over a fragmented store and checks what they give back to the file
+ * system, what they record in the maintenance log and where the budget stops them. Runs
+ * against its own store location so the app's data is left alone.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseMaintenanceTest {
+
+    private static final String LOCATION = "maintenance_test";
+
+    private static final int ROWS = 2000;
+
+    private TestStore store;
+    private SQLiteDatabase database;
+    private DatabaseMaintenance maintenance;
+
+    @Before
+    public void setUp() {
+        store = TestStore.open(LOCATION);
+        database = store.dbHelper.getWritableDatabase();
+        maintenance = new DatabaseMaintenance(store.context, LOCATION);
+
+        // Deleting most of a large seed leaves its pages on the free list
+        store.seedDirect(ROWS, TestStore.items(20));
+        database.delete(InventoryEntry.TABLE_NAME, InventoryEntry._ID + " > ?",
+                new String[] { String.valueOf(ROWS / 10) });
+        assertTrue(freePages() > 0);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void passVacuumsAndIsLogged() {
+        assertEquals(InventoryDbHelper.AUTO_VACUUM_INCREMENTAL, autoVacuum());
+
+        MaintenanceReport report = maintenance.run(DatabaseMaintenance.DEFAULT_BUDGET_MILLIS);
+
+        assertTrue(report.getSteps().contains("incremental_vacuum"));
+        assertTrue(report.getSteps().contains("quick_check"));
+        assertEquals("ok", report.getCheckResult());
+        assertTrue(report.getFreePagesBefore() > 0);
+        assertEquals(0, report.getFreePagesAfter());
+        assertEquals(0, freePages());
+        assertTrue(report.getSizeAfter() < report.getSizeBefore());
+        assertLogged(report);
+    }
+
+    @Test
+    public void usedUpBudgetStopsAfterStatistics() {
+        MaintenanceReport report = maintenance.run(0);
+
+        // Only the statistics, which always run, so the free pages are left for the next run
+        assertEquals(1, report.getSteps().size());
+        assertNull(report.getCheckResult());
+        assertTrue(report.getFreePagesAfter() > 0);
+        assertLogged(report);
+    }
+
+    @Test
+    public void fullVacuumConvertsOnce() {
+        // As a database created before incremental auto-vacuum
+        database.execSQL("PRAGMA auto_vacuum = NONE");
+        database.execSQL("VACUUM");
+        assertEquals(0, autoVacuum());
+        assertEquals(0, freePages());
+
+        MaintenanceReport report = maintenance.run(DatabaseMaintenance.DEFAULT_BUDGET_MILLIS);
+        assertTrue(report.getSteps().contains("vacuum"));
+        assertEquals(InventoryDbHelper.AUTO_VACUUM_INCREMENTAL, autoVacuum());
+        assertLogged(report);
+
+        // Converted databases get incremental steps from then on
+        database.delete(InventoryEntry.TABLE_NAME, null, null);
+        assertTrue(freePages() > 0);
+        report = maintenance.run(DatabaseMaintenance.DEFAULT_BUDGET_MILLIS);
+        assertFalse(report.getSteps().contains("vacuum"));
+        assertTrue(report.getSteps().contains("incremental_vacuum"));
+        assertEquals(0, freePages());
+    }
+
+    /**
+     * Assert that the newest maintenance log entry holds the report's measurements.
+     */
+    private void assertLogged(MaintenanceReport report) {
+        Cursor cursor = database.query(MaintenanceLogEntry.TABLE_NAME, new String[] {
+                        MaintenanceLogEntry.COLUMN_DURATION,
+                        MaintenanceLogEntry.COLUMN_SIZE_BEFORE,
+                        MaintenanceLogEntry.COLUMN_SIZE_AFTER,
+                        MaintenanceLogEntry.COLUMN_FREE_PAGES_BEFORE,
+                        MaintenanceLogEntry.COLUMN_FREE_PAGES_AFTER,
+                        MaintenanceLogEntry.COLUMN_CHECK_RESULT },
+                null, null, null, null, MaintenanceLogEntry._ID + " DESC", "1");
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(report.getDurationMillis(), cursor.getLong(0));
+            assertEquals(report.getSizeBefore(), cursor.getLong(1));
+            assertEquals(report.getSizeAfter(), cursor.getLong(2));
+            assertEquals(report.getFreePagesBefore(), cursor.getLong(3));
+            assertEquals(report.getFreePagesAfter(), cursor.getLong(4));
+            assertEquals(report.getCheckResult(), cursor.getString(5));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private long freePages() {
+        return DatabaseUtils.longForQuery(database, "PRAGMA freelist_count", null);
+    }
+
+    private long autoVacuum() {
+        return DatabaseUtils.longForQuery(database, "PRAGMA auto_vacuum", null);
+    }
+}
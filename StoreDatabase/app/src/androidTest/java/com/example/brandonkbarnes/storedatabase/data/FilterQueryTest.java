@@ -0,0 +1,105 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that filter URI's compile to one SQL statement per shape and that the provider
+ * returns the items matching the filters.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FilterQueryTest {
+
+    private static final String LOCATION = "filter_test";
+
+    private TestStore store;
+    private ContentResolver resolver;
+    private Uri uri;
+
+    @Before
+    public void setUp() {
+        store = TestStore.open(LOCATION);
+        resolver = store.resolver;
+        uri = store.uri;
+        store.seed(100, new TestStore.Items() {
+            @Override
+            public ContentValues item(int i) {
+                return TestStore.item((i % 2 == 0 ? "Widget " : "Gadget ") + i, "$" + i + ".50",
+                        i % 10, "Supplier " + (i % 4));
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void sameShapeCompilesToSameSql() {
+        FilterQuery first = FilterQuery.compile(filter(
+                filter(uri, InventoryEntry.COLUMN_ITEM_QUANTITY, InventoryEntry.FILTER_LT, "5"),
+                InventoryEntry.COLUMN_ITEM_NAME, InventoryEntry.FILTER_PREFIX, "wid"),
+                InventoryEntry.CATALOG_PROJECTION);
+        // Other values, conditions in the other order
+        FilterQuery second = FilterQuery.compile(filter(
+                filter(uri, InventoryEntry.COLUMN_ITEM_NAME, InventoryEntry.FILTER_PREFIX, "gad"),
+                InventoryEntry.COLUMN_ITEM_QUANTITY, InventoryEntry.FILTER_LT, "8"),
+                InventoryEntry.CATALOG_PROJECTION);
+
+        assertSame(first.sql, second.sql);
+        assertFalse(first.sql.contains("wid"));
+        assertEquals("gad", second.args[0]);
+        assertEquals("8", second.args[2]);
+    }
+
+    @Test
+    public void providerAppliesFilters() {
+        Uri filtered = filter(filter(filter(uri,
+                InventoryEntry.COLUMN_ITEM_NAME, InventoryEntry.FILTER_PREFIX, "widget"),
+                InventoryEntry.COLUMN_ITEM_QUANTITY, InventoryEntry.FILTER_LT, "4"),
+                InventoryEntry.COLUMN_ITEM_PRICE, InventoryEntry.FILTER_GE, "$50");
+        Cursor cursor = resolver.query(filtered, InventoryEntry.CATALOG_PROJECTION,
+                null, null, null);
+        assertNotNull(cursor);
+        try {
+            // Even items from 50 on with quantity 0 or 2
+            assertEquals(10, cursor.getCount());
+            while (cursor.moveToNext()) {
+                assertTrue(cursor.getString(1).startsWith("Widget "));
+                assertTrue(cursor.getInt(3) < 4);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownFieldIsRejected() {
+        FilterQuery.compile(filter(uri, InventoryEntry.COLUMN_ITEM_SUPPLIER_EMAIL,
+                InventoryEntry.FILTER_EQ, "supplier@example.com"), null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void filterWithSelectionIsRejected() {
+        resolver.query(filter(uri, InventoryEntry.COLUMN_ITEM_QUANTITY,
+                InventoryEntry.FILTER_EQ, "1"), null, InventoryEntry.COLUMN_ITEM_QUANTITY + " = 1",
+                null, null);
+    }
+
+    private static Uri filter(Uri uri, String field, String operator, String value) {
+        return InventoryEntry.appendFilter(uri.buildUpon(), field, operator, value).build();
+    }
+}
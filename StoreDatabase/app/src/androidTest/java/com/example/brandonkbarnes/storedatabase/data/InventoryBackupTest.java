@@ -0,0 +1,167 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures backup throughput and how long a concurrent writer is stalled by a backup, and
+ * checks that a restore brings back the backed up rows without losing the writes made after
+ * it. Runs against its own store location so the app's data is left alone.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryBackupTest {
+
+    private static final String LOG_TAG = InventoryBackupTest.class.getSimpleName();
+
+    private static final String LOCATION = "backup_test";
+    private static final int ROWS = 20000;
+
+    // Threads inserting through the provider during a restore
+    private static final int WRITERS = 4;
+
+    private TestStore store;
+    private Context context;
+    private InventoryDbHelper dbHelper;
+    private File archive;
+
+    @Before
+    public void setUp() {
+        store = TestStore.open(LOCATION);
+        context = store.context;
+        dbHelper = store.dbHelper;
+        archive = new File(context.getCacheDir(), "backup_test.db.gz");
+        store.seedDirect(ROWS, TestStore.items(20));
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+        archive.delete();
+    }
+
+    @Test
+    public void backupKeepsWritersGoingAndRestoresSnapshot() throws Exception {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong maxWriteMillis = new AtomicLong();
+        final AtomicLong writes = new AtomicLong();
+
+        // Keep writing while the backup runs and record the slowest write
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int i = ROWS;
+                while (running.get()) {
+                    long start = SystemClock.elapsedRealtime();
+                    dbHelper.getWritableDatabase().insert(InventoryEntry.TABLE_NAME, null, item(i++));
+                    long elapsed = SystemClock.elapsedRealtime() - start;
+                    if (elapsed > maxWriteMillis.get()) {
+                        maxWriteMillis.set(elapsed);
+                    }
+                    writes.incrementAndGet();
+                }
+            }
+        });
+        writer.start();
+
+        BackupStats stats;
+        try {
+            stats = new InventoryBackup(context, LOCATION).backup(archive);
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+
+        Log.i(LOG_TAG, "Backup " + stats + ", concurrent writes=" + writes.get()
+                + " slowest write=" + maxWriteMillis.get() + "ms");
+        assertTrue(archive.length() > 0);
+        assertTrue(writes.get() > 0);
+
+        // Every row in the snapshot came from before or during the backup, so a restore brings
+        // back at least the rows inserted up front and never more than were ever written.
+        new InventoryBackup(context, LOCATION).restore(archive);
+        long restoredRows = DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(),
+                InventoryEntry.TABLE_NAME);
+        assertTrue(restoredRows >= ROWS);
+        assertTrue(restoredRows <= ROWS + writes.get());
+    }
+
+    @Test
+    public void restoreWhileWritingKeepsLaterWrites() throws Exception {
+        new InventoryBackup(context, LOCATION).backup(archive);
+
+        // Writers insert through the provider before, during and after the restore. The ones
+        // that start once the restore is back must all end up in the restored database.
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicBoolean restored = new AtomicBoolean();
+        final AtomicLong laterWrites = new AtomicLong();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] writers = new Thread[WRITERS];
+        for (int t = 0; t < WRITERS; t++) {
+            final int offset = ROWS + t * 1000000;
+            writers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = offset; running.get(); i++) {
+                            boolean later = restored.get();
+                            ContentValues values = TestStore.item((later ? "Later " : "Item ")
+                                    + i, "$1.00", 1, "Supplier");
+                            assertNotNull(store.resolver.insert(store.uri, values));
+                            if (later) {
+                                laterWrites.incrementAndGet();
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            writers[t].start();
+        }
+
+        try {
+            SystemClock.sleep(200);
+            new InventoryBackup(context, LOCATION).restore(archive);
+            restored.set(true);
+            SystemClock.sleep(200);
+        } finally {
+            running.set(false);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+
+        assertNull(String.valueOf(failure.get()), failure.get());
+        assertTrue(laterWrites.get() > 0);
+        SQLiteDatabase database = dbHelper.getReadableDatabase();
+        assertEquals("ok", DatabaseUtils.stringForQuery(database, "PRAGMA quick_check", null));
+        assertEquals(laterWrites.get(), DatabaseUtils.queryNumEntries(database,
+                InventoryEntry.TABLE_NAME, InventoryEntry.COLUMN_ITEM_NAME + " LIKE 'Later %'"));
+        assertTrue(DatabaseUtils.queryNumEntries(database, InventoryEntry.TABLE_NAME) >= ROWS);
+    }
+
+    private static ContentValues item(int i) {
+        ContentValues values = TestStore.items(20).item(i);
+        ChangeTracking.stampInsert(values);
+        return values;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.os.Bundle;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that merging a price list inserts new items, updates changed ones and leaves the
+ * rest alone, so merging the same list again changes nothing. Runs against its own store
+ * location so the app's data is left alone.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryMergeTest {
+
+    private static final String LOCATION = "merge_test";
+
+    private static final int ITEMS = 100;
+
+    private TestStore store;
+    private ContentResolver resolver;
+    private InventoryDbHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        store = TestStore.open(LOCATION);
+        resolver = store.resolver;
+        dbHelper = store.dbHelper;
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void mergeIsIdempotent() {
+        ContentValues[] items = priceList("$1.00");
+        assertCounts(merge(items), ITEMS, 0, 0);
+        assertCounts(merge(items), 0, 0, ITEMS);
+        assertEquals(ITEMS, DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(),
+                InventoryEntry.TABLE_NAME));
+        // Nothing was written the second time
+        assertEquals(ITEMS, DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(),
+                InventoryEntry.TABLE_NAME, InventoryEntry.COLUMN_VERSION + " = 1"));
+    }
+
+    @Test
+    public void changedItemsAreUpdated() {
+        merge(priceList("$1.00"));
+
+        // Every other item gets a new price, and one more item is added
+        ContentValues[] items = priceList("$1.00");
+        for (int i = 0; i < ITEMS; i += 2) {
+            items[i].put(InventoryEntry.COLUMN_ITEM_PRICE, "$2.00");
+        }
+        ContentValues[] withNew = new ContentValues[ITEMS + 1];
+        System.arraycopy(items, 0, withNew, 0, ITEMS);
+        withNew[ITEMS] = item(ITEMS, "$3.00");
+        assertCounts(merge(withNew), 1, ITEMS / 2, ITEMS / 2);
+
+        assertEquals(ITEMS / 2, DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(),
+                InventoryEntry.TABLE_NAME, InventoryEntry.COLUMN_ITEM_PRICE + " = '$2.00' AND "
+                        + InventoryEntry.COLUMN_VERSION + " = 2"));
+        assertEquals(ITEMS + 1, DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(),
+                InventoryEntry.TABLE_NAME));
+    }
+
+    /**
+     * Items with SKUs on even indexes, and without on odd ones, so both keys are merged on.
+     */
+    private static ContentValues[] priceList(String price) {
+        ContentValues[] items = new ContentValues[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            items[i] = item(i, price);
+        }
+        return items;
+    }
+
+    private static ContentValues item(int i, String price) {
+        ContentValues values = TestStore.item("Item " + i, price, 5, "Supplier " + (i % 4));
+        if (i % 2 == 0) {
+            values.put(InventoryEntry.COLUMN_ITEM_SKU, String.format(Locale.US, "%012d", i));
+        }
+        return values;
+    }
+
+    private Bundle merge(ContentValues[] items) {
+        Bundle extras = new Bundle();
+        extras.putParcelableArray(InventoryEntry.EXTRA_ITEMS, items);
+        return resolver.call(store.uri, InventoryEntry.METHOD_MERGE, LOCATION, extras);
+    }
+
+    private static void assertCounts(Bundle counts, int inserted, int updated, int unchanged) {
+        assertEquals(inserted, counts.getInt(InventoryEntry.EXTRA_INSERTED));
+        assertEquals(updated, counts.getInt(InventoryEntry.EXTRA_UPDATED));
+        assertEquals(unchanged, counts.getInt(InventoryEntry.EXTRA_UNCHANGED));
+    }
+}
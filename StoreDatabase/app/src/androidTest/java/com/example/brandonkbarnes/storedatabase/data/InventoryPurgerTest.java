@@ -0,0 +1,116 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.TombstoneEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that deleted items disappear from queries right away and are removed from the
+ * database by the background purge, with a tombstone each for the sync.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryPurgerTest {
+
+    private static final String LOCATION = "purge_test";
+
+    private static final int ITEMS = 500;
+
+    private TestStore store;
+    private ContentResolver resolver;
+    private InventoryDbHelper dbHelper;
+    private Uri uri;
+
+    @Before
+    public void setUp() {
+        store = TestStore.open(LOCATION);
+        resolver = store.resolver;
+        dbHelper = store.dbHelper;
+        uri = store.uri;
+        store.seed(ITEMS, new TestStore.Items() {
+            @Override
+            public ContentValues item(int i) {
+                return skuItem("Item " + i, "$1.00", i % 10, "SKU" + i);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        store.awaitPurge();
+        store.close();
+    }
+
+    @Test
+    public void deleteAllSwapsTableAndPurgesTrash() {
+        // The wipe reports that there were items without counting them
+        assertEquals(1, resolver.delete(uri, null, null));
+        assertEquals(0, queryCount(uri));
+
+        // New items continue the row ids of the wiped ones
+        Uri itemUri = resolver.insert(uri, skuItem("New item", "$2.00", 1, "SKU0"));
+        assertNotNull(itemUri);
+        assertTrue(Long.parseLong(itemUri.getLastPathSegment()) > ITEMS);
+
+        store.awaitPurge();
+        SQLiteDatabase database = dbHelper.getReadableDatabase();
+        assertEquals(1, DatabaseUtils.queryNumEntries(database, InventoryEntry.TABLE_NAME));
+        assertEquals(ITEMS, DatabaseUtils.queryNumEntries(database, TombstoneEntry.TABLE_NAME));
+    }
+
+    @Test
+    public void deletedItemsAreHiddenAndPurged() {
+        assertEquals(100, resolver.delete(uri, InventoryEntry._ID + " <= ?",
+                new String[] { "100" }));
+        assertEquals(ITEMS - 100, queryCount(uri));
+        assertEquals(ITEMS, queryCount(uri.buildUpon()
+                .appendQueryParameter(InventoryEntry.QUERY_INCLUDE_DELETED, "true").build()));
+
+        // Deleted items are no longer found by their SKU
+        Cursor cursor = resolver.query(
+                uri.buildUpon()
+                        .appendPath(InventoryContract.PATH_SKU).appendPath("SKU0").build(),
+                null, null, null, null);
+        assertNotNull(cursor);
+        assertEquals(0, cursor.getCount());
+        cursor.close();
+
+        store.awaitPurge();
+        assertEquals(ITEMS - 100, DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(),
+                InventoryEntry.TABLE_NAME));
+    }
+
+    private int queryCount(Uri queryUri) {
+        Cursor cursor = resolver.query(queryUri, new String[] { InventoryEntry._ID },
+                null, null, null);
+        assertNotNull(cursor);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+
+    /**
+     * An item of the one supplier, with its own SKU.
+     */
+    private static ContentValues skuItem(String name, String price, int quantity, String sku) {
+        ContentValues values = TestStore.item(name, price, quantity, "Supplier");
+        values.put(InventoryEntry.COLUMN_ITEM_SKU, sku);
+        return values;
+    }
+}
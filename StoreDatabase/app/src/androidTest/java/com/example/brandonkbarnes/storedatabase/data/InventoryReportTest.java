@@ -0,0 +1,203 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the report totals and listings, that a cancelled run leaves no partial files, and
+ * that a valuation of a million items stays within a fixed memory budget.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryReportTest {
+
+    private static final String LOG_TAG = InventoryReportTest.class.getSimpleName();
+
+    private static final String LOCATION = "report_test";
+
+    // Java heap a report run may grow by, whatever the number of items
+    private static final long MEMORY_BUDGET_BYTES = 16 * 1024 * 1024;
+
+    private TestStore store;
+    private Context context;
+    private InventoryDbHelper dbHelper;
+    private File directory;
+
+    @Before
+    public void setUp() {
+        store = TestStore.open(LOCATION);
+        context = store.context;
+        dbHelper = store.dbHelper;
+        directory = new File(context.getCacheDir(), "reports_" + LOCATION);
+        deleteDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+        deleteDirectory();
+    }
+
+    @Test
+    public void reportsTotalsAndListings() throws IOException {
+        // Half the items are out of stock, more than one chunk, with repeated names
+        store.seed(1200, new TestStore.Items() {
+            @Override
+            public ContentValues item(int i) {
+                return TestStore.item("Item " + (i % 100), "$1,0" + (i % 10) + ".50",
+                        i % 2 == 0 ? 0 : 3, "Supplier " + (i % 3));
+            }
+        });
+        // Deleted items are left out
+        store.resolver.delete(store.uri,
+                InventoryEntry.COLUMN_ITEM_NAME + " = ?", new String[] { "Item 1" });
+
+        ReportStats stats = new InventoryReport(context, LOCATION, 5).run(directory);
+
+        assertTrue(stats.isComplete());
+        assertEquals(1188, stats.getItems());
+        assertEquals(588 * 3, stats.getUnits(), 0);
+        assertEquals(3, stats.getSuppliers());
+        assertEquals(600, stats.getOutOfStock());
+        assertEquals(5, stats.getTopHoldings());
+
+        List<String> valuation = readLines(InventoryReport.REPORT_VALUATION);
+        assertEquals("supplier,items,units,value", valuation.get(0));
+        assertEquals(5, valuation.size());
+        assertTrue(valuation.get(4).startsWith(",1188,1764,"));
+
+        // Every out of stock item exactly once, despite the chunks and the repeated names
+        List<String> outOfStock = readLines(InventoryReport.REPORT_OUT_OF_STOCK);
+        assertEquals(601, outOfStock.size());
+        assertEquals(outOfStock.size(), new HashSet<String>(outOfStock).size());
+
+        // Prices with a thousands separator are quoted
+        List<String> topHoldings = readLines(InventoryReport.REPORT_TOP_HOLDINGS);
+        assertEquals(6, topHoldings.size());
+        assertTrue(topHoldings.get(1).contains("\"$1,09.50\",3,328.50"));
+    }
+
+    @Test
+    public void cancelledRunLeavesNoFiles() throws IOException {
+        insertDirectly(10000);
+        final InventoryReport report = new InventoryReport(context, LOCATION);
+        report.setProgressListener(new InventoryReport.ProgressListener() {
+            @Override
+            public void onProgress(String name, long done, long total) {
+                report.cancel();
+            }
+        });
+
+        ReportStats stats = report.run(directory);
+
+        assertFalse(stats.isComplete());
+        String[] files = directory.list();
+        assertNotNull(files);
+        assertEquals(0, files.length);
+    }
+
+    @Test
+    public void valuationOfMillionItemsFitsMemoryBudget() throws IOException {
+        insertDirectly(1000000);
+
+        final Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        final long baseline = runtime.totalMemory() - runtime.freeMemory();
+        final long[] peak = { 0 };
+        InventoryReport report = new InventoryReport(context, LOCATION);
+        report.setProgressListener(new InventoryReport.ProgressListener() {
+            @Override
+            public void onProgress(String name, long done, long total) {
+                peak[0] = Math.max(peak[0], runtime.totalMemory() - runtime.freeMemory());
+            }
+        });
+
+        long start = SystemClock.elapsedRealtime();
+        ReportStats stats = report.run(directory);
+        Log.i(LOG_TAG, "Reports of 1,000,000 items in " + (SystemClock.elapsedRealtime() - start)
+                + " ms, heap grew by " + (peak[0] - baseline) / 1024 + " kB: " + stats);
+
+        assertTrue(stats.isComplete());
+        assertEquals(1000000, stats.getItems());
+        assertEquals(1000, stats.getSuppliers());
+        assertTrue(peak[0] - baseline < MEMORY_BUDGET_BYTES);
+    }
+
+    /**
+     * Insert the items with one statement in one transaction, past the provider, which is
+     * much faster for a million rows.
+     */
+    private void insertDirectly(int count) {
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        SQLiteStatement insert = database.compileStatement("INSERT INTO "
+                + InventoryEntry.TABLE_NAME + " ("
+                + InventoryEntry.COLUMN_ITEM_NAME + ", "
+                + InventoryEntry.COLUMN_ITEM_PRICE + ", "
+                + InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+                + InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME + ", "
+                + InventoryEntry.COLUMN_ITEM_SUPPLIER_EMAIL + ", "
+                + InventoryEntry.COLUMN_ITEM_SUPPLIER_PHONE + ") VALUES (?, ?, ?, ?, ?, ?)");
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < count; i++) {
+                insert.bindString(1, "Item " + i);
+                insert.bindString(2, "$" + (i % 100) + ".99");
+                insert.bindLong(3, i % 20);
+                insert.bindString(4, "Supplier " + (i % 1000));
+                insert.bindString(5, "supplier@example.com");
+                insert.bindString(6, "555-0100");
+                insert.executeInsert();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            insert.close();
+        }
+    }
+
+    private List<String> readLines(String report) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(
+                new File(directory, report + ".csv")));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    private void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
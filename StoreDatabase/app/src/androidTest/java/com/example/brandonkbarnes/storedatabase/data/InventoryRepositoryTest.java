@@ -0,0 +1,211 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.TombstoneEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the repository's writes validate their records, write tracked rows and record
+ * each change in the change feed, and that a catalog read fills a reused buffer. Runs against
+ * its own store location so the app's data is left alone.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryRepositoryTest {
+
+    private static final String LOCATION = "repository_test";
+
+    private TestStore store;
+    private InventoryRepository repository;
+    private ChangeFeed feed;
+
+    @Before
+    public void setUp() {
+        store = TestStore.open(LOCATION);
+        repository = new InventoryRepository(store.context, LOCATION);
+        feed = store.dbHelper.getChangeFeed();
+    }
+
+    @After
+    public void tearDown() {
+        store.awaitPurge();
+        store.close();
+    }
+
+    @Test
+    public void insertWritesTrackedRow() {
+        long start = feed.getSequence();
+        InventoryRecord record = record("Soap", 5);
+        long id = repository.insertItem(record);
+
+        assertTrue(id > 0);
+        assertEquals(id, record.getId());
+        Cursor cursor = row(id);
+        try {
+            assertEquals("Soap", cursor.getString(0));
+            assertEquals(5, cursor.getInt(1));
+            assertNotNull(cursor.getString(2));
+            assertEquals(1, cursor.getLong(3));
+            assertEquals(1, cursor.getInt(4));
+        } finally {
+            cursor.close();
+        }
+        assertChange(start, ChangeFeed.OP_INSERT, id);
+    }
+
+    @Test
+    public void invalidRecordsAreRejected() {
+        long start = feed.getSequence();
+        try {
+            repository.insertItem(record(null, 5));
+            fail("Item without a name was inserted");
+        } catch (IllegalArgumentException expected) {
+            // Nothing was written
+        }
+        long id = repository.insertItem(record("Soap", 5));
+        InventoryRecord update = record("Soap", 5);
+        update.setId(id);
+        update.setSupplierEmail(null);
+        try {
+            repository.updateItem(update);
+            fail("Item without a supplier email was updated");
+        } catch (IllegalArgumentException expected) {
+            // Nothing was written
+        }
+        try {
+            repository.updateQuantity(id, -1);
+            fail("Negative quantity was set");
+        } catch (IllegalArgumentException expected) {
+            // Nothing was written
+        }
+
+        assertEquals(1, DatabaseUtils.queryNumEntries(store.dbHelper.getReadableDatabase(),
+                InventoryEntry.TABLE_NAME));
+        assertEquals("supplier@example.com", repository.getItem(id).getSupplierEmail());
+        assertEquals(5, repository.getItem(id).getQuantity());
+        assertEquals(1, feed.since(start).size());
+    }
+
+    @Test
+    public void updatesBumpVersion() {
+        long id = repository.insertItem(record("Soap", 5));
+        markClean(id);
+
+        long start = feed.getSequence();
+        InventoryRecord record = record("Hand soap", 7);
+        record.setId(id);
+        assertEquals(1, repository.updateItem(record));
+        assertChange(start, ChangeFeed.OP_UPDATE, id);
+        assertEquals("Hand soap", repository.getItem(id).getName());
+
+        start = feed.getSequence();
+        assertEquals(1, repository.updateQuantity(id, 3));
+        assertEquals(1, repository.updateQuantity(id, 2));
+        assertChange(start, ChangeFeed.OP_UPDATE, id);
+
+        Cursor cursor = row(id);
+        try {
+            assertEquals(2, cursor.getInt(1));
+            assertEquals(4, cursor.getLong(3));
+            assertEquals(1, cursor.getInt(4));
+        } finally {
+            cursor.close();
+        }
+
+        // Unknown items aren't changed and leave no change behind
+        start = feed.getSequence();
+        record.setId(id + 1);
+        assertEquals(0, repository.updateItem(record));
+        assertEquals(0, repository.updateQuantity(id + 1, 1));
+        assertEquals(0, feed.since(start).size());
+    }
+
+    @Test
+    public void deleteLeavesTombstone() {
+        long id = repository.insertItem(record("Soap", 5));
+
+        long start = feed.getSequence();
+        assertEquals(1, repository.deleteItem(id));
+        assertChange(start, ChangeFeed.OP_DELETE, id);
+        assertNull(repository.getItem(id));
+        assertEquals(1, DatabaseUtils.queryNumEntries(store.dbHelper.getReadableDatabase(),
+                TombstoneEntry.TABLE_NAME, TombstoneEntry.COLUMN_DIRTY + " = 1"));
+
+        // A deleted item can't be deleted or changed again
+        assertEquals(0, repository.deleteItem(id));
+        assertEquals(0, repository.updateQuantity(id, 1));
+    }
+
+    @Test
+    public void readCatalogFillsReusedBuffer() {
+        store.seed(200, TestStore.items(4));
+        repository.deleteItem(1);
+
+        CatalogBuffer buffer = new CatalogBuffer(8);
+        String selection = InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME + " = ?";
+        String[] args = { "Supplier 0" };
+        // Ids 1, 5, 9, ... without the deleted first one
+        assertEquals(49, repository.readCatalog(buffer, selection, args, InventoryEntry._ID));
+        assertEquals(49, buffer.size());
+        for (int i = 0; i < buffer.size(); i++) {
+            long id = buffer.getId(i);
+            assertEquals(5 + 4 * i, id);
+            assertEquals("Item " + (id - 1), buffer.getName(i));
+            assertEquals("$1.00", buffer.getPrice(i));
+            assertEquals((id - 1) % 10, buffer.getQuantity(i));
+        }
+
+        // Reading again replaces the rows
+        assertEquals(199, repository.readCatalog(buffer, null, null, null));
+        assertEquals(199, buffer.size());
+        assertEquals(-1, buffer.indexOf(1));
+    }
+
+    private static InventoryRecord record(String name, int quantity) {
+        return new InventoryRecord(name, "$1.00", quantity, "Supplier", "supplier@example.com",
+                "555-0100");
+    }
+
+    /**
+     * Query name, quantity, sync id, version and dirty flag of one row.
+     */
+    private Cursor row(long id) {
+        Cursor cursor = store.dbHelper.getReadableDatabase().query(InventoryEntry.TABLE_NAME,
+                new String[] {
+                        InventoryEntry.COLUMN_ITEM_NAME,
+                        InventoryEntry.COLUMN_ITEM_QUANTITY,
+                        InventoryEntry.COLUMN_SYNC_ID,
+                        InventoryEntry.COLUMN_VERSION,
+                        InventoryEntry.COLUMN_DIRTY },
+                InventoryEntry._ID + " = " + id, null, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        return cursor;
+    }
+
+    // As a sync would, so the next change has to mark the row dirty again
+    private void markClean(long id) {
+        store.dbHelper.getWritableDatabase().execSQL("UPDATE " + InventoryEntry.TABLE_NAME
+                + " SET " + InventoryEntry.COLUMN_DIRTY + " = 0 WHERE " + InventoryEntry._ID
+                + " = " + id);
+    }
+
+    /**
+     * Assert that the only item changed since the sequence number is the given one.
+     */
+    private void assertChange(long since, int op, long id) {
+        ChangeFeed.Changes changes = feed.since(since);
+        assertNotNull(changes);
+        assertEquals(1, changes.size());
+        assertEquals(id, changes.getId(0));
+        assertEquals(op, changes.getOp(0));
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.PriceHistoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that every price history query seeks one of the history indexes, without a temporary
+ * B-tree for sorting. The queries are built by {@link PriceHistoryQuery}, as in
+ * {@link InventoryProvider}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PriceHistoryQueryPlanTest {
+
+    private static final String LOCATION = "price_plan_test";
+
+    private static final long ITEM_ID = 5;
+
+    private TestStore store;
+    private SQLiteDatabase database;
+
+    @Before
+    public void setUp() {
+        store = TestStore.open(LOCATION);
+        database = store.dbHelper.getWritableDatabase();
+
+        // Give the planner statistics of a history with several periods per item
+        store.seedDirect(500, TestStore.items(20));
+        for (int i = 2; i <= 5; i++) {
+            database.execSQL("UPDATE " + InventoryEntry.TABLE_NAME + " SET "
+                    + InventoryEntry.COLUMN_ITEM_PRICE + " = '$" + i + ".00'");
+        }
+        database.execSQL("ANALYZE");
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void priceAtTimeSeeksItemIndex() {
+        Uri uri = PriceHistoryEntry.buildItemPricesUri(ITEM_ID).buildUpon()
+                .appendQueryParameter(PriceHistoryEntry.QUERY_AT,
+                        String.valueOf(System.currentTimeMillis()))
+                .build();
+        assertSeeks(PriceHistoryQuery.forItem(uri, ITEM_ID, null), "price_history_item");
+    }
+
+    @Test
+    public void itemRangeSeeksItemIndex() {
+        assertSeeks(PriceHistoryQuery.forItem(range(
+                PriceHistoryEntry.buildItemPricesUri(ITEM_ID)), ITEM_ID, null),
+                "price_history_item");
+    }
+
+    @Test
+    public void rangeSeeksValidFromIndex() {
+        assertSeeks(PriceHistoryQuery.forAll(range(PriceHistoryEntry.CONTENT_URI), null),
+                "price_history_valid_from");
+    }
+
+    // The last hour, which every period of the seed started in
+    private static Uri range(Uri uri) {
+        long now = System.currentTimeMillis();
+        return uri.buildUpon()
+                .appendQueryParameter(PriceHistoryEntry.QUERY_FROM, String.valueOf(now - 3600000))
+                .appendQueryParameter(PriceHistoryEntry.QUERY_TO, String.valueOf(now + 1))
+                .build();
+    }
+
+    /**
+     * Assert that the query searches the given index and doesn't sort.
+     */
+    private void assertSeeks(PriceHistoryQuery query, String index) {
+        String plan = explain(query.sql, query.args);
+        assertTrue(plan, plan.contains("SEARCH"));
+        assertTrue(plan, plan.contains("INDEX " + index));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    private String explain(String sql, String[] args) {
+        Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        try {
+            // The last column of each row describes one step of the plan
+            StringBuilder plan = new StringBuilder();
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(cursor.getColumnCount() - 1)).append('\n');
+            }
+            return plan.toString();
+        } finally {
+            cursor.close();
+        }
+    }
+}
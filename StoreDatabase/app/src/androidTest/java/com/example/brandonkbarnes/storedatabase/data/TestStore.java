@@ -0,0 +1,129 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import static org.junit.Assert.*;
+
+/**
+ * A store location of its own for one instrumented test, started empty and deleted again by
+ * {@link #close()}, so the app's data is left alone.
+ */
+public final class TestStore {
+
+    // Longest time to wait for the purge
+    private static final long PURGE_TIMEOUT_MILLIS = 30000;
+
+    public final Context context;
+    public final ContentResolver resolver;
+    public final String location;
+    public final InventoryDbHelper dbHelper;
+    public final Uri uri;
+
+    /**
+     * Makes the items to seed a store with, one for each index.
+     */
+    public interface Items {
+        ContentValues item(int i);
+    }
+
+    private TestStore(Context context, String location) {
+        this.context = context;
+        this.location = location;
+        resolver = context.getContentResolver();
+        dbHelper = InventoryDbHelper.getInstance(context, location);
+        uri = InventoryEntry.buildLocationUri(location);
+    }
+
+    /**
+     * Open the location, deleting whatever an earlier run left in it.
+     */
+    public static TestStore open(String location) {
+        Context context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(InventoryDbHelper.getDatabaseName(location));
+        return new TestStore(context, location);
+    }
+
+    /**
+     * Close the location and delete its database.
+     */
+    public void close() {
+        dbHelper.close();
+        context.deleteDatabase(InventoryDbHelper.getDatabaseName(location));
+    }
+
+    public static ContentValues item(String name, String price, int quantity, String supplier) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_NAME, name);
+        values.put(InventoryEntry.COLUMN_ITEM_PRICE, price);
+        values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME, supplier);
+        values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER_EMAIL, "supplier@example.com");
+        values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER_PHONE, "555-0100");
+        return values;
+    }
+
+    /**
+     * Items named by their index at $1.00, spread over the given number of suppliers.
+     */
+    public static Items items(final int suppliers) {
+        return new Items() {
+            @Override
+            public ContentValues item(int i) {
+                return TestStore.item("Item " + i, "$1.00", i % 10, "Supplier " + (i % suppliers));
+            }
+        };
+    }
+
+    /**
+     * Insert the items through the provider, as the app does.
+     */
+    public void seed(int count, Items items) {
+        ContentValues[] values = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = items.item(i);
+        }
+        assertEquals(count, resolver.bulkInsert(uri, values));
+    }
+
+    /**
+     * Insert the items past the provider in one transaction, which is faster for large seeds.
+     */
+    public void seedDirect(int count, Items items) {
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < count; i++) {
+                ContentValues values = items.item(i);
+                ChangeTracking.stampInsert(values);
+                assertTrue(database.insert(InventoryEntry.TABLE_NAME, null, values) != -1);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Wait until no deleted rows or trash tables are left.
+     */
+    public void awaitPurge() {
+        long deadline = SystemClock.elapsedRealtime() + PURGE_TIMEOUT_MILLIS;
+        SQLiteDatabase database = dbHelper.getReadableDatabase();
+        while (DatabaseUtils.queryNumEntries(database, InventoryEntry.TABLE_NAME,
+                InventoryEntry.COLUMN_DELETED + " = 1") != 0
+                || DatabaseUtils.longForQuery(database, "SELECT COUNT(*) FROM sqlite_master"
+                        + " WHERE name LIKE '" + InventoryPurger.TRASH_PREFIX + "%'", null) != 0) {
+            assertTrue("Purge timed out", SystemClock.elapsedRealtime() < deadline);
+            SystemClock.sleep(100);
+        }
+    }
+}
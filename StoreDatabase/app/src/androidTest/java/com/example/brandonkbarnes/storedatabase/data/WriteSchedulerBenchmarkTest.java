@@ -0,0 +1,185 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares insert throughput through the provider's group commit with one transaction per
+ * insert, for 1 to 16 writer threads, and checks that a failing write doesn't fail the writes
+ * committed with it. Runs against its own store location so the app's data is left alone.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WriteSchedulerBenchmarkTest {
+
+    private static final String LOG_TAG = WriteSchedulerBenchmarkTest.class.getSimpleName();
+
+    private static final String LOCATION = "write_bench";
+
+    // Inserts per run, split over the writer threads
+    private static final int INSERTS = 1600;
+
+    private static final int[] THREADS = { 1, 2, 4, 8, 16 };
+
+    private TestStore store;
+    private Context context;
+    private InventoryDbHelper dbHelper;
+    private Uri uri;
+
+    @Before
+    public void setUp() {
+        store = TestStore.open(LOCATION);
+        context = store.context;
+        dbHelper = store.dbHelper;
+        uri = store.uri;
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void groupCommitThroughput() throws Exception {
+        final ContentResolver resolver = context.getContentResolver();
+        for (int threads : THREADS) {
+            clear();
+            double grouped = run(threads, new Writer() {
+                @Override
+                public void insert(ContentValues values) {
+                    assertNotNull(resolver.insert(uri, values));
+                }
+            });
+            assertEquals(INSERTS, count());
+
+            clear();
+            final SQLiteDatabase database = dbHelper.getWritableDatabase();
+            double separate = run(threads, new Writer() {
+                @Override
+                public void insert(ContentValues values) {
+                    ChangeTracking.stampInsert(values);
+                    assertTrue(database.insert(InventoryEntry.TABLE_NAME, null, values) != -1);
+                }
+            });
+            assertEquals(INSERTS, count());
+
+            Log.i(LOG_TAG, String.format("%2d threads: group commit %.0f inserts/s, "
+                    + "transaction per insert %.0f inserts/s", threads, grouped, separate));
+        }
+    }
+
+    @Test
+    public void failedWriteDoesNotFailOthers() throws Exception {
+        ContentValues first = item(0);
+        first.put(InventoryEntry.COLUMN_ITEM_SKU, "DUPLICATE");
+        assertNotNull(context.getContentResolver().insert(uri, first));
+        ContentValues second = item(1);
+        second.put(InventoryEntry.COLUMN_ITEM_SKU, "OTHER");
+        assertNotNull(context.getContentResolver().insert(uri, second));
+
+        // Queue good inserts around an update that breaks the unique SKU index
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(9);
+        for (int i = 0; i < 9; i++) {
+            final int n = i + 2;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (n == 6) {
+                            ContentValues values = new ContentValues();
+                            values.put(InventoryEntry.COLUMN_ITEM_SKU, "DUPLICATE");
+                            context.getContentResolver().update(uri, values,
+                                    InventoryEntry.COLUMN_ITEM_SKU + " = ?",
+                                    new String[] { "OTHER" });
+                        } else {
+                            context.getContentResolver().insert(uri, item(n));
+                        }
+                    } catch (SQLiteException e) {
+                        failures.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        done.await();
+
+        assertEquals(1, failures.get());
+        // The two items inserted first and the eight inserted with the failed update
+        assertEquals(10, count());
+    }
+
+    private interface Writer {
+        void insert(ContentValues values);
+    }
+
+    /**
+     * Run the inserts on the given number of threads and return the inserts per second.
+     */
+    private double run(int threads, final Writer writer) throws InterruptedException {
+        final int perThread = INSERTS / threads;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t * perThread;
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perThread; i++) {
+                        writer.insert(item(offset + i));
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        long begin = SystemClock.elapsedRealtime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = Math.max(1, SystemClock.elapsedRealtime() - begin);
+        return perThread * threads * 1000.0 / elapsed;
+    }
+
+    private void clear() {
+        dbHelper.getWritableDatabase().delete(InventoryEntry.TABLE_NAME, null, null);
+    }
+
+    private long count() {
+        return DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(),
+                InventoryEntry.TABLE_NAME);
+    }
+
+    private static ContentValues item(int i) {
+        return TestStore.item("Item " + i, "$1.00", i % 10, "Supplier");
+    }
+}
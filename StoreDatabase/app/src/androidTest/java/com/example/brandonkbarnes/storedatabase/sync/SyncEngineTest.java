@@ -0,0 +1,275 @@
+package com.example.brandonkbarnes.storedatabase.sync;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.TombstoneEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryRecord;
+import com.example.brandonkbarnes.storedatabase.data.SkuIndex;
+import com.example.brandonkbarnes.storedatabase.data.TestStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the sync engine pushes and pulls in batches, keeps its pull watermark across a
+ * failed run, resolves conflicts by version with ties going to the backend, and carries
+ * deletions and SKUs both ways. Runs against its own store location and a {@link LocalSyncBackend}
+ * so the app's data is left alone.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SyncEngineTest {
+
+    private static final String LOCATION = "sync_test";
+
+    private static final int BATCH_SIZE = 10;
+
+    private TestStore store;
+    private CountingBackend backend;
+    private SyncEngine engine;
+
+    @Before
+    public void setUp() {
+        store = TestStore.open(LOCATION);
+        backend = new CountingBackend();
+        engine = new SyncEngine(store.context, LOCATION, backend, BATCH_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        store.awaitPurge();
+        store.close();
+    }
+
+    @Test
+    public void pushesAndPullsInBatches() throws IOException {
+        store.seed(25, TestStore.items(3));
+        SyncResult result = engine.sync();
+        assertEquals(25, result.getPushed());
+        assertEquals(3, backend.pushSizes.size());
+        assertEquals(BATCH_SIZE, (int) backend.pushSizes.get(0));
+        assertEquals(5, (int) backend.pushSizes.get(2));
+        assertEquals(25, backend.size(LOCATION));
+        assertEquals(0, count(InventoryEntry.TABLE_NAME, InventoryEntry.COLUMN_DIRTY + " = 1"));
+
+        // Another device's items come back in batches too
+        backend.push(LOCATION, remoteItems(25, 1, "Remote"));
+        backend.pulls = 0;
+        result = engine.sync();
+        assertEquals(0, result.getPushed());
+        assertEquals(25, result.getPulled());
+        assertEquals(3, backend.pulls);
+        assertEquals(50, count(InventoryEntry.TABLE_NAME, null));
+        assertEquals(0, count(InventoryEntry.TABLE_NAME, InventoryEntry.COLUMN_DIRTY + " = 1"));
+    }
+
+    @Test
+    public void watermarkSurvivesFailedPull() throws IOException {
+        backend.push(LOCATION, remoteItems(25, 1, "Remote"));
+        backend.failAfterPulls = 1;
+        try {
+            engine.sync();
+            fail("Pull should have failed");
+        } catch (IOException expected) {
+            // The first batch was applied with its watermark
+        }
+        assertEquals(BATCH_SIZE, count(InventoryEntry.TABLE_NAME, null));
+
+        // The next run carries on from the stored watermark
+        backend.failAfterPulls = Integer.MAX_VALUE;
+        backend.watermarks.clear();
+        SyncResult result = engine.sync();
+        assertEquals(25 - BATCH_SIZE, result.getPulled());
+        assertTrue(backend.watermarks.get(0) > 0);
+        assertEquals(25, count(InventoryEntry.TABLE_NAME, null));
+    }
+
+    @Test
+    public void newerLocalChangeWins() throws IOException {
+        String syncId = syncedItem();
+        backend.push(LOCATION, Collections.singletonList(remoteItem(syncId, 2, "Backend")));
+        rename(syncId, "Local");
+        rename(syncId, "Local again");
+
+        SyncResult result = engine.sync();
+        assertEquals(1, result.getPushed());
+        assertEquals(0, result.getConflicts());
+        assertEquals("Local again", name(syncId));
+        assertEquals(3, version(syncId));
+    }
+
+    @Test
+    public void newerBackendChangeWins() throws IOException {
+        String syncId = syncedItem();
+        backend.push(LOCATION, Collections.singletonList(remoteItem(syncId, 3, "Backend")));
+        rename(syncId, "Local");
+
+        SyncResult result = engine.sync();
+        assertEquals(0, result.getPushed());
+        assertEquals(1, result.getConflicts());
+        assertEquals("Backend", name(syncId));
+        assertEquals(3, version(syncId));
+        assertEquals(0, count(InventoryEntry.TABLE_NAME, InventoryEntry.COLUMN_DIRTY + " = 1"));
+    }
+
+    @Test
+    public void tieGoesToBackend() throws IOException {
+        String syncId = syncedItem();
+        backend.push(LOCATION, Collections.singletonList(remoteItem(syncId, 2, "Backend")));
+        rename(syncId, "Local");
+        assertEquals(2, version(syncId));
+
+        SyncResult result = engine.sync();
+        assertEquals(1, result.getConflicts());
+        assertEquals("Backend", name(syncId));
+        assertEquals(0, count(InventoryEntry.TABLE_NAME, InventoryEntry.COLUMN_DIRTY + " = 1"));
+    }
+
+    @Test
+    public void deletionIsPushedAsTombstone() throws IOException {
+        String syncId = syncedItem();
+        assertEquals(1, store.resolver.delete(store.uri, InventoryEntry.COLUMN_SYNC_ID + " = ?",
+                new String[] { syncId }));
+        assertEquals(1, count(TombstoneEntry.TABLE_NAME, TombstoneEntry.COLUMN_DIRTY + " = 1"));
+
+        SyncResult result = engine.sync();
+        assertEquals(1, result.getPushed());
+        assertEquals(0, count(TombstoneEntry.TABLE_NAME, null));
+        SyncRecord pushed = backend.pull(LOCATION, 0, BATCH_SIZE).getChanges().get(0);
+        assertEquals(syncId, pushed.getSyncId());
+        assertTrue(pushed.isDeleted());
+        assertEquals(2, pushed.getVersion());
+    }
+
+    @Test
+    public void remoteDeletionRemovesSoftDeletedRow() throws IOException {
+        String syncId = syncedItem();
+        // Deleted here and, later, on another device. The row waits for the purge.
+        assertEquals(1, store.resolver.delete(store.uri, InventoryEntry.COLUMN_SYNC_ID + " = ?",
+                new String[] { syncId }));
+        backend.push(LOCATION, Collections.singletonList(
+                SyncRecord.forDeletion(syncId, 3, System.currentTimeMillis())));
+
+        SyncResult result = engine.sync();
+        assertEquals(1, result.getConflicts());
+        String bySyncId = InventoryEntry.COLUMN_SYNC_ID + " = '" + syncId + "'";
+        assertEquals(0, count(InventoryEntry.TABLE_NAME, bySyncId));
+        assertEquals(0, count(TombstoneEntry.TABLE_NAME, null));
+        assertEquals(1, backend.size(LOCATION));
+    }
+
+    @Test
+    public void skuTravelsBothWays() throws IOException {
+        ContentValues values = TestStore.item("Scanned", "$1.00", 1, "Supplier");
+        values.put(InventoryEntry.COLUMN_ITEM_SKU, "0001");
+        long id = ContentUris.parseId(store.resolver.insert(store.uri, values));
+        engine.sync();
+        SyncRecord pushed = backend.pull(LOCATION, 0, BATCH_SIZE).getChanges().get(0);
+        assertEquals("0001", pushed.getSku());
+
+        // A new SKU from the backend is found by the next scan, the old one no longer
+        InventoryRecord item = pushed.getItem();
+        item.setSku("0002");
+        backend.push(LOCATION, Collections.singletonList(SyncRecord.forItem(pushed.getSyncId(),
+                2, System.currentTimeMillis(), item)));
+        assertEquals(1, engine.sync().getPulled());
+        assertEquals(id, store.dbHelper.getSkuLookup().lookup("0002"));
+        assertEquals(SkuIndex.NOT_FOUND, store.dbHelper.getSkuLookup().lookup("0001"));
+    }
+
+    /**
+     * Insert one item and sync it, so the item and the backend both have version 1.
+     */
+    private String syncedItem() throws IOException {
+        Uri itemUri = store.resolver.insert(store.uri,
+                TestStore.item("Item", "$1.00", 1, "Supplier"));
+        assertNotNull(itemUri);
+        assertEquals(1, engine.sync().getPushed());
+        return DatabaseUtils.stringForQuery(store.dbHelper.getReadableDatabase(), "SELECT "
+                + InventoryEntry.COLUMN_SYNC_ID + " FROM " + InventoryEntry.TABLE_NAME
+                + " WHERE " + InventoryEntry._ID + " = " + ContentUris.parseId(itemUri), null);
+    }
+
+    private void rename(String syncId, String name) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_NAME, name);
+        assertEquals(1, store.resolver.update(store.uri, values,
+                InventoryEntry.COLUMN_SYNC_ID + " = ?", new String[] { syncId }));
+    }
+
+    private String name(String syncId) {
+        return DatabaseUtils.stringForQuery(store.dbHelper.getReadableDatabase(), "SELECT "
+                + InventoryEntry.COLUMN_ITEM_NAME + " FROM " + InventoryEntry.TABLE_NAME
+                + " WHERE " + InventoryEntry.COLUMN_SYNC_ID + " = ?", new String[] { syncId });
+    }
+
+    private long version(String syncId) {
+        return DatabaseUtils.longForQuery(store.dbHelper.getReadableDatabase(), "SELECT "
+                + InventoryEntry.COLUMN_VERSION + " FROM " + InventoryEntry.TABLE_NAME
+                + " WHERE " + InventoryEntry.COLUMN_SYNC_ID + " = ?", new String[] { syncId });
+    }
+
+    private long count(String table, String selection) {
+        return DatabaseUtils.queryNumEntries(store.dbHelper.getReadableDatabase(), table,
+                selection);
+    }
+
+    private static List<SyncRecord> remoteItems(int count, long version, String name) {
+        List<SyncRecord> records = new ArrayList<SyncRecord>();
+        for (int i = 0; i < count; i++) {
+            records.add(remoteItem("remote-" + i, version, name + " " + i));
+        }
+        return records;
+    }
+
+    private static SyncRecord remoteItem(String syncId, long version, String name) {
+        return SyncRecord.forItem(syncId, version, System.currentTimeMillis(),
+                new InventoryRecord(name, "$2.00", 4, "Supplier", "supplier@example.com",
+                        "555-0100"));
+    }
+
+    /**
+     * A {@link LocalSyncBackend} that records the round trips and can fail a pull, like a
+     * connection dropped mid-sync.
+     */
+    private static class CountingBackend implements SyncBackend {
+
+        final LocalSyncBackend backend = new LocalSyncBackend();
+        final List<Integer> pushSizes = new ArrayList<Integer>();
+        final List<Long> watermarks = new ArrayList<Long>();
+        int pulls;
+        int failAfterPulls = Integer.MAX_VALUE;
+
+        @Override
+        public List<SyncRecord> push(String location, List<SyncRecord> changes) {
+            pushSizes.add(changes.size());
+            return backend.push(location, changes);
+        }
+
+        @Override
+        public PullResult pull(String location, long watermark, int limit) throws IOException {
+            watermarks.add(watermark);
+            if (pulls++ >= failAfterPulls) {
+                throw new IOException("Connection dropped");
+            }
+            return backend.pull(location, watermark, limit);
+        }
+
+        int size(String location) {
+            return backend.size(location);
+        }
+    }
+}
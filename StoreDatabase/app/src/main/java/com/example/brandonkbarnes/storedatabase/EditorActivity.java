@@ -18,11 +18,15 @@ import android.view.Menu;
 import android.view.MenuItem;
 import android.view.MotionEvent;
 import android.view.View;
+import android.widget.AdapterView;
 import android.widget.EditText;
+import android.widget.FilterQueryProvider;
+import android.widget.SimpleCursorAdapter;
 import android.widget.Toast;
 
-import com.example.brandonkbarnes.storedatabase.data.InventoryDbHelper;
+import com.example.brandonkbarnes.storedatabase.data.InventoryColumns;
 import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryRecord;
 
 public class EditorActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<Cursor>{
 
@@ -32,8 +36,8 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
     //Content URI for the existing item (null if it's a new item)
     private Uri currentItemUri;
 
-    // EditText field to enter the item name
-    private EditText nameEditText;
+    // EditText field to enter the item name, suggesting the names of other items
+    private SuggestionTextView nameEditText;
 
     // EditText field to enter the item price
     private EditText priceEditText;
@@ -41,8 +45,8 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
     // EditText field to enter the item quantity
     private EditText quantityEditText;
 
-    //EditText field to enter the item's supplier's name
-    private EditText supplierNameEditText;
+    //EditText field to enter the item's supplier's name, suggesting the known suppliers
+    private SuggestionTextView supplierNameEditText;
 
     //EditText field to enter the item's supplier's email
     private EditText supplierEmailEditText;
@@ -50,6 +54,10 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
     //EditText field to enter the item's supplier's phone number
     private EditText supplierPhoneEditText;
 
+    // Adapters of the name and supplier suggestions
+    private SimpleCursorAdapter nameSuggestions;
+    private SimpleCursorAdapter supplierSuggestions;
+
     // Boolean flag that keeps track of whether the item has been edited.
     private boolean itemHasChanged = false;
 
@@ -92,10 +100,10 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         }
 
         // Find all relevant views that we will need to read user input from
-        nameEditText = (EditText) findViewById(R.id.edit_item_name);
+        nameEditText = (SuggestionTextView) findViewById(R.id.edit_item_name);
         priceEditText = (EditText) findViewById(R.id.edit_item_price);
         quantityEditText = (EditText) findViewById(R.id.edit_item_quantity);
-        supplierNameEditText = (EditText) findViewById(R.id.supplier_name);
+        supplierNameEditText = (SuggestionTextView) findViewById(R.id.supplier_name);
         supplierEmailEditText = (EditText) findViewById(R.id.supplier_email);
         supplierPhoneEditText = (EditText) findViewById(R.id.supplier_phone);
 
@@ -108,6 +116,66 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         supplierNameEditText.setOnTouchListener(touchListener);
         supplierEmailEditText.setOnTouchListener(touchListener);
         supplierPhoneEditText.setOnTouchListener(touchListener);
+
+        // Suggest names as the user types them, and fill in the contact details of a
+        // suggested supplier when it's picked
+        nameSuggestions = createSuggestionAdapter(InventoryEntry.NAMES_CONTENT_URI,
+                InventoryEntry.COLUMN_ITEM_NAME);
+        nameEditText.setAdapter(nameSuggestions);
+        supplierSuggestions = createSuggestionAdapter(InventoryEntry.SUPPLIERS_CONTENT_URI,
+                InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME);
+        supplierNameEditText.setAdapter(supplierSuggestions);
+        supplierNameEditText.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                Cursor cursor = (Cursor) parent.getItemAtPosition(position);
+                supplierEmailEditText.setText(cursor.getString(cursor.getColumnIndexOrThrow(
+                        InventoryEntry.COLUMN_ITEM_SUPPLIER_EMAIL)));
+                supplierPhoneEditText.setText(cursor.getString(cursor.getColumnIndexOrThrow(
+                        InventoryEntry.COLUMN_ITEM_SUPPLIER_PHONE)));
+                itemHasChanged = true;
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Close the cursors of the last suggestions
+        nameSuggestions.changeCursor(null);
+        supplierSuggestions.changeCursor(null);
+    }
+
+    /**
+     * Create an adapter suggesting the names of the given URI that start with the text of a
+     * field. The adapter's filter runs the query on a background thread, and the query is a
+     * range seek on an index, so it stays quick however many items there are.
+     *
+     * @param namesUri {@link InventoryEntry#NAMES_CONTENT_URI} or
+     *                 {@link InventoryEntry#SUPPLIERS_CONTENT_URI}
+     * @param column   column of the names in the rows of the URI
+     */
+    private SimpleCursorAdapter createSuggestionAdapter(final Uri namesUri, final String column) {
+        SimpleCursorAdapter adapter = new SimpleCursorAdapter(this,
+                android.R.layout.simple_dropdown_item_1line, null, new String[] { column },
+                new int[] { android.R.id.text1 }, 0);
+        adapter.setFilterQueryProvider(new FilterQueryProvider() {
+            @Override
+            public Cursor runQuery(CharSequence constraint) {
+                if (constraint == null) {
+                    return null;
+                }
+                return getContentResolver().query(InventoryEntry.buildSuggestionsUri(namesUri,
+                        constraint.toString().trim()), null, null, null, null);
+            }
+        });
+        adapter.setCursorToStringConverter(new SimpleCursorAdapter.CursorToStringConverter() {
+            @Override
+            public CharSequence convertToString(Cursor cursor) {
+                return cursor.getString(cursor.getColumnIndexOrThrow(column));
+            }
+        });
+        return adapter;
     }
 
     /**
@@ -312,29 +380,16 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         // Proceed with moving to the first row of the cursor and reading data from it
         // (This should be the only row in the cursor)
         if (cursor.moveToFirst()) {
-            // Find the columns of item attributes that we're interested in
-            int nameColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_NAME);
-            int priceColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_PRICE);
-            int quantityColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_QUANTITY);
-            int supNameColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME);
-            int supEmailColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_SUPPLIER_EMAIL);
-            int supPhoneColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_SUPPLIER_PHONE);
-
-            // Extract out the value from the Cursor for the given column index
-            String name = cursor.getString(nameColumnIndex);
-            String price = cursor.getString(priceColumnIndex);
-            int quantity = cursor.getInt(quantityColumnIndex);
-            String supName = cursor.getString(supNameColumnIndex);
-            String supEmail = cursor.getString(supEmailColumnIndex);
-            String supPhone = cursor.getString(supPhoneColumnIndex);
+            // Read the item attributes, looking each column up once
+            InventoryRecord record = InventoryRecord.fromCursor(cursor, InventoryColumns.of(cursor));
 
             // Update the views on the screen with the values from the database
-            nameEditText.setText(name);
-            priceEditText.setText(price);
-            quantityEditText.setText(Integer.toString(quantity));
-            supplierNameEditText.setText(supName);
-            supplierEmailEditText.setText(supEmail);
-            supplierPhoneEditText.setText(supPhone);
+            nameEditText.setTextWithoutSuggestions(record.getName());
+            priceEditText.setText(record.getPrice());
+            quantityEditText.setText(Integer.toString(record.getQuantity()));
+            supplierNameEditText.setTextWithoutSuggestions(record.getSupplierName());
+            supplierEmailEditText.setText(record.getSupplierEmail());
+            supplierPhoneEditText.setText(record.getSupplierPhone());
         }
     }
 
@@ -6,18 +6,57 @@ import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.Button;
 import android.widget.CursorAdapter;
+import android.widget.ImageView;
 import android.widget.TextView;
 
-import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryColumns;
 
 /**
  * Created by Brandon on 12/16/2017.
  * {@link InventoryCursorAdapter} is an adapter for a list or grid view
  * that uses a {@link android.database.Cursor} of inventory data as its data source. This adapter knows
  * how to create list items for each row of inventory data in the {@link android.database.Cursor}.
+ * Set it as the list's {@link AbsListView.RecyclerListener} too, so the thumbnail requests of
+ * rows that scroll out of view are dropped.
  */
-public class InventoryCursorAdapter extends CursorAdapter{
+public class InventoryCursorAdapter extends CursorAdapter implements AbsListView.RecyclerListener {
+
+    // Loads the item thumbnails in the background
+    private final ThumbnailLoader thumbnailLoader;
+
+    // Cursor whose column indices are held in {@link #columns}
+    private Cursor indexedCursor;
+
+    // Column indices of the item attributes, resolved once per cursor instead of once per row
+    private InventoryColumns columns;
+
+    // Counts the taps on the rows' sale buttons, or null if they do nothing
+    private SaleCounter saleCounter;
+
+    // Shared by every row's sale button, which carries the row as its tag
+    private final View.OnClickListener saleClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View view) {
+            SaleRow row = (SaleRow) view.getTag();
+            if (saleCounter != null && saleCounter.sell(row.id, row.catalogQuantity)) {
+                row.quantityView.setText(
+                        String.valueOf(saleCounter.getQuantity(row.id, row.catalogQuantity)));
+            }
+        }
+    };
+
+    /**
+     * The item of a row, for its sale button.
+     */
+    private static final class SaleRow {
+        TextView quantityView;
+        long id;
+        int catalogQuantity;
+    }
+
     /**
      * Constructs a new {@link InventoryCursorAdapter}.
      *
@@ -25,7 +64,24 @@ public class InventoryCursorAdapter extends CursorAdapter{
      * @param c       The cursor from which to get the data.
      */
     public InventoryCursorAdapter(Context context, Cursor c) {
+        this(context, c, ThumbnailLoader.getInstance(context));
+    }
+
+    /**
+     * Constructs a new {@link InventoryCursorAdapter} whose thumbnails come from the given loader.
+     */
+    InventoryCursorAdapter(Context context, Cursor c, ThumbnailLoader thumbnailLoader) {
         super(context, c, 0 /* flags */);
+        this.thumbnailLoader = thumbnailLoader;
+    }
+
+    /**
+     * Count the taps on the rows' sale buttons with the given counter, and show the quantities
+     * it gives.
+     */
+    public void setSaleCounter(SaleCounter saleCounter) {
+        this.saleCounter = saleCounter;
+        notifyDataSetChanged();
     }
 
     /**
@@ -40,7 +96,13 @@ public class InventoryCursorAdapter extends CursorAdapter{
     @Override
     public View newView(Context context, Cursor cursor, ViewGroup parent) {
         // Inflate a list item view using the layout specified in list_item.xml
-        return LayoutInflater.from(context).inflate(R.layout.list_item, parent, false);
+        View view = LayoutInflater.from(context).inflate(R.layout.list_item, parent, false);
+        SaleRow row = new SaleRow();
+        row.quantityView = (TextView) view.findViewById(R.id.item_quantity);
+        Button saleButton = (Button) view.findViewById(R.id.sale);
+        saleButton.setTag(row);
+        saleButton.setOnClickListener(saleClickListener);
+        return view;
     }
 
     /**
@@ -59,16 +121,20 @@ public class InventoryCursorAdapter extends CursorAdapter{
         TextView nameTextView = (TextView) view.findViewById(R.id.item_name);
         TextView priceTextView = (TextView) view.findViewById(R.id.item_price);
         TextView quantityTextView = (TextView) view.findViewById(R.id.item_quantity);
+        ImageView thumbnailView = (ImageView) view.findViewById(R.id.item_thumbnail);
 
-        // Find the columns of item attributes that we're interested in
-        int nameColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_NAME);
-        int priceColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_PRICE);
-        int quantityColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_QUANTITY);
+        // Find the columns of item attributes that we're interested in. They only change
+        // when a new cursor has been swapped in.
+        if (cursor != indexedCursor) {
+            columns = InventoryColumns.of(cursor);
+            indexedCursor = cursor;
+        }
 
         // Read the item attributes from the Cursor for the current item
-        String itemName = cursor.getString(nameColumnIndex);
-        String itemPrice = cursor.getString(priceColumnIndex);
-        String itemQuantity = cursor.getString(quantityColumnIndex);
+        String itemName = cursor.getString(columns.name);
+        String itemPrice = cursor.getString(columns.price);
+        long itemId = cursor.getLong(columns.id);
+        int itemQuantity = cursor.getInt(columns.quantity);
 
         /** If the pet breed is empty string or null, then use some default text
         // that says "Unknown breed", so the TextView isn't blank.
@@ -79,6 +145,20 @@ public class InventoryCursorAdapter extends CursorAdapter{
         // Update the TextViews with the attributes for the current item
         nameTextView.setText(itemName);
         priceTextView.setText(itemPrice);
-        quantityTextView.setText(itemQuantity);
+        // Sales not in the cursor yet are counted in
+        quantityTextView.setText(String.valueOf(saleCounter == null ? itemQuantity
+                : saleCounter.getQuantity(itemId, itemQuantity)));
+
+        SaleRow saleRow = (SaleRow) view.findViewById(R.id.sale).getTag();
+        saleRow.id = itemId;
+        saleRow.catalogQuantity = itemQuantity;
+
+        // The image is never part of the list's cursor, the loader reads it if needed
+        thumbnailLoader.load(thumbnailView, itemId);
+    }
+
+    @Override
+    public void onMovedToScrapHeap(View view) {
+        thumbnailLoader.cancel((ImageView) view.findViewById(R.id.item_thumbnail));
     }
 }
@@ -1,9 +1,11 @@
 package com.example.brandonkbarnes.storedatabase;
 
+import android.app.AlertDialog;
 import android.app.LoaderManager;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.CursorLoader;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.Loader;
 import android.database.Cursor;
@@ -15,24 +17,67 @@ import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.AdapterView;
 import android.widget.ListView;
+import android.widget.Toast;
 
+import com.example.brandonkbarnes.storedatabase.data.CatalogLoader;
+import com.example.brandonkbarnes.storedatabase.data.CatalogSnapshot;
 import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.MaintenanceJobService;
+import com.example.brandonkbarnes.storedatabase.data.ReportJobService;
 
 public class ItemCatalogActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<Cursor>{
 
     //Identifier for the item data loader
     private static final int ITEM_LOADER = 0;
 
+    //Identifier for the supplier list loader, started when the supplier filter is first used
+    private static final int SUPPLIER_LOADER = 1;
+
+    //Keys of the catalog order and filter in the saved instance state
+    private static final String STATE_SORT = "sort";
+    private static final String STATE_SUPPLIER = "supplier";
+
+    //Catalog order, one of the InventoryEntry.SORT_ values, or null for the order items were added
+    private String sort;
+
+    //Supplier whose items are shown, or null for all items
+    private String supplier;
+
+    //Distinct suppliers from the supplier loader
+    private Cursor supplierCursor;
+
+    //Whether the supplier dialog waits for the supplier loader
+    private boolean supplierDialogPending;
+
     //Adapter for the ListView
     InventoryCursorAdapter cursorAdapter;
 
+    //Sale taps on the rows, written after a pause in tapping
+    private SaleCounter saleCounter;
+
+    //Snapshot of the catalog shown until the loader delivers, or null
+    private Cursor snapshotCursor;
+
+    //ListView showing the items
+    private ListView itemListView;
+
+    //Whether the first frame with data was already traced
+    private boolean firstFrameTraced;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupTrace.mark("activity_created");
         setContentView(R.layout.activity_item_catalog);
 
+        if (savedInstanceState != null) {
+            sort = savedInstanceState.getString(STATE_SORT);
+            supplier = savedInstanceState.getString(STATE_SUPPLIER);
+        }
+
         //Setup FAB to open EditorActivity
         FloatingActionButton fab = (FloatingActionButton) findViewById(R.id.fab);
         fab.setOnClickListener(new View.OnClickListener() {
@@ -44,7 +89,7 @@ public class ItemCatalogActivity extends AppCompatActivity implements LoaderMana
         });
 
         // Find the ListView which will be populated with the item data
-        ListView itemListView = (ListView) findViewById(R.id.list);
+        itemListView = (ListView) findViewById(R.id.list);
 
         // Find and set empty view on the ListView, so that it only shows when the list has 0 items.
         View emptyView = findViewById(R.id.empty_view);
@@ -53,6 +98,28 @@ public class ItemCatalogActivity extends AppCompatActivity implements LoaderMana
         // Setup an Adapter to create a list item for each row of item data in the Cursor.
         cursorAdapter = new InventoryCursorAdapter(this, null);
         itemListView.setAdapter(cursorAdapter);
+        itemListView.setRecyclerListener(cursorAdapter);
+
+        // Count the sale taps, the catalog reloads once per burst of taps rather than per tap
+        saleCounter = new SaleCounter(this, InventoryEntry.CONTENT_URI);
+        saleCounter.setListener(new SaleCounter.Listener() {
+            @Override
+            public void onQuantitiesChanged() {
+                cursorAdapter.notifyDataSetChanged();
+            }
+
+            @Override
+            public void onSaleFailed(long id) {
+                Toast.makeText(ItemCatalogActivity.this, R.string.sale_failed,
+                        Toast.LENGTH_SHORT).show();
+                // Read the stored quantity again, in case the catalog missed a change
+                Loader<Cursor> loader = getLoaderManager().getLoader(ITEM_LOADER);
+                if (loader != null) {
+                    loader.onContentChanged();
+                }
+            }
+        });
+        cursorAdapter.setSaleCounter(saleCounter);
 
         // Setup the item click listener
         itemListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
@@ -74,10 +141,86 @@ public class ItemCatalogActivity extends AppCompatActivity implements LoaderMana
             }
         });
 
+        // On a fresh launch, show the catalog's snapshot from the last run until the loader
+        // delivers. It's mapped rather than read, so the rows are there before the database
+        // is even open, and the loader's rows replace them in the same order.
+        if (savedInstanceState == null) {
+            snapshotCursor = CatalogSnapshot.open(this);
+            if (snapshotCursor != null) {
+                cursorAdapter.swapCursor(snapshotCursor);
+                StartupTrace.mark("snapshot_shown");
+                traceFirstFrame();
+            }
+        }
+
         // Kick off the loader
         getLoaderManager().initLoader(ITEM_LOADER, null, this);
 
+        // Keep the database tidy in the background while the device is idle
+        MaintenanceJobService.schedule(this);
+        // And write the end-of-day reports
+        ReportJobService.schedule(this);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // Don't keep the sales of the last taps waiting while the app may be stopped
+        saleCounter.flush();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        saleCounter.setListener(null);
+        closeSnapshot();
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_SORT, sort);
+        outState.putString(STATE_SUPPLIER, supplier);
+    }
+
+    /**
+     * Change the catalog order and filter and query again. The provider turns them into
+     * indexed SQL, so the list doesn't have to be sorted or filtered here.
+     */
+    private void setCatalogQuery(String sort, String supplier) {
+        this.sort = sort;
+        this.supplier = supplier;
+        invalidateOptionsMenu();
+        getLoaderManager().restartLoader(ITEM_LOADER, null, this);
+    }
+
+    /**
+     * Let the user pick a supplier to filter by, once the supplier list is loaded.
+     */
+    private void showSupplierDialog() {
+        if (supplierCursor == null) {
+            supplierDialogPending = true;
+            getLoaderManager().initLoader(SUPPLIER_LOADER, null, this);
+            return;
+        }
+
+        // The first choice shows every item again
+        final String[] suppliers = new String[supplierCursor.getCount() + 1];
+        suppliers[0] = getString(R.string.all_suppliers);
+        int column = supplierCursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME);
+        for (int i = 1; supplierCursor.moveToPosition(i - 1); i++) {
+            suppliers[i] = supplierCursor.getString(column);
+        }
 
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle(R.string.action_filter_supplier);
+        builder.setItems(suppliers, new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                setCatalogQuery(sort, which == 0 ? null : suppliers[which]);
+            }
+        });
+        builder.create().show();
     }
 
     /**
@@ -105,36 +248,81 @@ public class ItemCatalogActivity extends AppCompatActivity implements LoaderMana
      * Helper method to delete all items in the database.
      */
     private void deleteAllItems() {
+        // Deleting every item doesn't count them, so this is 1 or 0
         int rowsDeleted = getContentResolver().delete(InventoryEntry.CONTENT_URI, null, null);
-        Log.v("ItemCatalogActivity", rowsDeleted + " rows deleted from pet database");
+        Log.v("ItemCatalogActivity", "Items deleted from the database: " + (rowsDeleted != 0));
     }
 
     @Override
     public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        // Define a projection that specifies the needed columns from the table.
-        String[] projection = {
-                InventoryEntry._ID,
-                InventoryEntry.COLUMN_ITEM_NAME,
-                InventoryEntry.COLUMN_ITEM_PRICE,
-                InventoryEntry.COLUMN_ITEM_QUANTITY};
-
-        // This loader will execute the ContentProvider's query method on a background thread
-        return new CursorLoader(this,   // Parent activity context
-                InventoryEntry.CONTENT_URI,   // Provider content URI to query
-                projection,             // Columns to include in the resulting Cursor
-                null,                   // No selection clause
-                null,                   // No selection arguments
-                null);                  // Default sort order
+        if (i == SUPPLIER_LOADER) {
+            return new CursorLoader(this, InventoryEntry.SUPPLIERS_CONTENT_URI, null, null,
+                    null, null);
+        }
+
+        // This loader reads the catalog projection through the provider on a background
+        // thread, then only reads the rows that changed. The provider prefetches its first
+        // query at launch.
+        return new CatalogLoader(this, InventoryEntry.buildCatalogUri(sort, supplier));
     }
 
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
+        if (loader.getId() == SUPPLIER_LOADER) {
+            supplierCursor = data;
+            if (supplierDialogPending) {
+                supplierDialogPending = false;
+                showSupplierDialog();
+            }
+            return;
+        }
+        StartupTrace.mark("catalog_loaded");
+        // The new rows include the quantities written so far
+        saleCounter.onCatalogLoaded();
         // Update {@link InventoryCursorAdapter} with this new cursor containing updated item data
         cursorAdapter.swapCursor(data);
+        closeSnapshot();
+        traceFirstFrame();
+    }
+
+    /**
+     * Close the snapshot once the adapter no longer shows it.
+     */
+    private void closeSnapshot() {
+        if (snapshotCursor != null) {
+            snapshotCursor.close();
+            snapshotCursor = null;
+        }
+    }
+
+    /**
+     * End the startup trace when the list is drawn for the first time after the data arrived,
+     * which is when the user sees the first rows (or the empty view).
+     */
+    private void traceFirstFrame() {
+        if (firstFrameTraced) {
+            return;
+        }
+        firstFrameTraced = true;
+        itemListView.getViewTreeObserver().addOnPreDrawListener(
+                new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                // The observer can be replaced while attaching, so remove from the current one
+                itemListView.getViewTreeObserver().removeOnPreDrawListener(this);
+                StartupTrace.finish(itemListView.getChildCount() > 0
+                        ? "first_row_drawn" : "empty_catalog_drawn");
+                return true;
+            }
+        });
     }
 
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
+        if (loader.getId() == SUPPLIER_LOADER) {
+            supplierCursor = null;
+            return;
+        }
         // Callback called when the data needs to be deleted
         cursorAdapter.swapCursor(null);
     }
@@ -147,10 +335,46 @@ public class ItemCatalogActivity extends AppCompatActivity implements LoaderMana
         return true;
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        // Check the current catalog order
+        int sortItem = R.id.action_sort_added;
+        if (InventoryEntry.SORT_NAME.equals(sort)) {
+            sortItem = R.id.action_sort_name;
+        } else if (InventoryEntry.SORT_PRICE.equals(sort)) {
+            sortItem = R.id.action_sort_price;
+        } else if (InventoryEntry.SORT_QUANTITY.equals(sort)) {
+            sortItem = R.id.action_sort_quantity;
+        }
+        menu.findItem(sortItem).setChecked(true);
+        return super.onPrepareOptionsMenu(menu);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         // User clicked on a menu option in the app bar overflow menu
         switch (item.getItemId()) {
+            // Respond to a click on one of the sort options
+            case R.id.action_sort_added:
+                setCatalogQuery(null, supplier);
+                return true;
+            case R.id.action_sort_name:
+                setCatalogQuery(InventoryEntry.SORT_NAME, supplier);
+                return true;
+            case R.id.action_sort_price:
+                setCatalogQuery(InventoryEntry.SORT_PRICE, supplier);
+                return true;
+            case R.id.action_sort_quantity:
+                setCatalogQuery(InventoryEntry.SORT_QUANTITY, supplier);
+                return true;
+            // Respond to a click on the "Filter by supplier" menu option
+            case R.id.action_filter_supplier:
+                showSupplierDialog();
+                return true;
+            // Respond to a click on the "Stock count" menu option
+            case R.id.action_stock_count:
+                startActivity(new Intent(this, StockCountActivity.class));
+                return true;
             // Respond to a click on the "Insert dummy data" menu option
             case R.id.action_insert_dummy_data:
                 insertItem();
@@ -0,0 +1,201 @@
+package com.example.brandonkbarnes.storedatabase;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Counts the sale taps on the catalog rows. The quantity shown drops right away, and the taps
+ * on an item are written as one {@link InventoryEntry#METHOD_ADJUST_QUANTITY} once the taps
+ * pause, or when {@link #flush} is called, e.g. when the activity pauses. A burst of taps so
+ * costs one write and one catalog reload rather than one per tap.
+ *
+ * Until the catalog reloads, the quantity shown is the stored quantity the write returned
+ * plus the taps not written yet. A write that fails or isn't made, because the stock ran out
+ * in the meantime, drops its taps, and the row shows the stored quantity again.
+ * Call everything on the main thread.
+ */
+public class SaleCounter {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = SaleCounter.class.getSimpleName();
+
+    // Pause in tapping before the taps are written
+    private static final long QUIET_MILLIS = 600;
+
+    // One thread for every counter, so the writes run in the order of the taps even across
+    // activity instances
+    private static final Executor writer = Executors.newSingleThreadExecutor();
+
+    /**
+     * Told when the quantities shown changed, or when taps could not be written.
+     */
+    public interface Listener {
+
+        /** The quantities of the rows should be shown again */
+        void onQuantitiesChanged();
+
+        /** The taps on the item were dropped, the catalog should read it again */
+        void onSaleFailed(long id);
+    }
+
+    private final ContentResolver resolver;
+    private final Uri itemsUri;
+    // Argument of the provider method, null for the default location
+    private final String location;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    // Taps not written yet, by item, as a quantity change
+    private final Map<Long, Integer> pending = new HashMap<Long, Integer>();
+
+    // Changes being written, by item
+    private final Map<Long, Integer> writing = new HashMap<Long, Integer>();
+
+    // Stored quantities returned by the writes, by item, shown until the catalog reloads
+    private final Map<Long, Integer> written = new HashMap<Long, Integer>();
+
+    private Listener listener;
+
+    public SaleCounter(Context context, Uri itemsUri) {
+        this.resolver = context.getApplicationContext().getContentResolver();
+        this.itemsUri = itemsUri;
+        String location = InventoryEntry.getLocation(itemsUri);
+        this.location = InventoryContract.DEFAULT_LOCATION.equals(location) ? null : location;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Return the quantity to show for the item, given the quantity of the catalog's row.
+     */
+    public int getQuantity(long id, int catalogQuantity) {
+        Integer stored = written.get(id);
+        return (stored != null ? stored : catalogQuantity) + get(pending, id) + get(writing, id);
+    }
+
+    /**
+     * Count one sale of the item. Return false, counting nothing, if the item is out of stock
+     * as far as is known here.
+     */
+    public boolean sell(long id, int catalogQuantity) {
+        if (getQuantity(id, catalogQuantity) <= 0) {
+            return false;
+        }
+        add(pending, id, -1);
+        mainHandler.removeCallbacks(flushTask);
+        mainHandler.postDelayed(flushTask, QUIET_MILLIS);
+        return true;
+    }
+
+    /**
+     * Write the taps of every item now.
+     */
+    public void flush() {
+        mainHandler.removeCallbacks(flushTask);
+        Iterator<Map.Entry<Long, Integer>> entries = pending.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Long, Integer> entry = entries.next();
+            entries.remove();
+            long id = entry.getKey();
+            int delta = entry.getValue();
+            add(writing, id, delta);
+            writer.execute(new Write(id, delta));
+        }
+    }
+
+    /**
+     * Forget the stored quantities of earlier writes, which the new catalog includes. Call
+     * when a catalog cursor is swapped in.
+     */
+    public void onCatalogLoaded() {
+        written.clear();
+    }
+
+    private static int get(Map<Long, Integer> deltas, long id) {
+        Integer delta = deltas.get(id);
+        return delta == null ? 0 : delta;
+    }
+
+    private static void add(Map<Long, Integer> deltas, long id, int delta) {
+        int sum = get(deltas, id) + delta;
+        if (sum == 0) {
+            deltas.remove(id);
+        } else {
+            deltas.put(id, sum);
+        }
+    }
+
+    /**
+     * Writes the summed taps on one item and reports back on the main thread.
+     */
+    private final class Write implements Runnable {
+
+        final long id;
+        final int delta;
+
+        Write(long id, int delta) {
+            this.id = id;
+            this.delta = delta;
+        }
+
+        @Override
+        public void run() {
+            Bundle extras = new Bundle();
+            extras.putLong(InventoryEntry.EXTRA_ITEM_ID, id);
+            extras.putInt(InventoryEntry.EXTRA_QUANTITY_DELTA, delta);
+            Bundle result;
+            try {
+                result = resolver.call(itemsUri, InventoryEntry.METHOD_ADJUST_QUANTITY,
+                        location, extras);
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "Failed to write " + -delta + " sales of item " + id, e);
+                result = null;
+            }
+            final Bundle stored = result;
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    finish(stored);
+                }
+            });
+        }
+
+        private void finish(Bundle stored) {
+            add(writing, id, -delta);
+            if (stored != null) {
+                // The stored quantity is right whether or not the change was made
+                written.put(id, stored.getInt(InventoryEntry.EXTRA_QUANTITY));
+            } else {
+                written.remove(id);
+            }
+            if (listener == null) {
+                return;
+            }
+            listener.onQuantitiesChanged();
+            if (stored == null || !stored.getBoolean(InventoryEntry.EXTRA_ADJUSTED)) {
+                listener.onSaleFailed(id);
+            }
+        }
+    }
+}
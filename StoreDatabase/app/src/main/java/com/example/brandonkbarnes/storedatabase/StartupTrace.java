@@ -0,0 +1,82 @@
+package com.example.brandonkbarnes.storedatabase;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+/**
+ * Timing markers for a cold start, from process start to the first rendered catalog row.
+ *
+ * Each marker is logged with its offset from process start (or, before Nougat, from the first
+ * use of this class, which is the provider's onCreate), and on Jellybean MR2 and later it also
+ * shows up as a section in systrace. {@link #finish} logs the whole timeline once, e.g.
+ * {@code adb logcat -s StartupTrace}.
+ */
+public final class StartupTrace {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = StartupTrace.class.getSimpleName();
+
+    // Start of the timeline in elapsed realtime milliseconds
+    private static final long origin = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+            ? Process.getStartElapsedRealtime() : SystemClock.elapsedRealtime();
+
+    // Timeline so far, "name +ms" per marker. Guarded by the class.
+    private static final StringBuilder timeline = new StringBuilder();
+
+    private static boolean finished;
+
+    private StartupTrace() {}
+
+    /**
+     * Record that a startup step was reached.
+     */
+    public static synchronized void mark(String name) {
+        if (finished) {
+            return;
+        }
+        long offset = SystemClock.elapsedRealtime() - origin;
+        if (timeline.length() > 0) {
+            timeline.append(", ");
+        }
+        timeline.append(name).append(" +").append(offset).append("ms");
+        Log.d(LOG_TAG, name + " +" + offset + "ms");
+        // A zero length section is enough to find the marker in a trace
+        beginSection(name);
+        endSection();
+    }
+
+    /**
+     * Start a systrace section on the calling thread. Must be closed with {@link #endSection}
+     * on the same thread.
+     */
+    public static void beginSection(String name) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(name);
+        }
+    }
+
+    /**
+     * End the innermost systrace section of the calling thread.
+     */
+    public static void endSection() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Record the last marker and log the timeline. Later markers are ignored, so a warm
+     * start of the catalog doesn't add to a finished cold start.
+     */
+    public static synchronized void finish(String name) {
+        if (finished) {
+            return;
+        }
+        mark(name);
+        finished = true;
+        Log.i(LOG_TAG, "Startup: " + timeline);
+    }
+}
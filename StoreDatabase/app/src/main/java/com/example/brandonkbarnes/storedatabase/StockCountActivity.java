@@ -0,0 +1,252 @@
+package com.example.brandonkbarnes.storedatabase;
+
+import android.content.Intent;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
+import android.view.View;
+import android.widget.ArrayAdapter;
+import android.widget.Button;
+import android.widget.ListView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.example.brandonkbarnes.storedatabase.core.StockCount;
+import com.example.brandonkbarnes.storedatabase.data.InventoryRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reconciles a stocktake with the inventory. The count is a text file with one "SKU,count"
+ * line per counted item, e.g. exported from a barcode scanner, given as the intent's data or
+ * picked when the activity starts. The activity lists the items whose count differs from
+ * the inventory, and applying the count sets just those quantities in one transaction.
+ */
+public class StockCountActivity extends AppCompatActivity {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = StockCountActivity.class.getSimpleName();
+
+    //Request code of the file picker
+    private static final int REQUEST_PICK_COUNT = 1;
+
+    //Key of the count file in the saved instance state
+    private static final String STATE_COUNT_URI = "count_uri";
+
+    //File of the stocktake, null until picked
+    private Uri countUri;
+
+    //Counts read from the file
+    private Counts counts;
+
+    private TextView summaryView;
+    private ListView differenceList;
+    private Button applyButton;
+
+    /**
+     * Counted quantities by SKU, from a stocktake file.
+     */
+    static final class Counts {
+        final String[] skus;
+        final int[] counts;
+        //Lines that weren't a SKU and a count, such as a header
+        final int skippedLines;
+
+        Counts(String[] skus, int[] counts, int skippedLines) {
+            this.skus = skus;
+            this.counts = counts;
+            this.skippedLines = skippedLines;
+        }
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_stock_count);
+
+        summaryView = (TextView) findViewById(R.id.stock_count_summary);
+        differenceList = (ListView) findViewById(R.id.stock_count_list);
+        applyButton = (Button) findViewById(R.id.stock_count_apply);
+        applyButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                applyButton.setEnabled(false);
+                new ApplyTask().execute(counts);
+            }
+        });
+
+        countUri = savedInstanceState != null
+                ? (Uri) savedInstanceState.getParcelable(STATE_COUNT_URI) : getIntent().getData();
+        if (countUri != null) {
+            new CompareTask().execute(countUri);
+        } else {
+            Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.setType("text/*");
+            startActivityForResult(intent, REQUEST_PICK_COUNT);
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putParcelable(STATE_COUNT_URI, countUri);
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        if (requestCode != REQUEST_PICK_COUNT) {
+            super.onActivityResult(requestCode, resultCode, data);
+            return;
+        }
+        if (resultCode != RESULT_OK || data == null || data.getData() == null) {
+            finish();
+            return;
+        }
+        countUri = data.getData();
+        new CompareTask().execute(countUri);
+    }
+
+    /**
+     * Show the differences of the compared count, and let the user apply it if any.
+     */
+    private void showReport(Counts counts, StockCount.Report report) {
+        this.counts = counts;
+        summaryView.setText(getString(R.string.stock_count_summary, counts.skus.length,
+                report.matching, report.ids.length, report.unknownSkus.length,
+                counts.skippedLines));
+
+        String[] differences = new String[report.ids.length];
+        for (int i = 0; i < differences.length; i++) {
+            differences[i] = getString(R.string.stock_count_difference, report.names[i],
+                    report.stored[i], report.counted[i]);
+        }
+        differenceList.setAdapter(new ArrayAdapter<String>(this,
+                android.R.layout.simple_list_item_1, differences));
+        applyButton.setEnabled(differences.length != 0);
+    }
+
+    /**
+     * Read the counts of a stocktake file. Counts of the same SKU on several lines, e.g. from
+     * different shelves, are added up.
+     */
+    static Counts readCounts(InputStream in) throws IOException {
+        Map<String, Integer> counted = new LinkedHashMap<String, Integer>();
+        int skipped = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            int comma = line.lastIndexOf(',');
+            String sku = comma < 0 ? "" : line.substring(0, comma).trim();
+            int count;
+            try {
+                count = Integer.parseInt(line.substring(comma + 1).trim());
+            } catch (NumberFormatException e) {
+                count = -1;
+            }
+            if (sku.isEmpty() || count < 0) {
+                skipped++;
+                continue;
+            }
+            Integer previous = counted.get(sku);
+            counted.put(sku, previous == null ? count : previous + count);
+        }
+
+        String[] skus = new String[counted.size()];
+        int[] counts = new int[counted.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : counted.entrySet()) {
+            skus[i] = entry.getKey();
+            counts[i++] = entry.getValue();
+        }
+        return new Counts(skus, counts, skipped);
+    }
+
+    /**
+     * Reads the count file and compares it with the inventory in the background.
+     */
+    private class CompareTask extends AsyncTask<Uri, Void, StockCount.Report> {
+
+        private Counts counts;
+
+        @Override
+        protected StockCount.Report doInBackground(Uri... uris) {
+            try {
+                InputStream in = getContentResolver().openInputStream(uris[0]);
+                if (in == null) {
+                    return null;
+                }
+                try {
+                    counts = readCounts(in);
+                } finally {
+                    in.close();
+                }
+                return InventoryRepository.getInstance(StockCountActivity.this)
+                        .compareStockCount(counts.skus, counts.counts);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Failed to read the stock count " + uris[0], e);
+                return null;
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "Failed to compare the stock count " + uris[0], e);
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(StockCount.Report report) {
+            if (isFinishing()) {
+                return;
+            }
+            if (report == null) {
+                Toast.makeText(StockCountActivity.this, R.string.stock_count_failed,
+                        Toast.LENGTH_SHORT).show();
+                finish();
+                return;
+            }
+            showReport(counts, report);
+        }
+    }
+
+    /**
+     * Applies the counts in the background. Items that changed since the comparison are
+     * compared again in the same transaction, so only quantities that still differ are set.
+     */
+    private class ApplyTask extends AsyncTask<Counts, Void, StockCount.Report> {
+
+        @Override
+        protected StockCount.Report doInBackground(Counts... counts) {
+            try {
+                return InventoryRepository.getInstance(StockCountActivity.this)
+                        .applyStockCount(counts[0].skus, counts[0].counts);
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "Failed to apply the stock count", e);
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(StockCount.Report report) {
+            if (report == null) {
+                Toast.makeText(StockCountActivity.this, R.string.editor_update_fail,
+                        Toast.LENGTH_SHORT).show();
+                applyButton.setEnabled(true);
+                return;
+            }
+            Toast.makeText(StockCountActivity.this,
+                    getString(R.string.stock_count_applied, report.ids.length),
+                    Toast.LENGTH_SHORT).show();
+            finish();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.brandonkbarnes.storedatabase;
+
+import android.content.Context;
+import android.support.v7.widget.AppCompatAutoCompleteTextView;
+import android.util.AttributeSet;
+
+/**
+ * Text field that suggests values as the user types. The lookup waits for a pause in typing,
+ * so a burst of keystrokes runs one query rather than one per key, and text the app sets
+ * doesn't bring up suggestions.
+ */
+public class SuggestionTextView extends AppCompatAutoCompleteTextView {
+
+    // Pause in typing before the suggestions are looked up
+    private static final long DEBOUNCE_MILLIS = 150;
+
+    private final PendingFilter pendingFilter = new PendingFilter();
+
+    private boolean suggestionsSuppressed;
+
+    public SuggestionTextView(Context context) {
+        super(context);
+    }
+
+    public SuggestionTextView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public SuggestionTextView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    /**
+     * Set the text without looking up suggestions for it, e.g. for a loaded item.
+     */
+    public void setTextWithoutSuggestions(CharSequence text) {
+        suggestionsSuppressed = true;
+        setText(text);
+        suggestionsSuppressed = false;
+    }
+
+    @Override
+    protected void performFiltering(CharSequence text, int keyCode) {
+        removeCallbacks(pendingFilter);
+        if (suggestionsSuppressed) {
+            return;
+        }
+        pendingFilter.keyCode = keyCode;
+        postDelayed(pendingFilter, DEBOUNCE_MILLIS);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        removeCallbacks(pendingFilter);
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * Filters on the text as it is when the pause is over, if it's still long enough.
+     */
+    private class PendingFilter implements Runnable {
+
+        int keyCode;
+
+        @Override
+        public void run() {
+            if (enoughToFilter()) {
+                SuggestionTextView.super.performFiltering(getText(), keyCode);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.brandonkbarnes.storedatabase;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Pre-scaled thumbnails stored as files named by item id and version, so a changed item
+ * never gets its old thumbnail. The files are kept under a total size by deleting the least
+ * recently used ones.
+ */
+class ThumbnailDiskCache {
+
+    private static final String LOG_TAG = ThumbnailDiskCache.class.getSimpleName();
+
+    private final File directory;
+    private final long maxBytes;
+
+    // Total size of the files, counted on first use. Guarded by "this".
+    private long size = -1;
+
+    ThumbnailDiskCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Return the cached thumbnail of the item version, or null.
+     */
+    Bitmap get(long id, long version) {
+        File file = file(id, version);
+        // Files are only ever replaced by a rename, so a file that exists is complete
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+        if (bitmap != null) {
+            // The modification time orders the files for eviction
+            file.setLastModified(System.currentTimeMillis());
+        }
+        return bitmap;
+    }
+
+    /**
+     * Store the thumbnail of the item version.
+     */
+    void put(long id, long version, Bitmap bitmap) {
+        File file = file(id, version);
+        File temporary = new File(directory, file.getName() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create " + directory);
+            }
+            out = new FileOutputStream(temporary);
+            // Photos compress far better as JPEG, which has no transparency
+            bitmap.compress(bitmap.hasAlpha() ? Bitmap.CompressFormat.PNG
+                    : Bitmap.CompressFormat.JPEG, 85, out);
+            out.close();
+            out = null;
+            if (!temporary.renameTo(file)) {
+                throw new IOException("Cannot rename " + temporary);
+            }
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Failed to cache the thumbnail of item " + id, e);
+            temporary.delete();
+            return;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // Already failed
+                }
+            }
+        }
+
+        synchronized (this) {
+            if (size < 0) {
+                size = 0;
+                for (File cached : listFiles()) {
+                    size += cached.length();
+                }
+            } else {
+                size += file.length();
+            }
+            if (size > maxBytes) {
+                trim();
+            }
+        }
+    }
+
+    /**
+     * Delete the least recently used files until the cache is down to three quarters of its
+     * size, so trimming doesn't run again for the next few thumbnails. Call with the lock on
+     * "this" held.
+     */
+    private void trim() {
+        File[] files = listFiles();
+        final long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            // Read once, the times change while sorting as thumbnails are read
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return lastModified[a] < lastModified[b] ? -1
+                        : lastModified[a] == lastModified[b] ? 0 : 1;
+            }
+        });
+        for (Integer i : order) {
+            if (size <= maxBytes * 3 / 4) {
+                break;
+            }
+            long length = files[i].length();
+            if (files[i].delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    private File[] listFiles() {
+        File[] files = directory.listFiles();
+        return files == null ? new File[0] : files;
+    }
+
+    private File file(long id, long version) {
+        return new File(directory, id + "_" + version);
+    }
+}
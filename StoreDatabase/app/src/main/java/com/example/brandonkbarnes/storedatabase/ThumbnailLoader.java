@@ -0,0 +1,313 @@
+package com.example.brandonkbarnes.storedatabase;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import com.example.brandonkbarnes.storedatabase.data.ChangeFeed;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryDbHelper;
+
+import java.io.File;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the item images of the catalog as thumbnails, off the main thread.
+ *
+ * An image is decoded at the smallest power of two sample size that still covers the
+ * thumbnail, then scaled down, so a full size photo never has to fit in memory. Thumbnails are
+ * kept in a memory cache bounded by their bytes and in a {@link ThumbnailDiskCache}, and the
+ * image blob is only read when neither has the item's current version. The newest request
+ * runs first, so the rows that just scrolled into view are filled before the ones that
+ * already scrolled past, and a request is dropped when its row is recycled. A cached thumbnail
+ * is shown without a query unless the store's {@link ChangeFeed} lists its item as changed
+ * since its version was read.
+ */
+public class ThumbnailLoader {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = ThumbnailLoader.class.getSimpleName();
+
+    // Decoding is CPU bound, leave the other cores to the UI
+    private static final int THREADS = 2;
+
+    // Limits of the memory and disk caches
+    private static final int MAX_MEMORY_BYTES = 16 * 1024 * 1024;
+    private static final long MAX_DISK_BYTES = 20 * 1024 * 1024;
+
+    // Memory charged for an item without an image
+    private static final int NO_IMAGE_BYTES = 64;
+
+    private static final String[] VERSION_PROJECTION = { InventoryEntry.COLUMN_VERSION };
+    private static final String[] IMAGE_PROJECTION = { InventoryEntry.COLUMN_ITEM_IMAGE };
+
+    private static ThumbnailLoader instance;
+
+    /**
+     * Thumbnail of one version of an item. The bitmap is null if the item has no image.
+     */
+    private static final class Thumbnail {
+        final long version;
+        final Bitmap bitmap;
+        // Change feed sequence number when the version was read
+        final long sequence;
+
+        Thumbnail(long version, Bitmap bitmap, long sequence) {
+            this.version = version;
+            this.bitmap = bitmap;
+            this.sequence = sequence;
+        }
+    }
+
+    private final ContentResolver resolver;
+    private final Uri itemsUri;
+    private final int size;
+    private final ThumbnailDiskCache diskCache;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor executor;
+    private final LruCache<Long, Thumbnail> memoryCache;
+    private final ChangeFeed changeFeed;
+
+    /**
+     * Return the loader for the catalog of the default store location.
+     */
+    public static synchronized ThumbnailLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailLoader(context, InventoryEntry.CONTENT_URI,
+                    new File(context.getCacheDir(), "thumbnails"));
+        }
+        return instance;
+    }
+
+    ThumbnailLoader(Context context, Uri itemsUri, File cacheDirectory) {
+        this.resolver = context.getApplicationContext().getContentResolver();
+        this.itemsUri = itemsUri;
+        this.size = context.getResources().getDimensionPixelSize(R.dimen.thumbnail_size);
+        this.diskCache = new ThumbnailDiskCache(cacheDirectory, MAX_DISK_BYTES);
+        this.changeFeed = InventoryDbHelper.getInstance(context.getApplicationContext(),
+                InventoryEntry.getLocation(itemsUri)).getChangeFeed();
+
+        int maxBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 8, MAX_MEMORY_BYTES);
+        memoryCache = new LruCache<Long, Thumbnail>(maxBytes) {
+            @Override
+            protected int sizeOf(Long id, Thumbnail thumbnail) {
+                return thumbnail.bitmap == null ? NO_IMAGE_BYTES
+                        : thumbnail.bitmap.getRowBytes() * thumbnail.bitmap.getHeight();
+            }
+        };
+
+        // A deque taking new tasks at the head makes the pool run the newest request first
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingDeque<Runnable>() {
+                    @Override
+                    public boolean offer(Runnable task) {
+                        return offerFirst(task);
+                    }
+                },
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable task) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                task.run();
+                            }
+                        }, LOG_TAG);
+                    }
+                });
+    }
+
+    /**
+     * Show the thumbnail of the item in the view, replacing any request made for the view
+     * before. Call on the main thread.
+     */
+    public void load(ImageView view, long id) {
+        Task previous = (Task) view.getTag();
+        if (previous != null) {
+            if (previous.id == id) {
+                // Already on its way
+                return;
+            }
+            previous.cancel();
+        }
+
+        Thumbnail cached = memoryCache.get(id);
+        if (cached != null) {
+            view.setImageBitmap(cached.bitmap);
+            if (!changeFeed.changedSince(id, cached.sequence)) {
+                view.setTag(null);
+                return;
+            }
+            // Keep showing it while its version is checked
+        } else {
+            view.setImageDrawable(null);
+        }
+
+        Task task = new Task(view, id, cached);
+        view.setTag(task);
+        task.future = executor.submit(task);
+    }
+
+    /**
+     * Drop the pending request of the view, e.g. when its row scrolls out of the list.
+     * Call on the main thread.
+     */
+    public void cancel(ImageView view) {
+        Task task = (Task) view.getTag();
+        if (task != null) {
+            task.cancel();
+            view.setTag(null);
+        }
+    }
+
+    private final class Task implements Runnable {
+
+        final ImageView view;
+        final long id;
+        final Thumbnail cached;
+        Future<?> future;
+        volatile boolean cancelled;
+
+        Task(ImageView view, long id, Thumbnail cached) {
+            this.view = view;
+            this.id = id;
+            this.cached = cached;
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+                executor.remove((Runnable) future);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                // Taken first, a change while the version is read makes it stale
+                long sequence = changeFeed.getSequence();
+                Uri itemUri = ContentUris.withAppendedId(itemsUri, id);
+                long version = readVersion(itemUri);
+                if (cached != null && cached.version == version) {
+                    // Still current, the view shows it already
+                    memoryCache.put(id, new Thumbnail(version, cached.bitmap, sequence));
+                    finish(null, false);
+                    return;
+                }
+                if (cancelled) {
+                    return;
+                }
+
+                Bitmap bitmap = diskCache.get(id, version);
+                if (bitmap == null) {
+                    byte[] image = readImage(itemUri);
+                    if (cancelled) {
+                        return;
+                    }
+                    bitmap = image == null ? null : decode(image);
+                    if (bitmap != null) {
+                        diskCache.put(id, version, bitmap);
+                    }
+                }
+                memoryCache.put(id, new Thumbnail(version, bitmap, sequence));
+                finish(bitmap, true);
+            } catch (RuntimeException e) {
+                // The row keeps its placeholder
+                Log.e(LOG_TAG, "Failed to load the thumbnail of item " + id, e);
+                finish(null, false);
+            }
+        }
+
+        // Show the bitmap if the view still wants it, and free the view for new requests
+        private void finish(final Bitmap bitmap, final boolean show) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (cancelled || view.getTag() != Task.this) {
+                        return;
+                    }
+                    if (show) {
+                        view.setImageBitmap(bitmap);
+                    }
+                    view.setTag(null);
+                }
+            });
+        }
+    }
+
+    private long readVersion(Uri itemUri) {
+        Cursor cursor = resolver.query(itemUri, VERSION_PROJECTION, null, null, null);
+        if (cursor == null) {
+            return -1;
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private byte[] readImage(Uri itemUri) {
+        Cursor cursor = resolver.query(itemUri, IMAGE_PROJECTION, null, null, null);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getBlob(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Decode the image at the largest power of two reduction that keeps both sides at least
+     * the thumbnail size, then scale it so the shorter side is exactly the thumbnail size.
+     */
+    private Bitmap decode(byte[] image) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(image, 0, image.length, options);
+        int shorter = Math.min(options.outWidth, options.outHeight);
+        if (shorter <= 0) {
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = 1;
+        while (shorter / (options.inSampleSize * 2) >= size) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap bitmap = BitmapFactory.decodeByteArray(image, 0, image.length, options);
+        if (bitmap == null) {
+            return null;
+        }
+
+        shorter = Math.min(bitmap.getWidth(), bitmap.getHeight());
+        if (shorter <= size) {
+            return bitmap;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+                Math.max(1, bitmap.getWidth() * size / shorter),
+                Math.max(1, bitmap.getHeight() * size / shorter), true);
+        if (scaled != bitmap) {
+            bitmap.recycle();
+        }
+        return scaled;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.brandonkbarnes.storedatabase.core.Rows;
+import com.example.brandonkbarnes.storedatabase.core.SqliteVersion;
+import com.example.brandonkbarnes.storedatabase.core.Storage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link Storage} on an open SQLiteDatabase, for running the schema and queries of the
+ * inventory-core module in the app. Statements are compiled once per SQL and closed with the
+ * storage; the database stays open. Query arguments are bound as text, as rawQuery() takes
+ * them, which compares the same against columns with a numeric type.
+ */
+final class AndroidStorage implements Storage {
+
+    private final SQLiteDatabase database;
+
+    private final Map<String, SQLiteStatement> statements =
+            new HashMap<String, SQLiteStatement>();
+
+    AndroidStorage(SQLiteDatabase database) {
+        this.database = database;
+    }
+
+    @Override
+    public void execute(String sql, Object... args) {
+        database.execSQL(sql, args);
+    }
+
+    @Override
+    public long executeInsert(String sql, Object... args) {
+        return bind(sql, args).executeInsert();
+    }
+
+    @Override
+    public int executeUpdateDelete(String sql, Object... args) {
+        return bind(sql, args).executeUpdateDelete();
+    }
+
+    @Override
+    public long queryForLong(String sql, Object... args) {
+        return bind(sql, args).simpleQueryForLong();
+    }
+
+    @Override
+    public Rows query(String sql, Object... args) {
+        String[] selectionArgs = new String[args.length];
+        for (int i = 0; i < args.length; i++) {
+            selectionArgs[i] = String.valueOf(args[i]);
+        }
+        return new CursorRows(database.rawQuery(sql, selectionArgs));
+    }
+
+    @Override
+    public void beginTransaction() {
+        database.beginTransaction();
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        database.setTransactionSuccessful();
+    }
+
+    @Override
+    public void endTransaction() {
+        database.endTransaction();
+    }
+
+    @Override
+    public SqliteVersion getSqliteVersion() {
+        return SqliteFeatures.getVersion(database);
+    }
+
+    @Override
+    public void close() {
+        for (SQLiteStatement statement : statements.values()) {
+            statement.close();
+        }
+        statements.clear();
+    }
+
+    private SQLiteStatement bind(String sql, Object[] args) {
+        SQLiteStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = database.compileStatement(sql);
+            statements.put(sql, statement);
+        }
+        statement.clearBindings();
+        for (int i = 0; i < args.length; i++) {
+            ChangeTracking.bindValue(statement, i + 1, args[i]);
+        }
+        return statement;
+    }
+
+    /**
+     * Rows of a cursor.
+     */
+    private static final class CursorRows implements Rows {
+
+        private final Cursor cursor;
+
+        CursorRows(Cursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean next() {
+            return cursor.moveToNext();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return cursor.getColumnCount();
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            return cursor.isNull(column);
+        }
+
+        @Override
+        public long getLong(int column) {
+            return cursor.getLong(column);
+        }
+
+        @Override
+        public double getDouble(int column) {
+            return cursor.getDouble(column);
+        }
+
+        @Override
+        public String getString(int column) {
+            return cursor.getString(column);
+        }
+
+        @Override
+        public void close() {
+            cursor.close();
+        }
+    }
+}
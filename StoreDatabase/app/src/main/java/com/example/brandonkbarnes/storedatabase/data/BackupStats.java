@@ -0,0 +1,59 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+/**
+ * Measurements of one {@link InventoryBackup#backup} run.
+ */
+public class BackupStats {
+
+    private final long databaseBytes;
+    private final long archiveBytes;
+    private final long durationMillis;
+    private final long writerStallMillis;
+    private final boolean usedVacuumInto;
+
+    BackupStats(long databaseBytes, long archiveBytes, long durationMillis,
+                long writerStallMillis, boolean usedVacuumInto) {
+        this.databaseBytes = databaseBytes;
+        this.archiveBytes = archiveBytes;
+        this.durationMillis = durationMillis;
+        this.writerStallMillis = writerStallMillis;
+        this.usedVacuumInto = usedVacuumInto;
+    }
+
+    /** Size of the uncompressed snapshot. */
+    public long getDatabaseBytes() {
+        return databaseBytes;
+    }
+
+    /** Size of the compressed archive. */
+    public long getArchiveBytes() {
+        return archiveBytes;
+    }
+
+    /** Wall time of the whole backup, snapshot and compression. */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /** Time during which the backup blocked writers of the database. */
+    public long getWriterStallMillis() {
+        return writerStallMillis;
+    }
+
+    /** Whether the snapshot was taken with VACUUM INTO rather than a locked file copy. */
+    public boolean usedVacuumInto() {
+        return usedVacuumInto;
+    }
+
+    /** Snapshot bytes backed up per second. */
+    public long getBytesPerSecond() {
+        return durationMillis == 0 ? databaseBytes * 1000 : databaseBytes * 1000 / durationMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "database=" + databaseBytes + "B archive=" + archiveBytes + "B duration="
+                + durationMillis + "ms throughput=" + getBytesPerSecond() + "B/s writerStall="
+                + writerStallMillis + "ms vacuumInto=" + usedVacuumInto;
+    }
+}
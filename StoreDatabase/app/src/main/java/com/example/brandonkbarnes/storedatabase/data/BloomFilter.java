@@ -0,0 +1,54 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+/**
+ * Compact probabilistic set of strings. {@link #mightContain} never answers false for a
+ * string that was added, and answers true for a string that wasn't with roughly the
+ * configured false positive rate. Strings can't be removed. Not thread safe.
+ */
+public class BloomFilter {
+
+    private final long[] bits;
+    private final int bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedSize      number of strings that will be added
+     * @param falsePositiveRate wanted false positive rate at that size, e.g. 0.01
+     */
+    public BloomFilter(int expectedSize, double falsePositiveRate) {
+        int n = Math.max(expectedSize, 1);
+        // Standard sizing: m = -n ln p / (ln 2)^2 and k = m / n ln 2
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        bitCount = (int) Math.max(64, Math.min(m, Integer.MAX_VALUE - 63));
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        bits = new long[(bitCount + 63) / 64];
+    }
+
+    public void add(String value) {
+        int h1 = SkuIndex.hash(value);
+        int h2 = secondHash(h1);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(String value) {
+        int h1 = SkuIndex.hash(value);
+        int h2 = secondHash(h1);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Derive the second hash for double hashing from the first, odd so it cycles all bits
+    private static int secondHash(int h1) {
+        int h = h1 * 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h | 1;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import java.util.Arrays;
+
+/**
+ * Reusable column-oriented buffer for the catalog projection (_id, name, price, quantity).
+ * Rows are held in parallel primitive arrays, which only grow, so refilling the buffer
+ * after the first load does not allocate a record object per row.
+ */
+public class CatalogBuffer {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private long[] ids;
+    private String[] names;
+    private String[] prices;
+    private int[] quantities;
+    private int size;
+
+    public CatalogBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CatalogBuffer(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        ids = new long[capacity];
+        names = new String[capacity];
+        prices = new String[capacity];
+        quantities = new int[capacity];
+    }
+
+    /**
+     * Copy the rows of another buffer, with room for a few more. The strings are shared,
+     * they never change.
+     */
+    public CatalogBuffer(CatalogBuffer source) {
+        this(source.size + DEFAULT_CAPACITY);
+        System.arraycopy(source.ids, 0, ids, 0, source.size);
+        System.arraycopy(source.names, 0, names, 0, source.size);
+        System.arraycopy(source.prices, 0, prices, 0, source.size);
+        System.arraycopy(source.quantities, 0, quantities, 0, source.size);
+        size = source.size;
+    }
+
+    /**
+     * Forget all rows but keep the arrays for the next fill.
+     */
+    public void clear() {
+        // Drop the string references so they can be collected
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(prices, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Make room for at least the given number of rows.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, newCapacity);
+        names = Arrays.copyOf(names, newCapacity);
+        prices = Arrays.copyOf(prices, newCapacity);
+        quantities = Arrays.copyOf(quantities, newCapacity);
+    }
+
+    /**
+     * Append one row to the end of the buffer.
+     */
+    public void add(long id, String name, String price, int quantity) {
+        ensureCapacity(size + 1);
+        ids[size] = id;
+        names[size] = name;
+        prices[size] = price;
+        quantities[size] = quantity;
+        size++;
+    }
+
+    /**
+     * Insert one row at the given position, moving the rows from there on back.
+     */
+    public void insert(int position, long id, String name, String price, int quantity) {
+        ensureCapacity(size + 1);
+        int moved = size - position;
+        System.arraycopy(ids, position, ids, position + 1, moved);
+        System.arraycopy(names, position, names, position + 1, moved);
+        System.arraycopy(prices, position, prices, position + 1, moved);
+        System.arraycopy(quantities, position, quantities, position + 1, moved);
+        set(position, id, name, price, quantity);
+        size++;
+    }
+
+    /**
+     * Replace the row at the given position.
+     */
+    public void set(int position, long id, String name, String price, int quantity) {
+        ids[position] = id;
+        names[position] = name;
+        prices[position] = price;
+        quantities[position] = quantity;
+    }
+
+    /**
+     * Remove the row at the given position, moving the rows after it forward.
+     */
+    public void remove(int position) {
+        int moved = size - position - 1;
+        System.arraycopy(ids, position + 1, ids, position, moved);
+        System.arraycopy(names, position + 1, names, position, moved);
+        System.arraycopy(prices, position + 1, prices, position, moved);
+        System.arraycopy(quantities, position + 1, quantities, position, moved);
+        size--;
+        names[size] = null;
+        prices[size] = null;
+    }
+
+    /**
+     * Remove the rows whose id is in the sorted array, in one pass over the buffer.
+     */
+    public void removeIds(long[] sortedIds) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (Arrays.binarySearch(sortedIds, ids[i]) < 0) {
+                set(kept++, ids[i], names[i], prices[i], quantities[i]);
+            }
+        }
+        Arrays.fill(names, kept, size, null);
+        Arrays.fill(prices, kept, size, null);
+        size = kept;
+    }
+
+    /**
+     * Return the position of the row with the given id, or -1.
+     */
+    public int indexOf(long id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getId(int position) {
+        return ids[position];
+    }
+
+    public String getName(int position) {
+        return names[position];
+    }
+
+    public String getPrice(int position) {
+        return prices[position];
+    }
+
+    public int getQuantity(int position) {
+        return quantities[position];
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+/**
+ * Read-only cursor over a {@link CatalogBuffer}, with the columns of
+ * {@link InventoryEntry#CATALOG_PROJECTION}. The buffer must not change while the cursor
+ * is in use. The cursor also carries the {@link ChangeFeed} sequence number its rows
+ * reflect.
+ */
+class CatalogCursor extends AbstractCursor {
+
+    private static final int COLUMN_ID = 0;
+    private static final int COLUMN_NAME = 1;
+    private static final int COLUMN_PRICE = 2;
+
+    private final CatalogBuffer buffer;
+    private final long sequence;
+
+    CatalogCursor(CatalogBuffer buffer, long sequence) {
+        this.buffer = buffer;
+        this.sequence = sequence;
+    }
+
+    CatalogBuffer getBuffer() {
+        return buffer;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public int getCount() {
+        return buffer.size();
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return InventoryEntry.CATALOG_PROJECTION;
+    }
+
+    @Override
+    public String getString(int column) {
+        switch (column) {
+            case COLUMN_NAME:
+                return buffer.getName(getPosition());
+            case COLUMN_PRICE:
+                return buffer.getPrice(getPosition());
+            default:
+                return String.valueOf(getLong(column));
+        }
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        switch (column) {
+            case COLUMN_ID:
+                return buffer.getId(getPosition());
+            case COLUMN_NAME:
+            case COLUMN_PRICE:
+                return Long.parseLong(getString(column));
+            default:
+                return buffer.getQuantity(getPosition());
+        }
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return getLong(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return getLong(column);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return false;
+    }
+
+    @Override
+    public int getType(int column) {
+        return column == COLUMN_NAME || column == COLUMN_PRICE
+                ? Cursor.FIELD_TYPE_STRING : Cursor.FIELD_TYPE_INTEGER;
+    }
+}
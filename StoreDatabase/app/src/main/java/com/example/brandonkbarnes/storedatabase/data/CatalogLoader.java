@@ -0,0 +1,311 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import java.util.Arrays;
+
+/**
+ * Loads the catalog of a catalog URI (see {@link InventoryEntry#buildCatalogUri}) and keeps
+ * it current from the store's {@link ChangeFeed}.
+ *
+ * The first load reads the whole catalog into a {@link CatalogBuffer}. When the items change
+ * afterwards, only the changed rows are read, by id, and merged into a copy of the buffer at
+ * the position the catalog order gives them. Copying the buffer only copies references, so
+ * this is far cheaper than running the catalog query again. The loader falls back to a full
+ * load when it has fallen behind the feed, and for URI's with filter parameters, whose
+ * conditions are only known to the SQL.
+ */
+public class CatalogLoader extends AsyncTaskLoader<Cursor> {
+
+    // Ids per query when reading changed rows, below SQLite's limit of 999 arguments
+    private static final int IDS_PER_QUERY = 500;
+
+    private final Uri uri;
+    private final Uri itemsUri;
+    private final String sort;
+    private final String supplier;
+    private final boolean incremental;
+    private final ChangeFeed changeFeed;
+    private final ForceLoadContentObserver observer = new ForceLoadContentObserver();
+    private boolean observing;
+
+    // Latest delivered catalog, which the next load starts from. Only set on the main thread.
+    private volatile CatalogCursor current;
+
+    public CatalogLoader(Context context, Uri uri) {
+        super(context);
+        this.uri = uri;
+        this.itemsUri = uri.buildUpon().clearQuery().build();
+        this.sort = uri.getQueryParameter(InventoryEntry.QUERY_SORT);
+        this.supplier = uri.getQueryParameter(InventoryEntry.QUERY_SUPPLIER);
+        this.incremental = uri.getQueryParameter(InventoryEntry.QUERY_FILTER) == null
+                && !CatalogQuery.includesDeleted(uri);
+        this.changeFeed = InventoryDbHelper.getInstance(context.getApplicationContext(),
+                InventoryEntry.getLocation(uri)).getChangeFeed();
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        CatalogCursor base = current;
+        if (base != null && incremental) {
+            ChangeFeed.Changes changes = changeFeed.since(base.getSequence());
+            if (changes != null) {
+                return changes.size() == 0 ? base : applyChanges(base, changes);
+            }
+        }
+        return loadAll();
+    }
+
+    /**
+     * Read the whole catalog.
+     */
+    private CatalogCursor loadAll() {
+        // Taken first, so changes committed while the query runs are applied again later
+        long sequence = changeFeed.getSequence();
+        CatalogBuffer buffer = new CatalogBuffer();
+        // Without a sort parameter the catalog is in the order items were added, which has
+        // to be asked for to be the order changed rows are merged in
+        Cursor cursor = getContext().getContentResolver().query(uri,
+                InventoryEntry.CATALOG_PROJECTION, null, null,
+                sort == null ? CatalogQuery.ORDER_BY_ADDED : null);
+        if (cursor != null) {
+            try {
+                read(cursor, buffer, false);
+            } finally {
+                cursor.close();
+            }
+        }
+        return new CatalogCursor(buffer, sequence);
+    }
+
+    /**
+     * Copy the catalog with the changed items removed, then read back the ones that still
+     * belong in the catalog and insert them in order.
+     */
+    private CatalogCursor applyChanges(CatalogCursor base, ChangeFeed.Changes changes) {
+        long[] changedIds = new long[changes.size()];
+        long[] readIds = new long[changes.size()];
+        int reads = 0;
+        for (int i = 0; i < changes.size(); i++) {
+            changedIds[i] = changes.getId(i);
+            if (changes.getOp(i) != ChangeFeed.OP_DELETE) {
+                readIds[reads++] = changes.getId(i);
+            }
+        }
+        Arrays.sort(changedIds);
+
+        CatalogBuffer buffer = new CatalogBuffer(base.getBuffer());
+        buffer.removeIds(changedIds);
+        for (int start = 0; start < reads; start += IDS_PER_QUERY) {
+            int count = Math.min(IDS_PER_QUERY, reads - start);
+            String[] args = new String[supplier == null ? count : count + 1];
+            for (int i = 0; i < count; i++) {
+                args[i] = String.valueOf(readIds[start + i]);
+            }
+            String selection = InventoryEntry._ID + " IN (" + placeholders(count) + ")";
+            if (supplier != null) {
+                selection += " AND " + CatalogQuery.SELECTION_SUPPLIER;
+                args[count] = supplier;
+            }
+            // Deleted items are left out by the provider
+            Cursor cursor = getContext().getContentResolver().query(itemsUri,
+                    InventoryEntry.CATALOG_PROJECTION, selection, args, null);
+            if (cursor != null) {
+                try {
+                    read(cursor, buffer, true);
+                } finally {
+                    cursor.close();
+                }
+            }
+        }
+        return new CatalogCursor(buffer, changes.getSequence());
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        return placeholders.toString();
+    }
+
+    /**
+     * Add the rows of a catalog projection cursor, at the end or in catalog order.
+     */
+    private void read(Cursor cursor, CatalogBuffer buffer, boolean inOrder) {
+        buffer.ensureCapacity(buffer.size() + cursor.getCount());
+        while (cursor.moveToNext()) {
+            long id = cursor.getLong(0);
+            String name = cursor.getString(1);
+            String price = cursor.getString(2);
+            int quantity = cursor.getInt(3);
+            if (inOrder) {
+                buffer.insert(insertPosition(buffer, id, name, price, quantity), id, name,
+                        price, quantity);
+            } else {
+                buffer.add(id, name, price, quantity);
+            }
+        }
+    }
+
+    /**
+     * Return the position after the last row that doesn't sort after the given one.
+     */
+    private int insertPosition(CatalogBuffer buffer, long id, String name, String price,
+                               int quantity) {
+        int low = 0;
+        int high = buffer.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(buffer, middle, id, name, price, quantity) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compare a buffer row with the given row in the order of the catalog's ORDER BY, key by
+     * key down to the row id, see {@link CatalogQuery#ORDER_BY_NAME} and the others.
+     */
+    private int compare(CatalogBuffer buffer, int position, long id, String name, String price,
+                        int quantity) {
+        String otherName = buffer.getName(position);
+        String otherPrice = buffer.getPrice(position);
+        int otherQuantity = buffer.getQuantity(position);
+        int result = 0;
+        if (InventoryEntry.SORT_NAME.equals(sort)) {
+            result = compareText(otherName, name, true);
+            if (result == 0) {
+                result = compareText(otherPrice, price, false);
+            }
+            if (result == 0) {
+                result = compare(otherQuantity, quantity);
+            }
+        } else if (InventoryEntry.SORT_PRICE.equals(sort)) {
+            // Not Double.compare, SQLite holds -0.0 and 0.0 equal
+            double otherValue = CatalogQuery.priceValue(otherPrice);
+            double value = CatalogQuery.priceValue(price);
+            result = otherValue < value ? -1 : otherValue > value ? 1 : 0;
+            if (result == 0) {
+                result = compareText(otherName, name, false);
+            }
+            if (result == 0) {
+                result = compareText(otherPrice, price, false);
+            }
+            if (result == 0) {
+                result = compare(otherQuantity, quantity);
+            }
+        } else if (InventoryEntry.SORT_QUANTITY.equals(sort)) {
+            result = compare(otherQuantity, quantity);
+            if (result == 0) {
+                result = compareText(otherName, name, false);
+            }
+            if (result == 0) {
+                result = compareText(otherPrice, price, false);
+            }
+        }
+        if (result != 0) {
+            return result;
+        }
+        long otherId = buffer.getId(position);
+        return otherId < id ? -1 : otherId == id ? 0 : 1;
+    }
+
+    private static int compare(int a, int b) {
+        return a < b ? -1 : a == b ? 0 : 1;
+    }
+
+    /**
+     * Compare like SQLite's BINARY collation, or NOCASE, which only folds the case of ASCII
+     * letters. Both compare the UTF-8 bytes, which sort like code points, not like Java's
+     * UTF-16 chars.
+     */
+    private static int compareText(String a, String b, boolean noCase) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+            if (noCase && x >= 'A' && x <= 'Z') {
+                x += 'a' - 'A';
+            }
+            if (noCase && y >= 'A' && y <= 'Z') {
+                y += 'a' - 'A';
+            }
+            if (x != y) {
+                return x - y;
+            }
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return (a.length() - i) - (b.length() - j);
+    }
+
+    @Override
+    public void deliverResult(Cursor cursor) {
+        if (isReset()) {
+            // A load finished after the loader was reset
+            if (cursor != null && cursor != current) {
+                cursor.close();
+            }
+            return;
+        }
+        CatalogCursor old = current;
+        current = (CatalogCursor) cursor;
+        if (isStarted()) {
+            super.deliverResult(cursor);
+        }
+        if (old != null && old != cursor && !old.isClosed()) {
+            old.close();
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!observing) {
+            getContext().getContentResolver().registerContentObserver(itemsUri, true, observer);
+            observing = true;
+        }
+        if (current != null) {
+            deliverResult(current);
+        }
+        if (takeContentChanged() || current == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    public void onCanceled(Cursor cursor) {
+        // An unchanged catalog is returned as the current cursor, which stays open
+        if (cursor != null && cursor != current && !cursor.isClosed()) {
+            cursor.close();
+        }
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        if (observing) {
+            getContext().getContentResolver().unregisterContentObserver(observer);
+            observing = false;
+        }
+        if (current != null && !current.isClosed()) {
+            current.close();
+        }
+        current = null;
+    }
+}
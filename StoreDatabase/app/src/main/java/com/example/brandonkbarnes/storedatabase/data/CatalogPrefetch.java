@@ -0,0 +1,176 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.example.brandonkbarnes.storedatabase.StartupTrace;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import java.util.Arrays;
+
+/**
+ * Opens the default store database and runs the catalog's first query on a background
+ * thread while the app is still starting, so neither lands on the time to the first frame.
+ *
+ * Opening runs the schema checks and any upgrade, and the query fills the cursor's first
+ * window, which also warms the page cache. {@link InventoryProvider} hands the prefetched
+ * cursor to the first query with the same arguments. Any change to the items before then
+ * discards it, and so does the first query with other arguments. A change is caught by the
+ * store's {@link ChangeFeed}, which every writer records in before it notifies, so a query
+ * right after a write never gets the cursor even though the observer hears of the write later.
+ */
+class CatalogPrefetch {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = CatalogPrefetch.class.getSimpleName();
+
+    private final Context context;
+    private final InventoryDbHelper dbHelper;
+
+    // Result of the prefetch, null until it is done and after it was taken or discarded.
+    // Guarded by this.
+    private Cursor cursor;
+    private long sequence;
+    private boolean running = true;
+    private boolean discarded;
+
+    // Discards the prefetch when any writer, also outside the provider, changes items
+    private final ContentObserver observer = new ContentObserver(null) {
+        @Override
+        public void onChange(boolean selfChange) {
+            discard();
+        }
+    };
+
+    CatalogPrefetch(Context context, InventoryDbHelper dbHelper) {
+        this.context = context;
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Start prefetching on a background thread.
+     */
+    void start() {
+        context.getContentResolver().registerContentObserver(InventoryEntry.CONTENT_URI, true,
+                observer);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                prefetch();
+            }
+        }, LOG_TAG).start();
+    }
+
+    /**
+     * Run the prefetch on the calling thread.
+     */
+    void prefetch() {
+        // The query reflects at least the changes up to this sequence number
+        long feedSequence = dbHelper.getChangeFeed().getSequence();
+        Cursor result = null;
+        try {
+            StartupTrace.beginSection("openDatabase");
+            SQLiteDatabase database;
+            try {
+                database = dbHelper.getReadableDatabase();
+            } finally {
+                StartupTrace.endSection();
+            }
+            StartupTrace.mark("database_open");
+
+            StartupTrace.beginSection("prefetchCatalog");
+            try {
+                // The catalog loader's query of the plain catalog URI, in the order items were
+                // added and without deleted items
+                result = database.query(InventoryEntry.TABLE_NAME,
+                        InventoryEntry.CATALOG_PROJECTION, CatalogQuery.SELECTION_NOT_DELETED,
+                        null, null, null, CatalogQuery.ORDER_BY_ADDED);
+                // Runs the query and fills the first window of rows
+                result.getCount();
+            } finally {
+                StartupTrace.endSection();
+            }
+            StartupTrace.mark("catalog_prefetched");
+        } catch (RuntimeException e) {
+            // The catalog's own query will open the database and report the problem
+            Log.e(LOG_TAG, "Failed to prefetch the catalog", e);
+        }
+
+        synchronized (this) {
+            running = false;
+            if (discarded) {
+                if (result != null) {
+                    result.close();
+                }
+            } else {
+                cursor = result;
+                sequence = feedSequence;
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Return the prefetched cursor if the query matches the prefetched one, waiting for the
+     * prefetch to finish if needed. Return null if the query is different or the prefetch was
+     * discarded; the cursor is handed out at most once.
+     */
+    Cursor take(String[] projection, String selection, String[] selectionArgs,
+                String sortOrder) {
+        synchronized (this) {
+            if (discarded) {
+                return null;
+            }
+            if (selection != null || selectionArgs != null
+                    || !CatalogQuery.ORDER_BY_ADDED.equals(sortOrder)
+                    || !Arrays.equals(projection, InventoryEntry.CATALOG_PROJECTION)) {
+                discard();
+                return null;
+            }
+            boolean interrupted = false;
+            while (running && !discarded) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            // Items may have changed since, the observer doesn't hear of it right away
+            if (cursor != null && dbHelper.getChangeFeed().getSequence() != sequence) {
+                discard();
+                return null;
+            }
+            Cursor result = discarded ? null : cursor;
+            cursor = null;
+            discarded = true;
+            unregister();
+            return result;
+        }
+    }
+
+    /**
+     * Drop the prefetched cursor, e.g. because an item changed.
+     */
+    synchronized void discard() {
+        if (discarded) {
+            return;
+        }
+        discarded = true;
+        if (cursor != null) {
+            cursor.close();
+            cursor = null;
+        }
+        unregister();
+        notifyAll();
+    }
+
+    private void unregister() {
+        context.getContentResolver().unregisterContentObserver(observer);
+    }
+}
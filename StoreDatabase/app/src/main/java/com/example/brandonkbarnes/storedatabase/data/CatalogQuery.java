@@ -0,0 +1,125 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.net.Uri;
+import android.text.TextUtils;
+
+import com.example.brandonkbarnes.storedatabase.core.CatalogSql;
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+/**
+ * Maps the catalog's sort and filter URI parameters (see {@link InventoryEntry#buildCatalogUri})
+ * to fixed SQL. Only these orders and filters are accepted, and each one is served by a
+ * covering index created in {@link InventorySchema}, so the catalog projection is read from
+ * the index in order without sorting or looking rows up.
+ */
+final class CatalogQuery {
+
+    /** Numeric value of the price column, see {@link CatalogSql#PRICE_VALUE} */
+    static final String PRICE_VALUE = CatalogSql.PRICE_VALUE;
+
+    // Ties are broken down to the row id, see CatalogSql
+    static final String ORDER_BY_ADDED = CatalogSql.ORDER_BY_ADDED;
+    static final String ORDER_BY_NAME = CatalogSql.ORDER_BY_NAME;
+    static final String ORDER_BY_PRICE = CatalogSql.ORDER_BY_PRICE;
+    static final String ORDER_BY_QUANTITY = CatalogSql.ORDER_BY_QUANTITY;
+
+    static final String SELECTION_SUPPLIER = InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME + " = ?";
+
+    /** Leading condition of every catalog index, so it must come first in the selection */
+    static final String SELECTION_NOT_DELETED = CatalogSql.NOT_DELETED;
+
+    private CatalogQuery() {}
+
+    /**
+     * Return the value {@link #PRICE_VALUE} computes for the price, for ordering prices in
+     * Java the way the catalog query does.
+     */
+    static double priceValue(String price) {
+        return CatalogSql.priceValue(price);
+    }
+
+    /**
+     * Return whether the URI carries catalog sort or filter parameters.
+     */
+    static boolean hasParameters(Uri uri) {
+        return uri.getQueryParameter(InventoryEntry.QUERY_SORT) != null
+                || uri.getQueryParameter(InventoryEntry.QUERY_FILTER) != null
+                || uri.getQueryParameter(InventoryEntry.QUERY_SUPPLIER) != null
+                || uri.getQueryParameter(InventoryEntry.QUERY_INCLUDE_DELETED) != null;
+    }
+
+    /**
+     * Return whether the URI asks for deleted items that aren't purged yet.
+     */
+    static boolean includesDeleted(Uri uri) {
+        return Boolean.parseBoolean(uri.getQueryParameter(InventoryEntry.QUERY_INCLUDE_DELETED));
+    }
+
+    /**
+     * Return the selection with deleted items left out, unless the URI includes them.
+     */
+    static String excludeDeleted(Uri uri, String selection) {
+        return includesDeleted(uri) ? selection : notDeleted(selection);
+    }
+
+    /**
+     * Return the selection with deleted items left out.
+     */
+    static String notDeleted(String selection) {
+        if (TextUtils.isEmpty(selection)) {
+            return SELECTION_NOT_DELETED;
+        }
+        return SELECTION_NOT_DELETED + " AND (" + selection + ")";
+    }
+
+    /**
+     * Return the ORDER BY clause for the URI's sort parameter, or the caller's sort order if
+     * the URI has none.
+     */
+    static String sortOrder(Uri uri, String sortOrder) {
+        String sort = uri.getQueryParameter(InventoryEntry.QUERY_SORT);
+        if (sort == null) {
+            return sortOrder;
+        }
+        if (sortOrder != null) {
+            throw new IllegalArgumentException("Sort order given twice for " + uri);
+        }
+        if (InventoryEntry.SORT_NAME.equals(sort)) {
+            return ORDER_BY_NAME;
+        } else if (InventoryEntry.SORT_PRICE.equals(sort)) {
+            return ORDER_BY_PRICE;
+        } else if (InventoryEntry.SORT_QUANTITY.equals(sort)) {
+            return ORDER_BY_QUANTITY;
+        }
+        throw new IllegalArgumentException("Unknown sort " + sort + " in " + uri);
+    }
+
+    /**
+     * Return the selection with deleted items left out and the URI's supplier filter added.
+     */
+    static String selection(Uri uri, String selection) {
+        if (uri.getQueryParameter(InventoryEntry.QUERY_SUPPLIER) != null) {
+            selection = TextUtils.isEmpty(selection)
+                    ? SELECTION_SUPPLIER : "(" + selection + ") AND " + SELECTION_SUPPLIER;
+        }
+        return excludeDeleted(uri, selection);
+    }
+
+    /**
+     * Return the selection arguments with the URI's supplier filter added.
+     */
+    static String[] selectionArgs(Uri uri, String[] selectionArgs) {
+        String supplier = uri.getQueryParameter(InventoryEntry.QUERY_SUPPLIER);
+        if (supplier == null) {
+            return selectionArgs;
+        }
+        int count = selectionArgs == null ? 0 : selectionArgs.length;
+        String[] args = new String[count + 1];
+        if (count != 0) {
+            System.arraycopy(selectionArgs, 0, args, 0, count);
+        }
+        args[count] = supplier;
+        return args;
+    }
+}
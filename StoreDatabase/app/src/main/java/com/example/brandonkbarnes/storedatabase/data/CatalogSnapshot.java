@@ -0,0 +1,229 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Snapshot file of the default catalog, the plain catalog URI of the default store location,
+ * for showing the list on launch before the database is open.
+ *
+ * The file holds the catalog projection column by column: the ids, the quantities, and the
+ * names and prices as one table of UTF-16 strings with their offsets. {@link #open} maps it
+ * and returns a {@link SnapshotCursor} reading the rows straight from the mapping, so nothing
+ * is parsed up front. {@link InventoryProvider} keeps the file current by writing it again in
+ * the background a little while after the items change.
+ *
+ * <pre>
+ * int magic, int format, int rows, int chars
+ * long[rows] ids
+ * int[rows] quantities
+ * int[2 * rows + 1] offsets, string 2 * i is the name and 2 * i + 1 the price of row i
+ * char[chars] strings
+ * </pre>
+ */
+public class CatalogSnapshot {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = CatalogSnapshot.class.getSimpleName();
+
+    // "CSNP"
+    static final int MAGIC = 0x43534e50;
+    static final int FORMAT = 1;
+    static final int HEADER_BYTES = 16;
+
+    private static final String FILE_NAME = "catalog.snapshot";
+
+    // Quiet time after a change before the file is written, so a burst of writes costs one
+    private static final long REFRESH_DELAY_MILLIS = 2000;
+
+    // Delay of the refresh at start, which catches changes a killed process didn't write
+    // out, until the launch is well over
+    private static final long START_DELAY_MILLIS = 10000;
+
+    private final Context context;
+    private final File file;
+    private final CatalogBuffer buffer = new CatalogBuffer();
+    private Handler handler;
+
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            refresh();
+        }
+    };
+
+    CatalogSnapshot(Context context) {
+        this.context = context;
+        this.file = getFile(context);
+    }
+
+    /**
+     * Return a cursor over the snapshot of the default catalog, with the columns of
+     * {@link InventoryEntry#CATALOG_PROJECTION}, or null if there is none. The snapshot may
+     * be behind the database, so show it only until the catalog is loaded.
+     */
+    public static Cursor open(Context context) {
+        return read(getFile(context));
+    }
+
+    private static File getFile(Context context) {
+        return new File(context.getCacheDir(), FILE_NAME);
+    }
+
+    /**
+     * Start refreshing the file in the background after the items change.
+     */
+    void start() {
+        HandlerThread thread = new HandlerThread(LOG_TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        context.getContentResolver().registerContentObserver(InventoryEntry.CONTENT_URI, true,
+                new ContentObserver(handler) {
+                    @Override
+                    public void onChange(boolean selfChange) {
+                        handler.removeCallbacks(refresh);
+                        handler.postDelayed(refresh, REFRESH_DELAY_MILLIS);
+                    }
+                });
+        handler.postDelayed(refresh, START_DELAY_MILLIS);
+    }
+
+    private void refresh() {
+        try {
+            // The catalog loader's query of the plain catalog URI, see CatalogPrefetch
+            InventoryRepository.getInstance(context).readCatalog(buffer, null, null,
+                    CatalogQuery.ORDER_BY_ADDED);
+            write(file, buffer);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Failed to write the catalog snapshot", e);
+        } catch (RuntimeException e) {
+            // The database may be closed or being restored, the next change writes it
+            Log.w(LOG_TAG, "Failed to read the catalog for the snapshot", e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Write the rows of the buffer to the file, replacing it in one rename.
+     */
+    static void write(File file, CatalogBuffer buffer) throws IOException {
+        int rows = buffer.size();
+        int chars = 0;
+        for (int i = 0; i < rows; i++) {
+            chars += length(buffer.getName(i)) + length(buffer.getPrice(i));
+        }
+
+        File temporary = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temporary)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeInt(rows);
+            out.writeInt(chars);
+            for (int i = 0; i < rows; i++) {
+                out.writeLong(buffer.getId(i));
+            }
+            for (int i = 0; i < rows; i++) {
+                out.writeInt(buffer.getQuantity(i));
+            }
+            int offset = 0;
+            out.writeInt(offset);
+            for (int i = 0; i < rows; i++) {
+                offset += length(buffer.getName(i));
+                out.writeInt(offset);
+                offset += length(buffer.getPrice(i));
+                out.writeInt(offset);
+            }
+            for (int i = 0; i < rows; i++) {
+                writeChars(out, buffer.getName(i));
+                writeChars(out, buffer.getPrice(i));
+            }
+            out.close();
+            out = null;
+            // Not synced: a file cut short by a crash fails the length check and is ignored
+            if (!temporary.renameTo(file)) {
+                temporary.delete();
+                throw new IOException("Cannot rename " + temporary);
+            }
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // Already failed
+                }
+                temporary.delete();
+            }
+        }
+    }
+
+    /**
+     * Map the file and return a cursor over it, or null if it's missing or not a complete
+     * snapshot of this format.
+     */
+    static Cursor read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            RandomAccessFile input = new RandomAccessFile(file, "r");
+            MappedByteBuffer mapped;
+            try {
+                // The mapping stays valid after the file is closed
+                mapped = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                        input.length());
+            } finally {
+                input.close();
+            }
+            if (!isComplete(mapped)) {
+                Log.w(LOG_TAG, "Ignoring the incomplete catalog snapshot " + file);
+                return null;
+            }
+            return new SnapshotCursor(mapped);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Failed to map the catalog snapshot", e);
+            return null;
+        }
+    }
+
+    private static boolean isComplete(ByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC
+                || buffer.getInt(4) != FORMAT) {
+            return false;
+        }
+        long rows = buffer.getInt(8);
+        long chars = buffer.getInt(12);
+        return rows >= 0 && chars >= 0
+                && buffer.capacity() == HEADER_BYTES + rows * 8 + rows * 4
+                        + (2 * rows + 1) * 4 + chars * 2;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static void writeChars(DataOutputStream out, String value) throws IOException {
+        if (value != null) {
+            out.writeChars(value);
+        }
+    }
+}
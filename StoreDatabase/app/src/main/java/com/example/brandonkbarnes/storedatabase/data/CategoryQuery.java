@@ -0,0 +1,113 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.CategoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.CategorySupplierEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.ItemCategoryEntry;
+
+/**
+ * Queries of the categories for {@link InventoryProvider}: the category list with its item
+ * counts, the items of a category and the categories of an item.
+ */
+final class CategoryQuery {
+
+    /** Columns of the category list */
+    static final String[] FACET_PROJECTION = {
+            CategoryEntry._ID,
+            CategoryEntry.COLUMN_NAME,
+            CategoryEntry.COLUMN_ITEM_COUNT };
+
+    private static final String ORDER_BY_NAME = CategoryEntry.COLUMN_NAME + " COLLATE NOCASE";
+
+    // The item table joined to the categories of the items, starting from the categories so
+    // a category's items are found with a seek on its index
+    private static final String TABLES_ITEMS = ItemCategoryEntry.TABLE_NAME + " CROSS JOIN "
+            + InventoryEntry.TABLE_NAME + " ON " + InventoryEntry.TABLE_NAME + "."
+            + InventoryEntry._ID + " = " + ItemCategoryEntry.TABLE_NAME + "."
+            + ItemCategoryEntry.COLUMN_ITEM_ID;
+
+    private CategoryQuery() {}
+
+    /**
+     * List every category by name with the number of items in it. Without parameters, and
+     * for a supplier, the counts are read from the counters the triggers keep, one row per
+     * category. For the URI's filter conditions the matching items are counted.
+     */
+    static Cursor queryFacets(SQLiteDatabase database, Uri uri) {
+        if (FilterQuery.hasFilters(uri)) {
+            // The ids of the items matching the filters, and the supplier if there is one
+            FilterQuery items = FilterQuery.compile(uri, new String[] { InventoryEntry._ID });
+            String counts = "(SELECT " + ItemCategoryEntry.COLUMN_CATEGORY_ID + ", COUNT(*) AS "
+                    + CategoryEntry.COLUMN_ITEM_COUNT + " FROM " + ItemCategoryEntry.TABLE_NAME
+                    + " WHERE " + ItemCategoryEntry.COLUMN_ITEM_ID + " IN (" + items.sql + ")"
+                    + " GROUP BY " + ItemCategoryEntry.COLUMN_CATEGORY_ID + ")";
+            return database.rawQuery(sqlWithCounts(counts, ItemCategoryEntry.COLUMN_CATEGORY_ID,
+                    null), items.args);
+        }
+
+        String supplier = uri.getQueryParameter(InventoryEntry.QUERY_SUPPLIER);
+        if (supplier != null) {
+            // One seek on the counters' primary key per category
+            return database.rawQuery(sqlWithCounts(CategorySupplierEntry.TABLE_NAME,
+                    CategorySupplierEntry.COLUMN_CATEGORY_ID,
+                    CategorySupplierEntry.COLUMN_SUPPLIER), new String[] { supplier });
+        }
+
+        return database.query(CategoryEntry.TABLE_NAME, FACET_PROJECTION, null, null, null,
+                null, ORDER_BY_NAME);
+    }
+
+    /**
+     * Return the SQL listing every category by name with its item count from the counts
+     * table, 0 for categories it has no row for.
+     *
+     * @param keyColumn column of the counts table that must also equal an argument, or null
+     */
+    private static String sqlWithCounts(String counts, String categoryColumn,
+                                        String keyColumn) {
+        return "SELECT c." + CategoryEntry._ID + " AS " + CategoryEntry._ID + ", c."
+                + CategoryEntry.COLUMN_NAME + " AS " + CategoryEntry.COLUMN_NAME
+                + ", IFNULL(f." + CategoryEntry.COLUMN_ITEM_COUNT + ", 0) AS "
+                + CategoryEntry.COLUMN_ITEM_COUNT + " FROM " + CategoryEntry.TABLE_NAME
+                + " AS c LEFT JOIN " + counts + " AS f ON f." + categoryColumn + " = c."
+                + CategoryEntry._ID + (keyColumn == null ? "" : " AND f." + keyColumn + " = ?")
+                + " ORDER BY c." + ORDER_BY_NAME;
+    }
+
+    /**
+     * Query the items of a category with the catalog's sort and supplier parameters.
+     * Deleted items are left out.
+     */
+    static Cursor queryItems(SQLiteDatabase database, Uri uri, long categoryId,
+                             String[] projection, String selection, String[] selectionArgs,
+                             String sortOrder) {
+        if (FilterQuery.hasFilters(uri)) {
+            throw new IllegalArgumentException("Filters are not supported for " + uri);
+        }
+        String[] args = CatalogQuery.selectionArgs(uri, selectionArgs);
+        String[] categoryArgs = new String[args == null ? 1 : args.length + 1];
+        categoryArgs[0] = String.valueOf(categoryId);
+        if (args != null) {
+            System.arraycopy(args, 0, categoryArgs, 1, args.length);
+        }
+        return database.query(TABLES_ITEMS, projection,
+                ItemCategoryEntry.TABLE_NAME + "." + ItemCategoryEntry.COLUMN_CATEGORY_ID
+                        + " = ? AND " + CatalogQuery.selection(uri, selection),
+                categoryArgs, null, null, CatalogQuery.sortOrder(uri, sortOrder));
+    }
+
+    /**
+     * Query the categories of an item by name.
+     */
+    static Cursor queryItemCategories(SQLiteDatabase database, long itemId, String[] projection) {
+        return database.query(CategoryEntry.TABLE_NAME, projection,
+                CategoryEntry._ID + " IN (SELECT " + ItemCategoryEntry.COLUMN_CATEGORY_ID
+                        + " FROM " + ItemCategoryEntry.TABLE_NAME + " WHERE "
+                        + ItemCategoryEntry.COLUMN_ITEM_ID + " = ?)",
+                new String[] { String.valueOf(itemId) }, null, null, ORDER_BY_NAME);
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Bounded in-memory log of the items changed in one store location, so observers can fetch
+ * just the changed rows instead of running their whole query again.
+ *
+ * Every committed write of a known item is appended with the next sequence number and its
+ * operation. The log keeps the latest {@link #DEFAULT_CAPACITY} entries. Writes that change
+ * an unknown set of items, such as a delete by selection or a restore, are recorded as a
+ * reset. A subscriber remembers the sequence its data reflects and asks for the changes
+ * since then; if the log no longer reaches back that far, or a reset came in between, it
+ * has to load everything again.
+ *
+ * Entries are recorded after the write committed and before listeners are notified, so a
+ * subscriber that reads the rows of the changes sees at least that state.
+ */
+public class ChangeFeed {
+
+    /** Operations of a change */
+    public static final int OP_INSERT = 1;
+    public static final int OP_UPDATE = 2;
+    public static final int OP_DELETE = 3;
+
+    /** Number of changes kept by default */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The items changed after a sequence number, each once with its last operation.
+     */
+    public static final class Changes {
+
+        private final long[] ids;
+        private final int[] ops;
+        private final long sequence;
+
+        Changes(long[] ids, int[] ops, long sequence) {
+            this.ids = ids;
+            this.ops = ops;
+            this.sequence = sequence;
+        }
+
+        public int size() {
+            return ids.length;
+        }
+
+        public long getId(int index) {
+            return ids[index];
+        }
+
+        /** One of the OP_ values */
+        public int getOp(int index) {
+            return ops[index];
+        }
+
+        /** Sequence number the subscriber is at once it applied the changes */
+        public long getSequence() {
+            return sequence;
+        }
+    }
+
+    // Ring of the latest entries; the entry with sequence s is at (s - 1) % capacity
+    private final long[] ids;
+    private final int[] ops;
+
+    // Sequence number of the latest entry or reset. Guarded by "this".
+    private long sequence;
+
+    // Sequence number of the latest reset; changes up to it can't be replayed
+    private long resetSequence;
+
+    public ChangeFeed() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ChangeFeed(int capacity) {
+        ids = new long[capacity];
+        ops = new int[capacity];
+    }
+
+    /**
+     * Return the sequence number of the latest change. Data read after this call reflects at
+     * least the changes up to it.
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Record a change of one item.
+     */
+    public synchronized void record(int op, long id) {
+        int slot = (int) (sequence % ids.length);
+        ids[slot] = id;
+        ops[slot] = op;
+        sequence++;
+    }
+
+    /**
+     * Record the same change of several items. Ids of -1, failed inserts, are skipped.
+     */
+    public synchronized void record(int op, long[] changedIds) {
+        for (long id : changedIds) {
+            if (id != -1) {
+                record(op, id);
+            }
+        }
+    }
+
+    /**
+     * Record that any item may have changed, so every subscriber loads everything again.
+     */
+    public synchronized void reset() {
+        sequence++;
+        resetSequence = sequence;
+    }
+
+    /**
+     * Return the items changed after the given sequence number, or null if they are no
+     * longer known and the subscriber has to load everything again.
+     */
+    public synchronized Changes since(long since) {
+        if (!canReplay(since)) {
+            return null;
+        }
+        int count = (int) (sequence - since);
+        long[] changedIds = new long[count];
+        int[] changedOps = new int[count];
+        int size = 0;
+        Set<Long> seen = new HashSet<Long>(count * 2);
+        // Newest first, so the first entry found for an item holds its last operation
+        for (long s = sequence; s > since; s--) {
+            int slot = (int) ((s - 1) % ids.length);
+            if (seen.add(ids[slot])) {
+                changedIds[size] = ids[slot];
+                changedOps[size] = ops[slot];
+                size++;
+            }
+        }
+        return new Changes(Arrays.copyOf(changedIds, size), Arrays.copyOf(changedOps, size),
+                sequence);
+    }
+
+    /**
+     * Return whether the item may have changed after the given sequence number. Cheaper
+     * than {@link #since} for a subscriber that checks one item at a time.
+     */
+    public synchronized boolean changedSince(long id, long since) {
+        if (!canReplay(since)) {
+            return true;
+        }
+        for (long s = sequence; s > since; s--) {
+            if (ids[(int) ((s - 1) % ids.length)] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Whether every change after the sequence number is still in the ring. Call with the
+    // lock on "this" held.
+    private boolean canReplay(long since) {
+        return since >= resetSequence && since <= sequence && sequence - since <= ids.length;
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
+
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.TombstoneEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the change tracking columns (sync id, version, updated_at, dirty) and the tombstone
+ * table up to date for local writes. {@link InventoryProvider} and {@link InventoryRepository}
+ * both write through these methods, so the sync engine sees every local change.
+ */
+public final class ChangeTracking {
+
+    private ChangeTracking() {}
+
+    /**
+     * Add the change tracking columns for a new local item to the values.
+     */
+    public static void stampInsert(ContentValues values) {
+        if (values.getAsString(InventoryEntry.COLUMN_SYNC_ID) == null) {
+            values.put(InventoryEntry.COLUMN_SYNC_ID, newSyncId());
+        }
+        values.put(InventoryEntry.COLUMN_VERSION, 1);
+        values.put(InventoryEntry.COLUMN_UPDATED_AT, System.currentTimeMillis());
+        values.put(InventoryEntry.COLUMN_DIRTY, 1);
+    }
+
+    /**
+     * Return a new identifier for an item, unique across devices.
+     */
+    public static String newSyncId() {
+        return InventorySchema.newSyncId();
+    }
+
+    /**
+     * Update the matching items with the given values as a local change: the version is
+     * incremented, updated_at is set and the rows are marked dirty. The version bump is part
+     * of the same UPDATE statement, so it applies to exactly the rows that were changed.
+     *
+     * @return the number of rows updated
+     */
+    public static int update(SQLiteDatabase database, ContentValues values, String selection,
+                             String[] selectionArgs) {
+        // Columns and bind values come from one pass over the entries, so their order matches
+        List<Map.Entry<String, Object>> entries =
+                new ArrayList<Map.Entry<String, Object>>(values.valueSet());
+
+        StringBuilder sql = new StringBuilder("UPDATE ").append(InventoryEntry.TABLE_NAME)
+                .append(" SET ");
+        for (Map.Entry<String, Object> entry : entries) {
+            sql.append(entry.getKey()).append(" = ?, ");
+        }
+        sql.append(InventoryEntry.COLUMN_VERSION).append(" = ")
+                .append(InventoryEntry.COLUMN_VERSION).append(" + 1, ")
+                .append(InventoryEntry.COLUMN_UPDATED_AT).append(" = ?, ")
+                .append(InventoryEntry.COLUMN_DIRTY).append(" = 1");
+        if (!TextUtils.isEmpty(selection)) {
+            sql.append(" WHERE ").append(selection);
+        }
+
+        SQLiteStatement statement = database.compileStatement(sql.toString());
+        try {
+            int index = 1;
+            for (Map.Entry<String, Object> entry : entries) {
+                bindValue(statement, index++, entry.getValue());
+            }
+            statement.bindLong(index++, System.currentTimeMillis());
+            if (selectionArgs != null) {
+                for (String arg : selectionArgs) {
+                    statement.bindString(index++, arg);
+                }
+            }
+            return statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Add the delta to the quantity of one item as a local change, like {@link #update}.
+     * The sum is computed by SQLite from the stored quantity, so changes made in between
+     * aren't lost, and it isn't made if the quantity would fall below zero or the item is
+     * deleted.
+     *
+     * @return the number of rows updated
+     */
+    public static int adjustQuantity(SQLiteDatabase database, long id, int delta) {
+        SQLiteStatement statement = database.compileStatement("UPDATE "
+                + InventoryEntry.TABLE_NAME + " SET "
+                + InventoryEntry.COLUMN_ITEM_QUANTITY + " = "
+                + InventoryEntry.COLUMN_ITEM_QUANTITY + " + ?, "
+                + InventoryEntry.COLUMN_VERSION + " = " + InventoryEntry.COLUMN_VERSION + " + 1, "
+                + InventoryEntry.COLUMN_UPDATED_AT + " = ?, "
+                + InventoryEntry.COLUMN_DIRTY + " = 1 WHERE "
+                + InventoryEntry._ID + " = ? AND "
+                + InventoryEntry.COLUMN_DELETED + " = 0 AND "
+                + InventoryEntry.COLUMN_ITEM_QUANTITY + " + ? >= 0");
+        try {
+            statement.bindLong(1, delta);
+            statement.bindLong(2, System.currentTimeMillis());
+            statement.bindLong(3, id);
+            statement.bindLong(4, delta);
+            return statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Delete the matching items as a local change, leaving a dirty tombstone for each one so
+     * the deletion is pushed on the next sync. Runs in one transaction.
+     *
+     * @return the number of rows deleted
+     */
+    public static int delete(SQLiteDatabase database, String selection, String[] selectionArgs) {
+        database.beginTransaction();
+        try {
+            writeTombstones(database, InventoryEntry.TABLE_NAME, selection, selectionArgs,
+                    System.currentTimeMillis());
+            int rowsDeleted = database.delete(InventoryEntry.TABLE_NAME, selection, selectionArgs);
+            database.setTransactionSuccessful();
+            return rowsDeleted;
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Mark the matching items deleted as a local change, leaving a dirty tombstone for each
+     * one like {@link #delete}. The rows stay until {@link InventoryPurger} removes them, which
+     * keeps the triggers and index updates of a large delete off the caller's transaction.
+     * Their SKUs are cleared so the SKUs can be given to new items right away. Runs in one
+     * transaction.
+     *
+     * @return the number of rows marked deleted
+     */
+    public static int softDelete(SQLiteDatabase database, String selection,
+                                 String[] selectionArgs) {
+        String where = InventoryEntry.COLUMN_DELETED + " = 0";
+        if (!TextUtils.isEmpty(selection)) {
+            where += " AND (" + selection + ")";
+        }
+        long now = System.currentTimeMillis();
+
+        database.beginTransaction();
+        try {
+            writeTombstones(database, InventoryEntry.TABLE_NAME, where, selectionArgs, now);
+
+            Object[] bindArgs = new Object[1 + (selectionArgs == null ? 0 : selectionArgs.length)];
+            bindArgs[0] = now;
+            if (selectionArgs != null) {
+                System.arraycopy(selectionArgs, 0, bindArgs, 1, selectionArgs.length);
+            }
+            // The tombstone carries the deletion to the sync, so the row itself isn't dirty
+            SQLiteStatement statement = database.compileStatement("UPDATE "
+                    + InventoryEntry.TABLE_NAME + " SET "
+                    + InventoryEntry.COLUMN_DELETED + " = 1, "
+                    + InventoryEntry.COLUMN_ITEM_SKU + " = NULL, "
+                    + InventoryEntry.COLUMN_VERSION + " = " + InventoryEntry.COLUMN_VERSION + " + 1, "
+                    + InventoryEntry.COLUMN_UPDATED_AT + " = ?, "
+                    + InventoryEntry.COLUMN_DIRTY + " = 0 WHERE " + where);
+            int rowsDeleted;
+            try {
+                for (int i = 0; i < bindArgs.length; i++) {
+                    bindValue(statement, i + 1, bindArgs[i]);
+                }
+                rowsDeleted = statement.executeUpdateDelete();
+            } finally {
+                statement.close();
+            }
+            database.setTransactionSuccessful();
+            return rowsDeleted;
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Write a dirty tombstone for each matching row of the given table, which has the
+     * columns of the inventory table, with the version the deletion gives the item.
+     */
+    static void writeTombstones(SQLiteDatabase database, String table, String selection,
+                                String[] selectionArgs, long deletedAt) {
+        Object[] bindArgs = new Object[1 + (selectionArgs == null ? 0 : selectionArgs.length)];
+        bindArgs[0] = deletedAt;
+        if (selectionArgs != null) {
+            System.arraycopy(selectionArgs, 0, bindArgs, 1, selectionArgs.length);
+        }
+        database.execSQL("INSERT OR REPLACE INTO " + TombstoneEntry.TABLE_NAME + " ("
+                + TombstoneEntry.COLUMN_SYNC_ID + ", "
+                + TombstoneEntry.COLUMN_VERSION + ", "
+                + TombstoneEntry.COLUMN_DELETED_AT + ", "
+                + TombstoneEntry.COLUMN_DIRTY + ") SELECT "
+                + InventoryEntry.COLUMN_SYNC_ID + ", "
+                + InventoryEntry.COLUMN_VERSION + " + 1, ?, 1 FROM " + table
+                + (TextUtils.isEmpty(selection) ? "" : " WHERE " + selection), bindArgs);
+    }
+
+    // Bind a ContentValues value with the matching SQLite type
+    static void bindValue(SQLiteStatement statement, int index, Object value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else if (value instanceof Double || value instanceof Float) {
+            statement.bindDouble(index, ((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            statement.bindLong(index, ((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            statement.bindLong(index, (Boolean) value ? 1 : 0);
+        } else if (value instanceof byte[]) {
+            statement.bindBlob(index, (byte[]) value);
+        } else {
+            statement.bindString(index, value.toString());
+        }
+    }
+}
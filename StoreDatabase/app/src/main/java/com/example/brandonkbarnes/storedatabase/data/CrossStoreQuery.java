@@ -0,0 +1,202 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MergeCursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs read-only queries over the inventory of every store location at once.
+ *
+ * The location databases are ATTACHed to a private in-memory connection, so a question like
+ * "stock of item X across all stores" is a single UNION ALL query instead of one query per
+ * file. The connection only ever reads, so writes to each location stay on that location's
+ * own {@link InventoryDbHelper} and never lock the other files.
+ */
+class CrossStoreQuery {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = CrossStoreQuery.class.getSimpleName();
+
+    // SQLite's default limit on attached databases per connection
+    private static final int MAX_ATTACHED = 10;
+
+    // Columns returned when the caller does not pass a projection
+    private static final String[] DEFAULT_PROJECTION = {
+            InventoryEntry.COLUMN_LOCATION,
+            InventoryEntry._ID,
+            InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryEntry.COLUMN_ITEM_QUANTITY,
+            InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME };
+
+    private final Context context;
+
+    // Locations attached to each connection, and the connections themselves. Guarded by "this".
+    private final List<List<String>> attachedGroups = new ArrayList<List<String>>();
+    private final List<SQLiteDatabase> connections = new ArrayList<SQLiteDatabase>();
+
+    CrossStoreQuery(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Query the items of every location that aren't deleted. Each row carries the name of its
+     * location in {@link InventoryEntry#COLUMN_LOCATION}, at its place in the projection or
+     * after the projected columns.
+     *
+     * Up to {@link #MAX_ATTACHED} locations are answered by one statement. With more
+     * locations than that the results of several statements are concatenated, which can't
+     * honor a sort order, so one is rejected.
+     *
+     * @throws IllegalArgumentException if a sort order is given with more than
+     *                                  {@link #MAX_ATTACHED} locations
+     */
+    synchronized Cursor query(String[] projection, String selection, String[] selectionArgs,
+                              String sortOrder) {
+        attachLocations(InventoryDbHelper.listLocations(context));
+
+        if (projection == null || projection.length == 0) {
+            projection = DEFAULT_PROJECTION;
+        }
+
+        if (sortOrder != null && !sortOrder.isEmpty() && statementCount() > 1) {
+            throw new IllegalArgumentException("Sort order not supported across more than "
+                    + MAX_ATTACHED + " locations");
+        }
+
+        List<Cursor> cursors = new ArrayList<Cursor>();
+        for (int i = 0; i < connections.size(); i++) {
+            List<String> group = attachedGroups.get(i);
+            if (group.isEmpty()) {
+                continue;
+            }
+            String sql = buildUnionSql(group, projection, selection, sortOrder);
+            cursors.add(connections.get(i).rawQuery(sql, repeatArgs(selectionArgs, group.size())));
+        }
+        return cursors.size() == 1
+                ? cursors.get(0) : new MergeCursor(cursors.toArray(new Cursor[cursors.size()]));
+    }
+
+    /**
+     * Make sure exactly the given locations are attached. New locations are attached to the
+     * existing connections rather than reopening them, because cursors from earlier queries
+     * may still be reading through those connections.
+     */
+    private void attachLocations(List<String> locations) {
+        for (int i = 0; i < attachedGroups.size(); i++) {
+            List<String> group = attachedGroups.get(i);
+            for (int j = group.size() - 1; j >= 0; j--) {
+                String location = group.get(j);
+                if (!locations.contains(location)) {
+                    // The location's database file was removed
+                    connections.get(i).execSQL("DETACH DATABASE " + schemaName(location));
+                    group.remove(j);
+                }
+            }
+        }
+
+        for (String location : locations) {
+            if (isAttached(location)) {
+                continue;
+            }
+            int last = attachedGroups.size() - 1;
+            if (last < 0 || attachedGroups.get(last).size() >= MAX_ATTACHED) {
+                connections.add(SQLiteDatabase.create(null));
+                attachedGroups.add(new ArrayList<String>());
+                last++;
+            }
+            // Open through the helper first so the file exists and has the current schema
+            InventoryDbHelper.getInstance(context, location).getReadableDatabase();
+            String path = context.getDatabasePath(
+                    InventoryDbHelper.getDatabaseName(location)).getPath();
+            connections.get(last).execSQL("ATTACH DATABASE ? AS " + schemaName(location),
+                    new Object[] { path });
+            attachedGroups.get(last).add(location);
+        }
+    }
+
+    // Number of statements a query takes, one per connection with locations attached
+    private int statementCount() {
+        int count = 0;
+        for (List<String> group : attachedGroups) {
+            if (!group.isEmpty()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean isAttached(String location) {
+        for (List<String> group : attachedGroups) {
+            if (group.contains(location)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String buildUnionSql(List<String> locations, String[] projection,
+                                        String selection, String sortOrder) {
+        boolean projectsLocation = false;
+        for (String column : projection) {
+            projectsLocation |= InventoryEntry.COLUMN_LOCATION.equals(column);
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT * FROM (");
+        for (int i = 0; i < locations.size(); i++) {
+            String location = locations.get(i);
+            if (i > 0) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append("SELECT ");
+            for (int j = 0; j < projection.length; j++) {
+                if (j > 0) {
+                    sql.append(", ");
+                }
+                if (InventoryEntry.COLUMN_LOCATION.equals(projection[j])) {
+                    appendLocation(sql, location);
+                } else {
+                    sql.append(projection[j]);
+                }
+            }
+            if (!projectsLocation) {
+                appendLocation(sql.append(", "), location);
+            }
+            sql.append(" FROM ").append(schemaName(location)).append('.')
+                    .append(InventoryEntry.TABLE_NAME);
+            sql.append(" WHERE ").append(CatalogQuery.notDeleted(selection));
+        }
+        sql.append(')');
+        if (sortOrder != null && !sortOrder.isEmpty()) {
+            sql.append(" ORDER BY ").append(sortOrder);
+        }
+        return sql.toString();
+    }
+
+    // Location names are restricted to [A-Za-z0-9_], so they are safe to inline
+    private static void appendLocation(StringBuilder sql, String location) {
+        sql.append('\'').append(location).append("' AS ").append(InventoryEntry.COLUMN_LOCATION);
+    }
+
+    // The selection is repeated once per location, so its arguments must be too
+    private static String[] repeatArgs(String[] selectionArgs, int times) {
+        if (selectionArgs == null || selectionArgs.length == 0) {
+            return selectionArgs;
+        }
+        String[] args = new String[selectionArgs.length * times];
+        for (int i = 0; i < times; i++) {
+            System.arraycopy(selectionArgs, 0, args, i * selectionArgs.length, selectionArgs.length);
+        }
+        return args;
+    }
+
+    private static String schemaName(String location) {
+        return "loc_" + location;
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.MaintenanceLogEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Housekeeping for one store location's database, meant to run while the device is idle
+ * (see {@link MaintenanceJobService}).
+ *
+ * A run refreshes the query planner statistics, gives free pages back to the file system
+ * with incremental vacuum and runs SQLite's quick check, stopping early when its time budget
+ * is used up. Every run is recorded in the maintenance log with the file size, the number of
+ * free pages and the duration. The writes go through the store's {@link WriteScheduler}, one
+ * vacuum step per write, so the app's writes wait at most one step.
+ */
+public class DatabaseMaintenance {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = DatabaseMaintenance.class.getSimpleName();
+
+    // Time budget of one run, in milliseconds
+    public static final long DEFAULT_BUDGET_MILLIS = 20 * 1000;
+
+    // Pages freed per incremental vacuum step. Writers can get in between the steps.
+    private static final int VACUUM_STEP_PAGES = 256;
+
+    // Number of runs kept in the maintenance log
+    private static final int LOG_SIZE = 100;
+
+    // Conservative rate of a full VACUUM on slow flash. The VACUUM can't be stopped part way,
+    // so converting a database only starts when it should end within the remaining budget.
+    private static final long VACUUM_BYTES_PER_MILLI = 2 * 1024;
+
+    private final InventoryDbHelper dbHelper;
+
+    // Set from another thread to stop a run between steps
+    private volatile boolean cancelled;
+
+    public DatabaseMaintenance(Context context, String location) {
+        this.dbHelper = InventoryDbHelper.getInstance(context.getApplicationContext(), location);
+    }
+
+    /**
+     * Ask a running {@link #run} to stop after its current step.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Run the maintenance steps that fit in the budget, in order of value: statistics, then
+     * vacuum, then the integrity check. Should be called on a background thread.
+     */
+    public MaintenanceReport run(long budgetMillis) {
+        long startedAt = System.currentTimeMillis();
+        long start = SystemClock.elapsedRealtime();
+        long deadline = start + budgetMillis;
+        List<String> steps = new ArrayList<String>();
+        String checkResult = null;
+
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        long pageSize = DatabaseUtils.longForQuery(database, "PRAGMA page_size", null);
+        long sizeBefore = pageCount(database) * pageSize;
+        long freePagesBefore = freePages(database);
+
+        // Planner statistics. PRAGMA optimize only re-analyzes tables that need it.
+        steps.add(submit(new WriteScheduler.Write<String>() {
+            @Override
+            protected String execute(SQLiteDatabase database) {
+                if (SqliteFeatures.supportsOptimize(database)) {
+                    runPragma(database, "PRAGMA optimize");
+                    return "optimize";
+                }
+                database.execSQL("ANALYZE");
+                return "analyze";
+            }
+        }));
+
+        // Give free pages back to the file system
+        if (!cancelled && SystemClock.elapsedRealtime() < deadline) {
+            if (DatabaseUtils.longForQuery(database, "PRAGMA auto_vacuum", null)
+                    != InventoryDbHelper.AUTO_VACUUM_INCREMENTAL) {
+                // Databases created before incremental auto-vacuum, or on API 15, need one
+                // full VACUUM to switch modes. It's left to a later run when it may not fit.
+                if (sizeBefore / VACUUM_BYTES_PER_MILLI
+                        < deadline - SystemClock.elapsedRealtime()) {
+                    submit(new WriteScheduler.Write<Void>() {
+                        @Override
+                        protected Void execute(SQLiteDatabase database) {
+                            // The pending mode only lives on this connection, so set it here
+                            database.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+                            database.execSQL("VACUUM");
+                            return null;
+                        }
+
+                        @Override
+                        protected boolean needsTransaction() {
+                            return false;
+                        }
+                    });
+                    steps.add("vacuum");
+                } else {
+                    Log.i(LOG_TAG, "Converting " + dbHelper.getLocation() + " to incremental"
+                            + " auto-vacuum doesn't fit the budget, deferred");
+                }
+            } else if (freePages(database) > 0) {
+                while (!cancelled && SystemClock.elapsedRealtime() < deadline
+                        && freePages(database) > 0) {
+                    // A write per step, the app's writes queue up between them
+                    submit(new WriteScheduler.Write<Void>() {
+                        @Override
+                        protected Void execute(SQLiteDatabase database) {
+                            runPragma(database, "PRAGMA incremental_vacuum("
+                                    + VACUUM_STEP_PAGES + ")");
+                            return null;
+                        }
+                    });
+                }
+                steps.add("incremental_vacuum");
+            }
+        }
+
+        // Integrity check
+        if (!cancelled && SystemClock.elapsedRealtime() < deadline) {
+            checkResult = DatabaseUtils.stringForQuery(database, "PRAGMA quick_check", null);
+            steps.add("quick_check");
+            if (!"ok".equals(checkResult)) {
+                Log.e(LOG_TAG, "Quick check of " + dbHelper.getLocation() + " failed: "
+                        + checkResult);
+            }
+        }
+
+        MaintenanceReport report = new MaintenanceReport(startedAt,
+                SystemClock.elapsedRealtime() - start, sizeBefore,
+                pageCount(database) * pageSize, freePagesBefore, freePages(database), steps,
+                checkResult);
+        record(report);
+        Log.i(LOG_TAG, "Maintenance of " + dbHelper.getLocation() + ": " + report);
+        return report;
+    }
+
+    /**
+     * Add the run to the maintenance log and drop the oldest entries beyond the log size.
+     */
+    private void record(final MaintenanceReport report) {
+        submit(new WriteScheduler.Write<Void>() {
+            @Override
+            protected Void execute(SQLiteDatabase database) {
+                long id = database.insert(MaintenanceLogEntry.TABLE_NAME, null,
+                        report.toContentValues());
+                database.delete(MaintenanceLogEntry.TABLE_NAME,
+                        MaintenanceLogEntry._ID + " <= ?",
+                        new String[] { String.valueOf(id - LOG_SIZE) });
+                return null;
+            }
+        });
+    }
+
+    // Writes go through the store's scheduler so they queue with the app's writes instead of
+    // contending with them for the write lock
+    private <T> T submit(WriteScheduler.Write<T> write) {
+        return dbHelper.getWriteScheduler().submit(write);
+    }
+
+    private static long pageCount(SQLiteDatabase database) {
+        return DatabaseUtils.longForQuery(database, "PRAGMA page_count", null);
+    }
+
+    private static long freePages(SQLiteDatabase database) {
+        return DatabaseUtils.longForQuery(database, "PRAGMA freelist_count", null);
+    }
+
+    // Step a pragma that may return rows through to completion
+    private static void runPragma(SQLiteDatabase database, String sql) {
+        Cursor cursor = database.rawQuery(sql, null);
+        try {
+            while (cursor.moveToNext()) {
+                // Nothing to read, stepping is what does the work
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.net.Uri;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import com.example.brandonkbarnes.storedatabase.core.CatalogSql;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An items query compiled from the structured parameters of an items URI: the filter
+ * conditions (see {@link InventoryEntry#QUERY_FILTER}) and the catalog's sort, supplier and
+ * include_deleted parameters.
+ *
+ * Every value becomes a query argument, and the conditions are put in a fixed order, so all
+ * URI's with the same fields, operators, sort and projection compile to the same SQL. The SQL
+ * of each such shape is built once and kept in a cache, and since SQLite connections keep
+ * their prepared statements by SQL, repeated queries with new values reuse the prepared
+ * statement as well, see {@link InventoryDbHelper#SQL_CACHE_SIZE}.
+ */
+final class FilterQuery {
+
+    /** Number of query shapes whose SQL is kept */
+    static final int MAX_SHAPES = 64;
+
+    /** Upper bound of a prefix range; sorts after any character a name can hold */
+    static final String PREFIX_END = CatalogSql.PREFIX_END;
+
+    private static final LruCache<String, String> compiledSql =
+            new LruCache<String, String>(MAX_SHAPES);
+
+    /** SQL of the query, the same for every URI of the same shape */
+    final String sql;
+
+    /** Arguments of the query, in the order of their placeholders */
+    final String[] args;
+
+    private FilterQuery(String sql, String[] args) {
+        this.sql = sql;
+        this.args = args;
+    }
+
+    /**
+     * Return whether the URI carries filter conditions.
+     */
+    static boolean hasFilters(Uri uri) {
+        return !uri.getQueryParameters(InventoryEntry.QUERY_FILTER).isEmpty();
+    }
+
+    /**
+     * Compile the query of the URI's filter, sort, supplier and include_deleted parameters.
+     *
+     * @throws IllegalArgumentException if a filter is malformed or not supported
+     */
+    static FilterQuery compile(Uri uri, String[] projection) {
+        List<Condition> conditions = new ArrayList<Condition>();
+        for (String filter : uri.getQueryParameters(InventoryEntry.QUERY_FILTER)) {
+            conditions.add(Condition.parse(uri, filter));
+        }
+        String supplier = uri.getQueryParameter(InventoryEntry.QUERY_SUPPLIER);
+        if (supplier != null) {
+            conditions.add(new Condition(InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME,
+                    InventoryEntry.FILTER_EQ, supplier));
+        }
+        Collections.sort(conditions);
+
+        // The shape is everything that goes into the SQL, which leaves out only the values
+        StringBuilder shape = new StringBuilder();
+        shape.append(projection == null ? "*" : TextUtils.join(",", projection)).append('|');
+        for (Condition condition : conditions) {
+            shape.append(condition.field).append(':').append(condition.operator).append('|');
+        }
+        shape.append(uri.getQueryParameter(InventoryEntry.QUERY_SORT)).append('|')
+                .append(CatalogQuery.includesDeleted(uri));
+
+        String sql = compiledSql.get(shape.toString());
+        if (sql == null) {
+            List<String> where = new ArrayList<String>();
+            for (Condition condition : conditions) {
+                where.add(condition.toSql());
+            }
+            sql = SQLiteQueryBuilder.buildQueryString(false, InventoryEntry.TABLE_NAME,
+                    projection,
+                    CatalogQuery.excludeDeleted(uri, TextUtils.join(" AND ", where)),
+                    null, null, CatalogQuery.sortOrder(uri, null), null);
+            compiledSql.put(shape.toString(), sql);
+        }
+
+        List<String> args = new ArrayList<String>();
+        for (Condition condition : conditions) {
+            condition.addArgs(args);
+        }
+        return new FilterQuery(sql, args.toArray(new String[args.size()]));
+    }
+
+    /**
+     * Run the query.
+     */
+    Cursor query(SQLiteDatabase database) {
+        return database.rawQuery(sql, args);
+    }
+
+    /**
+     * One "field operator value" condition. Sorts by field and operator, then by value, so
+     * the same conditions always produce the same SQL and arguments.
+     */
+    private static final class Condition implements Comparable<Condition> {
+
+        private static final List<String> TEXT_FIELDS = Arrays.asList(
+                InventoryEntry.COLUMN_ITEM_NAME,
+                InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME,
+                InventoryEntry.COLUMN_ITEM_SKU);
+
+        private static final List<String> OPERATORS = Arrays.asList(
+                InventoryEntry.FILTER_EQ,
+                InventoryEntry.FILTER_LT,
+                InventoryEntry.FILTER_LE,
+                InventoryEntry.FILTER_GT,
+                InventoryEntry.FILTER_GE,
+                InventoryEntry.FILTER_PREFIX);
+
+        private static final String[] SQL_OPERATORS = { "=", "<", "<=", ">", ">=", null };
+
+        final String field;
+        final String operator;
+        final String value;
+
+        Condition(String field, String operator, String value) {
+            this.field = field;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        static Condition parse(Uri uri, String filter) {
+            String[] parts = filter.split(":", 3);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Malformed filter " + filter + " in " + uri);
+            }
+            String field = parts[0];
+            String operator = parts[1];
+            String value = parts[2];
+            if (!OPERATORS.contains(operator)) {
+                throw new IllegalArgumentException("Unknown filter operator " + operator
+                        + " in " + uri);
+            }
+
+            if (TEXT_FIELDS.contains(field)) {
+                return new Condition(field, operator, value);
+            }
+            if (InventoryEntry.FILTER_PREFIX.equals(operator)) {
+                throw new IllegalArgumentException("Prefix filter on " + field + " in " + uri);
+            }
+            try {
+                if (InventoryEntry.COLUMN_ITEM_PRICE.equals(field)) {
+                    // The price column holds text like "$1,299.00", accept the same here
+                    return new Condition(field, operator, String.valueOf(
+                            Double.parseDouble(value.replace("$", "").replace(",", ""))));
+                } else if (InventoryEntry.COLUMN_ITEM_QUANTITY.equals(field)) {
+                    return new Condition(field, operator, String.valueOf(Long.parseLong(value)));
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + field + " " + value + " in " + uri);
+            }
+            throw new IllegalArgumentException("Unknown filter field " + field + " in " + uri);
+        }
+
+        /**
+         * Return the SQL of the condition. Each expression matches a catalog index, so the
+         * condition is answered by a seek on that index.
+         */
+        String toSql() {
+            String expression;
+            String placeholder = "?";
+            if (InventoryEntry.COLUMN_ITEM_NAME.equals(field)) {
+                expression = CatalogSql.NAME_NOCASE;
+            } else if (InventoryEntry.COLUMN_ITEM_PRICE.equals(field)) {
+                // Arguments are bound as text, which never equals a number in SQLite
+                expression = CatalogQuery.PRICE_VALUE;
+                placeholder = "CAST(? AS REAL)";
+            } else {
+                expression = field;
+            }
+
+            if (InventoryEntry.FILTER_PREFIX.equals(operator)) {
+                return expression + " >= ? AND " + expression + " < ?";
+            }
+            return expression + " " + SQL_OPERATORS[OPERATORS.indexOf(operator)] + " "
+                    + placeholder;
+        }
+
+        void addArgs(List<String> args) {
+            args.add(value);
+            if (InventoryEntry.FILTER_PREFIX.equals(operator)) {
+                args.add(value + PREFIX_END);
+            }
+        }
+
+        @Override
+        public int compareTo(Condition other) {
+            int order = field.compareTo(other.field);
+            if (order == 0) {
+                order = operator.compareTo(other.operator);
+            }
+            if (order == 0) {
+                order = value.compareTo(other.value);
+            }
+            return order;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Online backup and restore of one store location's database.
+ *
+ * A backup takes a consistent snapshot while {@link InventoryProvider} keeps serving writes,
+ * then gzips it into an archive in fixed-size chunks. Where SQLite supports it the snapshot
+ * is taken with VACUUM INTO on a separate connection, which only needs a read transaction so
+ * writers never wait. On older SQLite versions the database file and its write-ahead log are
+ * copied while holding the write lock, which stalls writers only for the raw file copy; the
+ * copied log is then folded into the snapshot offline.
+ *
+ * A restore unpacks and checks the archive first, then swaps it in for the live database
+ * file with a rename and reopens the {@link InventoryDbHelper}. The swap runs as a write on
+ * the location's {@link WriteScheduler}, between two of the provider's commits.
+ */
+public class InventoryBackup {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = InventoryBackup.class.getSimpleName();
+
+    // Size of the chunks copied and compressed at a time
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    // Files SQLite keeps next to a database file
+    private static final String[] SIDECAR_SUFFIXES = { "-wal", "-shm", "-journal" };
+
+    private final Context context;
+    private final String location;
+    private final InventoryDbHelper dbHelper;
+
+    public InventoryBackup(Context context) {
+        this(context, InventoryContract.DEFAULT_LOCATION);
+    }
+
+    public InventoryBackup(Context context, String location) {
+        this.context = context.getApplicationContext();
+        this.location = location;
+        this.dbHelper = InventoryDbHelper.getInstance(this.context, location);
+    }
+
+    /**
+     * Write a compressed snapshot of the database to the archive file. Should be called on a
+     * background thread. The archive is only replaced once it is complete.
+     */
+    public BackupStats backup(File archive) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        File snapshot = new File(context.getCacheDir(), "backup-" + location + ".db");
+        deleteDatabaseFiles(snapshot);
+
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        boolean vacuumInto = SqliteFeatures.supportsVacuumInto(database);
+        try {
+            long writerStall;
+            if (vacuumInto) {
+                snapshotWithVacuumInto(snapshot);
+                writerStall = 0;
+            } else {
+                writerStall = snapshotWithLockedCopy(database, snapshot);
+            }
+
+            long databaseBytes = snapshot.length();
+            File partial = new File(archive.getPath() + ".tmp");
+            compress(snapshot, partial);
+            if (!partial.renameTo(archive)) {
+                partial.delete();
+                throw new IOException("Could not move backup into place at " + archive);
+            }
+
+            BackupStats stats = new BackupStats(databaseBytes, archive.length(),
+                    SystemClock.elapsedRealtime() - start, writerStall, vacuumInto);
+            Log.i(LOG_TAG, "Backup of " + location + ": " + stats);
+            return stats;
+        } finally {
+            deleteDatabaseFiles(snapshot);
+        }
+    }
+
+    /**
+     * Replace the database with the snapshot in the archive. Should be called on a background
+     * thread. The live database is untouched if the archive can't be read or fails its check.
+     *
+     * Callers holding a {@link SQLiteDatabase} from before the restore must get a new one from
+     * the helper.
+     */
+    public void restore(File archive) throws IOException {
+        File databaseFile = context.getDatabasePath(InventoryDbHelper.getDatabaseName(location));
+        File restored = new File(databaseFile.getPath() + ".restore");
+        deleteDatabaseFiles(restored);
+
+        try {
+            decompress(archive, restored);
+            checkIntegrity(restored);
+            if (!dbHelper.getWriteScheduler().submit(new SwapWrite(databaseFile, restored))) {
+                throw new IOException("Could not move restored database into place");
+            }
+        } finally {
+            deleteDatabaseFiles(restored);
+        }
+
+        Log.i(LOG_TAG, "Restored " + location + " from " + archive);
+        context.getContentResolver().notifyChange(InventoryEntry.CONTENT_URI, null);
+        context.getContentResolver().notifyChange(InventoryEntry.STOCK_CONTENT_URI, null);
+    }
+
+    /**
+     * Swaps the restored file in for the live one. It runs on the location's writer thread,
+     * outside any transaction, so no provider write is in flight while the old file and its
+     * log are removed, and the writes queued behind it go to the restored database.
+     */
+    private final class SwapWrite extends WriteScheduler.Write<Boolean> {
+
+        private final File databaseFile;
+        private final File restored;
+
+        SwapWrite(File databaseFile, File restored) {
+            this.databaseFile = databaseFile;
+            this.restored = restored;
+        }
+
+        @Override
+        protected Boolean execute(SQLiteDatabase database) {
+            // The helper's methods are synchronized on the helper, so holding its lock keeps
+            // readers from reopening the old file while it is being replaced.
+            synchronized (dbHelper) {
+                dbHelper.close();
+                // A log left over from the old database must not be applied to the new one
+                deleteSidecarFiles(databaseFile);
+                if (!restored.renameTo(databaseFile)) {
+                    return false;
+                }
+                // Reopen now, running any upgrade if the backup is from an older version
+                dbHelper.getWritableDatabase();
+                return true;
+            }
+        }
+
+        @Override
+        protected void afterCommit(Boolean swapped) {
+            if (swapped) {
+                // Every item may have a different SKU now, and any other attribute
+                dbHelper.getSkuLookup().invalidate();
+                dbHelper.getChangeFeed().reset();
+            }
+        }
+
+        @Override
+        protected boolean needsTransaction() {
+            return false;
+        }
+    }
+
+    /**
+     * Snapshot with VACUUM INTO on a private connection. It runs as a read transaction, so
+     * the provider's writers carry on while it runs.
+     */
+    private void snapshotWithVacuumInto(File snapshot) {
+        String path = context.getDatabasePath(InventoryDbHelper.getDatabaseName(location)).getPath();
+        SQLiteDatabase connection = SQLiteDatabase.openDatabase(path, null,
+                SQLiteDatabase.OPEN_READWRITE | SQLiteDatabase.ENABLE_WRITE_AHEAD_LOGGING);
+        try {
+            connection.execSQL("VACUUM INTO ?", new Object[] { snapshot.getPath() });
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Snapshot by copying the database file and its write-ahead log while holding the write
+     * lock, so no commit or checkpoint can change them mid-copy. Readers are not blocked.
+     *
+     * @return how long writers were blocked, in milliseconds
+     */
+    private long snapshotWithLockedCopy(SQLiteDatabase database, File snapshot)
+            throws IOException {
+        File databaseFile = new File(database.getPath());
+        File wal = new File(databaseFile.getPath() + "-wal");
+
+        long lockStart = SystemClock.elapsedRealtime();
+        // BEGIN IMMEDIATE takes the write lock without blocking readers
+        database.beginTransactionNonExclusive();
+        try {
+            copyFile(databaseFile, snapshot);
+            if (wal.exists()) {
+                copyFile(wal, new File(snapshot.getPath() + "-wal"));
+            }
+        } finally {
+            // Nothing was written, so ending without marking it successful is fine
+            database.endTransaction();
+        }
+        long writerStall = SystemClock.elapsedRealtime() - lockStart;
+
+        // Opening the copy replays its log. Checkpointing and leaving WAL mode folds the log
+        // into the copy, so the snapshot is a single self-contained file.
+        SQLiteDatabase copy = SQLiteDatabase.openDatabase(snapshot.getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE);
+        try {
+            Cursor cursor = copy.rawQuery("PRAGMA wal_checkpoint", null);
+            cursor.moveToFirst();
+            cursor.close();
+        } finally {
+            copy.close();
+        }
+        deleteSidecarFiles(snapshot);
+        return writerStall;
+    }
+
+    /**
+     * Open the restored file on its own and run SQLite's quick check on it.
+     */
+    private static void checkIntegrity(File file) throws IOException {
+        SQLiteDatabase check;
+        try {
+            check = SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+        } catch (RuntimeException e) {
+            throw new IOException("Backup is not a database", e);
+        }
+        try {
+            String result = DatabaseUtils.stringForQuery(check, "PRAGMA quick_check", null);
+            if (!"ok".equals(result)) {
+                throw new IOException("Backup failed integrity check: " + result);
+            }
+        } finally {
+            check.close();
+        }
+    }
+
+    private static void compress(File source, File archive) throws IOException {
+        InputStream in = new FileInputStream(source);
+        try {
+            OutputStream out = new GZIPOutputStream(new FileOutputStream(archive), CHUNK_SIZE);
+            try {
+                copy(in, out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void decompress(File archive, File target) throws IOException {
+        InputStream in = new GZIPInputStream(new FileInputStream(archive), CHUNK_SIZE);
+        try {
+            OutputStream out = new FileOutputStream(target);
+            try {
+                copy(in, out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void copyFile(File source, File target) throws IOException {
+        InputStream in = new FileInputStream(source);
+        try {
+            OutputStream out = new FileOutputStream(target);
+            try {
+                copy(in, out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            out.write(chunk, 0, read);
+        }
+    }
+
+    private static void deleteDatabaseFiles(File file) {
+        file.delete();
+        deleteSidecarFiles(file);
+    }
+
+    private static void deleteSidecarFiles(File file) {
+        for (String suffix : SIDECAR_SUFFIXES) {
+            new File(file.getPath() + suffix).delete();
+        }
+    }
+}
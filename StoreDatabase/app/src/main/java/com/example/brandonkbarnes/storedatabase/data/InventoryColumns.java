@@ -0,0 +1,41 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.database.Cursor;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+/**
+ * Column indices of the inventory attributes in one particular {@link Cursor}.
+ * Resolving them once per cursor avoids a {@link Cursor#getColumnIndex(String)} string
+ * lookup for every attribute of every row. An index of -1 means the column is not in
+ * the cursor's projection.
+ */
+public final class InventoryColumns {
+
+    public final int id;
+    public final int name;
+    public final int price;
+    public final int quantity;
+    public final int supplierName;
+    public final int supplierEmail;
+    public final int supplierPhone;
+    public final int sku;
+
+    private InventoryColumns(Cursor cursor) {
+        id = cursor.getColumnIndex(InventoryEntry._ID);
+        name = cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_NAME);
+        price = cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_PRICE);
+        quantity = cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_QUANTITY);
+        supplierName = cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME);
+        supplierEmail = cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_SUPPLIER_EMAIL);
+        supplierPhone = cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_SUPPLIER_PHONE);
+        sku = cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_SKU);
+    }
+
+    /**
+     * Resolve the column indices for the given cursor.
+     */
+    public static InventoryColumns of(Cursor cursor) {
+        return new InventoryColumns(cursor);
+    }
+}
@@ -4,6 +4,17 @@ import android.content.ContentResolver;
 import android.net.Uri;
 import android.provider.BaseColumns;
 
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.Categories;
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.CategorySuppliers;
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.ItemCategories;
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.Items;
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.MaintenanceLog;
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.PriceHistory;
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.SyncState;
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.Tombstones;
+
+import java.util.List;
+
 /**
  * Created by Brandon on 12/13/2017.
  */
@@ -24,6 +35,37 @@ public final class InventoryContract {
     //Possible path (appended to base content URI for possible URI's)
     public static final String PATH_INVENTORY = "inventory";
 
+    //Path prefix selecting a store location, e.g. "locations/downtown/inventory"
+    public static final String PATH_LOCATIONS = "locations";
+
+    //Path for the stock of items across all store locations
+    public static final String PATH_STOCK = "stock";
+
+    //Path segment for looking an item up by SKU, e.g. "inventory/sku/012345678905"
+    public static final String PATH_SKU = "sku";
+
+    //Path segment for the distinct suppliers of the items, "inventory/suppliers"
+    public static final String PATH_SUPPLIERS = "suppliers";
+
+    //Path segment for the distinct item names, "inventory/names"
+    public static final String PATH_NAMES = "names";
+
+    //Path segment for price history, "inventory/prices" or "inventory/3/prices" for one item
+    public static final String PATH_PRICES = "prices";
+
+    //Path segment for categories, "inventory/categories", or "inventory/3/categories" for the
+    //categories of one item
+    public static final String PATH_CATEGORIES = "categories";
+
+    //Path segment for the items of a category, "inventory/categories/2/items"
+    public static final String PATH_ITEMS = "items";
+
+    /**
+     * Name of the store location used by URI's without a location segment. Its items live in
+     * the original store database file.
+     */
+    public static final String DEFAULT_LOCATION = "main";
+
     /**
      * Inner class that defines constant values for the inventory database table.
      * Each entry in the table represents a single item.
@@ -33,6 +75,218 @@ public final class InventoryContract {
         //The content URI to access the item data in the provider
         public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_INVENTORY);
 
+        /**
+         * The content URI to query the items of every store location at once. Each row has a
+         * {@link #COLUMN_LOCATION} column naming the location it came from, where the
+         * projection puts it or after the other columns. A sort order is only supported with
+         * up to 10 locations.
+         */
+        public static final Uri STOCK_CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_STOCK);
+
+        /**
+         * The content URI to query the distinct supplier names of the items, in order. Each
+         * row has the {@link #COLUMN_ITEM_SUPPLIER_NAME} and the {@link #_ID} of one of the
+         * supplier's items.
+         */
+        public static final Uri SUPPLIERS_CONTENT_URI = Uri.withAppendedPath(CONTENT_URI, PATH_SUPPLIERS);
+
+        /**
+         * The content URI to query the distinct item names with {@link #QUERY_PREFIX}, in
+         * order ignoring case. Each row has the {@link #COLUMN_ITEM_NAME} and the {@link #_ID}
+         * of one of the items with that name.
+         */
+        public static final Uri NAMES_CONTENT_URI = Uri.withAppendedPath(CONTENT_URI, PATH_NAMES);
+
+        /**
+         * Query parameter of the {@link #CONTENT_URI} selecting the catalog order, one of
+         * {@link #SORT_NAME}, {@link #SORT_PRICE} or {@link #SORT_QUANTITY}. Can't be combined
+         * with a sort order argument.
+         */
+        public static final String QUERY_SORT = "sort";
+
+        /**
+         * Query parameter of the {@link #CONTENT_URI} keeping only the items of one supplier.
+         */
+        public static final String QUERY_SUPPLIER = "supplier";
+
+        /**
+         * Query parameter of the {@link #CONTENT_URI} and item URI's that, set to "true",
+         * includes items that were deleted but not purged yet.
+         */
+        public static final String QUERY_INCLUDE_DELETED = "include_deleted";
+
+        /**
+         * Query parameter of the {@link #CONTENT_URI} holding one condition on the items, as
+         * "field:operator:value". May be repeated, all conditions must hold. The fields are
+         * {@link #COLUMN_ITEM_NAME}, {@link #COLUMN_ITEM_PRICE}, {@link #COLUMN_ITEM_QUANTITY},
+         * {@link #COLUMN_ITEM_SUPPLIER_NAME} and {@link #COLUMN_ITEM_SKU}, and the operators
+         * the FILTER_ values. Can't be combined with a selection or sort order argument, see
+         * {@link #appendFilter}.
+         */
+        public static final String QUERY_FILTER = "filter";
+
+        /**
+         * Query parameter of the {@link #NAMES_CONTENT_URI} and {@link #SUPPLIERS_CONTENT_URI}
+         * keeping only the first few names that start with the value, ignoring case, for
+         * suggestions as the user types, see {@link #buildSuggestionsUri}. Supplier rows then
+         * also have the {@link #COLUMN_ITEM_SUPPLIER_EMAIL} and
+         * {@link #COLUMN_ITEM_SUPPLIER_PHONE} of the supplier's latest item.
+         */
+        public static final String QUERY_PREFIX = "prefix";
+
+        /**
+         * Provider method merging a batch of complete items into a store location, see
+         * {@link ContentResolver#call(Uri, String, String, android.os.Bundle)}. The argument
+         * is the location name, or null for the default location, and the extras hold the
+         * items under {@link #EXTRA_ITEMS}. An item with a SKU updates the item with that SKU,
+         * one without updates the first item of the same name, ignoring case, and supplier.
+         * Items nothing matches are inserted, and items whose values are all the same already
+         * are left alone. The whole batch is one transaction, so running it again changes
+         * nothing. The result holds the counts under {@link #EXTRA_INSERTED},
+         * {@link #EXTRA_UPDATED} and {@link #EXTRA_UNCHANGED}.
+         */
+        public static final String METHOD_MERGE = "merge";
+
+        /** Extra of {@link #METHOD_MERGE} holding the items as a ContentValues array */
+        public static final String EXTRA_ITEMS = "items";
+
+        /** Result of {@link #METHOD_MERGE}: number of items inserted */
+        public static final String EXTRA_INSERTED = "inserted";
+
+        /** Result of {@link #METHOD_MERGE}: number of items updated */
+        public static final String EXTRA_UPDATED = "updated";
+
+        /** Result of {@link #METHOD_MERGE}: number of items that were the same already */
+        public static final String EXTRA_UNCHANGED = "unchanged";
+
+        /**
+         * Provider method adding to the quantity of one item in a store location, e.g. -3 for
+         * three sales, in one UPDATE that reads the stored quantity, so concurrent changes add
+         * up rather than overwrite each other. The argument is the location name, or null for
+         * the default location, and the extras hold {@link #EXTRA_ITEM_ID} and
+         * {@link #EXTRA_QUANTITY_DELTA}. A change that would take the quantity below zero is
+         * not made. The result holds whether it was made under {@link #EXTRA_ADJUSTED} and
+         * the stored quantity afterwards under {@link #EXTRA_QUANTITY}. Throws
+         * IllegalArgumentException if there is no such item.
+         */
+        public static final String METHOD_ADJUST_QUANTITY = "adjust_quantity";
+
+        /** Extra of {@link #METHOD_ADJUST_QUANTITY}: the item id, a long */
+        public static final String EXTRA_ITEM_ID = "item_id";
+
+        /** Extra of {@link #METHOD_ADJUST_QUANTITY}: the amount to add, an int */
+        public static final String EXTRA_QUANTITY_DELTA = "quantity_delta";
+
+        /** Result of {@link #METHOD_ADJUST_QUANTITY}: whether the quantity was changed */
+        public static final String EXTRA_ADJUSTED = "adjusted";
+
+        /** Result of {@link #METHOD_ADJUST_QUANTITY}: the stored quantity afterwards */
+        public static final String EXTRA_QUANTITY = "quantity";
+
+        /** Filter operator: equal to the value. Names are compared ignoring case. */
+        public static final String FILTER_EQ = "eq";
+
+        /** Filter operator: less than the value */
+        public static final String FILTER_LT = "lt";
+
+        /** Filter operator: less than or equal to the value */
+        public static final String FILTER_LE = "le";
+
+        /** Filter operator: greater than the value */
+        public static final String FILTER_GT = "gt";
+
+        /** Filter operator: greater than or equal to the value */
+        public static final String FILTER_GE = "ge";
+
+        /** Filter operator: starts with the value. Text fields only. */
+        public static final String FILTER_PREFIX = "prefix";
+
+        /** Catalog order by name, ignoring case */
+        public static final String SORT_NAME = "name";
+
+        /** Catalog order by price, lowest first */
+        public static final String SORT_PRICE = "price";
+
+        /** Catalog order by quantity, lowest first */
+        public static final String SORT_QUANTITY = "quantity";
+
+        /**
+         * Build the content URI for a sorted and filtered catalog.
+         *
+         * @param sort     one of the SORT_ values, or null for the order the items were added
+         * @param supplier supplier name to filter by, or null for all items
+         */
+        public static Uri buildCatalogUri(String sort, String supplier) {
+            Uri.Builder builder = CONTENT_URI.buildUpon();
+            if (sort != null) {
+                builder.appendQueryParameter(QUERY_SORT, sort);
+            }
+            if (supplier != null) {
+                builder.appendQueryParameter(QUERY_SUPPLIER, supplier);
+            }
+            return builder.build();
+        }
+
+        /**
+         * Add a filter condition to an items URI. The value is passed as a query argument,
+         * never as SQL, so queries that only differ in their values run the same statement.
+         *
+         * @param field    column to filter on, see {@link #QUERY_FILTER}
+         * @param operator one of the FILTER_ values
+         * @param value    value to compare with; a number for price and quantity
+         */
+        public static Uri.Builder appendFilter(Uri.Builder builder, String field,
+                                               String operator, String value) {
+            return builder.appendQueryParameter(QUERY_FILTER, field + ":" + operator + ":" + value);
+        }
+
+        /**
+         * Build the content URI for the names starting with what the user typed.
+         *
+         * @param namesUri {@link #NAMES_CONTENT_URI} or {@link #SUPPLIERS_CONTENT_URI}
+         * @param prefix   start of the names, any case
+         */
+        public static Uri buildSuggestionsUri(Uri namesUri, String prefix) {
+            return namesUri.buildUpon().appendQueryParameter(QUERY_PREFIX, prefix).build();
+        }
+
+        /**
+         * Build the content URI for the items of one store location.
+         *
+         * @param location name of the location, letters, digits and underscores only
+         */
+        public static Uri buildLocationUri(String location) {
+            return BASE_CONTENT_URI.buildUpon()
+                    .appendPath(PATH_LOCATIONS)
+                    .appendPath(location)
+                    .appendPath(PATH_INVENTORY)
+                    .build();
+        }
+
+        /**
+         * Return the store location an items URI belongs to, the default location for the
+         * URI's without a location segment.
+         */
+        public static String getLocation(Uri uri) {
+            List<String> segments = uri.getPathSegments();
+            if (segments.size() < 2 || !PATH_LOCATIONS.equals(segments.get(0))) {
+                return DEFAULT_LOCATION;
+            }
+            return segments.get(1);
+        }
+
+        /**
+         * Build the content URI for the item with the given SKU in the default store location.
+         *
+         * @param sku scanned barcode or stock keeping unit of the item
+         */
+        public static Uri buildSkuUri(String sku) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(PATH_SKU)
+                    .appendPath(sku)
+                    .build();
+        }
+
         /**
          * The MIME type of the {@link #CONTENT_URI} for a list of items.
          */
@@ -45,8 +299,23 @@ public final class InventoryContract {
         public static final String CONTENT_ITEM_TYPE =
                 ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_INVENTORY;
 
+        /**
+         * The MIME type of the {@link #STOCK_CONTENT_URI} for items across all locations.
+         */
+        public static final String CONTENT_STOCK_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_STOCK;
+
+        /**
+         * Columns the item catalog shows. The provider prefetches this projection at startup.
+         */
+        public static final String[] CATALOG_PROJECTION = {
+                InventoryEntry._ID,
+                InventoryEntry.COLUMN_ITEM_NAME,
+                InventoryEntry.COLUMN_ITEM_PRICE,
+                InventoryEntry.COLUMN_ITEM_QUANTITY };
+
         /** Name of database table for inventory */
-        public final static String TABLE_NAME = "inventory";
+        public final static String TABLE_NAME = Items.TABLE;
 
         /**
          * Unique ID number for the item (only for use in the database table).
@@ -60,48 +329,444 @@ public final class InventoryContract {
          *
          * Type: TEXT
          */
-        public final static String COLUMN_ITEM_NAME ="name";
+        public final static String COLUMN_ITEM_NAME = Items.NAME;
 
         /**
          * Price of the item.
          *
          * Type: TEXT
          */
-        public final static String COLUMN_ITEM_PRICE = "price";
+        public final static String COLUMN_ITEM_PRICE = Items.PRICE;
 
         /**
          * Quantity of the item.
          *
          * Type: INTEGER
          */
-        public final static String COLUMN_ITEM_QUANTITY = "quantity";
+        public final static String COLUMN_ITEM_QUANTITY = Items.QUANTITY;
 
         /**
          * Picture of the item.
          *
          * Type: BLOB
          */
-        public final static String COLUMN_ITEM_IMAGE = "image";
+        public final static String COLUMN_ITEM_IMAGE = Items.IMAGE;
 
         /**
          * Item Supplier's name.
          *
          * Type: Text
          */
-        public final static String COLUMN_ITEM_SUPPLIER_NAME = "supplier";
+        public final static String COLUMN_ITEM_SUPPLIER_NAME = Items.SUPPLIER;
 
         /**
          * Item Supplier's email.
          *
          * Type: Text
          */
-        public final static String COLUMN_ITEM_SUPPLIER_EMAIL = "email";
+        public final static String COLUMN_ITEM_SUPPLIER_EMAIL = Items.EMAIL;
 
         /**
          * Item Supplier's phone number.
          *
          * Type: Text
          */
-        public final static String COLUMN_ITEM_SUPPLIER_PHONE = "phone";
+        public final static String COLUMN_ITEM_SUPPLIER_PHONE = Items.PHONE;
+
+        /**
+         * Stock keeping unit of the item, usually its barcode. Unique within a store location,
+         * null if the item has none.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_ITEM_SKU = Items.SKU;
+
+        /**
+         * Store location an item belongs to. Only present in {@link #STOCK_CONTENT_URI} results,
+         * it is not stored in the table.
+         *
+         * Type: Text
+         */
+        public final static String COLUMN_LOCATION = "location";
+
+        /**
+         * Identifier of the item shared with the back office, stable across devices.
+         * Assigned when the item is inserted.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_SYNC_ID = Items.SYNC_ID;
+
+        /**
+         * Version of the item, incremented on every change. Used to resolve sync conflicts.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_VERSION = Items.VERSION;
+
+        /**
+         * Time of the last change to the item, in milliseconds since the epoch.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_UPDATED_AT = Items.UPDATED_AT;
+
+        /**
+         * Whether the item has local changes that were not pushed to the back office yet.
+         * 1 for true, 0 for false.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_DIRTY = Items.DIRTY;
+
+        /**
+         * Whether the item was deleted. Deleted items are hidden from queries and physically
+         * removed by a background purge. 1 for true, 0 for false.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_DELETED = Items.DELETED;
+    }
+
+    /**
+     * Inner class that defines constant values for the price history table. Each entry is
+     * the price of an item during one period. Entries are written by triggers whenever an
+     * item is added or its price changes, in the same transaction as the change.
+     */
+    public static final class PriceHistoryEntry implements BaseColumns {
+
+        /**
+         * The content URI to query the price changes of all items. Use {@link #QUERY_FROM}
+         * and {@link #QUERY_TO} to limit it to a time range.
+         */
+        public static final Uri CONTENT_URI =
+                Uri.withAppendedPath(InventoryEntry.CONTENT_URI, PATH_PRICES);
+
+        /**
+         * Build the content URI for the price history of one item. Use {@link #QUERY_AT} for
+         * its price at a point in time, or {@link #QUERY_FROM} and {@link #QUERY_TO} for the
+         * changes in a time range.
+         */
+        public static Uri buildItemPricesUri(long itemId) {
+            return InventoryEntry.CONTENT_URI.buildUpon()
+                    .appendPath(String.valueOf(itemId))
+                    .appendPath(PATH_PRICES)
+                    .build();
+        }
+
+        /**
+         * Query parameter selecting the one entry valid at a time, in milliseconds since the
+         * epoch.
+         */
+        public static final String QUERY_AT = "at";
+
+        /**
+         * Query parameters selecting the entries whose period started in a time range, from
+         * inclusive and to exclusive, in milliseconds since the epoch. Either can be left out.
+         */
+        public static final String QUERY_FROM = "from";
+        public static final String QUERY_TO = "to";
+
+        /**
+         * The MIME type of price history URI's.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_PRICES;
+
+        /** Name of database table for price history */
+        public final static String TABLE_NAME = PriceHistory.TABLE;
+
+        /**
+         * {@link InventoryEntry#_ID} of the item. The history is kept after the item is deleted.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_ITEM_ID = PriceHistory.ITEM_ID;
+
+        /**
+         * Price of the item during the period, as stored in {@link InventoryEntry#COLUMN_ITEM_PRICE}.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_PRICE = PriceHistory.PRICE;
+
+        /**
+         * Start of the period, in milliseconds since the epoch.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_VALID_FROM = PriceHistory.VALID_FROM;
+
+        /**
+         * End of the period (exclusive), in milliseconds since the epoch. Null for the current
+         * price.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_VALID_TO = PriceHistory.VALID_TO;
+    }
+
+    /**
+     * Inner class that defines constant values for the categories table. Items are put in
+     * any number of categories through the {@link ItemCategoryEntry} table. Each category
+     * keeps the number of items in it, maintained by triggers in the same transaction as the
+     * change, so listing the categories with their counts never reads the items.
+     */
+    public static final class CategoryEntry implements BaseColumns {
+
+        /**
+         * The content URI to list the categories by name, each with the number of items in
+         * it. With the catalog's {@link InventoryEntry#QUERY_SUPPLIER} parameter only that
+         * supplier's items are counted, from counters as well. With
+         * {@link InventoryEntry#QUERY_FILTER} parameters the matching items are counted,
+         * which reads them.
+         */
+        public static final Uri CONTENT_URI =
+                Uri.withAppendedPath(InventoryEntry.CONTENT_URI, PATH_CATEGORIES);
+
+        /**
+         * Build the content URI for the items in a category. Takes the columns of the
+         * inventory table as projection and selection, and the catalog's sort and supplier
+         * parameters.
+         *
+         * @param sort     one of the SORT_ values of {@link InventoryEntry}, or null
+         * @param supplier name of the supplier whose items to keep, or null for all
+         */
+        public static Uri buildItemsUri(long categoryId, String sort, String supplier) {
+            Uri.Builder builder = CONTENT_URI.buildUpon()
+                    .appendPath(String.valueOf(categoryId))
+                    .appendPath(PATH_ITEMS);
+            if (sort != null) {
+                builder.appendQueryParameter(InventoryEntry.QUERY_SORT, sort);
+            }
+            if (supplier != null) {
+                builder.appendQueryParameter(InventoryEntry.QUERY_SUPPLIER, supplier);
+            }
+            return builder.build();
+        }
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a list of categories.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_CATEGORIES;
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a single category.
+         */
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_CATEGORIES;
+
+        /** Name of database table for categories */
+        public final static String TABLE_NAME = Categories.TABLE;
+
+        /**
+         * Name of the category, unique ignoring case.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_NAME = Categories.NAME;
+
+        /**
+         * Number of items in the category that aren't deleted. Maintained by the database.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_ITEM_COUNT = Categories.ITEM_COUNT;
+    }
+
+    /**
+     * Inner class that defines constant values for the table putting items in categories.
+     * Each entry puts one item in one category.
+     */
+    public static final class ItemCategoryEntry {
+
+        /**
+         * Build the content URI for the categories of one item. Insert a
+         * {@link #COLUMN_CATEGORY_ID} to put the item in a category; delete the URI with the
+         * category id appended to take it out again.
+         */
+        public static Uri buildItemCategoriesUri(long itemId) {
+            return InventoryEntry.CONTENT_URI.buildUpon()
+                    .appendPath(String.valueOf(itemId))
+                    .appendPath(PATH_CATEGORIES)
+                    .build();
+        }
+
+        /** Name of database table for the categories of the items */
+        public final static String TABLE_NAME = ItemCategories.TABLE;
+
+        /**
+         * {@link InventoryEntry#_ID} of the item.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_ITEM_ID = ItemCategories.ITEM_ID;
+
+        /**
+         * {@link CategoryEntry#_ID} of the category.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_CATEGORY_ID = ItemCategories.CATEGORY_ID;
+    }
+
+    /**
+     * Inner class that defines constant values for the per supplier item counts of the
+     * categories. Maintained by triggers like {@link CategoryEntry#COLUMN_ITEM_COUNT}.
+     */
+    public static final class CategorySupplierEntry {
+
+        /** Name of database table for the item counts per category and supplier */
+        public final static String TABLE_NAME = CategorySuppliers.TABLE;
+
+        /**
+         * {@link CategoryEntry#_ID} of the category.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_CATEGORY_ID = CategorySuppliers.CATEGORY_ID;
+
+        /**
+         * {@link InventoryEntry#COLUMN_ITEM_SUPPLIER_NAME} of the items counted.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_SUPPLIER = CategorySuppliers.SUPPLIER;
+
+        /**
+         * Number of the supplier's items in the category that aren't deleted.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_ITEM_COUNT = CategorySuppliers.ITEM_COUNT;
+    }
+
+    /**
+     * Inner class that defines constant values for the tombstone table. Each entry records
+     * an item that was deleted, so the deletion can be pushed to the back office.
+     */
+    public static final class TombstoneEntry {
+
+        /** Name of database table for tombstones */
+        public final static String TABLE_NAME = Tombstones.TABLE;
+
+        /**
+         * {@link InventoryEntry#COLUMN_SYNC_ID} of the deleted item.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_SYNC_ID = Tombstones.SYNC_ID;
+
+        /**
+         * Version of the item at deletion, one more than its last stored version.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_VERSION = Tombstones.VERSION;
+
+        /**
+         * Time of the deletion, in milliseconds since the epoch.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_DELETED_AT = Tombstones.DELETED_AT;
+
+        /**
+         * Whether the deletion still needs to be pushed. 1 for true, 0 for false.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_DIRTY = Tombstones.DIRTY;
+    }
+
+    /**
+     * Inner class that defines constant values for the sync state table, a small key/value
+     * store for the sync watermarks.
+     */
+    public static final class SyncStateEntry {
+
+        /** Name of database table for sync state */
+        public final static String TABLE_NAME = SyncState.TABLE;
+
+        /**
+         * Name of the value.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_KEY = SyncState.KEY;
+
+        /**
+         * The value.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_VALUE = SyncState.VALUE;
+    }
+
+    /**
+     * Inner class that defines constant values for the maintenance log table. Each entry
+     * records one run of the background database maintenance.
+     */
+    public static final class MaintenanceLogEntry implements BaseColumns {
+
+        /** Name of database table for the maintenance log */
+        public final static String TABLE_NAME = MaintenanceLog.TABLE;
+
+        /**
+         * Start of the run, in milliseconds since the epoch.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_STARTED_AT = MaintenanceLog.STARTED_AT;
+
+        /**
+         * Duration of the run in milliseconds.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_DURATION = MaintenanceLog.DURATION;
+
+        /**
+         * Size of the database file before the run, in bytes.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SIZE_BEFORE = MaintenanceLog.SIZE_BEFORE;
+
+        /**
+         * Size of the database file after the run, in bytes.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SIZE_AFTER = MaintenanceLog.SIZE_AFTER;
+
+        /**
+         * Number of free pages before the run.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_FREE_PAGES_BEFORE = MaintenanceLog.FREE_PAGES_BEFORE;
+
+        /**
+         * Number of free pages after the run.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_FREE_PAGES_AFTER = MaintenanceLog.FREE_PAGES_AFTER;
+
+        /**
+         * Steps that ran, comma separated (e.g. "optimize,incremental_vacuum,quick_check").
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_STEPS = MaintenanceLog.STEPS;
+
+        /**
+         * Result of the quick check, "ok" if the database is intact, null if it didn't run.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_CHECK_RESULT = MaintenanceLog.CHECK_RESULT;
     }
 }
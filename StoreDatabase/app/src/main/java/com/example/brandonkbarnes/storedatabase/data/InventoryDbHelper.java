@@ -1,10 +1,19 @@
 package com.example.brandonkbarnes.storedatabase.data;
 
 import android.content.Context;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 
-import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema;
 
 /**
  * Created by Brandon on 12/13/2017.
@@ -15,41 +24,232 @@ public class InventoryDbHelper  extends SQLiteOpenHelper{
 
     public static final String LOG_TAG = InventoryDbHelper.class.getSimpleName();
 
-    // Name of the database file
+    // Name of the database file of the default store location
     private static final String DATABASE_NAME = "store.db";
 
-    //Database version.
-    private static final int DATABASE_VERSION = 1;
+    // Database files of the other store locations are named "store_<location>.db"
+    private static final String LOCATION_DATABASE_PREFIX = "store_";
+    private static final String DATABASE_SUFFIX = ".db";
+
+    // Location names end up in file names and SQL schema names, so keep them simple
+    private static final Pattern LOCATION_NAME = Pattern.compile("[A-Za-z0-9_]{1,64}");
+
+    //Database version, see InventorySchema for what each one added.
+    private static final int DATABASE_VERSION = InventorySchema.VERSION;
+
+    /**
+     * Prepared statements kept per connection, the most SQLite allows. Leaves room for the
+     * statements of every query shape cached by {@link FilterQuery} besides the fixed ones.
+     */
+    static final int SQL_CACHE_SIZE = SQLiteDatabase.MAX_SQL_CACHE_SIZE;
+
+    // One helper per location, shared by the provider and the repository so each database
+    // file has one connection pool
+    private static final Map<String, InventoryDbHelper> instances =
+            new HashMap<String, InventoryDbHelper>();
+
+    // Store location whose database this helper opens
+    private final String location;
+
+    // In-memory SKU to id lookup, created on first use
+    private SkuLookup skuLookup;
+
+    // Group commit of the provider's writes, created on first use
+    private WriteScheduler writeScheduler;
+
+    // Background removal of deleted items, created on first use
+    private InventoryPurger purger;
+
+    // Log of the changed items, created on first use
+    private ChangeFeed changeFeed;
+
+    /**
+     * Return the process-wide helper for the default store location.
+     *
+     * @param context of the app
+     */
+    public static InventoryDbHelper getInstance(Context context) {
+        return getInstance(context, InventoryContract.DEFAULT_LOCATION);
+    }
+
+    /**
+     * Return the process-wide helper for the given store location.
+     *
+     * @param context  of the app
+     * @param location name of the store location
+     */
+    public static synchronized InventoryDbHelper getInstance(Context context, String location) {
+        InventoryDbHelper helper = instances.get(location);
+        if (helper == null) {
+            helper = new InventoryDbHelper(context.getApplicationContext(), location);
+            instances.put(location, helper);
+        }
+        return helper;
+    }
+
+    /**
+     * Return the name of the database file holding the items of a store location.
+     */
+    public static String getDatabaseName(String location) {
+        if (!isValidLocation(location)) {
+            throw new IllegalArgumentException("Invalid store location " + location);
+        }
+        if (InventoryContract.DEFAULT_LOCATION.equals(location)) {
+            return DATABASE_NAME;
+        }
+        return LOCATION_DATABASE_PREFIX + location + DATABASE_SUFFIX;
+    }
+
+    /**
+     * Check whether a string can be used as a store location name.
+     */
+    public static boolean isValidLocation(String location) {
+        return location != null && LOCATION_NAME.matcher(location).matches();
+    }
+
+    /**
+     * List the store locations that have a database file, the default location first.
+     */
+    public static List<String> listLocations(Context context) {
+        List<String> locations = new ArrayList<String>();
+        locations.add(InventoryContract.DEFAULT_LOCATION);
+
+        File directory = context.getDatabasePath(DATABASE_NAME).getParentFile();
+        String[] files = directory == null ? null : directory.list();
+        if (files == null) {
+            return locations;
+        }
+        for (String file : files) {
+            if (file.startsWith(LOCATION_DATABASE_PREFIX) && file.endsWith(DATABASE_SUFFIX)) {
+                String location = file.substring(LOCATION_DATABASE_PREFIX.length(),
+                        file.length() - DATABASE_SUFFIX.length());
+                if (isValidLocation(location)
+                        && !InventoryContract.DEFAULT_LOCATION.equals(location)) {
+                    locations.add(location);
+                }
+            }
+        }
+        return locations;
+    }
 
     /**
-     * Constructs a new instance of {@link InventoryDbHelper}.
+     * Constructs a new instance of {@link InventoryDbHelper} for the default store location.
      *
      * @param context of the app
      */
     public InventoryDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, InventoryContract.DEFAULT_LOCATION);
+    }
+
+    /**
+     * Constructs a new instance of {@link InventoryDbHelper} for one store location.
+     *
+     * @param context  of the app
+     * @param location name of the store location
+     */
+    public InventoryDbHelper(Context context, String location) {
+        super(context, getDatabaseName(location), null, DATABASE_VERSION);
+        this.location = location;
+
+        // With a write-ahead log readers and online backups don't block the writer
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setWriteAheadLoggingEnabled(true);
+        }
+    }
+
+    /**
+     * Return the store location whose database this helper opens.
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    // Value of PRAGMA auto_vacuum for incremental mode
+    static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    /**
+     * Switch a new database to incremental auto-vacuum. The mode only changes without a VACUUM
+     * before the first table exists, and Android has created android_metadata by now, but a
+     * VACUUM of that one table is instant. onCreate is too late, it runs inside a transaction
+     * where VACUUM isn't allowed. Called from API 16, older releases leave the conversion to
+     * {@link DatabaseMaintenance}.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        if (!db.isReadOnly() && db.getVersion() == 0 && DatabaseUtils.longForQuery(db,
+                "PRAGMA auto_vacuum", null) != AUTO_VACUUM_INCREMENTAL) {
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+        }
+    }
+
+    //This is called each time the database is opened.
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        db.setMaxSqlCacheSize(SQL_CACHE_SIZE);
     }
 
     //This is called when the database is created for the first time.
     @Override
     public void onCreate(SQLiteDatabase db) {
-        // Create a String that contains the SQL statement to create the inventory table
-        String SQL_CREATE_INVENTORY_TABLE =  "CREATE TABLE " + InventoryEntry.TABLE_NAME + " ("
-                + InventoryEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
-                + InventoryEntry.COLUMN_ITEM_NAME + " TEXT NOT NULL, "
-                + InventoryEntry.COLUMN_ITEM_PRICE + " TEXT NOT NULL, "
-                + InventoryEntry.COLUMN_ITEM_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
-                + InventoryEntry.COLUMN_ITEM_IMAGE + " BLOB, "
-                + InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME + " TEXT NOT NULL, "
-                + InventoryEntry.COLUMN_ITEM_SUPPLIER_EMAIL + " TEXT NOT NULL, "
-                + InventoryEntry.COLUMN_ITEM_SUPPLIER_PHONE + " TEXT NOT NULL);";
-        // Execute the SQL statement
-        db.execSQL(SQL_CREATE_INVENTORY_TABLE);
+        AndroidStorage storage = new AndroidStorage(db);
+        try {
+            InventorySchema.create(storage);
+        } finally {
+            storage.close();
+        }
     }
 
     //This is called when the database needs to be upgraded.
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // The database is still at version 1, so there's nothing to do be done here.
+        AndroidStorage storage = new AndroidStorage(db);
+        try {
+            InventorySchema.upgrade(storage, oldVersion, newVersion);
+        } finally {
+            storage.close();
+        }
+    }
+
+    /**
+     * Return the SKU lookup of this store location, creating it on first use.
+     */
+    public synchronized SkuLookup getSkuLookup() {
+        if (skuLookup == null) {
+            skuLookup = new SkuLookup(this);
+        }
+        return skuLookup;
+    }
+
+    /**
+     * Return the write scheduler of this store location, creating it on first use.
+     */
+    public synchronized WriteScheduler getWriteScheduler() {
+        if (writeScheduler == null) {
+            writeScheduler = new WriteScheduler(this);
+        }
+        return writeScheduler;
+    }
+
+    /**
+     * Return the purger of deleted items of this store location, creating it on first use.
+     */
+    public synchronized InventoryPurger getPurger() {
+        if (purger == null) {
+            purger = new InventoryPurger(this);
+        }
+        return purger;
+    }
+
+    /**
+     * Return the change feed of this store location, creating it on first use.
+     */
+    public synchronized ChangeFeed getChangeFeed() {
+        if (changeFeed == null) {
+            changeFeed = new ChangeFeed();
+        }
+        return changeFeed;
     }
 }
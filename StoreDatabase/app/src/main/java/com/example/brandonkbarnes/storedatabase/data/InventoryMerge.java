@@ -0,0 +1,43 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.brandonkbarnes.storedatabase.core.ItemMerge;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges a batch of items into the inventory table for {@link InventoryProvider}, see
+ * {@link InventoryEntry#METHOD_MERGE}. The merge itself is {@link ItemMerge}, run on the
+ * database through an {@link AndroidStorage} that compiles each statement once for the batch.
+ */
+final class InventoryMerge {
+
+    private InventoryMerge() {}
+
+    /**
+     * Merge the items, which must be valid for an insert, inside the caller's transaction.
+     */
+    static ItemMerge.Result merge(SQLiteDatabase database, ContentValues[] items) {
+        List<Map<String, Object>> values = new ArrayList<Map<String, Object>>(items.length);
+        for (ContentValues item : items) {
+            Map<String, Object> columns = new HashMap<String, Object>(item.size() * 2);
+            for (Map.Entry<String, Object> entry : item.valueSet()) {
+                columns.put(entry.getKey(), entry.getValue());
+            }
+            values.add(columns);
+        }
+
+        AndroidStorage storage = new AndroidStorage(database);
+        try {
+            return ItemMerge.merge(storage, values);
+        } finally {
+            storage.close();
+        }
+    }
+}
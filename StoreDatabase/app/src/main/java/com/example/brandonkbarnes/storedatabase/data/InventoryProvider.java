@@ -6,10 +6,19 @@ import android.content.ContentValues;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.Parcelable;
+import android.text.TextUtils;
 import android.util.Log;
 
+import com.example.brandonkbarnes.storedatabase.StartupTrace;
+import com.example.brandonkbarnes.storedatabase.core.ItemMerge;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.CategoryEntry;
 import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.ItemCategoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.PriceHistoryEntry;
 
 /**
  * Created by Brandon on 12/16/2017.
@@ -27,6 +36,48 @@ public class InventoryProvider extends ContentProvider{
     /** URI matcher code for the content URI for a single item in the inventory table */
     private static final int ITEM_ID = 101;
 
+    /** URI matcher code for the content URI for the item with a given SKU */
+    private static final int ITEM_SKU = 102;
+
+    /** URI matcher code for the content URI for the distinct suppliers of the items */
+    private static final int SUPPLIERS = 103;
+
+    /** URI matcher code for the content URI for the price history of one item */
+    private static final int ITEM_PRICES = 104;
+
+    /** URI matcher code for the content URI for the price changes of all items */
+    private static final int PRICES = 105;
+
+    /** URI matcher code for the content URI for the categories with their item counts */
+    private static final int CATEGORIES = 106;
+
+    /** URI matcher code for the content URI for a single category */
+    private static final int CATEGORY_ID = 107;
+
+    /** URI matcher code for the content URI for the items of a category */
+    private static final int CATEGORY_ITEMS = 108;
+
+    /** URI matcher code for the content URI for the categories of one item */
+    private static final int ITEM_CATEGORIES = 109;
+
+    /** URI matcher code for the content URI for one category of one item */
+    private static final int ITEM_CATEGORY = 110;
+
+    /** URI matcher code for the content URI for the distinct names of the items */
+    private static final int NAMES = 111;
+
+    /** URI matcher code for the content URI for the inventory table of one store location */
+    private static final int LOCATION_ITEM = 200;
+
+    /** URI matcher code for the content URI for a single item of one store location */
+    private static final int LOCATION_ITEM_ID = 201;
+
+    /** URI matcher code for the content URI for the item with a given SKU of one store location */
+    private static final int LOCATION_ITEM_SKU = 202;
+
+    /** URI matcher code for the content URI for the items of all store locations */
+    private static final int STOCK = 300;
+
     /**
      * UriMatcher object to match a content URI to a corresponding code.
      * The input passed into the constructor represents the code to return for the root URI.
@@ -42,43 +93,206 @@ public class InventoryProvider extends ContentProvider{
         //
         // In this case, the "#" wildcard is used where "#" can be substituted for an integer.
         uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_INVENTORY + "/#", ITEM_ID);
+
+        // This URI looks up ONE item by its SKU, e.g. "inventory/sku/012345678905"
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_SKU + "/*", ITEM_SKU);
+
+        // This URI lists the suppliers of the items
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_SUPPLIERS, SUPPLIERS);
+
+        // This URI lists the item names starting with a prefix, "inventory/names?prefix=..."
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_NAMES, NAMES);
+
+        // These URIs read the price history of one item, e.g. "inventory/3/prices?at=...",
+        // and of all items, e.g. "inventory/prices?from=...&to=..."
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/#/" + InventoryContract.PATH_PRICES, ITEM_PRICES);
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_PRICES, PRICES);
+
+        // These URIs list the categories, e.g. "inventory/categories?supplier=...", one
+        // category, the items of a category, e.g. "inventory/categories/2/items?sort=name",
+        // and the categories of an item, e.g. "inventory/3/categories" and
+        // "inventory/3/categories/2"
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_CATEGORIES,
+                CATEGORIES);
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_CATEGORIES + "/#",
+                CATEGORY_ID);
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_CATEGORIES + "/#/"
+                        + InventoryContract.PATH_ITEMS,
+                CATEGORY_ITEMS);
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/#/" + InventoryContract.PATH_CATEGORIES,
+                ITEM_CATEGORIES);
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/#/" + InventoryContract.PATH_CATEGORIES + "/#",
+                ITEM_CATEGORY);
+
+        // The same URIs for one store location, e.g. "locations/downtown/inventory/3".
+        // The "*" wildcard matches the location name.
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_LOCATIONS + "/*/" + InventoryContract.PATH_INVENTORY,
+                LOCATION_ITEM);
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_LOCATIONS + "/*/" + InventoryContract.PATH_INVENTORY + "/#",
+                LOCATION_ITEM_ID);
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_LOCATIONS + "/*/" + InventoryContract.PATH_INVENTORY + "/"
+                        + InventoryContract.PATH_SKU + "/*",
+                LOCATION_ITEM_SKU);
+
+        // This URI is used to read the items of every store location in one query.
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_STOCK, STOCK);
     }
 
-    /** Database helper object */
+    /** Database helper object for the default store location */
     private InventoryDbHelper dbHelper;
 
+    /** Query over the attached databases of all store locations */
+    private CrossStoreQuery crossStoreQuery;
+
+    /** Catalog query started at launch, until the first catalog query takes it */
+    private CatalogPrefetch catalogPrefetch;
+
+    /** Snapshot file of the catalog shown on launch, written again after changes */
+    private CatalogSnapshot catalogSnapshot;
+
     @Override
     public boolean onCreate() {
-        dbHelper = new InventoryDbHelper(getContext());
+        // Providers are created before the application and its first activity, so this is
+        // the earliest point to start the database work of a cold start
+        StartupTrace.mark("provider_created");
+        dbHelper = InventoryDbHelper.getInstance(getContext());
+        crossStoreQuery = new CrossStoreQuery(getContext());
+        catalogPrefetch = new CatalogPrefetch(getContext(), dbHelper);
+        catalogPrefetch.start();
+        catalogSnapshot = new CatalogSnapshot(getContext());
+        catalogSnapshot.start();
+        // Finish removing items deleted in an earlier run
+        dbHelper.getPurger().schedule();
         return true;
     }
 
+    /**
+     * Return the database helper for the store location named in the URI, or the default
+     * location's helper if the URI has no location segment.
+     */
+    private InventoryDbHelper helperFor(Uri uri) {
+        String location = InventoryEntry.getLocation(uri);
+        if (InventoryContract.DEFAULT_LOCATION.equals(location)) {
+            return dbHelper;
+        }
+        if (!InventoryDbHelper.isValidLocation(location)) {
+            throw new IllegalArgumentException("Invalid store location in " + uri);
+        }
+        return InventoryDbHelper.getInstance(getContext(), location);
+    }
+
+    /**
+     * Notify listeners of the given URI, and of the cross-store URI which includes its rows.
+     */
+    private void notifyChange(Uri uri) {
+        // Drop the startup prefetch right away, the observer only hears of this asynchronously
+        catalogPrefetch.discard();
+        getContext().getContentResolver().notifyChange(uri, null);
+        getContext().getContentResolver().notifyChange(InventoryEntry.STOCK_CONTENT_URI, null);
+    }
+
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
                         String sortOrder) {
-        // Get readable database
-        SQLiteDatabase database = dbHelper.getReadableDatabase();
-
         // This cursor will hold the result of the query
         Cursor cursor;
 
         // Figure out if the URI matcher can match the URI to a specific code
         int match = uriMatcher.match(uri);
+        if (match == STOCK) {
+            // For the STOCK code, query the inventory tables of all locations at once.
+            cursor = crossStoreQuery.query(projection, selection, selectionArgs, sortOrder);
+            cursor.setNotificationUri(getContext().getContentResolver(), uri);
+            return cursor;
+        }
+
+        // Get readable database of the store location in the URI
+        InventoryDbHelper helper = helperFor(uri);
+        SQLiteDatabase database = helper.getReadableDatabase();
+
         switch (match) {
             case ITEM:
-                // For the ITEM code, query the inventory table directly with the given
-                // projection, selection, selection arguments, and sort order. The cursor
-                // could contain multiple rows of the inventory table.
-                cursor = database.query(InventoryEntry.TABLE_NAME, projection, selection, selectionArgs,
+                // The first catalog query of a cold start was already run in the background
+                cursor = CatalogQuery.hasParameters(uri) ? null
+                        : catalogPrefetch.take(projection, selection, selectionArgs, sortOrder);
+                if (cursor == null) {
+                    // Otherwise query like any location
+                    cursor = queryItems(database, uri, projection, selection, selectionArgs,
+                            sortOrder);
+                }
+                break;
+            case LOCATION_ITEM:
+                cursor = queryItems(database, uri, projection, selection, selectionArgs,
+                        sortOrder);
+                break;
+            case ITEM_PRICES:
+                // For the ITEM_PRICES code, the item ID is the second to last segment
+                long itemId = Long.parseLong(uri.getPathSegments().get(1));
+                cursor = PriceHistoryQuery.forItem(uri, itemId, projection).query(database);
+                break;
+            case PRICES:
+                cursor = PriceHistoryQuery.forAll(uri, projection).query(database);
+                break;
+            case CATEGORIES:
+                // For the CATEGORIES code, list the categories with the number of items in
+                // each, read from counters rather than by counting the items
+                cursor = CategoryQuery.queryFacets(database, uri);
+                break;
+            case CATEGORY_ID:
+                cursor = database.query(CategoryEntry.TABLE_NAME, projection,
+                        CategoryEntry._ID + "=?",
+                        new String[] { String.valueOf(ContentUris.parseId(uri)) },
                         null, null, sortOrder);
                 break;
+            case CATEGORY_ITEMS:
+                // For the CATEGORY_ITEMS code, the category ID is the second to last segment
+                long categoryId = Long.parseLong(uri.getPathSegments().get(2));
+                cursor = CategoryQuery.queryItems(database, uri, categoryId, projection,
+                        selection, selectionArgs, sortOrder);
+                break;
+            case ITEM_CATEGORIES:
+                cursor = CategoryQuery.queryItemCategories(database,
+                        Long.parseLong(uri.getPathSegments().get(1)), projection);
+                break;
+            case NAMES:
+                // For the NAMES code, suggest the names starting with what the user typed
+                cursor = SuggestionQuery.queryNames(database, requirePrefix(uri));
+                break;
+            case SUPPLIERS:
+                if (uri.getQueryParameter(InventoryEntry.QUERY_PREFIX) != null) {
+                    cursor = SuggestionQuery.querySuppliers(database, requirePrefix(uri));
+                    break;
+                }
+                // For the SUPPLIERS code, list each supplier once. Grouping walks the supplier
+                // index in order.
+                cursor = database.query(InventoryEntry.TABLE_NAME,
+                        new String[] { "MIN(" + InventoryEntry._ID + ") AS " + InventoryEntry._ID,
+                                InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME },
+                        CatalogQuery.SELECTION_NOT_DELETED, null,
+                        InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME, null,
+                        InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME);
+                break;
             case ITEM_ID:
-                // For the PET_ID code, extract out the ID from the URI.
+            case LOCATION_ITEM_ID:
+                // For the ITEM_ID code, extract out the ID from the URI.
                 //
                 // For every "?" in the selection, there needs to be an element in the selection
                 // arguments that will fill in the "?". Since there is 1 question mark in the
                 // selection, there is 1 String in the selection arguments' String array.
-                selection = InventoryEntry._ID + "=?";
+                selection = CatalogQuery.excludeDeleted(uri, InventoryEntry._ID + "=?");
                 selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
 
                 // This will perform a query on the inventory table where the _id equals 3 to return a
@@ -86,6 +300,12 @@ public class InventoryProvider extends ContentProvider{
                 cursor = database.query(InventoryEntry.TABLE_NAME, projection, selection, selectionArgs,
                         null, null, sortOrder);
                 break;
+            case ITEM_SKU:
+            case LOCATION_ITEM_SKU:
+                // For the ITEM_SKU code, resolve the scanned SKU in memory and read the row
+                // by its primary key.
+                cursor = queryBySku(helper, database, projection, uri.getLastPathSegment());
+                break;
             default:
                 throw new IllegalArgumentException("Cannot query unknown URI " + uri);
         }
@@ -97,76 +317,265 @@ public class InventoryProvider extends ContentProvider{
         return cursor;
     }
 
+    private static String requirePrefix(Uri uri) {
+        String prefix = uri.getQueryParameter(InventoryEntry.QUERY_PREFIX);
+        if (prefix == null) {
+            throw new IllegalArgumentException("Missing prefix parameter in " + uri);
+        }
+        return prefix;
+    }
+
+    /**
+     * Return a cursor with the item that has the given SKU, or an empty cursor. The id from
+     * the SKU cache is checked against the row's SKU, so a stale cache entry costs one more
+     * query but never returns the wrong item.
+     */
+    private Cursor queryBySku(InventoryDbHelper helper, SQLiteDatabase database,
+                              String[] projection, String sku) {
+        SkuLookup skuLookup = helper.getSkuLookup();
+        long id = skuLookup.lookup(sku);
+        Cursor cursor = queryIdWithSku(database, projection, id, sku);
+        if (id != SkuIndex.NOT_FOUND && cursor.getCount() == 0) {
+            cursor.close();
+            cursor = queryIdWithSku(database, projection, skuLookup.refresh(sku), sku);
+        }
+        return cursor;
+    }
+
+    private static Cursor queryIdWithSku(SQLiteDatabase database, String[] projection, long id,
+                                         String sku) {
+        // An unknown SKU is looked up with an id no row has, to return an empty cursor with
+        // the right columns
+        return database.query(InventoryEntry.TABLE_NAME, projection,
+                InventoryEntry._ID + "=? AND " + InventoryEntry.COLUMN_ITEM_SKU + "=?",
+                new String[] { String.valueOf(id), sku }, null, null, null);
+    }
+
+    /**
+     * Query the items of a location, with the catalog's URI parameters applied.
+     */
+    private static Cursor queryItems(SQLiteDatabase database, Uri uri, String[] projection,
+                                     String selection, String[] selectionArgs,
+                                     String sortOrder) {
+        // Queries made only of URI parameters run SQL compiled per query shape, with every
+        // value as an argument
+        if (selection == null && sortOrder == null && CatalogQuery.hasParameters(uri)) {
+            return FilterQuery.compile(uri, projection).query(database);
+        }
+        if (FilterQuery.hasFilters(uri)) {
+            throw new IllegalArgumentException(
+                    "Filters can't be combined with a selection or sort order for " + uri);
+        }
+        // Query the inventory table directly with the given projection, selection, selection
+        // arguments, and sort order. The cursor could contain multiple rows of the inventory
+        // table. The catalog's sort and supplier parameters are added as fixed SQL, and
+        // deleted items are left out.
+        return database.query(InventoryEntry.TABLE_NAME, projection,
+                CatalogQuery.selection(uri, selection),
+                CatalogQuery.selectionArgs(uri, selectionArgs),
+                null, null, CatalogQuery.sortOrder(uri, sortOrder));
+    }
+
     @Override
     public Uri insert(Uri uri, ContentValues contentValues) {
         final int match = uriMatcher.match(uri);
         switch (match) {
             case ITEM:
+            case LOCATION_ITEM:
                 return insertItem(uri, contentValues);
+            case CATEGORIES:
+                return insertCategory(uri, contentValues);
+            case ITEM_CATEGORIES:
+                return insertItemCategory(uri, contentValues);
             default:
                 throw new IllegalArgumentException("Insertion is not supported for " + uri);
         }
     }
 
     /**
-     * Insert an item into the database with the given content values. Return the new content URI
-     * for that specific row in the database.
+     * Insert many items into one store location in a single transaction. The transaction only
+     * locks that location's database file, so a bulk load never blocks the other locations.
      */
-    private Uri insertItem(Uri uri, ContentValues values) {
-        // Check that the name is not null
-        String name = values.getAsString(InventoryEntry.COLUMN_ITEM_NAME);
-        if (name == null) {
-            throw new IllegalArgumentException("Item requires a name");
+    @Override
+    public int bulkInsert(final Uri uri, ContentValues[] values) {
+        final int match = uriMatcher.match(uri);
+        switch (match) {
+            case ITEM:
+            case LOCATION_ITEM:
+                break;
+            default:
+                throw new IllegalArgumentException("Bulk insertion is not supported for " + uri);
         }
 
-        // Check that the price is not null
-        String price = values.getAsString(InventoryEntry.COLUMN_ITEM_PRICE);
-        if (price == null) {
-            throw new IllegalArgumentException("Item requires a price");
+        // Validate everything first, so a bad row does not leave a half-applied batch
+        final ContentValues[] trackedValues = new ContentValues[values.length];
+        for (int i = 0; i < values.length; i++) {
+            InventoryValidator.validateInsert(values[i]);
+            trackedValues[i] = new ContentValues(values[i]);
+            ChangeTracking.stampInsert(trackedValues[i]);
         }
 
-        // Check that the quantity is not null and greater than or equal to zero
-        Integer quantity = values.getAsInteger(InventoryEntry.COLUMN_ITEM_QUANTITY);
-        if (quantity == null || quantity < 0) {
-            throw new IllegalArgumentException("Quantity requires valid quantity");
-        }
+        final InventoryDbHelper helper = helperFor(uri);
+        // The write scheduler commits all rows in one transaction
+        return helper.getWriteScheduler().submit(new WriteScheduler.Write<Integer>() {
+            private long[] ids;
+
+            @Override
+            protected Integer execute(SQLiteDatabase database) {
+                ids = new long[trackedValues.length];
+                int rowsInserted = 0;
+                for (int i = 0; i < trackedValues.length; i++) {
+                    ids[i] = database.insert(InventoryEntry.TABLE_NAME, null, trackedValues[i]);
+                    if (ids[i] != -1) {
+                        rowsInserted++;
+                    }
+                }
+                return rowsInserted;
+            }
 
-        // No need to check the image, any value is valid (including null).
+            @Override
+            protected void afterCommit(Integer rowsInserted) {
+                // Only add the SKUs once the rows are committed
+                SkuLookup skuLookup = helper.getSkuLookup();
+                for (int i = 0; i < trackedValues.length; i++) {
+                    if (ids[i] != -1) {
+                        skuLookup.onInserted(
+                                trackedValues[i].getAsString(InventoryEntry.COLUMN_ITEM_SKU), ids[i]);
+                    }
+                }
+                if (rowsInserted != 0) {
+                    helper.getChangeFeed().record(ChangeFeed.OP_INSERT, ids);
+                    notifyChange(uri);
+                }
+            }
+        });
+    }
 
-        // Check that the Supplier's name is not null
-        String supName = values.getAsString(InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME);
-        if (supName == null) {
-            throw new IllegalArgumentException("Item requires a supplier name");
-        }
+    /**
+     * Insert an item into the database with the given content values. Return the new content URI
+     * for that specific row in the database.
+     */
+    private Uri insertItem(final Uri uri, ContentValues values) {
+        // Check that every required attribute is present and valid
+        InventoryValidator.validateInsert(values);
+
+        // Add the sync id, version and timestamp, without changing the caller's values
+        final ContentValues trackedValues = new ContentValues(values);
+        ChangeTracking.stampInsert(trackedValues);
+
+        // Hand the insert to the write scheduler of the store location in the URI, which may
+        // commit it together with other callers' writes
+        final InventoryDbHelper helper = helperFor(uri);
+        long id = helper.getWriteScheduler().submit(new WriteScheduler.Write<Long>() {
+            @Override
+            protected Long execute(SQLiteDatabase database) {
+                // Insert the new item with the given values
+                return database.insert(InventoryEntry.TABLE_NAME, null, trackedValues);
+            }
 
-        // Check that the Supplier's email is not null
-        String supEmail = values.getAsString(InventoryEntry.COLUMN_ITEM_SUPPLIER_EMAIL);
-        if (supEmail == null) {
-            throw new IllegalArgumentException("Item requires a supplier email");
+            @Override
+            protected void afterCommit(Long id) {
+                if (id != -1) {
+                    helper.getSkuLookup().onInserted(
+                            trackedValues.getAsString(InventoryEntry.COLUMN_ITEM_SKU), id);
+                    helper.getChangeFeed().record(ChangeFeed.OP_INSERT, id);
+                    // Notify all listeners that the data has changed for the item content URI
+                    notifyChange(uri);
+                }
+            }
+        });
+        // If the ID is -1, then the insertion failed. Log an error and return null.
+        if (id == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
         }
 
-        // Check that the Supplier's phone is not null
-        String supPhone = values.getAsString(InventoryEntry.COLUMN_ITEM_SUPPLIER_PHONE);
-        if (supPhone == null) {
-            throw new IllegalArgumentException("Item requires a supplier phone number");
-        }
+        // Return the new URI with the ID (of the newly inserted row) appended at the end
+        return ContentUris.withAppendedId(uri, id);
+    }
 
-        // Get writeable database
-        SQLiteDatabase database = dbHelper.getWritableDatabase();
+    /**
+     * Insert a category with the name in the given values. Return the content URI of the
+     * new category, or null if a category of that name exists already.
+     */
+    private Uri insertCategory(Uri uri, ContentValues values) {
+        InventoryValidator.validateCategory(values);
+        final ContentValues categoryValues = new ContentValues(values);
+        long id = helperFor(uri).getWriteScheduler().submit(new WriteScheduler.Write<Long>() {
+            @Override
+            protected Long execute(SQLiteDatabase database) {
+                return database.insert(CategoryEntry.TABLE_NAME, null, categoryValues);
+            }
 
-        // Insert the new item with the given values
-        long id = database.insert(InventoryEntry.TABLE_NAME, null, values);
-        // If the ID is -1, then the insertion failed. Log an error and return null.
+            @Override
+            protected void afterCommit(Long id) {
+                if (id != -1) {
+                    getContext().getContentResolver().notifyChange(CategoryEntry.CONTENT_URI,
+                            null);
+                }
+            }
+        });
         if (id == -1) {
-            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            Log.e(LOG_TAG, "Failed to insert category for " + uri);
             return null;
         }
+        return ContentUris.withAppendedId(CategoryEntry.CONTENT_URI, id);
+    }
 
-        // Notify all listeners that the data has changed for the item content URI
-        getContext().getContentResolver().notifyChange(uri, null);
+    /**
+     * Put the item of the URI in the category given by the values. Return the content URI of
+     * the item's category, or null if the item or category doesn't exist or the item is in
+     * the category already.
+     */
+    private Uri insertItemCategory(final Uri uri, ContentValues values) {
+        final Long categoryId = values.getAsLong(ItemCategoryEntry.COLUMN_CATEGORY_ID);
+        if (categoryId == null) {
+            throw new IllegalArgumentException("Item category requires a category id");
+        }
+        final long itemId = Long.parseLong(uri.getPathSegments().get(1));
+        final InventoryDbHelper helper = helperFor(uri);
+        long rowId = helper.getWriteScheduler().submit(new WriteScheduler.Write<Long>() {
+            @Override
+            protected Long execute(SQLiteDatabase database) {
+                // Without foreign keys, check that both exist; the triggers count the item in
+                SQLiteStatement insert = database.compileStatement("INSERT OR IGNORE INTO "
+                        + ItemCategoryEntry.TABLE_NAME + " ("
+                        + ItemCategoryEntry.COLUMN_ITEM_ID + ", "
+                        + ItemCategoryEntry.COLUMN_CATEGORY_ID + ") SELECT ?1, ?2"
+                        + " WHERE EXISTS (SELECT 1 FROM " + InventoryEntry.TABLE_NAME + " WHERE "
+                        + InventoryEntry._ID + " = ?1 AND " + CatalogQuery.SELECTION_NOT_DELETED
+                        + ") AND EXISTS (SELECT 1 FROM " + CategoryEntry.TABLE_NAME + " WHERE "
+                        + CategoryEntry._ID + " = ?2)");
+                try {
+                    insert.bindLong(1, itemId);
+                    insert.bindLong(2, categoryId);
+                    return insert.executeInsert();
+                } finally {
+                    insert.close();
+                }
+            }
 
-        // Return the new URI with the ID (of the newly inserted row) appended at the end
-        return ContentUris.withAppendedId(uri, id);
+            @Override
+            protected void afterCommit(Long rowId) {
+                if (rowId != -1) {
+                    itemCategoryChanged(helper, itemId);
+                }
+            }
+        });
+        if (rowId == -1) {
+            return null;
+        }
+        return ContentUris.withAppendedId(uri, categoryId);
+    }
+
+    /**
+     * Tell the subscribers of the catalogs and categories that an item changed category.
+     */
+    private void itemCategoryChanged(InventoryDbHelper helper, long itemId) {
+        // Catalogs of a category read the item again and find whether it's still in there
+        helper.getChangeFeed().record(ChangeFeed.OP_UPDATE, itemId);
+        // Covers the category list and the items of each category, which are below it
+        notifyChange(InventoryEntry.CONTENT_URI);
     }
 
     @Override
@@ -175,14 +584,19 @@ public class InventoryProvider extends ContentProvider{
         final int match = uriMatcher.match(uri);
         switch (match) {
             case ITEM:
-                return updateItem(uri, contentValues, selection, selectionArgs);
+            case LOCATION_ITEM:
+                return updateItem(uri, contentValues, selection, selectionArgs, -1);
             case ITEM_ID:
+            case LOCATION_ITEM_ID:
                 // For the ITEM_ID code, extract out the ID from the URI,
                 // so we know which row to update. Selection will be "_id=?" and selection
                 // arguments will be a String array containing the actual ID.
+                long id = ContentUris.parseId(uri);
                 selection = InventoryEntry._ID + "=?";
-                selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
-                return updateItem(uri, contentValues, selection, selectionArgs);
+                selectionArgs = new String[] { String.valueOf(id) };
+                return updateItem(uri, contentValues, selection, selectionArgs, id);
+            case CATEGORY_ID:
+                return updateCategory(uri, contentValues);
             default:
                 throw new IllegalArgumentException("Update is not supported for " + uri);
         }
@@ -192,115 +606,340 @@ public class InventoryProvider extends ContentProvider{
      * Update items in the database with the given content values. Apply the changes to the rows
      * specified in the selection and selection arguments (which could be 0, 1 or more items).
      * Return the number of rows that were successfully updated.
+     *
+     * @param id ID of the single item being updated, or -1 for a selection
      */
-    private int updateItem(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
-        // If the {@link InventoryEntry#COLUMN_ITEM_NAME} key is present,
-        // check that the name value is not null.
-        if (values.containsKey(InventoryEntry.COLUMN_ITEM_NAME)) {
-            String name = values.getAsString(InventoryEntry.COLUMN_ITEM_NAME);
-            if (name == null) {
-                throw new IllegalArgumentException("Item requires a name");
-            }
-        }
+    private int updateItem(final Uri uri, ContentValues values, String selection,
+                           final String[] selectionArgs, final long id) {
+        // Check the attributes that are present. Only those columns are being changed.
+        InventoryValidator.validateUpdate(values);
 
-        // If the {@link InventoryEntry#COLUMN_ITEM_PRICE} key is present,
-        // check that the price is not null.
-        if (values.containsKey(InventoryEntry.COLUMN_ITEM_PRICE)) {
-            String price = values.getAsString(InventoryEntry.COLUMN_ITEM_PRICE);
-            if (price == null) {
-                throw new IllegalArgumentException("Item requires a price");
-            }
+        // If there are no values to update, then don't try to update the database
+        if (values.size() == 0) {
+            return 0;
         }
 
-        // If the {@link InventoryEntry#COLUMN_ITEM_QUANTITY} key is present,
-        // check that the quantity value is valid.
-        if (values.containsKey(InventoryEntry.COLUMN_ITEM_QUANTITY)) {
-            // Check that the quantity is not null and greater than or equal to 0
-            Integer quantity = values.getAsInteger(InventoryEntry.COLUMN_ITEM_QUANTITY);
-            if (quantity == null || quantity < 0) {
-                throw new IllegalArgumentException("Item requires valid quantity");
+        // Copy the values, the caller may reuse them while the write is queued. Deleted items
+        // can't be changed while they wait for the purge.
+        final ContentValues updateValues = new ContentValues(values);
+        final String updateSelection = CatalogQuery.notDeleted(selection);
+        final InventoryDbHelper helper = helperFor(uri);
+        return helper.getWriteScheduler().submit(new WriteScheduler.Write<Integer>() {
+            @Override
+            protected Integer execute(SQLiteDatabase database) {
+                // Perform the update on the database and get the number of rows affected. This
+                // also bumps the version of the changed rows and marks them for the next sync.
+                return ChangeTracking.update(database, updateValues, updateSelection,
+                        selectionArgs);
             }
-        }
 
-        // No need to check the image, any value is valid (including null).
-
-        // If the {@link InventoryEntry#COLUMN_ITEM_SUPPLIER_NAME} key is present,
-        // check that the supplier's name value is not null.
-        if (values.containsKey(InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME)) {
-            String supName = values.getAsString(InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME);
-            if (supName == null) {
-                throw new IllegalArgumentException("Item requires a supplier name");
+            @Override
+            protected void afterCommit(Integer rowsUpdated) {
+                if (rowsUpdated == 0) {
+                    return;
+                }
+                if (updateValues.containsKey(InventoryEntry.COLUMN_ITEM_SKU)) {
+                    if (id == -1) {
+                        // Any number of SKUs may have changed
+                        helper.getSkuLookup().invalidate();
+                    } else {
+                        helper.getSkuLookup().onSkuChanged(id,
+                                updateValues.getAsString(InventoryEntry.COLUMN_ITEM_SKU));
+                    }
+                }
+                // The rows a selection matched aren't known here
+                if (id == -1) {
+                    helper.getChangeFeed().reset();
+                } else {
+                    helper.getChangeFeed().record(ChangeFeed.OP_UPDATE, id);
+                }
+                // If 1 or more rows were updated, then notify all listeners that the data at
+                // the given URI has changed
+                notifyChange(uri);
             }
-        }
+        });
+    }
 
-        // If the {@link InventoryEntry#COLUMN_ITEM_SUPPLIER_EMAIL} key is present,
-        // check that the supplier's email is not null.
-        if (values.containsKey(InventoryEntry.COLUMN_ITEM_SUPPLIER_EMAIL)) {
-            String supEmail = values.getAsString(InventoryEntry.COLUMN_ITEM_SUPPLIER_EMAIL);
-            if (supEmail == null) {
-                throw new IllegalArgumentException("Item requires a supplier email");
+    /**
+     * Rename the category of the URI. Return the number of categories renamed.
+     */
+    private int updateCategory(Uri uri, ContentValues values) {
+        InventoryValidator.validateCategory(values);
+        final ContentValues categoryValues = new ContentValues(values);
+        final String[] args = { String.valueOf(ContentUris.parseId(uri)) };
+        return helperFor(uri).getWriteScheduler().submit(new WriteScheduler.Write<Integer>() {
+            @Override
+            protected Integer execute(SQLiteDatabase database) {
+                return database.update(CategoryEntry.TABLE_NAME, categoryValues,
+                        CategoryEntry._ID + "=?", args);
             }
-        }
 
-        // If the {@link InventoryEntry#COLUMN_ITEM_SUPPLIER_PHONE} key is present,
-        // check that the supplier's phone number value is not null.
-        if (values.containsKey(InventoryEntry.COLUMN_ITEM_SUPPLIER_PHONE)) {
-            String supPhone = values.getAsString(InventoryEntry.COLUMN_ITEM_SUPPLIER_PHONE);
-            if (supPhone == null) {
-                throw new IllegalArgumentException("Item requires a supplier phone number");
+            @Override
+            protected void afterCommit(Integer rowsUpdated) {
+                if (rowsUpdated != 0) {
+                    // Covers the categories listed for each item
+                    notifyChange(InventoryEntry.CONTENT_URI);
+                }
             }
-        }
-
-        // If there are no values to update, then don't try to update the database
-        if (values.size() == 0) {
-            return 0;
-        }
-
-        // Otherwise, get writeable database to update the data
-        SQLiteDatabase database = dbHelper.getWritableDatabase();
-
-        // Perform the update on the database and get the number of rows affected
-        int rowsUpdated = database.update(InventoryEntry.TABLE_NAME, values, selection, selectionArgs);
-        // If 1 or more rows were updated, then notify all listeners that the data at the
-        // given URI has changed
-        if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
-        }
-        // Return the number of rows updated
-        return rowsUpdated;
+        });
     }
 
     @Override
-    public int delete(Uri uri, String selection, String[] selectionArgs) {
-        // Get writeable database
-        SQLiteDatabase database = dbHelper.getWritableDatabase();
-
-        // Track the number of rows that were deleted
-        int rowsDeleted;
-
+    public int delete(final Uri uri, String selection, String[] selectionArgs) {
+        final long id;
         final int match = uriMatcher.match(uri);
         switch (match) {
             case ITEM:
+            case LOCATION_ITEM:
+                // Deleting every item swaps in an empty table instead of deleting row by row
+                if (TextUtils.isEmpty(selection)) {
+                    return deleteAllItems(uri);
+                }
                 // Delete all rows that match the selection and selection args
-                rowsDeleted = database.delete(InventoryEntry.TABLE_NAME, selection, selectionArgs);
+                id = -1;
                 break;
             case ITEM_ID:
+            case LOCATION_ITEM_ID:
                 // Delete a single row given by the ID in the URI
+                id = ContentUris.parseId(uri);
                 selection = InventoryEntry._ID + "=?";
-                selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
-                rowsDeleted = database.delete(InventoryEntry.TABLE_NAME, selection, selectionArgs);
+                selectionArgs = new String[] { String.valueOf(id) };
                 break;
+            case CATEGORY_ID:
+                return deleteCategory(uri);
+            case ITEM_CATEGORY:
+                return deleteItemCategory(uri);
             default:
                 throw new IllegalArgumentException("Deletion is not supported for " + uri);
         }
 
-        // If 1 or more rows were deleted, then notify all listeners that the data at the
-        // given URI has changed
-        if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+        final String deleteSelection = selection;
+        final String[] deleteSelectionArgs = selectionArgs;
+        final InventoryDbHelper helper = helperFor(uri);
+        return helper.getWriteScheduler().submit(new WriteScheduler.Write<Integer>() {
+            @Override
+            protected Integer execute(SQLiteDatabase database) {
+                // Mark the rows deleted, leaving tombstones for the sync. The purger removes
+                // them later.
+                return ChangeTracking.softDelete(database, deleteSelection, deleteSelectionArgs);
+            }
+
+            @Override
+            protected void afterCommit(Integer rowsDeleted) {
+                if (rowsDeleted == 0) {
+                    return;
+                }
+                if (id == -1) {
+                    helper.getSkuLookup().invalidate();
+                    helper.getChangeFeed().reset();
+                } else {
+                    helper.getSkuLookup().onDeleted(id);
+                    helper.getChangeFeed().record(ChangeFeed.OP_DELETE, id);
+                }
+                helper.getPurger().schedule();
+                // If 1 or more rows were deleted, then notify all listeners that the data at
+                // the given URI has changed
+                notifyChange(uri);
+            }
+        });
+    }
+
+    /**
+     * Delete every item of the store location in the URI. Return 1 if there were items, the
+     * wipe doesn't count them.
+     */
+    private int deleteAllItems(final Uri uri) {
+        final InventoryDbHelper helper = helperFor(uri);
+        return helper.getWriteScheduler().submit(new WriteScheduler.Write<Integer>() {
+            @Override
+            protected Integer execute(SQLiteDatabase database) {
+                return InventoryPurger.wipe(database);
+            }
+
+            @Override
+            protected void afterCommit(Integer rowsDeleted) {
+                if (rowsDeleted == 0) {
+                    return;
+                }
+                helper.getSkuLookup().invalidate();
+                helper.getChangeFeed().reset();
+                // Tombstones of the wiped items are written by the purge
+                helper.getPurger().schedule();
+                notifyChange(uri);
+            }
+        });
+    }
+
+    /**
+     * Delete the category of the URI. Its items stay, they are only taken out of it. Return
+     * the number of categories deleted.
+     */
+    private int deleteCategory(Uri uri) {
+        final String[] args = { String.valueOf(ContentUris.parseId(uri)) };
+        final InventoryDbHelper helper = helperFor(uri);
+        return helper.getWriteScheduler().submit(new WriteScheduler.Write<Integer>() {
+            @Override
+            protected Integer execute(SQLiteDatabase database) {
+                // A trigger takes the items out of the category
+                return database.delete(CategoryEntry.TABLE_NAME, CategoryEntry._ID + "=?", args);
+            }
+
+            @Override
+            protected void afterCommit(Integer rowsDeleted) {
+                if (rowsDeleted != 0) {
+                    // The items that were in the category aren't known here
+                    helper.getChangeFeed().reset();
+                    notifyChange(InventoryEntry.CONTENT_URI);
+                }
+            }
+        });
+    }
+
+    /**
+     * Take the item of the URI out of the category of the URI. Return the number of
+     * categories the item was taken out of.
+     */
+    private int deleteItemCategory(Uri uri) {
+        final long itemId = Long.parseLong(uri.getPathSegments().get(1));
+        final String[] args = { String.valueOf(itemId), uri.getLastPathSegment() };
+        final InventoryDbHelper helper = helperFor(uri);
+        return helper.getWriteScheduler().submit(new WriteScheduler.Write<Integer>() {
+            @Override
+            protected Integer execute(SQLiteDatabase database) {
+                return database.delete(ItemCategoryEntry.TABLE_NAME,
+                        ItemCategoryEntry.COLUMN_ITEM_ID + "=? AND "
+                                + ItemCategoryEntry.COLUMN_CATEGORY_ID + "=?", args);
+            }
+
+            @Override
+            protected void afterCommit(Integer rowsDeleted) {
+                if (rowsDeleted != 0) {
+                    itemCategoryChanged(helper, itemId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Run a provider method: {@link InventoryEntry#METHOD_MERGE}, which merges a batch of
+     * items into a store location in one transaction, or
+     * {@link InventoryEntry#METHOD_ADJUST_QUANTITY}, which adds to the quantity of one item.
+     */
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        Uri uri = arg == null ? InventoryEntry.CONTENT_URI : InventoryEntry.buildLocationUri(arg);
+        if (InventoryEntry.METHOD_MERGE.equals(method)) {
+            return merge(uri, extras);
+        } else if (InventoryEntry.METHOD_ADJUST_QUANTITY.equals(method)) {
+            return adjustQuantity(uri, extras);
         }
-        // Return the number of rows deleted
-        return rowsDeleted;
+        return super.call(method, arg, extras);
+    }
+
+    /**
+     * Merge the items of the extras into the store location, see
+     * {@link InventoryEntry#METHOD_MERGE}.
+     */
+    private Bundle merge(final Uri uri, Bundle extras) {
+        Parcelable[] parcels = extras == null ? null
+                : extras.getParcelableArray(InventoryEntry.EXTRA_ITEMS);
+        if (parcels == null) {
+            throw new IllegalArgumentException("Merge requires the items");
+        }
+
+        // Validate everything first, like a bulk insert. The merge sets the change tracking
+        // columns itself.
+        final ContentValues[] items = new ContentValues[parcels.length];
+        for (int i = 0; i < parcels.length; i++) {
+            ContentValues values = (ContentValues) parcels[i];
+            InventoryValidator.validateInsert(values);
+            items[i] = new ContentValues(values);
+            items[i].remove(InventoryEntry.COLUMN_SYNC_ID);
+            items[i].remove(InventoryEntry.COLUMN_VERSION);
+            items[i].remove(InventoryEntry.COLUMN_UPDATED_AT);
+            items[i].remove(InventoryEntry.COLUMN_DIRTY);
+            items[i].remove(InventoryEntry.COLUMN_DELETED);
+        }
+
+        final InventoryDbHelper helper = helperFor(uri);
+        ItemMerge.Result result = helper.getWriteScheduler().submit(
+                new WriteScheduler.Write<ItemMerge.Result>() {
+            @Override
+            protected ItemMerge.Result execute(SQLiteDatabase database) {
+                return InventoryMerge.merge(database, items);
+            }
+
+            @Override
+            protected void afterCommit(ItemMerge.Result result) {
+                // Updated items keep the SKU they were matched by, or have none
+                SkuLookup skuLookup = helper.getSkuLookup();
+                for (int i = 0; i < result.insertedIds.length; i++) {
+                    skuLookup.onInserted(result.insertedSkus[i], result.insertedIds[i]);
+                }
+                helper.getChangeFeed().record(ChangeFeed.OP_INSERT, result.insertedIds);
+                helper.getChangeFeed().record(ChangeFeed.OP_UPDATE, result.updatedIds);
+                // Unchanged items were not written, so there is nothing to notify of
+                if (result.insertedIds.length + result.updatedIds.length != 0) {
+                    notifyChange(uri);
+                }
+            }
+        });
+
+        Bundle counts = new Bundle();
+        counts.putInt(InventoryEntry.EXTRA_INSERTED, result.insertedIds.length);
+        counts.putInt(InventoryEntry.EXTRA_UPDATED, result.updatedIds.length);
+        counts.putInt(InventoryEntry.EXTRA_UNCHANGED, result.unchanged);
+        return counts;
+    }
+
+    /**
+     * Add to the quantity of the item of the extras, see
+     * {@link InventoryEntry#METHOD_ADJUST_QUANTITY}.
+     */
+    private Bundle adjustQuantity(final Uri uri, Bundle extras) {
+        if (extras == null || !extras.containsKey(InventoryEntry.EXTRA_ITEM_ID)) {
+            throw new IllegalArgumentException("Quantity change requires the item id");
+        }
+        final long id = extras.getLong(InventoryEntry.EXTRA_ITEM_ID);
+        final int delta = extras.getInt(InventoryEntry.EXTRA_QUANTITY_DELTA);
+
+        final InventoryDbHelper helper = helperFor(uri);
+        Bundle result = helper.getWriteScheduler().submit(new WriteScheduler.Write<Bundle>() {
+            @Override
+            protected Bundle execute(SQLiteDatabase database) {
+                boolean adjusted = delta != 0
+                        && ChangeTracking.adjustQuantity(database, id, delta) != 0;
+                // Read back in the same transaction, so it's the quantity this change left
+                Cursor cursor = database.rawQuery("SELECT "
+                        + InventoryEntry.COLUMN_ITEM_QUANTITY + " FROM "
+                        + InventoryEntry.TABLE_NAME + " WHERE " + InventoryEntry._ID + " = ? AND "
+                        + CatalogQuery.SELECTION_NOT_DELETED,
+                        new String[] { String.valueOf(id) });
+                try {
+                    if (!cursor.moveToFirst()) {
+                        return null;
+                    }
+                    Bundle quantity = new Bundle();
+                    quantity.putBoolean(InventoryEntry.EXTRA_ADJUSTED, adjusted);
+                    quantity.putInt(InventoryEntry.EXTRA_QUANTITY, cursor.getInt(0));
+                    return quantity;
+                } finally {
+                    cursor.close();
+                }
+            }
+
+            @Override
+            protected void afterCommit(Bundle result) {
+                if (result != null && result.getBoolean(InventoryEntry.EXTRA_ADJUSTED)) {
+                    helper.getChangeFeed().record(ChangeFeed.OP_UPDATE, id);
+                    notifyChange(ContentUris.withAppendedId(uri, id));
+                }
+            }
+        });
+        if (result == null) {
+            throw new IllegalArgumentException("No item with id " + id);
+        }
+        return result;
     }
 
     @Override
@@ -308,9 +947,28 @@ public class InventoryProvider extends ContentProvider{
         final int match = uriMatcher.match(uri);
         switch (match) {
             case ITEM:
+            case LOCATION_ITEM:
+            case SUPPLIERS:
+            case NAMES:
                 return InventoryEntry.CONTENT_LIST_TYPE;
             case ITEM_ID:
+            case LOCATION_ITEM_ID:
+            case ITEM_SKU:
+            case LOCATION_ITEM_SKU:
                 return InventoryEntry.CONTENT_ITEM_TYPE;
+            case STOCK:
+                return InventoryEntry.CONTENT_STOCK_TYPE;
+            case ITEM_PRICES:
+            case PRICES:
+                return PriceHistoryEntry.CONTENT_LIST_TYPE;
+            case CATEGORIES:
+            case ITEM_CATEGORIES:
+                return CategoryEntry.CONTENT_LIST_TYPE;
+            case CATEGORY_ID:
+            case ITEM_CATEGORY:
+                return CategoryEntry.CONTENT_ITEM_TYPE;
+            case CATEGORY_ITEMS:
+                return InventoryEntry.CONTENT_LIST_TYPE;
             default:
                 throw new IllegalStateException("Unknown URI " + uri + " with match " + match);
         }
@@ -0,0 +1,242 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Process;
+import android.util.Log;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.CategoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.CategorySupplierEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.ItemCategoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.PriceHistoryEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes deleted items of one store location in the background.
+ *
+ * Deleting an item only marks it deleted (see {@link ChangeTracking#softDelete}), and deleting
+ * every item moves the whole inventory table aside as a trash table (see {@link #wipe}), so
+ * neither has to update the indexes and run the triggers of each row while the user waits.
+ * This class does that work afterwards, in small batches submitted to the location's
+ * {@link WriteScheduler}, so the purge never holds the write lock for long.
+ */
+public class InventoryPurger {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = InventoryPurger.class.getSimpleName();
+
+    // Trash tables are named with this prefix and the time of the wipe in milliseconds
+    static final String TRASH_PREFIX = "inventory_trash_";
+
+    // Rows removed per write
+    static final int BATCH_SIZE = 200;
+
+    // Time the purge waits before starting and between its writes
+    static final long START_DELAY_MILLIS = 1000;
+    static final long PAUSE_MILLIS = 20;
+
+    private final InventoryDbHelper dbHelper;
+
+    // Guarded by "this"
+    private boolean running;
+    private boolean requested;
+
+    InventoryPurger(InventoryDbHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Start purging in the background, or purge again once done if a purge is running.
+     */
+    public synchronized void schedule() {
+        requested = true;
+        if (running) {
+            return;
+        }
+        running = true;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                purgeLoop();
+            }
+        }, LOG_TAG + "-" + dbHelper.getLocation()).start();
+    }
+
+    private void purgeLoop() {
+        try {
+            // Stay out of the way of the write that scheduled the purge, or of the app's start
+            Thread.sleep(START_DELAY_MILLIS);
+            while (true) {
+                synchronized (this) {
+                    if (!requested) {
+                        running = false;
+                        return;
+                    }
+                    requested = false;
+                }
+                while (purgeBatch()) {
+                    Thread.sleep(PAUSE_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Log.w(LOG_TAG, "Purge interrupted");
+        } catch (RuntimeException e) {
+            // The next delete schedules the purge again
+            Log.e(LOG_TAG, "Purge failed", e);
+        }
+        synchronized (this) {
+            running = false;
+        }
+    }
+
+    /**
+     * Remove one batch of deleted items. Return whether there may be more.
+     */
+    private boolean purgeBatch() {
+        return dbHelper.getWriteScheduler().submit(new WriteScheduler.Write<Boolean>() {
+            @Override
+            protected Boolean execute(SQLiteDatabase database) {
+                // Deleted items already have their tombstones and closed price periods
+                int rowsDeleted = database.delete(InventoryEntry.TABLE_NAME,
+                        InventoryEntry._ID + " IN (SELECT " + InventoryEntry._ID + " FROM "
+                                + InventoryEntry.TABLE_NAME + " WHERE "
+                                + InventoryEntry.COLUMN_DELETED + " = 1 LIMIT " + BATCH_SIZE + ")",
+                        null);
+                if (rowsDeleted != 0) {
+                    return true;
+                }
+
+                String trash = findTrashTable(database);
+                if (trash == null) {
+                    return false;
+                }
+                purgeTrash(database, trash);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Remove one batch of the items of a trash table, dropping the table once it is empty.
+     * The wipe didn't write tombstones or close price periods, so do that here, as of the
+     * time of the wipe.
+     */
+    private static void purgeTrash(SQLiteDatabase database, String table) {
+        long wipedAt = Long.parseLong(table.substring(TRASH_PREFIX.length()));
+        String batch = InventoryEntry._ID + " IN (SELECT " + InventoryEntry._ID + " FROM "
+                + table + " LIMIT " + BATCH_SIZE + ")";
+
+        // Items deleted before the wipe have their tombstones already
+        ChangeTracking.writeTombstones(database, table,
+                CatalogQuery.SELECTION_NOT_DELETED + " AND " + batch, null, wipedAt);
+        database.execSQL("UPDATE " + PriceHistoryEntry.TABLE_NAME + " SET "
+                + PriceHistoryEntry.COLUMN_VALID_TO + " = ? WHERE "
+                + PriceHistoryEntry.COLUMN_VALID_TO + " IS NULL AND "
+                + PriceHistoryEntry.COLUMN_ITEM_ID + " IN (SELECT " + InventoryEntry._ID
+                + " FROM " + table + " LIMIT " + BATCH_SIZE + ")",
+                new Object[] { wipedAt });
+        // Item ids aren't reused, so these never belong to items of the new table
+        database.delete(ItemCategoryEntry.TABLE_NAME, ItemCategoryEntry.COLUMN_ITEM_ID + " IN"
+                + " (SELECT " + InventoryEntry._ID + " FROM " + table + " LIMIT " + BATCH_SIZE
+                + ")", null);
+        if (database.delete(table, batch, null) == 0) {
+            database.execSQL("DROP TABLE " + table);
+        }
+    }
+
+    /**
+     * Delete every item of the store at once, as a local change. Call inside a transaction.
+     *
+     * The inventory table is renamed to a trash table and an empty one is created from the
+     * same schema, so the cost doesn't grow with the number of items beyond dropping the
+     * inventory indexes, which frees their pages without visiting each row. Row ids continue
+     * after the trashed ones, so the price history of old and new items never mixes. The
+     * trash is emptied by {@link #schedule}, which also writes the tombstones for the sync.
+     *
+     * The items aren't counted, which would read every row the wipe avoids reading.
+     *
+     * @return 1 if there were items to delete, else 0
+     */
+    static int wipe(SQLiteDatabase database) {
+        // One seek on the indexes that lead with the deleted flag
+        if (DatabaseUtils.longForQuery(database, "SELECT EXISTS (SELECT 1 FROM "
+                + InventoryEntry.TABLE_NAME + " WHERE " + CatalogQuery.SELECTION_NOT_DELETED
+                + ")", null) == 0) {
+            return 0;
+        }
+
+        // The schema of the table, then of its indexes and triggers, in the order to recreate
+        // them. Indexes created for constraints have no SQL and move with the table. Triggers
+        // of other tables that use the table are recreated too, as a rename would point them
+        // at the trash table.
+        List<String> types = new ArrayList<String>();
+        List<String> names = new ArrayList<String>();
+        List<String> statements = new ArrayList<String>();
+        Cursor cursor = database.rawQuery("SELECT type, name, sql FROM sqlite_master"
+                + " WHERE (tbl_name = ? OR type = 'trigger' AND sql LIKE ?) AND sql IS NOT NULL"
+                + " ORDER BY CASE type WHEN 'table' THEN 0 WHEN 'index' THEN 1 ELSE 2 END",
+                new String[] { InventoryEntry.TABLE_NAME, "%" + InventoryEntry.TABLE_NAME + "%" });
+        try {
+            while (cursor.moveToNext()) {
+                types.add(cursor.getString(0));
+                names.add(cursor.getString(1));
+                statements.add(cursor.getString(2));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        // Index and trigger names must be free for the new table, and the triggers must not
+        // follow the renamed table
+        for (int i = 0; i < types.size(); i++) {
+            if ("index".equals(types.get(i))) {
+                database.execSQL("DROP INDEX " + names.get(i));
+            } else if ("trigger".equals(types.get(i))) {
+                database.execSQL("DROP TRIGGER " + names.get(i));
+            }
+        }
+
+        long wipedAt = System.currentTimeMillis();
+        while (DatabaseUtils.longForQuery(database,
+                "SELECT COUNT(*) FROM sqlite_master WHERE name = ?",
+                new String[] { TRASH_PREFIX + wipedAt }) != 0) {
+            wipedAt++;
+        }
+        String trash = TRASH_PREFIX + wipedAt;
+        database.execSQL("ALTER TABLE " + InventoryEntry.TABLE_NAME + " RENAME TO " + trash);
+        for (String statement : statements) {
+            database.execSQL(statement);
+        }
+
+        // The AUTOINCREMENT counter moved with the renamed table
+        database.execSQL("INSERT INTO sqlite_sequence (name, seq) SELECT ?, seq"
+                + " FROM sqlite_sequence WHERE name = ?",
+                new Object[] { InventoryEntry.TABLE_NAME, trash });
+
+        // No category has items left. The trashed items leave their categories as they are
+        // purged.
+        database.execSQL("UPDATE " + CategoryEntry.TABLE_NAME + " SET "
+                + CategoryEntry.COLUMN_ITEM_COUNT + " = 0");
+        database.delete(CategorySupplierEntry.TABLE_NAME, null, null);
+        return 1;
+    }
+
+    /**
+     * Return the oldest trash table, or null if there is none.
+     */
+    private static String findTrashTable(SQLiteDatabase database) {
+        Cursor cursor = database.rawQuery("SELECT name FROM sqlite_master"
+                + " WHERE type = 'table' AND name LIKE ? ESCAPE '\\' ORDER BY name LIMIT 1",
+                new String[] { TRASH_PREFIX.replace("_", "\\_") + "%" });
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+/**
+ * Typed, in-memory copy of one row of the inventory table.
+ */
+public class InventoryRecord {
+
+    // Row id of a record that has not been written to the database yet
+    public static final long NO_ID = -1;
+
+    private long id = NO_ID;
+    private String name;
+    private String price;
+    private int quantity;
+    private String supplierName;
+    private String supplierEmail;
+    private String supplierPhone;
+    private String sku;
+
+    public InventoryRecord() {}
+
+    public InventoryRecord(String name, String price, int quantity, String supplierName,
+                           String supplierEmail, String supplierPhone) {
+        this.name = name;
+        this.price = price;
+        this.quantity = quantity;
+        this.supplierName = supplierName;
+        this.supplierEmail = supplierEmail;
+        this.supplierPhone = supplierPhone;
+    }
+
+    /**
+     * Read the row the cursor is currently positioned on. Columns missing from the
+     * cursor's projection are left at their defaults.
+     *
+     * @param cursor  positioned on the row to read
+     * @param columns indices resolved once for this cursor
+     */
+    public static InventoryRecord fromCursor(Cursor cursor, InventoryColumns columns) {
+        InventoryRecord record = new InventoryRecord();
+        record.readFrom(cursor, columns);
+        return record;
+    }
+
+    /**
+     * Overwrite this record with the row the cursor is positioned on, so one instance
+     * can be reused while walking a cursor.
+     */
+    public void readFrom(Cursor cursor, InventoryColumns columns) {
+        id = columns.id >= 0 ? cursor.getLong(columns.id) : NO_ID;
+        name = columns.name >= 0 ? cursor.getString(columns.name) : null;
+        price = columns.price >= 0 ? cursor.getString(columns.price) : null;
+        quantity = columns.quantity >= 0 ? cursor.getInt(columns.quantity) : 0;
+        supplierName = columns.supplierName >= 0 ? cursor.getString(columns.supplierName) : null;
+        supplierEmail = columns.supplierEmail >= 0 ? cursor.getString(columns.supplierEmail) : null;
+        supplierPhone = columns.supplierPhone >= 0 ? cursor.getString(columns.supplierPhone) : null;
+        sku = columns.sku >= 0 ? cursor.getString(columns.sku) : null;
+    }
+
+    /**
+     * Convert to {@link ContentValues} for callers that still go through the provider.
+     * The id is never included, the provider takes it from the URI.
+     */
+    public ContentValues toContentValues() {
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_NAME, name);
+        values.put(InventoryEntry.COLUMN_ITEM_PRICE, price);
+        values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME, supplierName);
+        values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER_EMAIL, supplierEmail);
+        values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER_PHONE, supplierPhone);
+        values.put(InventoryEntry.COLUMN_ITEM_SKU, sku);
+        return values;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getPrice() {
+        return price;
+    }
+
+    public void setPrice(String price) {
+        this.price = price;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public String getSupplierName() {
+        return supplierName;
+    }
+
+    public void setSupplierName(String supplierName) {
+        this.supplierName = supplierName;
+    }
+
+    public String getSupplierEmail() {
+        return supplierEmail;
+    }
+
+    public void setSupplierEmail(String supplierEmail) {
+        this.supplierEmail = supplierEmail;
+    }
+
+    public String getSupplierPhone() {
+        return supplierPhone;
+    }
+
+    public void setSupplierPhone(String supplierPhone) {
+        this.supplierPhone = supplierPhone;
+    }
+
+    /**
+     * Return the item's SKU, or null if it has none.
+     */
+    public String getSku() {
+        return sku;
+    }
+
+    public void setSku(String sku) {
+        this.sku = sku;
+    }
+}
@@ -0,0 +1,342 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * End-of-day reports of one store location, written as CSV files: the stock value by
+ * supplier, the items out of stock and the items holding the most stock value.
+ *
+ * The reports never hold the inventory in memory. Sums and the ranking are computed by
+ * SQLite from the covering catalog indexes, and the rows are read in chunks of a fixed size,
+ * each chunk continuing after the last row of the one before, and written out as they are
+ * read. Memory use is the same for a thousand items as for a million. Each chunk is read on
+ * its own, so items changed while a report runs count with the state they had when their
+ * chunk was read.
+ */
+public class InventoryReport {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = InventoryReport.class.getSimpleName();
+
+    /** Names of the reports, as passed to the {@link ProgressListener} and used for the files */
+    public static final String REPORT_VALUATION = "valuation";
+    public static final String REPORT_OUT_OF_STOCK = "out_of_stock";
+    public static final String REPORT_TOP_HOLDINGS = "top_holdings";
+
+    /** Number of items in the top holdings report */
+    public static final int DEFAULT_TOP_HOLDINGS = 50;
+
+    // Rows read per query: suppliers for the valuation, items for the out of stock list
+    private static final int CHUNK_SIZE = 500;
+
+    private static final String SQL_VALUE =
+            CatalogQuery.PRICE_VALUE + " * " + InventoryEntry.COLUMN_ITEM_QUANTITY;
+
+    private static final String SQL_COUNT_ITEMS = "SELECT COUNT(*) FROM "
+            + InventoryEntry.TABLE_NAME + " WHERE " + CatalogQuery.SELECTION_NOT_DELETED;
+
+    private static final String SQL_COUNT_OUT_OF_STOCK = SQL_COUNT_ITEMS + " AND "
+            + InventoryEntry.COLUMN_ITEM_QUANTITY + " = 0";
+
+    // Grouped in the order of the supplier index, so SQLite sums one supplier at a time
+    // without sorting. The second form continues after the last supplier of a chunk.
+    private static final String SQL_VALUATION = "SELECT "
+            + InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME + ", COUNT(*), TOTAL("
+            + InventoryEntry.COLUMN_ITEM_QUANTITY + "), TOTAL(" + SQL_VALUE + ") FROM "
+            + InventoryEntry.TABLE_NAME + " WHERE " + CatalogQuery.SELECTION_NOT_DELETED
+            + "%s GROUP BY " + InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME
+            + " ORDER BY " + InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME + " LIMIT " + CHUNK_SIZE;
+    private static final String SQL_VALUATION_FIRST = String.format(SQL_VALUATION, "");
+    private static final String SQL_VALUATION_NEXT = String.format(SQL_VALUATION,
+            " AND " + InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME + " > ?");
+
+    // In the order of the quantity index, which ends with the name, the price and the id, so
+    // a chunk starts with a seek to the name it continues at
+    private static final String SQL_OUT_OF_STOCK = "SELECT "
+            + InventoryEntry._ID + ", "
+            + InventoryEntry.COLUMN_ITEM_NAME + ", "
+            + InventoryEntry.COLUMN_ITEM_PRICE + ", "
+            + InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME + " FROM " + InventoryEntry.TABLE_NAME
+            + " WHERE " + CatalogQuery.SELECTION_NOT_DELETED + " AND "
+            + InventoryEntry.COLUMN_ITEM_QUANTITY + " = 0%s ORDER BY "
+            + InventoryEntry.COLUMN_ITEM_NAME + ", "
+            + InventoryEntry.COLUMN_ITEM_PRICE + ", "
+            + InventoryEntry._ID + " LIMIT " + CHUNK_SIZE;
+    private static final String SQL_OUT_OF_STOCK_FIRST = String.format(SQL_OUT_OF_STOCK, "");
+    private static final String SQL_OUT_OF_STOCK_NEXT = String.format(SQL_OUT_OF_STOCK,
+            " AND " + InventoryEntry.COLUMN_ITEM_NAME + " >= ?1 AND ("
+                    + InventoryEntry.COLUMN_ITEM_NAME + " > ?1 OR "
+                    + InventoryEntry.COLUMN_ITEM_PRICE + " > ?2 OR ("
+                    + InventoryEntry.COLUMN_ITEM_PRICE + " = ?2 AND "
+                    + InventoryEntry._ID + " > ?3))");
+
+    // SQLite keeps only the best rows seen so far while sorting for a LIMIT
+    private static final String SQL_TOP_HOLDINGS = "SELECT "
+            + InventoryEntry._ID + ", "
+            + InventoryEntry.COLUMN_ITEM_NAME + ", "
+            + InventoryEntry.COLUMN_ITEM_PRICE + ", "
+            + InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+            + SQL_VALUE + " AS value FROM " + InventoryEntry.TABLE_NAME
+            + " WHERE " + CatalogQuery.SELECTION_NOT_DELETED + " ORDER BY value DESC LIMIT ?";
+
+    // Size of the buffer between the report and its file
+    private static final int WRITE_BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Receives the progress of {@link #run}, on the thread running the reports.
+     */
+    public interface ProgressListener {
+        /**
+         * Called after each chunk of a report with the rows done so far and the rows the
+         * report covers in all. The numbers are items for the valuation and the out of stock
+         * list, and ranked items for the top holdings.
+         */
+        void onProgress(String report, long done, long total);
+    }
+
+    private final InventoryDbHelper dbHelper;
+    private final int topHoldings;
+    private ProgressListener listener;
+
+    // Set from another thread to stop a run after its current chunk
+    private volatile boolean cancelled;
+
+    public InventoryReport(Context context, String location) {
+        this(context, location, DEFAULT_TOP_HOLDINGS);
+    }
+
+    public InventoryReport(Context context, String location, int topHoldings) {
+        this.dbHelper = InventoryDbHelper.getInstance(context.getApplicationContext(), location);
+        this.topHoldings = topHoldings;
+    }
+
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Ask a running {@link #run} to stop after its current chunk.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Write the reports to "valuation.csv", "out_of_stock.csv" and "top_holdings.csv" in the
+     * directory. Should be called on a background thread. Each file is only replaced once its
+     * report is complete, so a cancelled run leaves the files of the reports it didn't finish
+     * as they were.
+     */
+    public ReportStats run(File directory) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        SQLiteDatabase database = dbHelper.getReadableDatabase();
+        ReportStats stats = new ReportStats();
+
+        Writer out = open(directory, REPORT_VALUATION);
+        try {
+            writeValuation(database, out, stats);
+        } finally {
+            out.close();
+        }
+        if (!cancelled) {
+            commit(directory, REPORT_VALUATION);
+            out = open(directory, REPORT_OUT_OF_STOCK);
+            try {
+                writeOutOfStock(database, out, stats);
+            } finally {
+                out.close();
+            }
+        }
+        if (!cancelled) {
+            commit(directory, REPORT_OUT_OF_STOCK);
+            out = open(directory, REPORT_TOP_HOLDINGS);
+            try {
+                writeTopHoldings(database, out, stats);
+            } finally {
+                out.close();
+            }
+        }
+        if (!cancelled) {
+            commit(directory, REPORT_TOP_HOLDINGS);
+        } else {
+            // Drop the partial file of the report that was stopped
+            for (String report : new String[] {
+                    REPORT_VALUATION, REPORT_OUT_OF_STOCK, REPORT_TOP_HOLDINGS }) {
+                partialFile(directory, report).delete();
+            }
+        }
+
+        stats.finish(SystemClock.elapsedRealtime() - start, !cancelled);
+        Log.i(LOG_TAG, "Reports of " + dbHelper.getLocation() + ": " + stats);
+        return stats;
+    }
+
+    /**
+     * Stock value by supplier, then the total over all suppliers.
+     */
+    private void writeValuation(SQLiteDatabase database, Writer out, ReportStats stats)
+            throws IOException {
+        long total = DatabaseUtils.longForQuery(database, SQL_COUNT_ITEMS, null);
+        writeRow(out, "supplier", "items", "units", "value");
+
+        long items = 0;
+        double units = 0;
+        double value = 0;
+        String lastSupplier = null;
+        while (!cancelled) {
+            Cursor cursor = lastSupplier == null
+                    ? database.rawQuery(SQL_VALUATION_FIRST, null)
+                    : database.rawQuery(SQL_VALUATION_NEXT, new String[] { lastSupplier });
+            int rows = cursor.getCount();
+            try {
+                while (cursor.moveToNext()) {
+                    lastSupplier = cursor.getString(0);
+                    items += cursor.getLong(1);
+                    units += cursor.getDouble(2);
+                    value += cursor.getDouble(3);
+                    writeRow(out, lastSupplier, String.valueOf(cursor.getLong(1)),
+                            formatUnits(cursor.getDouble(2)), formatMoney(cursor.getDouble(3)));
+                    stats.suppliers++;
+                }
+            } finally {
+                cursor.close();
+            }
+            progress(REPORT_VALUATION, items, total);
+            if (rows < CHUNK_SIZE) {
+                break;
+            }
+        }
+        writeRow(out, "", String.valueOf(items), formatUnits(units), formatMoney(value));
+        stats.items = items;
+        stats.units = units;
+        stats.value = value;
+    }
+
+    /**
+     * Items with no stock left, by name.
+     */
+    private void writeOutOfStock(SQLiteDatabase database, Writer out, ReportStats stats)
+            throws IOException {
+        long total = DatabaseUtils.longForQuery(database, SQL_COUNT_OUT_OF_STOCK, null);
+        writeRow(out, "id", "name", "price", "supplier");
+
+        long done = 0;
+        String[] last = null;
+        while (!cancelled) {
+            Cursor cursor = last == null
+                    ? database.rawQuery(SQL_OUT_OF_STOCK_FIRST, null)
+                    : database.rawQuery(SQL_OUT_OF_STOCK_NEXT, last);
+            int rows = cursor.getCount();
+            try {
+                while (cursor.moveToNext()) {
+                    writeRow(out, cursor.getString(0), cursor.getString(1),
+                            cursor.getString(2), cursor.getString(3));
+                    if (cursor.isLast()) {
+                        last = new String[] {
+                                cursor.getString(1), cursor.getString(2), cursor.getString(0) };
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+            done += rows;
+            progress(REPORT_OUT_OF_STOCK, done, Math.max(done, total));
+            if (rows < CHUNK_SIZE) {
+                break;
+            }
+        }
+        stats.outOfStock = done;
+    }
+
+    /**
+     * The items holding the most stock value, highest first.
+     */
+    private void writeTopHoldings(SQLiteDatabase database, Writer out, ReportStats stats)
+            throws IOException {
+        writeRow(out, "id", "name", "price", "quantity", "value");
+        Cursor cursor = database.rawQuery(SQL_TOP_HOLDINGS,
+                new String[] { String.valueOf(topHoldings) });
+        try {
+            while (cursor.moveToNext()) {
+                writeRow(out, cursor.getString(0), cursor.getString(1), cursor.getString(2),
+                        cursor.getString(3), formatMoney(cursor.getDouble(4)));
+            }
+            stats.topHoldings = cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+        progress(REPORT_TOP_HOLDINGS, stats.topHoldings, stats.topHoldings);
+    }
+
+    private void progress(String report, long done, long total) {
+        ProgressListener current = listener;
+        if (current != null) {
+            current.onProgress(report, done, total);
+        }
+    }
+
+    private static Writer open(File directory, String report) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(partialFile(directory, report)), "UTF-8"),
+                WRITE_BUFFER_SIZE);
+    }
+
+    private static void commit(File directory, String report) throws IOException {
+        File partial = partialFile(directory, report);
+        if (!partial.renameTo(new File(directory, report + ".csv"))) {
+            partial.delete();
+            throw new IOException("Could not move the " + report + " report into place");
+        }
+    }
+
+    private static File partialFile(File directory, String report) {
+        return new File(directory, report + ".csv.tmp");
+    }
+
+    /**
+     * Write one CSV line, quoting the fields that need it.
+     */
+    private static void writeRow(Writer out, String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            String field = fields[i] == null ? "" : fields[i];
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0
+                    || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                out.write('"');
+                out.write(field.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(field);
+            }
+        }
+        out.write("\r\n");
+    }
+
+    private static String formatMoney(double value) {
+        return String.format(Locale.US, "%.2f", value);
+    }
+
+    private static String formatUnits(double units) {
+        return String.format(Locale.US, "%.0f", units);
+    }
+}
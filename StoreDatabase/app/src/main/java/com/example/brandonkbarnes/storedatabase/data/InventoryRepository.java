@@ -0,0 +1,366 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+
+import com.example.brandonkbarnes.storedatabase.core.ItemRules;
+import com.example.brandonkbarnes.storedatabase.core.StockCount;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+/**
+ * In-process access to the inventory table for code running inside the app.
+ *
+ * Unlike {@link InventoryProvider} this works on typed {@link InventoryRecord}s, reuses
+ * compiled statements for writes and reads the catalog straight into a {@link CatalogBuffer},
+ * so there is no Binder, {@link android.content.ContentValues} or boxing overhead.
+ * The provider stays the entry point for anything outside the app. Both share the same
+ * {@link InventoryDbHelper} and the same {@link InventoryValidator} rules. Writes here run on
+ * the store's {@link WriteScheduler} like the provider's, and once committed they are recorded
+ * in the {@link ChangeFeed} and notify the same content URIs, so loaders attached to the
+ * provider still refresh.
+ */
+public class InventoryRepository {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = InventoryRepository.class.getSimpleName();
+
+    // Projection used to fill a CatalogBuffer, in the order the buffer reads it
+    private static final String[] CATALOG_PROJECTION = {
+            InventoryEntry._ID,
+            InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryEntry.COLUMN_ITEM_QUANTITY };
+
+    private static final String SQL_INSERT_ITEM = "INSERT INTO " + InventoryEntry.TABLE_NAME + " ("
+            + InventoryEntry.COLUMN_ITEM_NAME + ", "
+            + InventoryEntry.COLUMN_ITEM_PRICE + ", "
+            + InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+            + InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME + ", "
+            + InventoryEntry.COLUMN_ITEM_SUPPLIER_EMAIL + ", "
+            + InventoryEntry.COLUMN_ITEM_SUPPLIER_PHONE + ", "
+            + InventoryEntry.COLUMN_SYNC_ID + ", "
+            + InventoryEntry.COLUMN_UPDATED_AT + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Local changes bump the version and mark the row for the next sync, see ChangeTracking
+    private static final String SQL_TRACK_CHANGE = ", "
+            + InventoryEntry.COLUMN_VERSION + " = " + InventoryEntry.COLUMN_VERSION + " + 1, "
+            + InventoryEntry.COLUMN_UPDATED_AT + " = ?, "
+            + InventoryEntry.COLUMN_DIRTY + " = 1";
+
+    // Deleted items waiting for the purge can't be read, so they can't be changed either
+    private static final String SQL_WHERE_LIVE_ID = " WHERE " + InventoryEntry._ID + " = ? AND "
+            + InventoryEntry.COLUMN_DELETED + " = 0";
+
+    private static final String SQL_UPDATE_ITEM = "UPDATE " + InventoryEntry.TABLE_NAME + " SET "
+            + InventoryEntry.COLUMN_ITEM_NAME + " = ?, "
+            + InventoryEntry.COLUMN_ITEM_PRICE + " = ?, "
+            + InventoryEntry.COLUMN_ITEM_QUANTITY + " = ?, "
+            + InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME + " = ?, "
+            + InventoryEntry.COLUMN_ITEM_SUPPLIER_EMAIL + " = ?, "
+            + InventoryEntry.COLUMN_ITEM_SUPPLIER_PHONE + " = ?"
+            + SQL_TRACK_CHANGE + SQL_WHERE_LIVE_ID;
+
+    private static final String SQL_UPDATE_QUANTITY = "UPDATE " + InventoryEntry.TABLE_NAME + " SET "
+            + InventoryEntry.COLUMN_ITEM_QUANTITY + " = ?"
+            + SQL_TRACK_CHANGE + SQL_WHERE_LIVE_ID;
+
+    private static InventoryRepository instance;
+
+    private final Context context;
+    private final InventoryDbHelper dbHelper;
+
+    // Compiled on the first write and reused for every write on the database they were
+    // compiled for. Only used on the store's writer thread.
+    private Statements statements;
+
+    private InventoryRepository(Context context) {
+        this(context, InventoryContract.DEFAULT_LOCATION);
+    }
+
+    /**
+     * Constructs a repository for the given store location, for tests that must leave the
+     * app's data alone.
+     */
+    InventoryRepository(Context context, String location) {
+        this.context = context.getApplicationContext();
+        this.dbHelper = InventoryDbHelper.getInstance(this.context, location);
+    }
+
+    /**
+     * Return the process-wide repository.
+     */
+    public static synchronized InventoryRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new InventoryRepository(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Read one item, or return null if there is no item with that id.
+     */
+    public InventoryRecord getItem(long id) {
+        SQLiteDatabase database = dbHelper.getReadableDatabase();
+        Cursor cursor = database.query(InventoryEntry.TABLE_NAME, null,
+                InventoryEntry._ID + "=? AND " + CatalogQuery.SELECTION_NOT_DELETED,
+                new String[] { String.valueOf(id) }, null, null, null);
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            return InventoryRecord.fromCursor(cursor, InventoryColumns.of(cursor));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Read the catalog projection of every matching item that isn't deleted into the given
+     * buffer, replacing its previous contents. The buffer's arrays are reused, so calling
+     * this again with the same buffer only allocates the row strings.
+     *
+     * @return the number of rows read
+     */
+    public int readCatalog(CatalogBuffer buffer, String selection, String[] selectionArgs,
+                           String sortOrder) {
+        SQLiteDatabase database = dbHelper.getReadableDatabase();
+        Cursor cursor = database.query(InventoryEntry.TABLE_NAME, CATALOG_PROJECTION,
+                CatalogQuery.notDeleted(selection), selectionArgs,
+                null, null, sortOrder);
+        try {
+            buffer.clear();
+            buffer.ensureCapacity(cursor.getCount());
+            // The projection is fixed, so the column indices are its positions
+            while (cursor.moveToNext()) {
+                buffer.add(cursor.getLong(0), cursor.getString(1), cursor.getString(2),
+                        cursor.getInt(3));
+            }
+            return buffer.size();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Insert a new item and return its row id, which is also set on the record.
+     */
+    public long insertItem(final InventoryRecord record) {
+        InventoryValidator.validate(record);
+
+        return dbHelper.getWriteScheduler().submit(new WriteScheduler.Write<Long>() {
+            @Override
+            protected Long execute(SQLiteDatabase database) {
+                SQLiteStatement statement = statements(database).insert;
+                statement.bindString(1, record.getName());
+                statement.bindString(2, record.getPrice());
+                statement.bindLong(3, record.getQuantity());
+                statement.bindString(4, record.getSupplierName());
+                statement.bindString(5, record.getSupplierEmail());
+                statement.bindString(6, record.getSupplierPhone());
+                statement.bindString(7, ChangeTracking.newSyncId());
+                statement.bindLong(8, System.currentTimeMillis());
+                try {
+                    return statement.executeInsert();
+                } finally {
+                    statement.clearBindings();
+                }
+            }
+
+            @Override
+            protected void afterCommit(Long id) {
+                if (id != -1) {
+                    record.setId(id);
+                    dbHelper.getChangeFeed().record(ChangeFeed.OP_INSERT, id);
+                    notifyChange(InventoryEntry.CONTENT_URI);
+                }
+            }
+        });
+    }
+
+    /**
+     * Overwrite every attribute of an existing item. Return the number of rows updated.
+     */
+    public int updateItem(final InventoryRecord record) {
+        InventoryValidator.validate(record);
+
+        return dbHelper.getWriteScheduler().submit(new WriteScheduler.Write<Integer>() {
+            @Override
+            protected Integer execute(SQLiteDatabase database) {
+                SQLiteStatement statement = statements(database).update;
+                statement.bindString(1, record.getName());
+                statement.bindString(2, record.getPrice());
+                statement.bindLong(3, record.getQuantity());
+                statement.bindString(4, record.getSupplierName());
+                statement.bindString(5, record.getSupplierEmail());
+                statement.bindString(6, record.getSupplierPhone());
+                statement.bindLong(7, System.currentTimeMillis());
+                statement.bindLong(8, record.getId());
+                try {
+                    return statement.executeUpdateDelete();
+                } finally {
+                    statement.clearBindings();
+                }
+            }
+
+            @Override
+            protected void afterCommit(Integer rowsUpdated) {
+                if (rowsUpdated != 0) {
+                    dbHelper.getChangeFeed().record(ChangeFeed.OP_UPDATE, record.getId());
+                    notifyChange(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI,
+                            record.getId()));
+                }
+            }
+        });
+    }
+
+    /**
+     * Set the quantity of one item. Return the number of rows updated.
+     */
+    public int updateQuantity(final long id, final int quantity) {
+        ItemRules.requireQuantity(quantity);
+
+        return dbHelper.getWriteScheduler().submit(new WriteScheduler.Write<Integer>() {
+            @Override
+            protected Integer execute(SQLiteDatabase database) {
+                SQLiteStatement statement = statements(database).updateQuantity;
+                statement.bindLong(1, quantity);
+                statement.bindLong(2, System.currentTimeMillis());
+                statement.bindLong(3, id);
+                try {
+                    return statement.executeUpdateDelete();
+                } finally {
+                    statement.clearBindings();
+                }
+            }
+
+            @Override
+            protected void afterCommit(Integer rowsUpdated) {
+                if (rowsUpdated != 0) {
+                    dbHelper.getChangeFeed().record(ChangeFeed.OP_UPDATE, id);
+                    notifyChange(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id));
+                }
+            }
+        });
+    }
+
+    /**
+     * Delete one item. Return the number of rows deleted. The row is removed later by the
+     * store's {@link InventoryPurger}.
+     */
+    public int deleteItem(final long id) {
+        return dbHelper.getWriteScheduler().submit(new WriteScheduler.Write<Integer>() {
+            @Override
+            protected Integer execute(SQLiteDatabase database) {
+                return ChangeTracking.softDelete(database, InventoryEntry._ID + "=?",
+                        new String[] { String.valueOf(id) });
+            }
+
+            @Override
+            protected void afterCommit(Integer rowsDeleted) {
+                if (rowsDeleted != 0) {
+                    dbHelper.getSkuLookup().onDeleted(id);
+                    dbHelper.getPurger().schedule();
+                    dbHelper.getChangeFeed().record(ChangeFeed.OP_DELETE, id);
+                    notifyChange(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id));
+                }
+            }
+        });
+    }
+
+    /**
+     * Compare a stocktake, counted quantities by SKU, with the items without changing them.
+     * The SKUs must be distinct. Runs on the store's {@link WriteScheduler}, as the counts are
+     * loaded into a temporary table of the writer's connection.
+     */
+    public StockCount.Report compareStockCount(final String[] skus, final int[] counts) {
+        return dbHelper.getWriteScheduler().submit(
+                new WriteScheduler.Write<StockCount.Report>() {
+            @Override
+            protected StockCount.Report execute(SQLiteDatabase database) {
+                AndroidStorage storage = new AndroidStorage(database);
+                try {
+                    return StockCount.compare(storage, skus, counts);
+                } finally {
+                    storage.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Set the counted quantities of a stocktake on the items whose stored quantity differs,
+     * in one transaction, and return what was changed. Listeners are notified once for all
+     * of them.
+     */
+    public StockCount.Report applyStockCount(final String[] skus, final int[] counts) {
+        return dbHelper.getWriteScheduler().submit(
+                new WriteScheduler.Write<StockCount.Report>() {
+            @Override
+            protected StockCount.Report execute(SQLiteDatabase database) {
+                AndroidStorage storage = new AndroidStorage(database);
+                try {
+                    return StockCount.apply(storage, skus, counts);
+                } finally {
+                    storage.close();
+                }
+            }
+
+            @Override
+            protected void afterCommit(StockCount.Report report) {
+                if (report.ids.length != 0) {
+                    dbHelper.getChangeFeed().record(ChangeFeed.OP_UPDATE, report.ids);
+                    notifyChange(InventoryEntry.CONTENT_URI);
+                }
+            }
+        });
+    }
+
+    /**
+     * Return the compiled statements for the writer's database, compiling them again if the
+     * helper reopened the database since they were compiled (for example after a restore).
+     * Only called by writes, which the scheduler runs one at a time.
+     */
+    private Statements statements(SQLiteDatabase database) {
+        if (statements == null || statements.database != database) {
+            if (statements != null) {
+                statements.close();
+            }
+            statements = new Statements(database);
+        }
+        return statements;
+    }
+
+    /**
+     * The compiled write statements of one database.
+     */
+    private static final class Statements {
+        final SQLiteDatabase database;
+        final SQLiteStatement insert;
+        final SQLiteStatement update;
+        final SQLiteStatement updateQuantity;
+
+        Statements(SQLiteDatabase database) {
+            this.database = database;
+            insert = database.compileStatement(SQL_INSERT_ITEM);
+            update = database.compileStatement(SQL_UPDATE_ITEM);
+            updateQuantity = database.compileStatement(SQL_UPDATE_QUANTITY);
+        }
+
+        void close() {
+            insert.close();
+            update.close();
+            updateQuantity.close();
+        }
+    }
+
+    // Tell loaders attached to the provider that the data behind the given URI changed, and
+    // the stock totals with it
+    private void notifyChange(Uri uri) {
+        context.getContentResolver().notifyChange(uri, null);
+        context.getContentResolver().notifyChange(InventoryEntry.STOCK_CONTENT_URI, null);
+    }
+}
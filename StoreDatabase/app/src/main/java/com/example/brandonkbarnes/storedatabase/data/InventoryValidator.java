@@ -0,0 +1,83 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.ContentValues;
+
+import com.example.brandonkbarnes.storedatabase.core.ItemRules;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.CategoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+/**
+ * Validation rules for inventory items, shared by {@link InventoryProvider} and
+ * {@link InventoryRepository} so both write paths reject the same bad data. The rules
+ * themselves are in {@link ItemRules}; this applies them to ContentValues and records.
+ */
+public final class InventoryValidator {
+
+    private InventoryValidator() {}
+
+    /**
+     * Check that a typed record has every required attribute before it is written.
+     */
+    public static void validate(InventoryRecord record) {
+        ItemRules.requireName(record.getName());
+        ItemRules.requirePrice(record.getPrice());
+        ItemRules.requireQuantity(record.getQuantity());
+        // No need to check the image, any value is valid (including null).
+        ItemRules.requireSupplierName(record.getSupplierName());
+        ItemRules.requireSupplierEmail(record.getSupplierEmail());
+        ItemRules.requireSupplierPhone(record.getSupplierPhone());
+    }
+
+    /**
+     * Check the values for a new item. Every required column must be present.
+     */
+    public static void validateInsert(ContentValues values) {
+        ItemRules.requireName(values.getAsString(InventoryEntry.COLUMN_ITEM_NAME));
+        ItemRules.requirePrice(values.getAsString(InventoryEntry.COLUMN_ITEM_PRICE));
+        ItemRules.requireQuantity(values.getAsInteger(InventoryEntry.COLUMN_ITEM_QUANTITY));
+        ItemRules.requireSupplierName(values.getAsString(InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME));
+        ItemRules.requireSupplierEmail(
+                values.getAsString(InventoryEntry.COLUMN_ITEM_SUPPLIER_EMAIL));
+        ItemRules.requireSupplierPhone(
+                values.getAsString(InventoryEntry.COLUMN_ITEM_SUPPLIER_PHONE));
+        ItemRules.checkSku(values.getAsString(InventoryEntry.COLUMN_ITEM_SKU));
+    }
+
+    /**
+     * Check the values for an update. Only the columns that are present are checked.
+     */
+    public static void validateUpdate(ContentValues values) {
+        if (values.containsKey(InventoryEntry.COLUMN_ITEM_NAME)) {
+            ItemRules.requireName(values.getAsString(InventoryEntry.COLUMN_ITEM_NAME));
+        }
+        if (values.containsKey(InventoryEntry.COLUMN_ITEM_PRICE)) {
+            ItemRules.requirePrice(values.getAsString(InventoryEntry.COLUMN_ITEM_PRICE));
+        }
+        if (values.containsKey(InventoryEntry.COLUMN_ITEM_QUANTITY)) {
+            ItemRules.requireQuantity(values.getAsInteger(InventoryEntry.COLUMN_ITEM_QUANTITY));
+        }
+        if (values.containsKey(InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME)) {
+            ItemRules.requireSupplierName(
+                    values.getAsString(InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME));
+        }
+        if (values.containsKey(InventoryEntry.COLUMN_ITEM_SUPPLIER_EMAIL)) {
+            ItemRules.requireSupplierEmail(
+                    values.getAsString(InventoryEntry.COLUMN_ITEM_SUPPLIER_EMAIL));
+        }
+        if (values.containsKey(InventoryEntry.COLUMN_ITEM_SUPPLIER_PHONE)) {
+            ItemRules.requireSupplierPhone(
+                    values.getAsString(InventoryEntry.COLUMN_ITEM_SUPPLIER_PHONE));
+        }
+        ItemRules.checkSku(values.getAsString(InventoryEntry.COLUMN_ITEM_SKU));
+    }
+
+    /**
+     * Check the values for a new or renamed category. Only the name can be set.
+     */
+    public static void validateCategory(ContentValues values) {
+        ItemRules.requireCategoryName(values.getAsString(CategoryEntry.COLUMN_NAME));
+        if (values.size() != 1) {
+            throw new IllegalArgumentException("Only the name of a category can be set");
+        }
+    }
+}
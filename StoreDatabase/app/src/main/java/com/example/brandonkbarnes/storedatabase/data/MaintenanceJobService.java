@@ -0,0 +1,101 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link DatabaseMaintenance} for every store location about once a day, while the
+ * device is idle and charging. Job scheduling is only available from Lollipop, so on older
+ * devices maintenance does not run.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class MaintenanceJobService extends JobService {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = MaintenanceJobService.class.getSimpleName();
+
+    // Identifier of the maintenance job, unique within the app
+    private static final int JOB_ID = 1;
+
+    private static final long PERIOD_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    // Maintenance of the location being processed, so onStopJob can cancel it
+    private volatile DatabaseMaintenance current;
+    private volatile boolean stopped;
+
+    /**
+     * Schedule the maintenance job unless it is already scheduled. Does nothing before Lollipop.
+     */
+    public static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        // Scheduling again would restart the period, so leave an existing job alone
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                return;
+            }
+        }
+        scheduler.schedule(new JobInfo.Builder(JOB_ID,
+                new ComponentName(context, MaintenanceJobService.class))
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .setPeriodic(PERIOD_MILLIS)
+                .build());
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        stopped = false;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                boolean retry = false;
+                try {
+                    for (String location
+                            : InventoryDbHelper.listLocations(MaintenanceJobService.this)) {
+                        if (stopped) {
+                            break;
+                        }
+                        try {
+                            current = new DatabaseMaintenance(MaintenanceJobService.this,
+                                    location);
+                            current.run(DatabaseMaintenance.DEFAULT_BUDGET_MILLIS);
+                        } catch (RuntimeException e) {
+                            // E.g. a full disk. Go on with the other locations.
+                            Log.e(LOG_TAG, "Maintenance of " + location + " failed", e);
+                            retry = true;
+                        }
+                    }
+                } finally {
+                    current = null;
+                    jobFinished(params, retry);
+                }
+            }
+        }, LOG_TAG).start();
+        // The work continues on the thread above
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The device is no longer idle. Stop after the current step and wait for the next day.
+        stopped = true;
+        DatabaseMaintenance maintenance = current;
+        if (maintenance != null) {
+            maintenance.cancel();
+        }
+        return false;
+    }
+}
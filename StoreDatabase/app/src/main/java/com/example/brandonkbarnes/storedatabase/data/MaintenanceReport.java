@@ -0,0 +1,85 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.ContentValues;
+import android.text.TextUtils;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.MaintenanceLogEntry;
+
+import java.util.List;
+
+/**
+ * Measurements of one {@link DatabaseMaintenance#run} run, as stored in the maintenance log.
+ */
+public class MaintenanceReport {
+
+    private final long startedAt;
+    private final long durationMillis;
+    private final long sizeBefore;
+    private final long sizeAfter;
+    private final long freePagesBefore;
+    private final long freePagesAfter;
+    private final List<String> steps;
+    private final String checkResult;
+
+    MaintenanceReport(long startedAt, long durationMillis, long sizeBefore, long sizeAfter,
+                      long freePagesBefore, long freePagesAfter, List<String> steps,
+                      String checkResult) {
+        this.startedAt = startedAt;
+        this.durationMillis = durationMillis;
+        this.sizeBefore = sizeBefore;
+        this.sizeAfter = sizeAfter;
+        this.freePagesBefore = freePagesBefore;
+        this.freePagesAfter = freePagesAfter;
+        this.steps = steps;
+        this.checkResult = checkResult;
+    }
+
+    ContentValues toContentValues() {
+        ContentValues values = new ContentValues();
+        values.put(MaintenanceLogEntry.COLUMN_STARTED_AT, startedAt);
+        values.put(MaintenanceLogEntry.COLUMN_DURATION, durationMillis);
+        values.put(MaintenanceLogEntry.COLUMN_SIZE_BEFORE, sizeBefore);
+        values.put(MaintenanceLogEntry.COLUMN_SIZE_AFTER, sizeAfter);
+        values.put(MaintenanceLogEntry.COLUMN_FREE_PAGES_BEFORE, freePagesBefore);
+        values.put(MaintenanceLogEntry.COLUMN_FREE_PAGES_AFTER, freePagesAfter);
+        values.put(MaintenanceLogEntry.COLUMN_STEPS, TextUtils.join(",", steps));
+        values.put(MaintenanceLogEntry.COLUMN_CHECK_RESULT, checkResult);
+        return values;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public long getSizeBefore() {
+        return sizeBefore;
+    }
+
+    public long getSizeAfter() {
+        return sizeAfter;
+    }
+
+    public long getFreePagesBefore() {
+        return freePagesBefore;
+    }
+
+    public long getFreePagesAfter() {
+        return freePagesAfter;
+    }
+
+    public List<String> getSteps() {
+        return steps;
+    }
+
+    /** Result of the quick check, "ok" if intact, or null if there was no time to run it. */
+    public String getCheckResult() {
+        return checkResult;
+    }
+
+    @Override
+    public String toString() {
+        return "steps=" + steps + " duration=" + durationMillis + "ms size=" + sizeBefore + "->"
+                + sizeAfter + "B freePages=" + freePagesBefore + "->" + freePagesAfter
+                + " check=" + checkResult;
+    }
+}
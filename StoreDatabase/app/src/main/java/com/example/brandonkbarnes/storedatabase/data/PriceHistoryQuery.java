@@ -0,0 +1,112 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.net.Uri;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.PriceHistoryEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Queries of the price history for {@link InventoryProvider}, built from the time parameters
+ * of the price history URI's. Each query is a seek on one of the history indexes, so lookups
+ * don't slow down as the history grows.
+ */
+final class PriceHistoryQuery {
+
+    /** SQL of the query */
+    final String sql;
+
+    /** Arguments of the query, in the order of their placeholders */
+    final String[] args;
+
+    private PriceHistoryQuery(String sql, List<String> args) {
+        this.sql = sql;
+        this.args = args.toArray(new String[args.size()]);
+    }
+
+    /**
+     * Build the query of the price history of one item: the entry valid at the URI's "at"
+     * time, or the entries that started in the URI's "from"/"to" range, oldest first.
+     */
+    static PriceHistoryQuery forItem(Uri uri, long itemId, String[] projection) {
+        List<String> args = new ArrayList<String>();
+        args.add(String.valueOf(itemId));
+        String at = uri.getQueryParameter(PriceHistoryEntry.QUERY_AT);
+        if (at == null) {
+            String selection = PriceHistoryEntry.COLUMN_ITEM_ID + " = ?" + range(uri, args);
+            return new PriceHistoryQuery(SQLiteQueryBuilder.buildQueryString(false,
+                    PriceHistoryEntry.TABLE_NAME, projection, selection, null, null,
+                    PriceHistoryEntry.COLUMN_VALID_FROM, null), args);
+        }
+
+        String time = String.valueOf(parseTime(uri, PriceHistoryEntry.QUERY_AT));
+        args.add(time);
+        args.add(time);
+        // Step back from the time to the last period that started before it, skipping periods
+        // closed within the millisecond they opened, then check that it didn't end before the
+        // time, as it does once the item is deleted.
+        String latest = SQLiteQueryBuilder.buildQueryString(false, PriceHistoryEntry.TABLE_NAME,
+                null,
+                PriceHistoryEntry.COLUMN_ITEM_ID + " = ? AND "
+                        + PriceHistoryEntry.COLUMN_VALID_FROM + " <= ? AND ("
+                        + PriceHistoryEntry.COLUMN_VALID_TO + " IS NULL OR "
+                        + PriceHistoryEntry.COLUMN_VALID_TO + " > "
+                        + PriceHistoryEntry.COLUMN_VALID_FROM + ")",
+                null, null, PriceHistoryEntry.COLUMN_VALID_FROM + " DESC", "1");
+        return new PriceHistoryQuery(SQLiteQueryBuilder.buildQueryString(false,
+                "(" + latest + ")", projection,
+                PriceHistoryEntry.COLUMN_VALID_TO + " IS NULL OR "
+                        + PriceHistoryEntry.COLUMN_VALID_TO + " > ?",
+                null, null, null, null), args);
+    }
+
+    /**
+     * Build the query of the price changes of all items that started in the URI's
+     * "from"/"to" range, oldest first.
+     */
+    static PriceHistoryQuery forAll(Uri uri, String[] projection) {
+        List<String> args = new ArrayList<String>();
+        String selection = range(uri, args);
+        // Drop the leading " AND " of the range conditions
+        selection = selection.isEmpty() ? null : selection.substring(5);
+        return new PriceHistoryQuery(SQLiteQueryBuilder.buildQueryString(false,
+                PriceHistoryEntry.TABLE_NAME, projection, selection, null, null,
+                PriceHistoryEntry.COLUMN_VALID_FROM, null), args);
+    }
+
+    /**
+     * Run the query.
+     */
+    Cursor query(SQLiteDatabase database) {
+        return database.rawQuery(sql, args);
+    }
+
+    /**
+     * Return the conditions for the URI's "from"/"to" range, each starting with " AND ",
+     * and add their arguments.
+     */
+    private static String range(Uri uri, List<String> args) {
+        StringBuilder selection = new StringBuilder();
+        if (uri.getQueryParameter(PriceHistoryEntry.QUERY_FROM) != null) {
+            selection.append(" AND ").append(PriceHistoryEntry.COLUMN_VALID_FROM).append(" >= ?");
+            args.add(String.valueOf(parseTime(uri, PriceHistoryEntry.QUERY_FROM)));
+        }
+        if (uri.getQueryParameter(PriceHistoryEntry.QUERY_TO) != null) {
+            selection.append(" AND ").append(PriceHistoryEntry.COLUMN_VALID_FROM).append(" < ?");
+            args.add(String.valueOf(parseTime(uri, PriceHistoryEntry.QUERY_TO)));
+        }
+        return selection.toString();
+    }
+
+    private static long parseTime(Uri uri, String parameter) {
+        try {
+            return Long.parseLong(uri.getQueryParameter(parameter));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + parameter + " time in " + uri);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the end-of-day {@link InventoryReport} of every store location about once a day,
+ * while the device is idle. The reports of a location go to "reports/&lt;location&gt;" in the
+ * app's files directory. Job scheduling is only available from Lollipop, so on older devices
+ * the reports are not written.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class ReportJobService extends JobService {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = ReportJobService.class.getSimpleName();
+
+    // Identifier of the report job, unique within the app
+    private static final int JOB_ID = 2;
+
+    private static final long PERIOD_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    // Report of the location being processed, so onStopJob can cancel it
+    private volatile InventoryReport current;
+    private volatile boolean stopped;
+
+    /**
+     * Schedule the report job unless it is already scheduled. Does nothing before Lollipop.
+     */
+    public static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        // Scheduling again would restart the period, so leave an existing job alone
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                return;
+            }
+        }
+        scheduler.schedule(new JobInfo.Builder(JOB_ID,
+                new ComponentName(context, ReportJobService.class))
+                .setRequiresDeviceIdle(true)
+                .setPeriodic(PERIOD_MILLIS)
+                .build());
+    }
+
+    /**
+     * Return the directory the reports of the location are written to.
+     */
+    public static File getReportDirectory(Context context, String location) {
+        return new File(new File(context.getFilesDir(), "reports"), location);
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        stopped = false;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                boolean retry = false;
+                for (String location : InventoryDbHelper.listLocations(ReportJobService.this)) {
+                    if (stopped) {
+                        break;
+                    }
+                    current = new InventoryReport(ReportJobService.this, location);
+                    current.setProgressListener(new ProgressLog(location));
+                    try {
+                        current.run(getReportDirectory(ReportJobService.this, location));
+                    } catch (IOException e) {
+                        Log.e(LOG_TAG, "Failed to write the reports of " + location, e);
+                        retry = true;
+                    }
+                }
+                current = null;
+                jobFinished(params, retry);
+            }
+        }, LOG_TAG).start();
+        // The work continues on the thread above
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Stop after the current chunk and write the reports on the next day
+        stopped = true;
+        InventoryReport report = current;
+        if (report != null) {
+            report.cancel();
+        }
+        return false;
+    }
+
+    /**
+     * Logs each report's progress in steps of a tenth.
+     */
+    private static class ProgressLog implements InventoryReport.ProgressListener {
+
+        private final String location;
+        private String report;
+        private long step;
+
+        ProgressLog(String location) {
+            this.location = location;
+        }
+
+        @Override
+        public void onProgress(String report, long done, long total) {
+            if (!report.equals(this.report)) {
+                this.report = report;
+                step = 0;
+            }
+            long reached = total == 0 ? 10 : done * 10 / total;
+            if (reached > step) {
+                step = reached;
+                Log.d(LOG_TAG, location + " " + report + ": " + done + "/" + total);
+            }
+        }
+    }
+}
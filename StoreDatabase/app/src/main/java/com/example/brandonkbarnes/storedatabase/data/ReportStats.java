@@ -0,0 +1,75 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import java.util.Locale;
+
+/**
+ * Totals and measurements of one {@link InventoryReport#run} run.
+ */
+public class ReportStats {
+
+    // Filled in by the report as it goes
+    long items;
+    double units;
+    double value;
+    long suppliers;
+    long outOfStock;
+    long topHoldings;
+
+    private long durationMillis;
+    private boolean complete;
+
+    ReportStats() {}
+
+    void finish(long durationMillis, boolean complete) {
+        this.durationMillis = durationMillis;
+        this.complete = complete;
+    }
+
+    /** Items valued. */
+    public long getItems() {
+        return items;
+    }
+
+    /** Units in stock over all items. */
+    public double getUnits() {
+        return units;
+    }
+
+    /** Stock value over all items. */
+    public double getValue() {
+        return value;
+    }
+
+    /** Suppliers in the valuation. */
+    public long getSuppliers() {
+        return suppliers;
+    }
+
+    /** Items in the out of stock list. */
+    public long getOutOfStock() {
+        return outOfStock;
+    }
+
+    /** Items in the top holdings list. */
+    public long getTopHoldings() {
+        return topHoldings;
+    }
+
+    /** Wall time of the run. */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /** Whether every report was written, false if the run was cancelled. */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public String toString() {
+        return "items=" + items + " units=" + String.format(Locale.US, "%.0f", units)
+                + " value=" + String.format(Locale.US, "%.2f", value) + " suppliers="
+                + suppliers + " outOfStock=" + outOfStock + " topHoldings=" + topHoldings
+                + " duration=" + durationMillis + "ms complete=" + complete;
+    }
+}
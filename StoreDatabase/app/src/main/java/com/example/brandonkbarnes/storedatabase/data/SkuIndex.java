@@ -0,0 +1,157 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from SKU to item id, built for scan-speed lookups over large catalogs.
+ *
+ * Keys and ids are kept in two parallel arrays with open addressing and linear probing,
+ * so there is no entry object or boxed id per item and a lookup is a hash plus a short
+ * probe over adjacent slots. Not thread safe, {@link SkuLookup} guards it.
+ */
+public class SkuIndex {
+
+    /** Returned by {@link #get} for an unknown SKU. */
+    public static final long NOT_FOUND = -1;
+
+    // Kept at most half full so probe sequences stay short
+    private static final int MIN_CAPACITY = 16;
+
+    private String[] keys;
+    private long[] ids;
+    private int size;
+
+    public SkuIndex() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize number of SKUs to make room for up front
+     */
+    public SkuIndex(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        keys = new String[capacity];
+        ids = new long[capacity];
+    }
+
+    /**
+     * Return the id of the item with the given SKU, or {@link #NOT_FOUND}.
+     */
+    public long get(String sku) {
+        int mask = keys.length - 1;
+        for (int slot = hash(sku) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot].equals(sku)) {
+                return ids[slot];
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Map the SKU to the item id, replacing any previous mapping of that SKU.
+     */
+    public void put(String sku, long id) {
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        int slot = hash(sku) & mask;
+        while (keys[slot] != null) {
+            if (keys[slot].equals(sku)) {
+                ids[slot] = id;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = sku;
+        ids[slot] = id;
+        size++;
+    }
+
+    /**
+     * Remove the mapping of the SKU, if any.
+     */
+    public void remove(String sku) {
+        int mask = keys.length - 1;
+        for (int slot = hash(sku) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot].equals(sku)) {
+                removeSlot(slot);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove the mapping that points to the item id, if any, and return its SKU. This scans
+     * the whole table, which is fine for writes but not for lookups.
+     */
+    public String removeId(long id) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null && ids[slot] == id) {
+                String sku = keys[slot];
+                removeSlot(slot);
+                return sku;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empty the slot and shift later members of its probe run back, so lookups never
+     * have to step over deleted markers.
+     */
+    private void removeSlot(int slot) {
+        int mask = keys.length - 1;
+        keys[slot] = null;
+        size--;
+        int next = (slot + 1) & mask;
+        while (keys[next] != null) {
+            int home = hash(keys[next]) & mask;
+            // Move the entry into the gap if the gap lies on its probe path
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                ids[slot] = ids[next];
+                keys[next] = null;
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private void resize(int capacity) {
+        String[] oldKeys = keys;
+        long[] oldIds = ids;
+        keys = new String[capacity];
+        ids = new long[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                put(oldKeys[i], oldIds[i]);
+            }
+        }
+    }
+
+    /**
+     * Empty the index, keeping its capacity.
+     */
+    public void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    // Spread the String hash so sequential barcodes don't cluster in adjacent slots
+    static int hash(String sku) {
+        int h = sku.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.util.Log;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+/**
+ * Resolves scanned SKUs to item ids of one store location without touching the database.
+ *
+ * All SKUs are loaded into a {@link SkuIndex} on a background thread the first time they are
+ * needed; until then lookups go to the unique SKU index in the database. A {@link BloomFilter}
+ * in front of the index answers most unknown codes with a few bit tests. The provider reports
+ * its writes through the on... methods so the cache stays coherent, and writes it can't
+ * attribute to single items drop the cache so it is loaded again.
+ *
+ * Ids from the cache are hints: callers must confirm them against the database, as
+ * {@link InventoryProvider} does, because writers outside the provider (sync, repository
+ * deletes) only report their changes once they are committed.
+ */
+public class SkuLookup {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = SkuLookup.class.getSimpleName();
+
+    // Room the Bloom filter is sized for, relative to the SKUs loaded
+    private static final int BLOOM_HEADROOM = 2;
+    private static final int BLOOM_MIN_SIZE = 1024;
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+
+    private static final String SQL_FIND_ID = "SELECT " + InventoryEntry._ID
+            + " FROM " + InventoryEntry.TABLE_NAME
+            + " WHERE " + InventoryEntry.COLUMN_ITEM_SKU + " = ?";
+
+    private final InventoryDbHelper dbHelper;
+
+    // Both null while the SKUs are not loaded. Guarded by this.
+    private SkuIndex index;
+    private BloomFilter bloom;
+    private int bloomCapacity;
+
+    // Whether a background load is running, and a counter of writes that a running load
+    // may have missed. Guarded by this.
+    private boolean loading;
+    private int generation;
+
+    SkuLookup(InventoryDbHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Return the id of the item with the given SKU, or {@link SkuIndex#NOT_FOUND}.
+     */
+    public long lookup(String sku) {
+        synchronized (this) {
+            if (index != null) {
+                if (!bloom.mightContain(sku)) {
+                    return SkuIndex.NOT_FOUND;
+                }
+                return index.get(sku);
+            }
+            startLoad();
+        }
+        return findInDatabase(sku);
+    }
+
+    /**
+     * Look the SKU up in the database, bypassing the cache, and correct the cache with the
+     * result. Used when an id from {@link #lookup} turned out to be stale.
+     */
+    public long refresh(String sku) {
+        long id = findInDatabase(sku);
+        synchronized (this) {
+            if (index == null) {
+                generation++;
+            } else if (id == SkuIndex.NOT_FOUND) {
+                index.remove(sku);
+            } else {
+                put(sku, id);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Record a new item. Does nothing if the item has no SKU.
+     */
+    public synchronized void onInserted(String sku, long id) {
+        if (sku == null) {
+            return;
+        }
+        if (index == null) {
+            generation++;
+        } else {
+            put(sku, id);
+        }
+    }
+
+    /**
+     * Record that the SKU of an item was set, changed or cleared (new SKU null).
+     */
+    public synchronized void onSkuChanged(long id, String sku) {
+        if (index == null) {
+            generation++;
+            return;
+        }
+        index.removeId(id);
+        if (sku != null) {
+            put(sku, id);
+        }
+    }
+
+    /**
+     * Record that an item was deleted.
+     */
+    public synchronized void onDeleted(long id) {
+        if (index == null) {
+            generation++;
+        } else {
+            index.removeId(id);
+        }
+    }
+
+    /**
+     * Drop the cache after a write that may have changed any number of SKUs. It is loaded
+     * again by the next lookup.
+     */
+    public synchronized void invalidate() {
+        index = null;
+        bloom = null;
+        generation++;
+    }
+
+    // Called with the lock held and the index loaded
+    private void put(String sku, long id) {
+        index.put(sku, id);
+        bloom.add(sku);
+        if (index.size() > bloomCapacity) {
+            // The filter is getting too full to be useful, size it for the new catalog
+            invalidate();
+        }
+    }
+
+    // Called with the lock held
+    private void startLoad() {
+        if (loading) {
+            return;
+        }
+        loading = true;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        }, LOG_TAG).start();
+    }
+
+    /**
+     * Read every SKU of the location and install the cache, unless a write happened while
+     * reading, in which case read again.
+     */
+    private void load() {
+        try {
+            while (true) {
+                int startGeneration;
+                synchronized (this) {
+                    startGeneration = generation;
+                }
+                SQLiteDatabase database = dbHelper.getReadableDatabase();
+                Cursor cursor = database.query(InventoryEntry.TABLE_NAME,
+                        new String[] { InventoryEntry.COLUMN_ITEM_SKU, InventoryEntry._ID },
+                        InventoryEntry.COLUMN_ITEM_SKU + " IS NOT NULL", null, null, null, null);
+                SkuIndex newIndex;
+                BloomFilter newBloom;
+                int capacity;
+                try {
+                    capacity = Math.max(cursor.getCount() * BLOOM_HEADROOM, BLOOM_MIN_SIZE);
+                    newIndex = new SkuIndex(capacity);
+                    newBloom = new BloomFilter(capacity, BLOOM_FALSE_POSITIVE_RATE);
+                    while (cursor.moveToNext()) {
+                        String sku = cursor.getString(0);
+                        newIndex.put(sku, cursor.getLong(1));
+                        newBloom.add(sku);
+                    }
+                } finally {
+                    cursor.close();
+                }
+                synchronized (this) {
+                    if (generation == startGeneration) {
+                        index = newIndex;
+                        bloom = newBloom;
+                        bloomCapacity = capacity;
+                        return;
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // Lookups keep going to the database, the next one retries the load
+            Log.e(LOG_TAG, "Failed to load the SKUs of " + dbHelper.getLocation(), e);
+        } finally {
+            synchronized (this) {
+                loading = false;
+            }
+        }
+    }
+
+    private long findInDatabase(String sku) {
+        try {
+            return DatabaseUtils.longForQuery(dbHelper.getReadableDatabase(), SQL_FIND_ID,
+                    new String[] { sku });
+        } catch (SQLiteDoneException e) {
+            // No row has the SKU
+            return SkuIndex.NOT_FOUND;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Read-only cursor over a mapped {@link CatalogSnapshot} file, with the columns of
+ * {@link InventoryEntry#CATALOG_PROJECTION} like {@link CatalogCursor}. Each value is read
+ * from the mapping when it's asked for, so only the rows on screen are ever touched.
+ */
+class SnapshotCursor extends AbstractCursor {
+
+    private static final int COLUMN_ID = 0;
+    private static final int COLUMN_NAME = 1;
+    private static final int COLUMN_PRICE = 2;
+
+    private final int count;
+    private final LongBuffer ids;
+    private final IntBuffer quantities;
+    private final IntBuffer offsets;
+    private final CharBuffer strings;
+
+    /**
+     * Wrap a complete snapshot, see {@link CatalogSnapshot} for the layout.
+     */
+    SnapshotCursor(ByteBuffer snapshot) {
+        count = snapshot.getInt(8);
+        int position = CatalogSnapshot.HEADER_BYTES;
+        ids = view(snapshot, position).asLongBuffer();
+        position += count * 8;
+        quantities = view(snapshot, position).asIntBuffer();
+        position += count * 4;
+        offsets = view(snapshot, position).asIntBuffer();
+        position += (2 * count + 1) * 4;
+        strings = view(snapshot, position).asCharBuffer();
+    }
+
+    // The buffer from the given position on, sharing the snapshot's memory
+    private static ByteBuffer view(ByteBuffer snapshot, int position) {
+        ByteBuffer view = snapshot.duplicate();
+        view.position(position);
+        return view.slice();
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return InventoryEntry.CATALOG_PROJECTION;
+    }
+
+    @Override
+    public String getString(int column) {
+        switch (column) {
+            case COLUMN_NAME:
+                return string(2 * getPosition());
+            case COLUMN_PRICE:
+                return string(2 * getPosition() + 1);
+            default:
+                return String.valueOf(getLong(column));
+        }
+    }
+
+    private String string(int index) {
+        return strings.subSequence(offsets.get(index), offsets.get(index + 1)).toString();
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        switch (column) {
+            case COLUMN_ID:
+                return ids.get(getPosition());
+            case COLUMN_NAME:
+            case COLUMN_PRICE:
+                return Long.parseLong(getString(column));
+            default:
+                return quantities.get(getPosition());
+        }
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return getLong(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return getLong(column);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return false;
+    }
+
+    @Override
+    public int getType(int column) {
+        return column == COLUMN_NAME || column == COLUMN_PRICE
+                ? Cursor.FIELD_TYPE_STRING : Cursor.FIELD_TYPE_INTEGER;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.brandonkbarnes.storedatabase.core.SqliteVersion;
+
+/**
+ * Checks which SQLite features the device's SQLite library supports. The minimum SDK ships
+ * SQLite 3.7, so newer syntax has to be used conditionally with a fallback.
+ */
+public final class SqliteFeatures {
+
+    // Version of the SQLite library, the same for every database in the process
+    private static SqliteVersion version;
+
+    private SqliteFeatures() {}
+
+    /**
+     * Return whether the SQLite library is at least the given version.
+     */
+    public static boolean isAtLeast(SQLiteDatabase db, int major, int minor, int patch) {
+        return getVersion(db).isAtLeast(major, minor, patch);
+    }
+
+    /** Indexes on expressions, added in SQLite 3.9.0. */
+    public static boolean supportsExpressionIndexes(SQLiteDatabase db) {
+        return getVersion(db).supportsExpressionIndexes();
+    }
+
+    /** PRAGMA optimize, added in SQLite 3.18.0. */
+    public static boolean supportsOptimize(SQLiteDatabase db) {
+        return getVersion(db).supportsOptimize();
+    }
+
+    /** INSERT ... ON CONFLICT DO UPDATE, added in SQLite 3.24.0. */
+    public static boolean supportsUpsert(SQLiteDatabase db) {
+        return getVersion(db).supportsUpsert();
+    }
+
+    /** VACUUM INTO, added in SQLite 3.27.0. */
+    public static boolean supportsVacuumInto(SQLiteDatabase db) {
+        return getVersion(db).supportsVacuumInto();
+    }
+
+    /**
+     * Return the version of the SQLite library, read once per process.
+     */
+    static synchronized SqliteVersion getVersion(SQLiteDatabase db) {
+        if (version == null) {
+            version = SqliteVersion.parse(
+                    DatabaseUtils.stringForQuery(db, "SELECT sqlite_version()", null));
+        }
+        return version;
+    }
+}
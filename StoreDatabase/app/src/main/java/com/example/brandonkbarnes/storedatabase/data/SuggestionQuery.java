@@ -0,0 +1,54 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.brandonkbarnes.storedatabase.core.CatalogSql;
+
+/**
+ * Queries of the names starting with a prefix for {@link InventoryProvider}, suggested while
+ * the user types. Each is a range seek on an index ordered by the names ignoring case, grouped
+ * as the index is walked, so it stops after the first few names however many items match.
+ * The SQL is shared with the JVM tests, see {@link CatalogSql}.
+ */
+final class SuggestionQuery {
+
+    /** Most names suggested at once */
+    static final int MAX_SUGGESTIONS = CatalogSql.MAX_SUGGESTIONS;
+
+    /** Supplier names ignoring case, as indexed for the suggestions */
+    static final String SUPPLIER_NOCASE = CatalogSql.SUPPLIER_NOCASE;
+
+    /** SQL of the item name suggestions, taking the prefix range as arguments */
+    static final String SQL_NAMES = CatalogSql.SQL_NAME_SUGGESTIONS;
+
+    /**
+     * SQL of the supplier suggestions, taking the prefix range as arguments. The contact
+     * details come from the row of the MAX(), the supplier's latest item.
+     */
+    static final String SQL_SUPPLIERS = CatalogSql.SQL_SUPPLIER_SUGGESTIONS;
+
+    private SuggestionQuery() {}
+
+    /**
+     * Query the distinct item names starting with the prefix, read from the name index.
+     */
+    static Cursor queryNames(SQLiteDatabase database, String prefix) {
+        return database.rawQuery(SQL_NAMES, rangeArgs(prefix));
+    }
+
+    /**
+     * Query the distinct supplier names starting with the prefix with the contact details of
+     * each supplier's latest item, all read from the supplier suggestion index.
+     */
+    static Cursor querySuppliers(SQLiteDatabase database, String prefix) {
+        return database.rawQuery(SQL_SUPPLIERS, rangeArgs(prefix));
+    }
+
+    /**
+     * Return the arguments of the range of names starting with the prefix.
+     */
+    static String[] rangeArgs(String prefix) {
+        return CatalogSql.prefixRange(prefix);
+    }
+}
@@ -0,0 +1,311 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit for the writes of one store location's database.
+ *
+ * SQLite has one writer at a time and every transaction pays for its own commit, so threads
+ * writing at once mostly wait for each other's commits. Here callers hand their writes to a
+ * single writer thread and block until the write is committed. Whatever queued up while the
+ * previous transaction was committing goes into the next transaction, up to
+ * {@link #MAX_BATCH} writes, and once other writers are active the thread lingers up to
+ * {@link #MAX_LINGER_MILLIS} for more. A lone writer is never delayed.
+ *
+ * Each caller gets its own result or exception. If a write fails, the batch is rolled back
+ * and its writes are run again one transaction each, so one bad write doesn't fail the
+ * others. Writes must therefore only touch the database in {@link Write#execute} and keep
+ * their other effects, such as change notifications, for {@link Write#afterCommit}.
+ */
+public class WriteScheduler {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = WriteScheduler.class.getSimpleName();
+
+    // Most writes committed in one transaction
+    static final int MAX_BATCH = 64;
+
+    // Longest time the first write of a batch waits for company, once writers are concurrent
+    static final long MAX_LINGER_MILLIS = 2;
+
+    /**
+     * One write, run on the writer thread.
+     *
+     * @param <T> type of the result handed back to the caller
+     */
+    public abstract static class Write<T> {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        private T result;
+        private Throwable failure;
+
+        /**
+         * Apply the write inside the batch's transaction and return its result. May be
+         * called again in a new transaction if another write of the batch failed.
+         */
+        protected abstract T execute(SQLiteDatabase database);
+
+        /**
+         * Called on the writer thread once the write is committed, e.g. to notify listeners.
+         */
+        protected void afterCommit(T result) {}
+
+        /**
+         * Return false for a statement SQLite refuses inside a transaction, such as VACUUM.
+         * Such a write runs on its own, outside any transaction.
+         */
+        protected boolean needsTransaction() {
+            return true;
+        }
+
+        // Only the first call counts, so a batch that fails late can fail the rest safely
+        private void complete(T result, Throwable failure) {
+            if (done.getCount() == 0) {
+                return;
+            }
+            this.result = result;
+            this.failure = failure;
+            done.countDown();
+        }
+
+        private T await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    // The write is queued or running already and will be committed anyway
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure != null) {
+                throw new RuntimeException(failure);
+            }
+            return result;
+        }
+    }
+
+    private final InventoryDbHelper dbHelper;
+    private final BlockingQueue<Write<?>> queue = new LinkedBlockingQueue<Write<?>>();
+
+    // Started on the first write
+    private Thread writer;
+
+    WriteScheduler(InventoryDbHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Queue the write, wait until it is committed and return its result. Throws the write's
+     * exception if it failed.
+     */
+    public <T> T submit(Write<T> write) {
+        if (Thread.currentThread() == writer) {
+            throw new IllegalStateException("Write submitted from within a write");
+        }
+        startWriter();
+        queue.add(write);
+        return write.await();
+    }
+
+    private synchronized void startWriter() {
+        if (writer == null) {
+            writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        writeLoop();
+                    } finally {
+                        writerExited();
+                    }
+                }
+            }, LOG_TAG + "-" + dbHelper.getLocation());
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Let the next write start a new writer, and start one now for writes already queued,
+     * which would otherwise wait forever. The loop doesn't end, but a writer that dies anyway
+     * must not take the location's writes with it.
+     */
+    private synchronized void writerExited() {
+        if (writer == Thread.currentThread()) {
+            writer = null;
+        }
+        if (!queue.isEmpty()) {
+            startWriter();
+        }
+    }
+
+    private void writeLoop() {
+        List<Write<?>> batch = new ArrayList<Write<?>>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(queue.take());
+                // Writes that arrived during the last commit show other writers are active,
+                // so wait a little for the rest of them
+                if (queue.drainTo(batch, MAX_BATCH - 1) > 0) {
+                    long deadline = System.nanoTime()
+                            + TimeUnit.MILLISECONDS.toNanos(MAX_LINGER_MILLIS);
+                    while (batch.size() < MAX_BATCH) {
+                        Write<?> next = queue.poll(deadline - System.nanoTime(),
+                                TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                        queue.drainTo(batch, MAX_BATCH - batch.size());
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Nothing interrupts the writer, keep serving whatever is queued
+            }
+            if (!batch.isEmpty()) {
+                try {
+                    commit(batch);
+                } catch (Throwable e) {
+                    // E.g. an Error from a write. Fail what's left of the batch and keep serving
+                    // the queue, as the callers wait without a timeout.
+                    Log.e(LOG_TAG, "Batch of " + batch.size() + " writes failed", e);
+                    for (Write<?> write : batch) {
+                        write.complete(null, e);
+                    }
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Commit the batch in one transaction, or each write on its own if one of them fails or
+     * needs to run outside a transaction.
+     */
+    private void commit(List<Write<?>> batch) {
+        SQLiteDatabase database;
+        try {
+            database = dbHelper.getWritableDatabase();
+        } catch (RuntimeException e) {
+            for (Write<?> write : batch) {
+                write.complete(null, e);
+            }
+            return;
+        }
+
+        if (batch.size() > 1 && allNeedTransaction(batch)) {
+            Object[] results = new Object[batch.size()];
+            boolean committed = false;
+            database.beginTransaction();
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    results[i] = batch.get(i).execute(database);
+                }
+                database.setTransactionSuccessful();
+                committed = true;
+            } catch (RuntimeException e) {
+                Log.w(LOG_TAG, "Write failed, committing the batch of " + batch.size()
+                        + " one by one", e);
+            } finally {
+                try {
+                    database.endTransaction();
+                } catch (RuntimeException e) {
+                    // The commit failed, e.g. SQLITE_FULL, and the batch was rolled back
+                    Log.w(LOG_TAG, "Commit failed, committing the batch of " + batch.size()
+                            + " one by one", e);
+                    committed = false;
+                }
+            }
+            if (committed) {
+                for (int i = 0; i < batch.size(); i++) {
+                    finish(batch.get(i), results[i]);
+                }
+                return;
+            }
+        }
+
+        for (Write<?> write : batch) {
+            commitAlone(database, write);
+            if (!write.needsTransaction()) {
+                // E.g. a restore, which closes the database and opens the restored file
+                database = dbHelper.getWritableDatabase();
+            }
+        }
+    }
+
+    private static boolean allNeedTransaction(List<Write<?>> batch) {
+        for (Write<?> write : batch) {
+            if (!write.needsTransaction()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <T> void commitAlone(SQLiteDatabase database, Write<T> write) {
+        T result = null;
+        RuntimeException failure = null;
+        if (!write.needsTransaction()) {
+            try {
+                result = write.execute(database);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            completeAlone(write, result, failure);
+            return;
+        }
+
+        database.beginTransaction();
+        try {
+            result = write.execute(database);
+            database.setTransactionSuccessful();
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            try {
+                database.endTransaction();
+            } catch (RuntimeException e) {
+                // A failed commit fails the write, unless it had failed already
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        completeAlone(write, result, failure);
+    }
+
+    private static <T> void completeAlone(Write<T> write, T result, RuntimeException failure) {
+        if (failure != null) {
+            write.complete(null, failure);
+        } else {
+            finish(write, result);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void finish(Write<T> write, Object result) {
+        try {
+            write.afterCommit((T) result);
+        } catch (RuntimeException e) {
+            // The write is committed, don't report it as failed
+            Log.e(LOG_TAG, "After commit action failed", e);
+        }
+        write.complete((T) result, null);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.brandonkbarnes.storedatabase.sync;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-process stand-in for the back office. It keeps the latest copy of every item in memory
+ * and follows the same rules as the real backend: a pushed change is accepted only if its
+ * version is higher than the stored one, and pulls return changes in the order they were
+ * accepted. Useful for tests and for running the app without a server.
+ */
+public class LocalSyncBackend implements SyncBackend {
+
+    /** Data of one store location. */
+    private static class LocationData {
+        // Latest copy of each item, by sync id
+        final Map<String, SyncRecord> records = new HashMap<String, SyncRecord>();
+        // Sequence number at which each item's latest copy was accepted
+        final Map<String, Long> sequences = new HashMap<String, Long>();
+        // Latest copies in acceptance order, so a pull is a range scan
+        final TreeMap<Long, SyncRecord> changeLog = new TreeMap<Long, SyncRecord>();
+    }
+
+    private final Map<String, LocationData> locations = new HashMap<String, LocationData>();
+
+    // Last sequence number handed out, shared by all locations
+    private long sequence;
+
+    @Override
+    public synchronized List<SyncRecord> push(String location, List<SyncRecord> changes) {
+        LocationData data = dataFor(location);
+        List<SyncRecord> conflicts = new ArrayList<SyncRecord>();
+        for (SyncRecord change : changes) {
+            SyncRecord current = data.records.get(change.getSyncId());
+            if (current != null && current.getVersion() >= change.getVersion()) {
+                conflicts.add(current);
+                continue;
+            }
+            Long previousSequence = data.sequences.get(change.getSyncId());
+            if (previousSequence != null) {
+                data.changeLog.remove(previousSequence);
+            }
+            sequence++;
+            data.records.put(change.getSyncId(), change);
+            data.sequences.put(change.getSyncId(), sequence);
+            data.changeLog.put(sequence, change);
+        }
+        return conflicts;
+    }
+
+    @Override
+    public synchronized PullResult pull(String location, long watermark, int limit) {
+        LocationData data = dataFor(location);
+        List<SyncRecord> changes = new ArrayList<SyncRecord>();
+        long newWatermark = watermark;
+        Iterator<Map.Entry<Long, SyncRecord>> entries =
+                data.changeLog.tailMap(watermark, false).entrySet().iterator();
+        while (entries.hasNext() && changes.size() < limit) {
+            Map.Entry<Long, SyncRecord> entry = entries.next();
+            changes.add(entry.getValue());
+            newWatermark = entry.getKey();
+        }
+        return new PullResult(changes, newWatermark, entries.hasNext());
+    }
+
+    /**
+     * Return the number of items (including deletions) stored for a location.
+     */
+    public synchronized int size(String location) {
+        return dataFor(location).records.size();
+    }
+
+    private LocationData dataFor(String location) {
+        LocationData data = locations.get(location);
+        if (data == null) {
+            data = new LocationData();
+            locations.put(location, data);
+        }
+        return data;
+    }
+}
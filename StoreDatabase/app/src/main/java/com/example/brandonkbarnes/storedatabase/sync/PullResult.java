@@ -0,0 +1,36 @@
+package com.example.brandonkbarnes.storedatabase.sync;
+
+import java.util.List;
+
+/**
+ * A batch of changes returned by {@link SyncBackend#pull}.
+ */
+public class PullResult {
+
+    private final List<SyncRecord> changes;
+    private final long watermark;
+    private final boolean hasMore;
+
+    /**
+     * @param changes   the changes, oldest first
+     * @param watermark position to pass to the next pull
+     * @param hasMore   whether more changes are waiting after this batch
+     */
+    public PullResult(List<SyncRecord> changes, long watermark, boolean hasMore) {
+        this.changes = changes;
+        this.watermark = watermark;
+        this.hasMore = hasMore;
+    }
+
+    public List<SyncRecord> getChanges() {
+        return changes;
+    }
+
+    public long getWatermark() {
+        return watermark;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
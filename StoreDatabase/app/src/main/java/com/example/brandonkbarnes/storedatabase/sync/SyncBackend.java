@@ -0,0 +1,32 @@
+package com.example.brandonkbarnes.storedatabase.sync;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The back office the inventory is synced with. The app only talks to it through this
+ * interface, so the {@link SyncEngine} can be run against {@link LocalSyncBackend} in process.
+ *
+ * Every call is scoped to one store location, so each location keeps its own data set.
+ */
+public interface SyncBackend {
+
+    /**
+     * Send a batch of local changes. A change is accepted if its version is newer than the
+     * backend's copy. Otherwise the backend keeps its copy and returns it as a conflict.
+     *
+     * @param location name of the store location
+     * @param changes  changed or deleted items, with their local version
+     * @return the backend copies of the changes that were rejected
+     */
+    List<SyncRecord> push(String location, List<SyncRecord> changes) throws IOException;
+
+    /**
+     * Fetch changes made after the given watermark, oldest first.
+     *
+     * @param location  name of the store location
+     * @param watermark {@link PullResult#getWatermark()} of the previous pull, or 0
+     * @param limit     maximum number of changes to return
+     */
+    PullResult pull(String location, long watermark, int limit) throws IOException;
+}
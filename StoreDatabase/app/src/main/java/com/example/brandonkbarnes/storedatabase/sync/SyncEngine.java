@@ -0,0 +1,400 @@
+package com.example.brandonkbarnes.storedatabase.sync;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.SyncStateEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.TombstoneEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryDbHelper;
+import com.example.brandonkbarnes.storedatabase.data.InventoryRecord;
+import com.example.brandonkbarnes.storedatabase.data.SkuLookup;
+import com.example.brandonkbarnes.storedatabase.data.WriteScheduler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Delta sync of one store location's inventory with a {@link SyncBackend}.
+ *
+ * Only rows changed since the last sync move in either direction. Local changes are found
+ * through the dirty flag and the tombstone table (see
+ * {@link com.example.brandonkbarnes.storedatabase.data.ChangeTracking}) and pushed in batches.
+ * Backend changes are pulled in batches from the stored pull watermark. Conflicts are resolved
+ * by version: the higher version wins, and the backend wins a tie.
+ *
+ * Item images are not synced.
+ */
+public class SyncEngine {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = SyncEngine.class.getSimpleName();
+
+    // Number of changes sent or applied per round trip
+    public static final int DEFAULT_BATCH_SIZE = 200;
+
+    // Key of the pull watermark in the sync state table
+    private static final String KEY_PULL_WATERMARK = "pull_watermark";
+
+    private static final String[] ITEM_PROJECTION = {
+            InventoryEntry.COLUMN_SYNC_ID,
+            InventoryEntry.COLUMN_VERSION,
+            InventoryEntry.COLUMN_UPDATED_AT,
+            InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryEntry.COLUMN_ITEM_QUANTITY,
+            InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME,
+            InventoryEntry.COLUMN_ITEM_SUPPLIER_EMAIL,
+            InventoryEntry.COLUMN_ITEM_SUPPLIER_PHONE,
+            InventoryEntry.COLUMN_ITEM_SKU };
+
+    // Local row id and SKU of an item a backend copy is applied to
+    private static final String[] LOCAL_PROJECTION = {
+            InventoryEntry._ID,
+            InventoryEntry.COLUMN_ITEM_SKU };
+
+    private static final String[] TOMBSTONE_PROJECTION = {
+            TombstoneEntry.COLUMN_SYNC_ID,
+            TombstoneEntry.COLUMN_VERSION,
+            TombstoneEntry.COLUMN_DELETED_AT };
+
+    private final Context context;
+    private final String location;
+    private final InventoryDbHelper dbHelper;
+    private final SyncBackend backend;
+    private final int batchSize;
+
+    public SyncEngine(Context context, String location, SyncBackend backend) {
+        this(context, location, backend, DEFAULT_BATCH_SIZE);
+    }
+
+    public SyncEngine(Context context, String location, SyncBackend backend, int batchSize) {
+        this.context = context.getApplicationContext();
+        this.location = location;
+        this.dbHelper = InventoryDbHelper.getInstance(this.context, location);
+        this.backend = backend;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Push local changes, then pull backend changes. Listeners are notified once at the end
+     * if any local rows changed.
+     *
+     * @throws IOException if the backend can't be reached. Everything synced before the
+     *                     failure stays synced and the next run continues from there.
+     */
+    public synchronized SyncResult sync() throws IOException {
+        SyncResult result = new SyncResult();
+        boolean changed;
+        try {
+            changed = push(result);
+            changed |= pull(result);
+        } finally {
+            Log.v(LOG_TAG, "Sync of " + location + ": " + result);
+        }
+
+        if (changed) {
+            Uri uri = InventoryContract.DEFAULT_LOCATION.equals(location)
+                    ? InventoryEntry.CONTENT_URI : InventoryEntry.buildLocationUri(location);
+            context.getContentResolver().notifyChange(uri, null);
+            context.getContentResolver().notifyChange(InventoryEntry.STOCK_CONTENT_URI, null);
+        }
+        return result;
+    }
+
+    /**
+     * Push dirty items and tombstones until there are none left. The outcome of each batch is
+     * written as one write on the location's {@link WriteScheduler}.
+     *
+     * @return whether a conflict changed local rows
+     */
+    private boolean push(SyncResult result) throws IOException {
+        boolean changed = false;
+
+        List<SyncRecord> batch = readDirtyBatch(dbHelper.getReadableDatabase());
+        while (!batch.isEmpty()) {
+            final List<SyncRecord> pushed = batch;
+            final List<SyncRecord> conflicts = backend.push(location, pushed);
+            changed |= dbHelper.getWriteScheduler().submit(new WriteScheduler.Write<Boolean>() {
+                private final Map<Long, String> skuChanges = new HashMap<Long, String>();
+
+                @Override
+                protected Boolean execute(SQLiteDatabase database) {
+                    skuChanges.clear();
+                    Set<String> conflictIds = new HashSet<String>();
+                    for (SyncRecord conflict : conflicts) {
+                        conflictIds.add(conflict.getSyncId());
+                    }
+                    for (SyncRecord record : pushed) {
+                        if (!conflictIds.contains(record.getSyncId())) {
+                            markClean(database, record);
+                        }
+                    }
+                    // The backend's copy was newer, so it replaces the local change
+                    boolean replaced = false;
+                    for (SyncRecord conflict : conflicts) {
+                        replaced |= applyRemote(database, conflict, true, skuChanges);
+                    }
+                    return replaced;
+                }
+
+                @Override
+                protected void afterCommit(Boolean replaced) {
+                    resetChangeFeed(replaced);
+                    updateSkuLookup(skuChanges);
+                }
+            });
+
+            result.addPushed(batch.size() - conflicts.size());
+            result.addConflicts(conflicts.size());
+            batch = readDirtyBatch(dbHelper.getReadableDatabase());
+        }
+        return changed;
+    }
+
+    /**
+     * Pull backend changes from the stored watermark until the backend has no more. Each
+     * batch is applied as one write on the location's {@link WriteScheduler}.
+     *
+     * @return whether any local rows changed
+     */
+    private boolean pull(SyncResult result) throws IOException {
+        boolean changed = false;
+
+        long watermark = readWatermark(dbHelper.getReadableDatabase());
+        PullResult pulled;
+        do {
+            pulled = backend.pull(location, watermark, batchSize);
+            final PullResult batch = pulled;
+
+            // Apply the batch and advance the watermark together, so a crash can't skip changes
+            int applied = dbHelper.getWriteScheduler().submit(new WriteScheduler.Write<Integer>() {
+                private final Map<Long, String> skuChanges = new HashMap<Long, String>();
+
+                @Override
+                protected Integer execute(SQLiteDatabase database) {
+                    skuChanges.clear();
+                    int count = 0;
+                    for (SyncRecord record : batch.getChanges()) {
+                        if (applyRemote(database, record, false, skuChanges)) {
+                            count++;
+                        }
+                    }
+                    writeWatermark(database, batch.getWatermark());
+                    return count;
+                }
+
+                @Override
+                protected void afterCommit(Integer count) {
+                    resetChangeFeed(count > 0);
+                    updateSkuLookup(skuChanges);
+                }
+            });
+            if (applied > 0) {
+                changed = true;
+                result.addPulled(applied);
+            }
+            watermark = pulled.getWatermark();
+        } while (pulled.hasMore());
+        return changed;
+    }
+
+    /**
+     * Synced rows aren't tracked one by one, so a batch that changed any makes the change
+     * feed's readers start over.
+     */
+    private void resetChangeFeed(boolean changed) {
+        if (changed) {
+            dbHelper.getChangeFeed().reset();
+        }
+    }
+
+    /**
+     * Tell the SKU cache about the items whose SKU a committed batch set, changed or removed.
+     */
+    private void updateSkuLookup(Map<Long, String> skuChanges) {
+        SkuLookup skuLookup = dbHelper.getSkuLookup();
+        for (Map.Entry<Long, String> change : skuChanges.entrySet()) {
+            skuLookup.onSkuChanged(change.getKey(), change.getValue());
+        }
+    }
+
+    /**
+     * Read up to one batch of local changes: dirty items first, then dirty tombstones.
+     */
+    private List<SyncRecord> readDirtyBatch(SQLiteDatabase database) {
+        List<SyncRecord> batch = new ArrayList<SyncRecord>();
+
+        Cursor cursor = database.query(InventoryEntry.TABLE_NAME, ITEM_PROJECTION,
+                InventoryEntry.COLUMN_DIRTY + " = 1", null, null, null,
+                InventoryEntry.COLUMN_UPDATED_AT, String.valueOf(batchSize));
+        try {
+            while (cursor.moveToNext()) {
+                InventoryRecord item = new InventoryRecord(cursor.getString(3), cursor.getString(4),
+                        cursor.getInt(5), cursor.getString(6), cursor.getString(7),
+                        cursor.getString(8));
+                item.setSku(cursor.getString(9));
+                batch.add(SyncRecord.forItem(cursor.getString(0), cursor.getLong(1),
+                        cursor.getLong(2), item));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        int remaining = batchSize - batch.size();
+        if (remaining <= 0) {
+            return batch;
+        }
+        cursor = database.query(TombstoneEntry.TABLE_NAME, TOMBSTONE_PROJECTION,
+                TombstoneEntry.COLUMN_DIRTY + " = 1", null, null, null,
+                TombstoneEntry.COLUMN_DELETED_AT, String.valueOf(remaining));
+        try {
+            while (cursor.moveToNext()) {
+                batch.add(SyncRecord.forDeletion(cursor.getString(0), cursor.getLong(1),
+                        cursor.getLong(2)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return batch;
+    }
+
+    /**
+     * Clear the dirty state of a pushed change, unless the row changed again meanwhile.
+     */
+    private static void markClean(SQLiteDatabase database, SyncRecord record) {
+        String[] args = { record.getSyncId(), String.valueOf(record.getVersion()) };
+        if (record.isDeleted()) {
+            // The backend has the deletion, the tombstone is no longer needed
+            database.delete(TombstoneEntry.TABLE_NAME, TombstoneEntry.COLUMN_SYNC_ID + " = ? AND "
+                    + TombstoneEntry.COLUMN_VERSION + " = ?", args);
+        } else {
+            ContentValues values = new ContentValues();
+            values.put(InventoryEntry.COLUMN_DIRTY, 0);
+            database.update(InventoryEntry.TABLE_NAME, values, InventoryEntry.COLUMN_SYNC_ID
+                    + " = ? AND " + InventoryEntry.COLUMN_VERSION + " = ?", args);
+        }
+    }
+
+    /**
+     * Apply a backend copy of an item locally, without marking it dirty.
+     *
+     * @param force      apply even if the local copy has the same or a higher version
+     * @param skuChanges gets the new SKU, or null, of a local row whose SKU changed or that
+     *                   was deleted, by row id
+     * @return whether a local row changed
+     */
+    private static boolean applyRemote(SQLiteDatabase database, SyncRecord record, boolean force,
+                                       Map<Long, String> skuChanges) {
+        String[] syncIdArgs = { record.getSyncId() };
+        long localVersion = readLocalVersion(database, record.getSyncId());
+        if (!force && localVersion >= record.getVersion()) {
+            // The local copy is the same or newer. If it is newer it will be pushed.
+            return false;
+        }
+
+        // The backend copy wins, so drop any local deletion of the item
+        database.delete(TombstoneEntry.TABLE_NAME, TombstoneEntry.COLUMN_SYNC_ID + " = ?",
+                syncIdArgs);
+
+        long id = InventoryRecord.NO_ID;
+        String localSku = null;
+        Cursor cursor = database.query(InventoryEntry.TABLE_NAME, LOCAL_PROJECTION,
+                InventoryEntry.COLUMN_SYNC_ID + " = ?", syncIdArgs, null, null, null);
+        try {
+            if (cursor.moveToFirst()) {
+                id = cursor.getLong(0);
+                localSku = cursor.getString(1);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (record.isDeleted()) {
+            if (id == InventoryRecord.NO_ID) {
+                return false;
+            }
+            database.delete(InventoryEntry.TABLE_NAME, InventoryEntry._ID + " = " + id, null);
+            skuChanges.put(id, null);
+            return true;
+        }
+
+        ContentValues values = record.getItem().toContentValues();
+        values.put(InventoryEntry.COLUMN_SYNC_ID, record.getSyncId());
+        values.put(InventoryEntry.COLUMN_VERSION, record.getVersion());
+        values.put(InventoryEntry.COLUMN_UPDATED_AT, record.getUpdatedAt());
+        values.put(InventoryEntry.COLUMN_DIRTY, 0);
+        // A local deletion that hasn't been purged yet is undone like a tombstone
+        values.put(InventoryEntry.COLUMN_DELETED, 0);
+        if (id == InventoryRecord.NO_ID) {
+            id = database.insert(InventoryEntry.TABLE_NAME, null, values);
+            if (id != -1 && record.getSku() != null) {
+                skuChanges.put(id, record.getSku());
+            }
+        } else {
+            database.update(InventoryEntry.TABLE_NAME, values, InventoryEntry._ID + " = " + id,
+                    null);
+            if (!TextUtils.equals(localSku, record.getSku())) {
+                skuChanges.put(id, record.getSku());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the local version of an item, counting a deleted item's tombstone, or 0 if the
+     * item is unknown locally.
+     */
+    private static long readLocalVersion(SQLiteDatabase database, String syncId) {
+        String[] args = { syncId };
+        Cursor cursor = database.query(InventoryEntry.TABLE_NAME,
+                new String[] { InventoryEntry.COLUMN_VERSION },
+                InventoryEntry.COLUMN_SYNC_ID + " = ?", args, null, null, null);
+        try {
+            if (cursor.moveToFirst()) {
+                return cursor.getLong(0);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        cursor = database.query(TombstoneEntry.TABLE_NAME,
+                new String[] { TombstoneEntry.COLUMN_VERSION },
+                TombstoneEntry.COLUMN_SYNC_ID + " = ?", args, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static long readWatermark(SQLiteDatabase database) {
+        Cursor cursor = database.query(SyncStateEntry.TABLE_NAME,
+                new String[] { SyncStateEntry.COLUMN_VALUE }, SyncStateEntry.COLUMN_KEY + " = ?",
+                new String[] { KEY_PULL_WATERMARK }, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void writeWatermark(SQLiteDatabase database, long watermark) {
+        ContentValues values = new ContentValues();
+        values.put(SyncStateEntry.COLUMN_KEY, KEY_PULL_WATERMARK);
+        values.put(SyncStateEntry.COLUMN_VALUE, watermark);
+        database.insertWithOnConflict(SyncStateEntry.TABLE_NAME, null, values,
+                SQLiteDatabase.CONFLICT_REPLACE);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.brandonkbarnes.storedatabase.sync;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryRecord;
+
+/**
+ * One item as exchanged with the {@link SyncBackend}: its sync id and version, and either
+ * its attributes or a deletion marker.
+ */
+public class SyncRecord {
+
+    private final String syncId;
+    private final long version;
+    private final long updatedAt;
+    private final InventoryRecord item;
+
+    private SyncRecord(String syncId, long version, long updatedAt, InventoryRecord item) {
+        this.syncId = syncId;
+        this.version = version;
+        this.updatedAt = updatedAt;
+        this.item = item;
+    }
+
+    /**
+     * Create a record for an item that exists. The item's local row id is not synced.
+     */
+    public static SyncRecord forItem(String syncId, long version, long updatedAt,
+                                     InventoryRecord item) {
+        return new SyncRecord(syncId, version, updatedAt, item);
+    }
+
+    /**
+     * Create a record for an item that was deleted.
+     */
+    public static SyncRecord forDeletion(String syncId, long version, long deletedAt) {
+        return new SyncRecord(syncId, version, deletedAt, null);
+    }
+
+    public String getSyncId() {
+        return syncId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public boolean isDeleted() {
+        return item == null;
+    }
+
+    /**
+     * Return the item's SKU, or null for an item without one or a deletion.
+     */
+    public String getSku() {
+        return item == null ? null : item.getSku();
+    }
+
+    /**
+     * Return the item's attributes, or null for a deletion.
+     */
+    public InventoryRecord getItem() {
+        return item;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.brandonkbarnes.storedatabase.sync;
+
+/**
+ * Counts of what one {@link SyncEngine#sync()} run did.
+ */
+public class SyncResult {
+
+    private int pushed;
+    private int pulled;
+    private int conflicts;
+
+    void addPushed(int count) {
+        pushed += count;
+    }
+
+    void addPulled(int count) {
+        pulled += count;
+    }
+
+    void addConflicts(int count) {
+        conflicts += count;
+    }
+
+    /** Number of local changes sent to the backend. */
+    public int getPushed() {
+        return pushed;
+    }
+
+    /** Number of backend changes applied locally. */
+    public int getPulled() {
+        return pulled;
+    }
+
+    /** Number of pushed changes the backend rejected in favour of its own newer copy. */
+    public int getConflicts() {
+        return conflicts;
+    }
+
+    @Override
+    public String toString() {
+        return "pushed=" + pushed + " pulled=" + pulled + " conflicts=" + conflicts;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests of the column-oriented catalog buffer: growing, editing rows in place and
+ * copying.
+ */
+public class CatalogBufferTest {
+
+    @Test
+    public void growsPastItsCapacity() {
+        CatalogBuffer buffer = new CatalogBuffer(2);
+        for (int i = 0; i < 100; i++) {
+            buffer.add(i, "Item " + i, "$" + i, i % 7);
+        }
+        assertEquals(100, buffer.size());
+        assertEquals(99, buffer.getId(99));
+        assertEquals("Item 50", buffer.getName(50));
+        assertEquals("$3", buffer.getPrice(3));
+        assertEquals(6, buffer.getQuantity(6));
+
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        buffer.add(7, "Soap", "$3.00", 5);
+        assertEquals(0, buffer.indexOf(7));
+        assertEquals(-1, buffer.indexOf(99));
+    }
+
+    @Test
+    public void insertSetAndRemoveKeepRowsTogether() {
+        CatalogBuffer buffer = new CatalogBuffer(1);
+        buffer.add(1, "A", "$1", 1);
+        buffer.add(3, "C", "$3", 3);
+        buffer.insert(1, 2, "B", "$2", 2);
+        buffer.insert(3, 4, "D", "$4", 4);
+        assertRows(buffer, 1, 2, 3, 4);
+
+        buffer.set(2, 30, "CC", "$30", 30);
+        assertEquals("CC", buffer.getName(2));
+        assertEquals(30, buffer.getQuantity(2));
+
+        buffer.remove(0);
+        assertRows(buffer, 2, 30, 4);
+        assertEquals("B", buffer.getName(0));
+        assertEquals("$4", buffer.getPrice(2));
+    }
+
+    @Test
+    public void removeIdsDropsEveryListedRow() {
+        CatalogBuffer buffer = new CatalogBuffer();
+        for (int i = 1; i <= 10; i++) {
+            buffer.add(i, "Item " + i, "$1", i);
+        }
+        buffer.removeIds(new long[] { 1, 4, 5, 10, 11 });
+        assertRows(buffer, 2, 3, 6, 7, 8, 9);
+        assertEquals("Item 6", buffer.getName(2));
+        assertEquals(9, buffer.getQuantity(5));
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        CatalogBuffer source = new CatalogBuffer();
+        source.add(1, "A", "$1", 1);
+        source.add(2, "B", "$2", 2);
+
+        CatalogBuffer copy = new CatalogBuffer(source);
+        copy.remove(0);
+        copy.add(3, "C", "$3", 3);
+        assertRows(source, 1, 2);
+        assertRows(copy, 2, 3);
+    }
+
+    private static void assertRows(CatalogBuffer buffer, long... ids) {
+        assertEquals(ids.length, buffer.size());
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], buffer.getId(i));
+        }
+    }
+}
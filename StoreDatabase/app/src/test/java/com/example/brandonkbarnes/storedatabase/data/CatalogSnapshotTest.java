@@ -0,0 +1,67 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.database.Cursor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests of the catalog snapshot file: the mapped cursor gives back the rows that were
+ * written, and a file that was cut short is ignored.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CatalogSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void cursorReadsTheWrittenRows() throws IOException {
+        CatalogBuffer buffer = new CatalogBuffer();
+        buffer.add(3, "Soap", "$3.00", 5);
+        buffer.add(7, "Cr\u00e8me br\u00fbl\u00e9e", "\u20ac4.50", 0);
+        buffer.add(9, "", "$0.99", 120);
+        File file = folder.newFile();
+        CatalogSnapshot.write(file, buffer);
+
+        Cursor cursor = CatalogSnapshot.read(file);
+        assertNotNull(cursor);
+        try {
+            assertEquals(buffer.size(), cursor.getCount());
+            for (int i = 0; cursor.moveToNext(); i++) {
+                assertEquals(buffer.getId(i), cursor.getLong(0));
+                assertEquals(buffer.getName(i), cursor.getString(1));
+                assertEquals(buffer.getPrice(i), cursor.getString(2));
+                assertEquals(buffer.getQuantity(i), cursor.getInt(3));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void truncatedFileIsIgnored() throws IOException {
+        CatalogBuffer buffer = new CatalogBuffer();
+        buffer.add(1, "Soap", "$3.00", 5);
+        File file = folder.newFile();
+        CatalogSnapshot.write(file, buffer);
+
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try {
+            output.setLength(output.length() - 2);
+        } finally {
+            output.close();
+        }
+        assertNull(CatalogSnapshot.read(file));
+        assertNull(CatalogSnapshot.read(new File(folder.getRoot(), "missing")));
+    }
+}
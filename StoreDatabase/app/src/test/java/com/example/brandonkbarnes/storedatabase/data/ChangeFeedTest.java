@@ -0,0 +1,73 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests of the change log subscribers catch up from.
+ */
+public class ChangeFeedTest {
+
+    @Test
+    public void sinceListsEachItemOnceWithItsLastOperation() {
+        ChangeFeed feed = new ChangeFeed(16);
+        feed.record(ChangeFeed.OP_INSERT, 1);
+        long start = feed.getSequence();
+        feed.record(ChangeFeed.OP_INSERT, 2);
+        feed.record(ChangeFeed.OP_UPDATE, 1);
+        feed.record(ChangeFeed.OP_UPDATE, 2);
+        feed.record(ChangeFeed.OP_DELETE, 1);
+
+        ChangeFeed.Changes changes = feed.since(start);
+        assertEquals(2, changes.size());
+        assertEquals(feed.getSequence(), changes.getSequence());
+        for (int i = 0; i < changes.size(); i++) {
+            assertEquals(changes.getId(i) == 1 ? ChangeFeed.OP_DELETE : ChangeFeed.OP_UPDATE,
+                    changes.getOp(i));
+        }
+
+        assertEquals(0, feed.since(feed.getSequence()).size());
+    }
+
+    @Test
+    public void subscriberBehindTheLogMustReload() {
+        ChangeFeed feed = new ChangeFeed(16);
+        long start = feed.getSequence();
+        feed.record(ChangeFeed.OP_INSERT, new long[] { 1, -1, 2 });
+        assertEquals(2, feed.since(start).size());
+
+        for (int i = 0; i < 15; i++) {
+            feed.record(ChangeFeed.OP_UPDATE, 3);
+        }
+        // 17 changes, one more than the log holds
+        assertNull(feed.since(start));
+        assertNotNull(feed.since(start + 1));
+    }
+
+    @Test
+    public void resetForcesReload() {
+        ChangeFeed feed = new ChangeFeed(16);
+        feed.record(ChangeFeed.OP_INSERT, 1);
+        long beforeReset = feed.getSequence();
+        feed.reset();
+        long afterReset = feed.getSequence();
+        feed.record(ChangeFeed.OP_UPDATE, 1);
+
+        assertNull(feed.since(beforeReset));
+        assertTrue(feed.changedSince(5, beforeReset));
+        assertEquals(1, feed.since(afterReset).size());
+    }
+
+    @Test
+    public void changedSinceChecksOneItem() {
+        ChangeFeed feed = new ChangeFeed(16);
+        feed.record(ChangeFeed.OP_INSERT, 1);
+        long sequence = feed.getSequence();
+        feed.record(ChangeFeed.OP_UPDATE, 2);
+
+        assertFalse(feed.changedSince(1, sequence));
+        assertTrue(feed.changedSince(2, sequence));
+        assertTrue(feed.changedSince(1, sequence - 1));
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.database.MatrixCursor;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests of the column indices resolved for a cursor, and of reading records through
+ * them from a projection that leaves columns out.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class InventoryColumnsTest {
+
+    @Test
+    public void indicesFollowTheProjection() {
+        MatrixCursor cursor = new MatrixCursor(new String[] {
+                InventoryEntry.COLUMN_ITEM_QUANTITY,
+                InventoryEntry._ID,
+                InventoryEntry.COLUMN_ITEM_NAME });
+        InventoryColumns columns = InventoryColumns.of(cursor);
+
+        assertEquals(1, columns.id);
+        assertEquals(2, columns.name);
+        assertEquals(0, columns.quantity);
+        assertEquals(-1, columns.price);
+        assertEquals(-1, columns.supplierName);
+        assertEquals(-1, columns.supplierEmail);
+        assertEquals(-1, columns.supplierPhone);
+        assertEquals(-1, columns.sku);
+    }
+
+    @Test
+    public void missingColumnsReadAsDefaults() {
+        MatrixCursor cursor = new MatrixCursor(new String[] {
+                InventoryEntry._ID,
+                InventoryEntry.COLUMN_ITEM_NAME,
+                InventoryEntry.COLUMN_ITEM_QUANTITY,
+                InventoryEntry.COLUMN_ITEM_SKU });
+        cursor.addRow(new Object[] { 7, "Soap", 5, "0001" });
+        cursor.addRow(new Object[] { 8, "Sponge", 2, null });
+        InventoryColumns columns = InventoryColumns.of(cursor);
+
+        // One record reused for every row, as the cursor is walked
+        InventoryRecord record = new InventoryRecord();
+        assertTrue(cursor.moveToNext());
+        record.readFrom(cursor, columns);
+        assertEquals(7, record.getId());
+        assertEquals("Soap", record.getName());
+        assertEquals(5, record.getQuantity());
+        assertEquals("0001", record.getSku());
+        assertNull(record.getPrice());
+        assertNull(record.getSupplierName());
+
+        assertTrue(cursor.moveToNext());
+        record.readFrom(cursor, columns);
+        assertEquals(8, record.getId());
+        assertEquals("Sponge", record.getName());
+        assertNull(record.getSku());
+
+        MatrixCursor withoutId = new MatrixCursor(
+                new String[] { InventoryEntry.COLUMN_ITEM_NAME });
+        withoutId.addRow(new Object[] { "Soap" });
+        assertTrue(withoutId.moveToFirst());
+        assertEquals(InventoryRecord.NO_ID,
+                InventoryRecord.fromCursor(withoutId, InventoryColumns.of(withoutId)).getId());
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import android.content.Context;
+
+import com.example.brandonkbarnes.storedatabase.data.soak.SoakHarness;
+import com.example.brandonkbarnes.storedatabase.data.soak.SoakReport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLog;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the {@link SoakHarness} mix against the provider on the JVM and checks that it
+ * finished without errors, without more change notifications than writes, and without
+ * holding on to memory.
+ *
+ * The defaults make a ten second run, so it can stay in the local tests. For a soak run, set
+ * the "soak." properties of {@link SoakHarness.Config}, and soak.heapBudgetMb if needed, e.g.
+ * ./gradlew testDebugUnitTest --tests '*SoakTest' -Dsoak.durationSeconds=1800 -Dsoak.items=200000
+ * Latencies on the JVM aren't a device's, but compare well between runs of one machine.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class InventoryProviderSoakTest {
+
+    // Heap a run may keep after it's over, whatever its length
+    private static final long HEAP_BUDGET_BYTES =
+            Long.getLong("soak.heapBudgetMb", 32) * 1024 * 1024;
+
+    private Context context;
+    private SoakHarness.Config config;
+
+    @Before
+    public void setUp() {
+        ShadowLog.stream = System.out;
+        context = RuntimeEnvironment.application;
+        Robolectric.setupContentProvider(InventoryProvider.class,
+                InventoryContract.CONTENT_AUTHORITY);
+        config = SoakHarness.Config.fromSystemProperties();
+    }
+
+    @After
+    public void tearDown() {
+        InventoryDbHelper.getInstance(context, config.location).close();
+        context.deleteDatabase(InventoryDbHelper.getDatabaseName(config.location));
+    }
+
+    @Test
+    public void mixedLoadRunsClean() throws InterruptedException {
+        SoakHarness harness = new SoakHarness(context, config);
+        harness.seed();
+        SoakReport report = harness.run();
+        System.out.println(report);
+
+        assertEquals("Errors: " + report.getErrorsByKind(), 0, report.getErrors());
+        if (config.readers > 0) {
+            assertTrue(report.getCount(SoakHarness.OP_CATALOG) > 0);
+        }
+        if (config.sellers > 0) {
+            assertTrue(report.getCount(SoakHarness.OP_SALE) > 0);
+        }
+        if (config.bulkLoaders > 0) {
+            assertTrue(report.getCount(SoakHarness.OP_BULK_LOAD) > 0);
+        }
+
+        // One notification per committed write at most; a sale is a read and a write
+        long writes = report.getCount(SoakHarness.OP_INSERT)
+                + report.getCount(SoakHarness.OP_UPDATE)
+                + report.getCount(SoakHarness.OP_DELETE)
+                + report.getCount(SoakHarness.OP_SALE)
+                + report.getCount(SoakHarness.OP_BULK_LOAD);
+        assertTrue("Notifications " + report.getNotifications() + " for " + writes + " writes",
+                report.getNotifications() <= writes);
+
+        assertTrue("Retained " + report.getRetainedHeapGrowth() / 1024 + " kB",
+                report.getRetainedHeapGrowth() < HEAP_BUDGET_BYTES);
+    }
+}
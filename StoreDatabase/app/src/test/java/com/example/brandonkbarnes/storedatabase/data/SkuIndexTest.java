@@ -0,0 +1,113 @@
+package com.example.brandonkbarnes.storedatabase.data;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests of the in-memory SKU index and Bloom filter behind {@link SkuLookup}, with a
+ * benchmark of scan lookups over a 100k item catalog.
+ */
+public class SkuIndexTest {
+
+    private static final int CATALOG_SIZE = 100000;
+
+    // Number of scans in the benchmark, half of them for codes not in the catalog
+    private static final int LOOKUPS = 2000000;
+
+    @Test
+    public void putGetRemove() throws Exception {
+        SkuIndex index = new SkuIndex();
+        for (int i = 0; i < 1000; i++) {
+            index.put(sku(i), i);
+        }
+        assertEquals(1000, index.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, index.get(sku(i)));
+        }
+        assertEquals(SkuIndex.NOT_FOUND, index.get(sku(1000)));
+
+        // Remove every other entry, the rest must still be reachable past the gaps
+        for (int i = 0; i < 1000; i += 2) {
+            index.remove(sku(i));
+        }
+        assertEquals(500, index.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 0 ? SkuIndex.NOT_FOUND : i, index.get(sku(i)));
+        }
+
+        assertEquals(sku(7), index.removeId(7));
+        assertNull(index.removeId(7));
+        assertEquals(SkuIndex.NOT_FOUND, index.get(sku(7)));
+    }
+
+    @Test
+    public void putReplacesMapping() throws Exception {
+        SkuIndex index = new SkuIndex();
+        index.put("A1", 1);
+        index.put("A1", 2);
+        assertEquals(1, index.size());
+        assertEquals(2, index.get("A1"));
+    }
+
+    @Test
+    public void bloomFilterHasNoFalseNegatives() throws Exception {
+        BloomFilter bloom = new BloomFilter(CATALOG_SIZE, 0.01);
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            bloom.add(sku(i));
+        }
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            assertTrue(bloom.mightContain(sku(i)));
+        }
+
+        int falsePositives = 0;
+        for (int i = CATALOG_SIZE; i < 2 * CATALOG_SIZE; i++) {
+            if (bloom.mightContain(sku(i))) {
+                falsePositives++;
+            }
+        }
+        // Sized for 1%, allow some slack
+        assertTrue("False positive rate " + falsePositives / (double) CATALOG_SIZE,
+                falsePositives < CATALOG_SIZE / 50);
+    }
+
+    @Test
+    public void lookupBenchmark() throws Exception {
+        SkuIndex index = new SkuIndex(CATALOG_SIZE);
+        BloomFilter bloom = new BloomFilter(CATALOG_SIZE * 2, 0.01);
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            index.put(sku(i), i);
+            bloom.add(sku(i));
+        }
+
+        // Scanned codes are new String objects, so their hash codes are not cached yet
+        Random random = new Random(31);
+        String[] scans = new String[LOOKUPS];
+        for (int i = 0; i < scans.length; i++) {
+            scans[i] = sku(random.nextInt(CATALOG_SIZE * 2));
+        }
+
+        long found = 0;
+        long start = System.nanoTime();
+        for (String scan : scans) {
+            if (bloom.mightContain(scan) && index.get(scan) != SkuIndex.NOT_FOUND) {
+                found++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        double lookupsPerSecond = LOOKUPS / (elapsed / 1e9);
+        System.out.println(String.format("SKU lookups: %d in %.1f ms, %.0f lookups/s, %d found",
+                LOOKUPS, elapsed / 1e6, lookupsPerSecond, found));
+        assertTrue(found > LOOKUPS / 3 && found < LOOKUPS * 2 / 3);
+        // A register scans a few codes per second; anything under a microsecond is plenty
+        assertTrue(lookupsPerSecond > 1000000);
+    }
+
+    // EAN-13 style code for the i-th item
+    private static String sku(int i) {
+        return String.format("400%010d", i);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.brandonkbarnes.storedatabase.data.soak;
+
+/**
+ * Fixed-size histogram of operation latencies, so a soak run of any length records every
+ * operation in constant memory.
+ *
+ * Latencies are kept in microseconds, in buckets that double in width every
+ * {@link #SUB_BUCKETS} buckets, so a percentile is at most 1/16 above the true latency. Not
+ * thread safe; each worker thread records into its own histogram and they are merged at the
+ * end.
+ */
+class LatencyHistogram {
+
+    // Buckets per doubling of the latency
+    private static final int SUB_BUCKETS = 16;
+
+    // Up to 2^40 microseconds, about 12 days; longer latencies go in the last bucket
+    private static final int DOUBLINGS = 36;
+
+    private final long[] counts = new long[SUB_BUCKETS * (DOUBLINGS + 1)];
+    private long total;
+    private long maxMicros;
+
+    void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts[bucket(micros)]++;
+        total++;
+        maxMicros = Math.max(maxMicros, micros);
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        maxMicros = Math.max(maxMicros, other.maxMicros);
+    }
+
+    long getCount() {
+        return total;
+    }
+
+    long getMaxMicros() {
+        return maxMicros;
+    }
+
+    /**
+     * Return the latency in microseconds that the given fraction of operations didn't
+     * exceed, e.g. 0.99 for the 99th percentile, or 0 if nothing was recorded.
+     */
+    long percentileMicros(double fraction) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), maxMicros);
+            }
+        }
+        return maxMicros;
+    }
+
+    // The first SUB_BUCKETS buckets are one microsecond wide, after that each group of
+    // SUB_BUCKETS buckets covers twice the range of the one before
+    private static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int doubling = 63 - Long.numberOfLeadingZeros(micros) - 3;
+        if (doubling > DOUBLINGS) {
+            return SUB_BUCKETS * (DOUBLINGS + 1) - 1;
+        }
+        int sub = (int) (micros >>> (doubling - 1)) - SUB_BUCKETS;
+        return doubling * SUB_BUCKETS + sub;
+    }
+
+    // Largest latency in the bucket
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int doubling = bucket / SUB_BUCKETS;
+        long sub = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << (doubling - 1)) - 1;
+    }
+}
@@ -0,0 +1,478 @@
+package com.example.brandonkbarnes.storedatabase.data.soak;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.util.Log;
+
+import com.example.brandonkbarnes.storedatabase.data.InventoryContract.InventoryEntry;
+import com.example.brandonkbarnes.storedatabase.data.InventoryDbHelper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a mix of readers, writers, sales and bulk loads against the inventory provider for a
+ * fixed time, on a synthetic dataset generated from a seed, and reports what it measured in
+ * a {@link SoakReport}.
+ *
+ * Every thread goes through the content resolver, like the app does, so the group commit,
+ * the change notifications and the cursor windows are all exercised. Failed operations are
+ * counted by exception rather than stopping the run, so lock contention or an oversized
+ * cursor shows up as an error count next to the latencies.
+ */
+public class SoakHarness {
+
+    private static final String LOG_TAG = SoakHarness.class.getSimpleName();
+
+    /** Operations reported */
+    public static final String OP_CATALOG = "catalog";
+    public static final String OP_ITEM = "item";
+    public static final String OP_INSERT = "insert";
+    public static final String OP_UPDATE = "update";
+    public static final String OP_DELETE = "delete";
+    public static final String OP_SALE = "sale";
+    public static final String OP_BULK_LOAD = "bulk_load";
+
+    private static final String[] OPS = {
+            OP_CATALOG, OP_ITEM, OP_INSERT, OP_UPDATE, OP_DELETE, OP_SALE, OP_BULK_LOAD };
+
+    private static final String[] SORTS = {
+            null, InventoryEntry.SORT_NAME, InventoryEntry.SORT_PRICE,
+            InventoryEntry.SORT_QUANTITY };
+
+    private static final String[] WORDS = {
+            "Apple", "banana", "Cable", "drill", "Espresso", "flour", "Glove", "hammer", "Ink",
+            "jacket", "Kettle", "lamp", "Marker", "nail", "Oil", "paper", "Quilt", "rope" };
+
+    // The heap is sampled, and pauses check for the end of the run, this often
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * Mix, length and dataset of a run. The defaults make a short run; every value can be set
+     * with a "soak." system property, e.g. -Dsoak.durationSeconds=600 -Dsoak.readers=8.
+     */
+    public static final class Config {
+
+        // Threads of each kind
+        public int readers = 4;
+        public int writers = 2;
+        public int sellers = 2;
+        public int bulkLoaders = 1;
+
+        public long durationMillis = 10000;
+        public long seed = 42;
+
+        // Items inserted before the run, and per bulk load
+        public int items = 5000;
+        public int bulkSize = 200;
+
+        // Pause of a bulk loader between loads, so the dataset doesn't grow without bound
+        public long bulkPauseMillis = 500;
+
+        // Store location the run uses, so the app's data is left alone
+        public String location = "soak";
+
+        public static Config fromSystemProperties() {
+            Config config = new Config();
+            config.readers = Integer.getInteger("soak.readers", config.readers);
+            config.writers = Integer.getInteger("soak.writers", config.writers);
+            config.sellers = Integer.getInteger("soak.sellers", config.sellers);
+            config.bulkLoaders = Integer.getInteger("soak.bulkLoaders", config.bulkLoaders);
+            config.durationMillis = Long.getLong("soak.durationSeconds",
+                    config.durationMillis / 1000) * 1000;
+            config.seed = Long.getLong("soak.seed", config.seed);
+            config.items = Integer.getInteger("soak.items", config.items);
+            config.bulkSize = Integer.getInteger("soak.bulkSize", config.bulkSize);
+            config.bulkPauseMillis = Long.getLong("soak.bulkPauseMillis", config.bulkPauseMillis);
+            config.location = System.getProperty("soak.location", config.location);
+            return config;
+        }
+
+        @Override
+        public String toString() {
+            return "readers=" + readers + " writers=" + writers + " sellers=" + sellers
+                    + " bulkLoaders=" + bulkLoaders + " duration=" + durationMillis + "ms seed="
+                    + seed + " items=" + items + " bulkSize=" + bulkSize + " bulkPause="
+                    + bulkPauseMillis + "ms";
+        }
+    }
+
+    private final Context context;
+    private final Config config;
+    private final ContentResolver resolver;
+    private final Uri uri;
+
+    // Highest item id handed out so far; targeted operations pick ids up to it, and an id
+    // deleted in the meantime simply matches no row
+    private final AtomicLong maxId = new AtomicLong();
+
+    private volatile boolean stopped;
+
+    public SoakHarness(Context context, Config config) {
+        this.context = context;
+        this.config = config;
+        this.resolver = context.getContentResolver();
+        this.uri = InventoryEntry.buildLocationUri(config.location);
+    }
+
+    /**
+     * Insert the seeded dataset into an empty store location. Call before anything opened
+     * the location's database.
+     */
+    public void seed() {
+        context.deleteDatabase(InventoryDbHelper.getDatabaseName(config.location));
+        Random random = new Random(config.seed);
+        int inserted = 0;
+        while (inserted < config.items) {
+            ContentValues[] values = new ContentValues[Math.min(1000, config.items - inserted)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = item(random);
+            }
+            inserted += resolver.bulkInsert(uri, values);
+        }
+        maxId.set(inserted);
+    }
+
+    /**
+     * Run the mix for the configured time and return the measurements.
+     */
+    public SoakReport run() throws InterruptedException {
+        final AtomicLong notifications = new AtomicLong();
+        ContentObserver observer = new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange) {
+                notifications.incrementAndGet();
+            }
+        };
+        resolver.registerContentObserver(uri, true, observer);
+
+        List<Worker> workers = new ArrayList<Worker>();
+        for (int i = 0; i < config.readers; i++) {
+            workers.add(new Reader());
+        }
+        for (int i = 0; i < config.writers; i++) {
+            workers.add(new Writer());
+        }
+        for (int i = 0; i < config.sellers; i++) {
+            workers.add(new Seller());
+        }
+        for (int i = 0; i < config.bulkLoaders; i++) {
+            workers.add(new BulkLoader());
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        long heapBaseline = usedHeap();
+        long heapPeak = heapBaseline;
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(workers.size());
+        for (int i = 0; i < workers.size(); i++) {
+            final Worker worker = workers.get(i);
+            // Each worker has its own stream of the seeded randomness
+            worker.random = new Random(config.seed + i + 1);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        worker.loop();
+                    } catch (InterruptedException e) {
+                        // Stopped before it started
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, LOG_TAG + "-" + worker.getClass().getSimpleName() + "-" + i);
+            thread.start();
+        }
+
+        stopped = false;
+        long begin = System.nanoTime();
+        long end = begin + config.durationMillis * 1000000L;
+        start.countDown();
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            Thread.sleep(Math.min(POLL_MILLIS, Math.max(1, (end - now) / 1000000L)));
+            heapPeak = Math.max(heapPeak, usedHeap());
+        }
+        stopped = true;
+        done.await();
+        long elapsedMillis = (System.nanoTime() - begin) / 1000000L;
+        resolver.unregisterContentObserver(observer);
+
+        runtime.gc();
+        long heapAfter = usedHeap();
+
+        SoakReport report = new SoakReport(config, elapsedMillis, heapBaseline, heapPeak,
+                heapAfter, notifications.get(), countItems());
+        for (String op : OPS) {
+            report.addOperation(op);
+        }
+        for (Worker worker : workers) {
+            for (Map.Entry<String, LatencyHistogram> entry : worker.latencies.entrySet()) {
+                report.addLatencies(entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<String, Long> entry : worker.errors.entrySet()) {
+                report.addErrors(entry.getKey(), entry.getValue());
+            }
+        }
+        return report;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private long countItems() {
+        Cursor cursor = resolver.query(uri, new String[] { "COUNT(*)" }, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static ContentValues item(Random random) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_NAME, WORDS[random.nextInt(WORDS.length)] + " "
+                + WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(1000));
+        values.put(InventoryEntry.COLUMN_ITEM_PRICE, price(random));
+        values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, random.nextInt(50));
+        int supplier = random.nextInt(100);
+        values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER_NAME, "Supplier " + supplier);
+        values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER_EMAIL, "supplier" + supplier
+                + "@example.com");
+        values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER_PHONE, "555-" + (1000 + supplier));
+        return values;
+    }
+
+    private static String price(Random random) {
+        return String.format(Locale.US, "$%d.%02d", random.nextInt(500), random.nextInt(100));
+    }
+
+    /**
+     * One thread of the mix. Runs operations until the run is stopped and keeps its own
+     * latencies and errors, so workers never contend over the measurements.
+     */
+    private abstract class Worker {
+
+        Random random;
+        final Map<String, LatencyHistogram> latencies =
+                new LinkedHashMap<String, LatencyHistogram>();
+        final Map<String, Long> errors = new LinkedHashMap<String, Long>();
+
+        void loop() throws InterruptedException {
+            while (!stopped) {
+                step();
+            }
+        }
+
+        /** Run one or more operations through {@link #measure}. */
+        abstract void step() throws InterruptedException;
+
+        /**
+         * Run the operation and record its latency, or its exception as an error.
+         */
+        void measure(String op, Runnable operation) {
+            long start = System.nanoTime();
+            try {
+                operation.run();
+            } catch (RuntimeException e) {
+                String key = op + ": " + e.getClass().getSimpleName();
+                Long count = errors.get(key);
+                if (count == null) {
+                    // The first of its kind is logged whole, for its stack trace
+                    Log.w(LOG_TAG, "Operation " + op + " failed", e);
+                    count = 0L;
+                }
+                errors.put(key, count + 1);
+                return;
+            }
+            long elapsed = System.nanoTime() - start;
+            LatencyHistogram histogram = latencies.get(op);
+            if (histogram == null) {
+                histogram = new LatencyHistogram();
+                latencies.put(op, histogram);
+            }
+            histogram.record(elapsed);
+        }
+
+        Uri randomItemUri() {
+            long id = 1 + (long) (random.nextDouble() * maxId.get());
+            return ContentUris.withAppendedId(uri, id);
+        }
+
+        void insertedId(long id) {
+            long max;
+            while (id > (max = maxId.get()) && !maxId.compareAndSet(max, id)) {
+                // Another thread raised it first; check again
+            }
+        }
+    }
+
+    /**
+     * Reads whole catalogs in the orders the catalog offers, some for one supplier, and
+     * single items by id.
+     */
+    private class Reader extends Worker {
+
+        @Override
+        void step() {
+            if (random.nextInt(10) < 7) {
+                Uri.Builder builder = uri.buildUpon();
+                String sort = SORTS[random.nextInt(SORTS.length)];
+                if (sort != null) {
+                    builder.appendQueryParameter(InventoryEntry.QUERY_SORT, sort);
+                }
+                if (random.nextInt(4) == 0) {
+                    builder.appendQueryParameter(InventoryEntry.QUERY_SUPPLIER,
+                            "Supplier " + random.nextInt(100));
+                }
+                final Uri catalogUri = builder.build();
+                measure(OP_CATALOG, new Runnable() {
+                    @Override
+                    public void run() {
+                        readAll(resolver.query(catalogUri, InventoryEntry.CATALOG_PROJECTION,
+                                null, null, null));
+                    }
+                });
+            } else {
+                final Uri itemUri = randomItemUri();
+                measure(OP_ITEM, new Runnable() {
+                    @Override
+                    public void run() {
+                        readAll(resolver.query(itemUri, null, null, null, null));
+                    }
+                });
+            }
+        }
+
+        // Reads every row, so each cursor window of a large catalog is filled
+        private void readAll(Cursor cursor) {
+            try {
+                int columns = cursor.getColumnCount();
+                while (cursor.moveToNext()) {
+                    for (int i = 0; i < columns; i++) {
+                        cursor.getString(i);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Changes prices, adds items and deletes items.
+     */
+    private class Writer extends Worker {
+
+        @Override
+        void step() {
+            int choice = random.nextInt(10);
+            if (choice < 5) {
+                final Uri itemUri = randomItemUri();
+                final ContentValues values = new ContentValues();
+                values.put(InventoryEntry.COLUMN_ITEM_PRICE, price(random));
+                measure(OP_UPDATE, new Runnable() {
+                    @Override
+                    public void run() {
+                        resolver.update(itemUri, values, null, null);
+                    }
+                });
+            } else if (choice < 8) {
+                final ContentValues values = item(random);
+                measure(OP_INSERT, new Runnable() {
+                    @Override
+                    public void run() {
+                        Uri inserted = resolver.insert(uri, values);
+                        if (inserted != null) {
+                            insertedId(ContentUris.parseId(inserted));
+                        }
+                    }
+                });
+            } else {
+                final Uri itemUri = randomItemUri();
+                measure(OP_DELETE, new Runnable() {
+                    @Override
+                    public void run() {
+                        resolver.delete(itemUri, null, null);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Sells one unit of an item the way the catalog's sale button does: read the quantity,
+     * then write it back one lower.
+     */
+    private class Seller extends Worker {
+
+        private final String[] projection = { InventoryEntry.COLUMN_ITEM_QUANTITY };
+
+        @Override
+        void step() {
+            final Uri itemUri = randomItemUri();
+            measure(OP_SALE, new Runnable() {
+                @Override
+                public void run() {
+                    Cursor cursor = resolver.query(itemUri, projection, null, null, null);
+                    int quantity;
+                    try {
+                        if (!cursor.moveToFirst()) {
+                            return;
+                        }
+                        quantity = cursor.getInt(0);
+                    } finally {
+                        cursor.close();
+                    }
+                    if (quantity > 0) {
+                        ContentValues values = new ContentValues();
+                        values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, quantity - 1);
+                        resolver.update(itemUri, values, null, null);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Inserts batches of new items, like a delivery being scanned in.
+     */
+    private class BulkLoader extends Worker {
+
+        @Override
+        void step() throws InterruptedException {
+            final ContentValues[] values = new ContentValues[config.bulkSize];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = item(random);
+            }
+            measure(OP_BULK_LOAD, new Runnable() {
+                @Override
+                public void run() {
+                    // The ids aren't returned; close enough for picking targets
+                    maxId.addAndGet(resolver.bulkInsert(uri, values));
+                }
+            });
+            long pauseEnd = System.currentTimeMillis() + config.bulkPauseMillis;
+            long now;
+            while (!stopped && (now = System.currentTimeMillis()) < pauseEnd) {
+                Thread.sleep(Math.min(POLL_MILLIS, pauseEnd - now));
+            }
+        }
+    }
+}
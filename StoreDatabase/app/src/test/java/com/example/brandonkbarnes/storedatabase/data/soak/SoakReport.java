@@ -0,0 +1,132 @@
+package com.example.brandonkbarnes.storedatabase.data.soak;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Measurements of one {@link SoakHarness} run: throughput and latency percentiles per
+ * operation, errors by operation and exception, change notifications and heap growth.
+ */
+public class SoakReport {
+
+    private final SoakHarness.Config config;
+    private final long durationMillis;
+    private final long heapBaseline;
+    private final long heapPeak;
+    private final long heapAfter;
+    private final long notifications;
+    private final long itemsAfter;
+
+    private final Map<String, LatencyHistogram> latencies =
+            new LinkedHashMap<String, LatencyHistogram>();
+    private final Map<String, Long> errors = new LinkedHashMap<String, Long>();
+
+    SoakReport(SoakHarness.Config config, long durationMillis, long heapBaseline, long heapPeak,
+               long heapAfter, long notifications, long itemsAfter) {
+        this.config = config;
+        this.durationMillis = durationMillis;
+        this.heapBaseline = heapBaseline;
+        this.heapPeak = heapPeak;
+        this.heapAfter = heapAfter;
+        this.notifications = notifications;
+        this.itemsAfter = itemsAfter;
+    }
+
+    void addOperation(String op) {
+        if (!latencies.containsKey(op)) {
+            latencies.put(op, new LatencyHistogram());
+        }
+    }
+
+    void addLatencies(String op, LatencyHistogram histogram) {
+        addOperation(op);
+        latencies.get(op).add(histogram);
+    }
+
+    /** Errors are keyed by "operation: exception class". */
+    void addErrors(String key, long count) {
+        Long total = errors.get(key);
+        errors.put(key, total == null ? count : total + count);
+    }
+
+    /** Operations of the kind that completed. */
+    public long getCount(String op) {
+        LatencyHistogram histogram = latencies.get(op);
+        return histogram == null ? 0 : histogram.getCount();
+    }
+
+    /** Latency in microseconds the given fraction of the operations didn't exceed. */
+    public long getPercentileMicros(String op, double fraction) {
+        LatencyHistogram histogram = latencies.get(op);
+        return histogram == null ? 0 : histogram.percentileMicros(fraction);
+    }
+
+    /** Failed operations of all kinds. */
+    public long getErrors() {
+        long total = 0;
+        for (long count : errors.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    public Map<String, Long> getErrorsByKind() {
+        return errors;
+    }
+
+    /** Change notifications for the run's store location. */
+    public long getNotifications() {
+        return notifications;
+    }
+
+    /** Heap still in use after the run, over what was in use before it, after a GC each. */
+    public long getRetainedHeapGrowth() {
+        return heapAfter - heapBaseline;
+    }
+
+    /** Highest heap use sampled during the run, over what was in use before it. */
+    public long getPeakHeapGrowth() {
+        return heapPeak - heapBaseline;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(config).append('\n');
+        report.append(String.format(Locale.US, "%-10s %9s %9s %9s %9s %9s %9s %7s%n",
+                "operation", "count", "ops/s", "p50 us", "p99 us", "p999 us", "max us",
+                "errors"));
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            report.append(String.format(Locale.US, "%-10s %9d %9.1f %9d %9d %9d %9d %7d%n",
+                    entry.getKey(), histogram.getCount(),
+                    histogram.getCount() * 1000.0 / Math.max(1, durationMillis),
+                    histogram.percentileMicros(0.50), histogram.percentileMicros(0.99),
+                    histogram.percentileMicros(0.999), histogram.getMaxMicros(),
+                    errorsOf(entry.getKey())));
+        }
+        for (Map.Entry<String, Long> entry : errors.entrySet()) {
+            report.append("error ").append(entry.getKey()).append(" x").append(entry.getValue())
+                    .append('\n');
+        }
+        report.append(String.format(Locale.US,
+                "duration %d ms, notifications %d (%.1f/s), items after %d%n", durationMillis,
+                notifications, notifications * 1000.0 / Math.max(1, durationMillis), itemsAfter));
+        report.append(String.format(Locale.US,
+                "heap before %d kB, peak growth %d kB, retained growth %d kB",
+                heapBaseline / 1024, getPeakHeapGrowth() / 1024,
+                getRetainedHeapGrowth() / 1024));
+        return report.toString();
+    }
+
+    private long errorsOf(String op) {
+        long total = 0;
+        for (Map.Entry<String, Long> entry : errors.entrySet()) {
+            if (entry.getKey().startsWith(op + ":")) {
+                total += entry.getValue();
+            }
+        }
+        return total;
+    }
+}
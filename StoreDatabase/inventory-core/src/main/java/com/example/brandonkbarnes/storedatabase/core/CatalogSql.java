@@ -0,0 +1,138 @@
+package com.example.brandonkbarnes.storedatabase.core;
+
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.Items;
+
+/**
+ * SQL of the catalog and the name suggestions. The expressions here are also the keys of the
+ * covering indexes in {@link InventorySchema}, and must match them exactly for the indexes to
+ * be used, so queries take them from here rather than spelling them out.
+ */
+public final class CatalogSql {
+
+    /**
+     * Numeric value of the price column, which holds text like "$1,299.00". Must match the
+     * expression of the price index exactly for the index to be used.
+     */
+    public static final String PRICE_VALUE = "CAST(REPLACE(REPLACE("
+            + Items.PRICE + ", '$', ''), ',', '') AS REAL)";
+
+    /** Item names ignoring case, the catalog's name order */
+    public static final String NAME_NOCASE = Items.NAME + " COLLATE NOCASE";
+
+    /** Supplier names ignoring case, as indexed for the suggestions */
+    public static final String SUPPLIER_NOCASE = Items.SUPPLIER + " COLLATE NOCASE";
+
+    /*
+     * The catalog orders. Each one lists the rest of its index's key and ends with the row id,
+     * which SQLite appends to every index, so ties come out in one defined order that the
+     * index still serves without sorting, and that the app can reproduce in Java.
+     */
+
+    /** The order items were added */
+    public static final String ORDER_BY_ADDED = Items.ID;
+
+    /** Name order, served by inventory_name_cover */
+    public static final String ORDER_BY_NAME = NAME_NOCASE + ", " + Items.PRICE + ", "
+            + Items.QUANTITY + ", " + Items.ID;
+
+    /** Price order, served by inventory_price_cover */
+    public static final String ORDER_BY_PRICE = PRICE_VALUE + ", " + Items.NAME + ", "
+            + Items.PRICE + ", " + Items.QUANTITY + ", " + Items.ID;
+
+    /** Quantity order, served by inventory_quantity_cover */
+    public static final String ORDER_BY_QUANTITY = Items.QUANTITY + ", " + Items.NAME + ", "
+            + Items.PRICE + ", " + Items.ID;
+
+    /** Leading condition of every catalog index, so it must come first in a selection */
+    public static final String NOT_DELETED = Items.DELETED + " = 0";
+
+    /** Upper bound of a prefix range; sorts after any character a name can hold */
+    public static final String PREFIX_END = "\uffff";
+
+    /** Most names suggested at once */
+    public static final int MAX_SUGGESTIONS = 10;
+
+    /** SQL of the item name suggestions, taking the {@link #prefixRange} as arguments */
+    public static final String SQL_NAME_SUGGESTIONS = sqlSuggestions(
+            "MIN(" + Items.ID + ") AS " + Items.ID + ", " + Items.NAME, NAME_NOCASE);
+
+    /**
+     * SQL of the supplier suggestions, taking the {@link #prefixRange} as arguments. The
+     * contact details come from the row of the MAX(), the supplier's latest item.
+     */
+    public static final String SQL_SUPPLIER_SUGGESTIONS = sqlSuggestions(
+            "MAX(" + Items.ID + ") AS " + Items.ID + ", " + Items.SUPPLIER + ", "
+                    + Items.EMAIL + ", " + Items.PHONE, SUPPLIER_NOCASE);
+
+    private CatalogSql() {}
+
+    /**
+     * Return the arguments of the range of names starting with the prefix.
+     */
+    public static String[] prefixRange(String prefix) {
+        return new String[] { prefix, prefix + PREFIX_END };
+    }
+
+    /**
+     * Return the value {@link #PRICE_VALUE} computes for the price, for ordering prices in
+     * Java the way the catalog query does. Like SQLite's CAST to REAL this reads the longest
+     * leading number after any white space and ignores the rest, so "3.00 USD" is 3, and
+     * text without a leading number is 0.
+     */
+    public static double priceValue(String price) {
+        String text = price.replace("$", "").replace(",", "");
+        int length = text.length();
+        int start = 0;
+        while (start < length && isSpace(text.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        if (end < length && (text.charAt(end) == '+' || text.charAt(end) == '-')) {
+            end++;
+        }
+        int digits = end;
+        end = skipDigits(text, end);
+        boolean number = end > digits;
+        if (end < length && text.charAt(end) == '.') {
+            int fraction = end + 1;
+            end = skipDigits(text, fraction);
+            number |= end > fraction;
+        }
+        if (!number) {
+            return 0;
+        }
+        // An exponent only counts with digits
+        if (end < length && (text.charAt(end) == 'e' || text.charAt(end) == 'E')) {
+            int exponent = end + 1;
+            if (exponent < length
+                    && (text.charAt(exponent) == '+' || text.charAt(exponent) == '-')) {
+                exponent++;
+            }
+            int exponentEnd = skipDigits(text, exponent);
+            if (exponentEnd > exponent) {
+                end = exponentEnd;
+            }
+        }
+        return Double.parseDouble(text.substring(start, end));
+    }
+
+    // SQLite's white space, which a cast skips before the number
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000b' || c == '\f' || c == '\r';
+    }
+
+    private static int skipDigits(String text, int index) {
+        while (index < text.length() && text.charAt(index) >= '0' && text.charAt(index) <= '9') {
+            index++;
+        }
+        return index;
+    }
+
+    // A range seek on an index ordered by the name, grouped as the index is walked, so it
+    // stops after the first few names however many items match
+    private static String sqlSuggestions(String columns, String name) {
+        return "SELECT " + columns + " FROM " + Items.TABLE + " WHERE " + NOT_DELETED + " AND "
+                + name + " >= ? AND " + name + " < ? GROUP BY " + name + " ORDER BY " + name
+                + " LIMIT " + MAX_SUGGESTIONS;
+    }
+}
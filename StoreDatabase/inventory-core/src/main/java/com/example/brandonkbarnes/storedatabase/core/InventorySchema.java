@@ -0,0 +1,573 @@
+package com.example.brandonkbarnes.storedatabase.core;
+
+import java.util.UUID;
+
+/**
+ * Tables, columns and upgrade steps of a store database. The app's InventoryDbHelper creates
+ * and upgrades its databases with these steps, and tests on a plain JVM create the same
+ * schema through {@link JdbcStorage}.
+ */
+public final class InventorySchema {
+
+    // Schema version.
+    // 1: inventory table
+    // 2: change tracking columns, tombstones and sync state for the back office sync
+    // 3: incremental auto-vacuum and the maintenance log
+    // 4: item SKU with a unique index
+    // 5: covering indexes for the catalog orders and the supplier filter
+    // 6: price history kept by triggers
+    // 7: soft delete, catalog indexes rebuilt to skip deleted items
+    // 8: covering index for the catalog in the order items were added
+    // 9: categories with item counts kept by triggers
+    // 10: covering index for supplier autocomplete
+    public static final int VERSION = 10;
+
+    /** The inventory table, one row per item. */
+    public static final class Items {
+        public static final String TABLE = "inventory";
+        public static final String ID = "_id";
+        public static final String NAME = "name";
+        public static final String PRICE = "price";
+        public static final String QUANTITY = "quantity";
+        public static final String IMAGE = "image";
+        public static final String SUPPLIER = "supplier";
+        public static final String EMAIL = "email";
+        public static final String PHONE = "phone";
+        public static final String SKU = "sku";
+        public static final String SYNC_ID = "sync_id";
+        public static final String VERSION = "version";
+        public static final String UPDATED_AT = "updated_at";
+        public static final String DIRTY = "dirty";
+        public static final String DELETED = "deleted";
+
+        private Items() {}
+    }
+
+    /** The price history table, one row per item and period. */
+    public static final class PriceHistory {
+        public static final String TABLE = "price_history";
+        public static final String ID = "_id";
+        public static final String ITEM_ID = "item_id";
+        public static final String PRICE = "price";
+        public static final String VALID_FROM = "valid_from";
+        public static final String VALID_TO = "valid_to";
+
+        private PriceHistory() {}
+    }
+
+    /** The categories table. */
+    public static final class Categories {
+        public static final String TABLE = "categories";
+        public static final String ID = "_id";
+        public static final String NAME = "name";
+        public static final String ITEM_COUNT = "item_count";
+
+        private Categories() {}
+    }
+
+    /** The table putting items in categories. */
+    public static final class ItemCategories {
+        public static final String TABLE = "item_category";
+        public static final String ITEM_ID = "item_id";
+        public static final String CATEGORY_ID = "category_id";
+
+        private ItemCategories() {}
+    }
+
+    /** The item counts of the categories per supplier. */
+    public static final class CategorySuppliers {
+        public static final String TABLE = "category_supplier";
+        public static final String CATEGORY_ID = "category_id";
+        public static final String SUPPLIER = "supplier";
+        public static final String ITEM_COUNT = "item_count";
+
+        private CategorySuppliers() {}
+    }
+
+    /** The tombstones of deleted items for the back office sync. */
+    public static final class Tombstones {
+        public static final String TABLE = "tombstones";
+        public static final String SYNC_ID = "sync_id";
+        public static final String VERSION = "version";
+        public static final String DELETED_AT = "deleted_at";
+        public static final String DIRTY = "dirty";
+
+        private Tombstones() {}
+    }
+
+    /** The key/value state of the back office sync. */
+    public static final class SyncState {
+        public static final String TABLE = "sync_state";
+        public static final String KEY = "key";
+        public static final String VALUE = "value";
+
+        private SyncState() {}
+    }
+
+    /** The log of the database maintenance runs. */
+    public static final class MaintenanceLog {
+        public static final String TABLE = "maintenance_log";
+        public static final String ID = "_id";
+        public static final String STARTED_AT = "started_at";
+        public static final String DURATION = "duration_ms";
+        public static final String SIZE_BEFORE = "size_before";
+        public static final String SIZE_AFTER = "size_after";
+        public static final String FREE_PAGES_BEFORE = "free_pages_before";
+        public static final String FREE_PAGES_AFTER = "free_pages_after";
+        public static final String STEPS = "steps";
+        public static final String CHECK_RESULT = "check_result";
+
+        private MaintenanceLog() {}
+    }
+
+    // Current time in milliseconds since the epoch, in SQL. The same for a whole statement.
+    private static final String SQL_NOW_MILLIS =
+            "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+    // Trigger statements starting and ending the price period of the item in new and old
+    private static final String SQL_OPEN_PRICE_PERIOD = "INSERT INTO "
+            + PriceHistory.TABLE + " ("
+            + PriceHistory.ITEM_ID + ", "
+            + PriceHistory.PRICE + ", "
+            + PriceHistory.VALID_FROM + ") VALUES (new."
+            + Items.ID + ", new." + Items.PRICE + ", "
+            + SQL_NOW_MILLIS + ");";
+    private static final String SQL_CLOSE_PRICE_PERIOD = "UPDATE "
+            + PriceHistory.TABLE + " SET "
+            + PriceHistory.VALID_TO + " = " + SQL_NOW_MILLIS
+            + " WHERE " + PriceHistory.ITEM_ID + " = old." + Items.ID
+            + " AND " + PriceHistory.VALID_TO + " IS NULL;";
+
+    // Trigger statement adding the zero counts of the new supplier of the item in "new" in
+    // its categories, so they can be counted up
+    private static final String SQL_ADD_CATEGORY_SUPPLIER = "INSERT OR IGNORE INTO "
+            + CategorySuppliers.TABLE + " ("
+            + CategorySuppliers.CATEGORY_ID + ", "
+            + CategorySuppliers.SUPPLIER + ") SELECT "
+            + ItemCategories.CATEGORY_ID + ", new."
+            + Items.SUPPLIER + " FROM " + ItemCategories.TABLE
+            + " WHERE " + ItemCategories.ITEM_ID + " = new." + Items.ID + ";";
+
+    private InventorySchema() {}
+
+    /**
+     * Return a new sync id, 32 hex digits like the ones the version 2 upgrade assigns.
+     */
+    public static String newSyncId() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    /**
+     * Create the schema in an empty database, inside the caller's transaction.
+     */
+    public static void create(Storage storage) {
+        // Only takes effect before the first table is created. Android creates its
+        // android_metadata table on open, so the app's helper sets the mode while configuring
+        // a new database, and this covers databases created without it.
+        storage.execute("PRAGMA auto_vacuum = INCREMENTAL");
+
+        // Create a String that contains the SQL statement to create the inventory table
+        String SQL_CREATE_INVENTORY_TABLE =  "CREATE TABLE " + Items.TABLE + " ("
+                + Items.ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + Items.NAME + " TEXT NOT NULL, "
+                + Items.PRICE + " TEXT NOT NULL, "
+                + Items.QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
+                + Items.IMAGE + " BLOB, "
+                + Items.SUPPLIER + " TEXT NOT NULL, "
+                + Items.EMAIL + " TEXT NOT NULL, "
+                + Items.PHONE + " TEXT NOT NULL);";
+        // Execute the SQL statement
+        storage.execute(SQL_CREATE_INVENTORY_TABLE);
+
+        // Bring the version 1 table up to date with the same steps an upgrade takes, so new
+        // and upgraded databases always end up with the same schema.
+        upgrade(storage, 1, VERSION);
+    }
+
+    /**
+     * Upgrade the schema from the old version to the new one, inside the caller's transaction.
+     */
+    public static void upgrade(Storage storage, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            upgradeToVersion2(storage);
+        }
+        if (oldVersion < 3) {
+            upgradeToVersion3(storage);
+        }
+        if (oldVersion < 4) {
+            upgradeToVersion4(storage);
+        }
+        if (oldVersion < 5) {
+            upgradeToVersion5(storage);
+        }
+        if (oldVersion < 6) {
+            upgradeToVersion6(storage);
+        }
+        if (oldVersion < 7) {
+            upgradeToVersion7(storage);
+        }
+        if (oldVersion < 8) {
+            upgradeToVersion8(storage);
+        }
+        if (oldVersion < 9) {
+            upgradeToVersion9(storage);
+        }
+        if (oldVersion < 10) {
+            upgradeToVersion10(storage);
+        }
+    }
+
+    /**
+     * Add the change tracking columns, the tombstone table and the sync state table.
+     * Existing items get a sync id and are marked dirty, so the first sync pushes them.
+     */
+    private static void upgradeToVersion2(Storage storage) {
+        storage.execute("ALTER TABLE " + Items.TABLE + " ADD COLUMN "
+                + Items.SYNC_ID + " TEXT");
+        storage.execute("ALTER TABLE " + Items.TABLE + " ADD COLUMN "
+                + Items.VERSION + " INTEGER NOT NULL DEFAULT 1");
+        storage.execute("ALTER TABLE " + Items.TABLE + " ADD COLUMN "
+                + Items.UPDATED_AT + " INTEGER NOT NULL DEFAULT 0");
+        storage.execute("ALTER TABLE " + Items.TABLE + " ADD COLUMN "
+                + Items.DIRTY + " INTEGER NOT NULL DEFAULT 1");
+
+        storage.execute("UPDATE " + Items.TABLE + " SET "
+                + Items.SYNC_ID + " = lower(hex(randomblob(16))), "
+                + Items.UPDATED_AT + " = " + System.currentTimeMillis());
+
+        storage.execute("CREATE UNIQUE INDEX inventory_sync_id ON " + Items.TABLE
+                + " (" + Items.SYNC_ID + ")");
+        // The sync engine looks for dirty rows in change order
+        storage.execute("CREATE INDEX inventory_dirty ON " + Items.TABLE
+                + " (" + Items.DIRTY + ", " + Items.UPDATED_AT + ")");
+
+        storage.execute("CREATE TABLE " + Tombstones.TABLE + " ("
+                + Tombstones.SYNC_ID + " TEXT PRIMARY KEY, "
+                + Tombstones.VERSION + " INTEGER NOT NULL, "
+                + Tombstones.DELETED_AT + " INTEGER NOT NULL, "
+                + Tombstones.DIRTY + " INTEGER NOT NULL DEFAULT 1);");
+
+        storage.execute("CREATE TABLE " + SyncState.TABLE + " ("
+                + SyncState.KEY + " TEXT PRIMARY KEY, "
+                + SyncState.VALUE + " INTEGER NOT NULL);");
+    }
+
+    /**
+     * Add the maintenance log. An existing database only switches to incremental auto-vacuum
+     * through a full VACUUM, which can't run inside the upgrade transaction, so the app's
+     * maintenance job converts it once when the device is idle.
+     */
+    private static void upgradeToVersion3(Storage storage) {
+        storage.execute("CREATE TABLE " + MaintenanceLog.TABLE + " ("
+                + MaintenanceLog.ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + MaintenanceLog.STARTED_AT + " INTEGER NOT NULL, "
+                + MaintenanceLog.DURATION + " INTEGER NOT NULL, "
+                + MaintenanceLog.SIZE_BEFORE + " INTEGER NOT NULL, "
+                + MaintenanceLog.SIZE_AFTER + " INTEGER NOT NULL, "
+                + MaintenanceLog.FREE_PAGES_BEFORE + " INTEGER NOT NULL, "
+                + MaintenanceLog.FREE_PAGES_AFTER + " INTEGER NOT NULL, "
+                + MaintenanceLog.STEPS + " TEXT NOT NULL, "
+                + MaintenanceLog.CHECK_RESULT + " TEXT);");
+    }
+
+    /**
+     * Add the SKU column. Existing items have no SKU, and a unique index allows any number
+     * of nulls, so the index can be created right away.
+     */
+    private static void upgradeToVersion4(Storage storage) {
+        storage.execute("ALTER TABLE " + Items.TABLE + " ADD COLUMN "
+                + Items.SKU + " TEXT");
+        storage.execute("CREATE UNIQUE INDEX inventory_sku ON " + Items.TABLE
+                + " (" + Items.SKU + ")");
+    }
+
+    /**
+     * Add an index for each catalog order. Each one leads with the sort key and holds the
+     * rest of the catalog projection, so the catalog is read from the index alone. Ordering
+     * by price needs an index on an expression, which SQLite supports from 3.9.0; older
+     * devices sort by price in a temporary B-tree instead.
+     */
+    private static void upgradeToVersion5(Storage storage) {
+        storage.execute("CREATE INDEX inventory_name_cover ON " + Items.TABLE + " ("
+                + CatalogSql.NAME_NOCASE + ", "
+                + Items.PRICE + ", "
+                + Items.QUANTITY + ")");
+        storage.execute("CREATE INDEX inventory_supplier_cover ON " + Items.TABLE + " ("
+                + Items.SUPPLIER + ", "
+                + CatalogSql.NAME_NOCASE + ", "
+                + Items.PRICE + ", "
+                + Items.QUANTITY + ")");
+        storage.execute("CREATE INDEX inventory_quantity_cover ON " + Items.TABLE + " ("
+                + Items.QUANTITY + ", "
+                + Items.NAME + ", "
+                + Items.PRICE + ")");
+        if (storage.getSqliteVersion().supportsExpressionIndexes()) {
+            storage.execute("CREATE INDEX inventory_price_cover ON " + Items.TABLE + " ("
+                    + CatalogSql.PRICE_VALUE + ", "
+                    + Items.NAME + ", "
+                    + Items.PRICE + ", "
+                    + Items.QUANTITY + ")");
+        }
+    }
+
+    /**
+     * Add the price history. Triggers record the price of new items and close the current
+     * period and open a new one when a price changes, so every write path (provider,
+     * repository, sync) keeps the history in its own transaction. Existing items start their
+     * history with their current price.
+     */
+    private static void upgradeToVersion6(Storage storage) {
+        storage.execute("CREATE TABLE " + PriceHistory.TABLE + " ("
+                + PriceHistory.ID + " INTEGER PRIMARY KEY, "
+                + PriceHistory.ITEM_ID + " INTEGER NOT NULL, "
+                + PriceHistory.PRICE + " TEXT NOT NULL, "
+                + PriceHistory.VALID_FROM + " INTEGER NOT NULL, "
+                + PriceHistory.VALID_TO + " INTEGER);");
+
+        // Price of an item at a time: seek to the item and step back to the last period
+        // starting at or before the time. Holds the other columns so the row isn't read.
+        storage.execute("CREATE INDEX price_history_item ON " + PriceHistory.TABLE + " ("
+                + PriceHistory.ITEM_ID + ", "
+                + PriceHistory.VALID_FROM + ", "
+                + PriceHistory.VALID_TO + ", "
+                + PriceHistory.PRICE + ")");
+        // Price changes of all items in a time range
+        storage.execute("CREATE INDEX price_history_valid_from ON " + PriceHistory.TABLE
+                + " (" + PriceHistory.VALID_FROM + ")");
+
+        storage.execute("INSERT INTO " + PriceHistory.TABLE + " ("
+                + PriceHistory.ITEM_ID + ", "
+                + PriceHistory.PRICE + ", "
+                + PriceHistory.VALID_FROM + ") SELECT "
+                + Items.ID + ", "
+                + Items.PRICE + ", "
+                + SQL_NOW_MILLIS + " FROM " + Items.TABLE);
+
+        storage.execute("CREATE TRIGGER price_history_insert AFTER INSERT ON "
+                + Items.TABLE + " BEGIN " + SQL_OPEN_PRICE_PERIOD + " END");
+        storage.execute("CREATE TRIGGER price_history_update AFTER UPDATE OF "
+                + Items.PRICE + " ON " + Items.TABLE
+                + " WHEN old." + Items.PRICE + " IS NOT new."
+                + Items.PRICE + " BEGIN " + SQL_CLOSE_PRICE_PERIOD + " "
+                + SQL_OPEN_PRICE_PERIOD + " END");
+        // Deleted items keep their history for reporting, with the last period closed
+        storage.execute("CREATE TRIGGER price_history_delete AFTER DELETE ON "
+                + Items.TABLE + " BEGIN " + SQL_CLOSE_PRICE_PERIOD + " END");
+    }
+
+    /**
+     * Add the deleted flag. The catalog indexes are rebuilt with the flag in front, so
+     * queries for items that aren't deleted still read them from the index alone, and the
+     * purge finds the deleted items with a seek on any of them.
+     *
+     * Partial indexes WHERE deleted = 0 would leave the deleted items out, but they need
+     * SQLite 3.8.0 and API 15 to 20 ship 3.7, which fails the CREATE INDEX. Creating them only
+     * on newer devices would give the catalog queries and the purge two index layouts to be
+     * planned against, and the purge would need another index for the deleted items. The
+     * leading flag costs one byte per entry and keeps one layout everywhere.
+     */
+    private static void upgradeToVersion7(Storage storage) {
+        storage.execute("ALTER TABLE " + Items.TABLE + " ADD COLUMN "
+                + Items.DELETED + " INTEGER NOT NULL DEFAULT 0");
+
+        storage.execute("DROP INDEX inventory_name_cover");
+        storage.execute("DROP INDEX inventory_supplier_cover");
+        storage.execute("DROP INDEX inventory_quantity_cover");
+        storage.execute("DROP INDEX IF EXISTS inventory_price_cover");
+        storage.execute("CREATE INDEX inventory_name_cover ON " + Items.TABLE + " ("
+                + Items.DELETED + ", "
+                + CatalogSql.NAME_NOCASE + ", "
+                + Items.PRICE + ", "
+                + Items.QUANTITY + ")");
+        storage.execute("CREATE INDEX inventory_supplier_cover ON " + Items.TABLE + " ("
+                + Items.DELETED + ", "
+                + Items.SUPPLIER + ", "
+                + CatalogSql.NAME_NOCASE + ", "
+                + Items.PRICE + ", "
+                + Items.QUANTITY + ")");
+        storage.execute("CREATE INDEX inventory_quantity_cover ON " + Items.TABLE + " ("
+                + Items.DELETED + ", "
+                + Items.QUANTITY + ", "
+                + Items.NAME + ", "
+                + Items.PRICE + ")");
+        if (storage.getSqliteVersion().supportsExpressionIndexes()) {
+            storage.execute("CREATE INDEX inventory_price_cover ON " + Items.TABLE + " ("
+                    + Items.DELETED + ", "
+                    + CatalogSql.PRICE_VALUE + ", "
+                    + Items.NAME + ", "
+                    + Items.PRICE + ", "
+                    + Items.QUANTITY + ")");
+        }
+
+        // A deleted item's price stops being valid when it is deleted, not when it is purged
+        storage.execute("CREATE TRIGGER price_history_soft_delete AFTER UPDATE OF "
+                + Items.DELETED + " ON " + Items.TABLE
+                + " WHEN new." + Items.DELETED + " = 1 AND old."
+                + Items.DELETED + " = 0 BEGIN " + SQL_CLOSE_PRICE_PERIOD + " END");
+    }
+
+    /**
+     * Add a covering index in row id order. Without an ORDER BY the planner reads the
+     * catalog from whichever covering index it likes, so the order items were added has to
+     * be asked for, and this keeps that as cheap as the other orders.
+     */
+    private static void upgradeToVersion8(Storage storage) {
+        storage.execute("CREATE INDEX inventory_added_cover ON " + Items.TABLE + " ("
+                + Items.DELETED + ", "
+                + Items.ID + ", "
+                + Items.NAME + ", "
+                + Items.PRICE + ", "
+                + Items.QUANTITY + ")");
+    }
+
+    /**
+     * Add the categories and the table putting items in them, indexed both ways: by item for
+     * an item's categories and by category for browsing. Triggers keep the number of items
+     * that aren't deleted per category, and per category and supplier, as items are put in
+     * or taken out of categories, deleted, purged or change supplier, so the facet counts are
+     * read from one row per category. A wipe of the items has to reset the counts.
+     */
+    private static void upgradeToVersion9(Storage storage) {
+        storage.execute("CREATE TABLE " + Categories.TABLE + " ("
+                + Categories.ID + " INTEGER PRIMARY KEY, "
+                + Categories.NAME + " TEXT NOT NULL, "
+                + Categories.ITEM_COUNT + " INTEGER NOT NULL DEFAULT 0);");
+        // Categories are listed by name, and a name is only used once whatever its case
+        storage.execute("CREATE UNIQUE INDEX categories_name ON " + Categories.TABLE + " ("
+                + Categories.NAME + " COLLATE NOCASE)");
+
+        // The primary key lists the categories of an item, the index the items of a category
+        storage.execute("CREATE TABLE " + ItemCategories.TABLE + " ("
+                + ItemCategories.ITEM_ID + " INTEGER NOT NULL, "
+                + ItemCategories.CATEGORY_ID + " INTEGER NOT NULL, "
+                + "PRIMARY KEY (" + ItemCategories.ITEM_ID + ", "
+                + ItemCategories.CATEGORY_ID + "));");
+        storage.execute("CREATE INDEX item_category_category ON " + ItemCategories.TABLE + " ("
+                + ItemCategories.CATEGORY_ID + ", "
+                + ItemCategories.ITEM_ID + ")");
+
+        storage.execute("CREATE TABLE " + CategorySuppliers.TABLE + " ("
+                + CategorySuppliers.CATEGORY_ID + " INTEGER NOT NULL, "
+                + CategorySuppliers.SUPPLIER + " TEXT NOT NULL, "
+                + CategorySuppliers.ITEM_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+                + "PRIMARY KEY (" + CategorySuppliers.CATEGORY_ID + ", "
+                + CategorySuppliers.SUPPLIER + "));");
+
+        // An item put in or taken out of a category counts if it isn't deleted
+        storage.execute("CREATE TRIGGER item_category_insert AFTER INSERT ON "
+                + ItemCategories.TABLE + " BEGIN "
+                + "INSERT OR IGNORE INTO " + CategorySuppliers.TABLE + " ("
+                + CategorySuppliers.CATEGORY_ID + ", "
+                + CategorySuppliers.SUPPLIER + ") SELECT new."
+                + ItemCategories.CATEGORY_ID + ", "
+                + Items.SUPPLIER + " FROM " + Items.TABLE
+                + " WHERE " + Items.ID + " = new." + ItemCategories.ITEM_ID
+                + " AND " + CatalogSql.NOT_DELETED + "; "
+                + sqlCountLink("new", "+") + " END");
+        storage.execute("CREATE TRIGGER item_category_delete AFTER DELETE ON "
+                + ItemCategories.TABLE + " BEGIN " + sqlCountLink("old", "-") + " END");
+
+        // Items change counts when they are deleted, undeleted or change supplier
+        storage.execute("CREATE TRIGGER inventory_category_delete AFTER UPDATE OF "
+                + Items.DELETED + " ON " + Items.TABLE
+                + " WHEN old." + Items.DELETED + " = 0 AND new."
+                + Items.DELETED + " <> 0 BEGIN "
+                + sqlCountItem("old", "-") + " END");
+        storage.execute("CREATE TRIGGER inventory_category_undelete AFTER UPDATE OF "
+                + Items.DELETED + " ON " + Items.TABLE
+                + " WHEN old." + Items.DELETED + " <> 0 AND new."
+                + Items.DELETED + " = 0 BEGIN "
+                + SQL_ADD_CATEGORY_SUPPLIER + " " + sqlCountItem("new", "+") + " END");
+        storage.execute("CREATE TRIGGER inventory_category_supplier AFTER UPDATE OF "
+                + Items.SUPPLIER + " ON " + Items.TABLE
+                + " WHEN old." + Items.SUPPLIER + " IS NOT new."
+                + Items.SUPPLIER + " AND old."
+                + Items.DELETED + " = 0 AND new."
+                + Items.DELETED + " = 0 BEGIN "
+                + sqlCountItem("old", "-") + " " + SQL_ADD_CATEGORY_SUPPLIER + " "
+                + sqlCountItem("new", "+") + " END");
+
+        // A removed item leaves its categories; it only still counts if it wasn't deleted
+        // first, as it is when the sync removes it. Taking it out of its categories once the
+        // row is gone doesn't count again.
+        storage.execute("CREATE TRIGGER inventory_category_purge AFTER DELETE ON "
+                + Items.TABLE + " BEGIN "
+                + "UPDATE " + Categories.TABLE + " SET "
+                + Categories.ITEM_COUNT + " = " + Categories.ITEM_COUNT
+                + " - 1 WHERE old." + Items.DELETED + " = 0 AND "
+                + Categories.ID + " IN " + sqlCategoriesOf("old") + "; "
+                + "UPDATE " + CategorySuppliers.TABLE + " SET "
+                + CategorySuppliers.ITEM_COUNT + " = "
+                + CategorySuppliers.ITEM_COUNT + " - 1 WHERE old."
+                + Items.DELETED + " = 0 AND "
+                + CategorySuppliers.SUPPLIER + " = old."
+                + Items.SUPPLIER + " AND "
+                + CategorySuppliers.CATEGORY_ID + " IN " + sqlCategoriesOf("old") + "; "
+                + "DELETE FROM " + ItemCategories.TABLE + " WHERE "
+                + ItemCategories.ITEM_ID + " = old." + Items.ID + "; END");
+
+        storage.execute("CREATE TRIGGER category_delete AFTER DELETE ON " + Categories.TABLE
+                + " BEGIN DELETE FROM " + ItemCategories.TABLE + " WHERE "
+                + ItemCategories.CATEGORY_ID + " = old." + Categories.ID + "; "
+                + "DELETE FROM " + CategorySuppliers.TABLE + " WHERE "
+                + CategorySuppliers.CATEGORY_ID + " = old." + Categories.ID
+                + "; END");
+    }
+
+    /**
+     * Add an index on the supplier names ignoring case, holding the supplier's contact
+     * details, so the editor's supplier suggestions are a range seek that fills in the email
+     * and phone without reading the items. Item name suggestions use the name index.
+     */
+    private static void upgradeToVersion10(Storage storage) {
+        storage.execute("CREATE INDEX inventory_supplier_suggest ON " + Items.TABLE
+                + " (" + Items.DELETED + ", "
+                + CatalogSql.SUPPLIER_NOCASE + ", "
+                + Items.EMAIL + ", "
+                + Items.PHONE + ")");
+    }
+
+    /**
+     * Trigger statements counting the item of the item_category row in {@code row} in or out
+     * of its category, if the item isn't deleted.
+     */
+    private static String sqlCountLink(String row, String sign) {
+        String supplier = "(SELECT " + Items.SUPPLIER + " FROM "
+                + Items.TABLE + " WHERE " + Items.ID + " = " + row + "."
+                + ItemCategories.ITEM_ID + " AND " + CatalogSql.NOT_DELETED
+                + ")";
+        return "UPDATE " + Categories.TABLE + " SET " + Categories.ITEM_COUNT
+                + " = " + Categories.ITEM_COUNT + " " + sign + " 1 WHERE "
+                + Categories.ID + " = " + row + "." + ItemCategories.CATEGORY_ID
+                + " AND " + supplier + " IS NOT NULL; "
+                + "UPDATE " + CategorySuppliers.TABLE + " SET "
+                + CategorySuppliers.ITEM_COUNT + " = "
+                + CategorySuppliers.ITEM_COUNT + " " + sign + " 1 WHERE "
+                + CategorySuppliers.CATEGORY_ID + " = " + row + "."
+                + ItemCategories.CATEGORY_ID + " AND "
+                + CategorySuppliers.SUPPLIER + " = " + supplier + ";";
+    }
+
+    /**
+     * Trigger statements counting the inventory row in {@code row} in or out of all its
+     * categories, under the row's supplier.
+     */
+    private static String sqlCountItem(String row, String sign) {
+        return "UPDATE " + Categories.TABLE + " SET " + Categories.ITEM_COUNT
+                + " = " + Categories.ITEM_COUNT + " " + sign + " 1 WHERE "
+                + Categories.ID + " IN " + sqlCategoriesOf(row) + "; "
+                + "UPDATE " + CategorySuppliers.TABLE + " SET "
+                + CategorySuppliers.ITEM_COUNT + " = "
+                + CategorySuppliers.ITEM_COUNT + " " + sign + " 1 WHERE "
+                + CategorySuppliers.SUPPLIER + " = " + row + "."
+                + Items.SUPPLIER + " AND "
+                + CategorySuppliers.CATEGORY_ID + " IN " + sqlCategoriesOf(row) + ";";
+    }
+
+    // Subquery of the categories of the inventory row in "row"
+    private static String sqlCategoriesOf(String row) {
+        return "(SELECT " + ItemCategories.CATEGORY_ID + " FROM "
+                + ItemCategories.TABLE + " WHERE " + ItemCategories.ITEM_ID
+                + " = " + row + "." + Items.ID + ")";
+    }
+}
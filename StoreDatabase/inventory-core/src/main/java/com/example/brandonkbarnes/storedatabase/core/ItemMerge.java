@@ -0,0 +1,209 @@
+package com.example.brandonkbarnes.storedatabase.core;
+
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.Items;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges a batch of items into the inventory table, inserting new items and updating the
+ * ones that changed, so merging the same batch twice writes nothing the second time.
+ *
+ * Items with a SKU are written with one INSERT ... ON CONFLICT DO UPDATE on the SKU's unique
+ * index where SQLite supports it, and otherwise, like items without a SKU, with an UPDATE of
+ * the matching item or an INSERT if there is none. Either way the UPDATE only applies when a
+ * value differs, so unchanged items aren't written, keep their version and aren't synced
+ * again. The SQL is built the same way for items with the same columns, so the storage
+ * compiles it once for the whole batch.
+ */
+public final class ItemMerge {
+
+    // Upserted rows report their id and whether they were inserted, version 1, or updated
+    private static final String SQL_FIND_SKU = "SELECT " + Items.ID + ", " + Items.VERSION
+            + " FROM " + Items.TABLE + " WHERE " + Items.SKU + " = ?";
+
+    // Missing items give 0, as there is no row id 0
+    private static final String SQL_MATCH_SKU = "SELECT IFNULL(MIN(" + Items.ID + "), 0) FROM "
+            + Items.TABLE + " WHERE " + Items.SKU + " = ?";
+
+    // A seek on the supplier index, which holds the names ignoring case. The unary + keeps
+    // the planner from reading MIN(_id) off the index in id order, which without ANALYZE
+    // statistics it prefers, scanning every item for a name that isn't there yet.
+    private static final String SQL_MATCH_NAME = "SELECT IFNULL(MIN(+" + Items.ID + "), 0) FROM "
+            + Items.TABLE + " WHERE " + CatalogSql.NOT_DELETED + " AND " + Items.SUPPLIER
+            + " = ? AND " + CatalogSql.NAME_NOCASE + " = ?";
+
+    /** Items of one merge by what happened to them */
+    public static final class Result {
+
+        /** Ids of the inserted items */
+        public final long[] insertedIds;
+
+        /** SKUs of the inserted items, in the same order, null for items without one */
+        public final String[] insertedSkus;
+
+        /** Ids of the updated items */
+        public final long[] updatedIds;
+
+        /** Number of items that were the same already */
+        public final int unchanged;
+
+        private Result(long[] insertedIds, String[] insertedSkus, long[] updatedIds,
+                       int unchanged) {
+            this.insertedIds = insertedIds;
+            this.insertedSkus = insertedSkus;
+            this.updatedIds = updatedIds;
+            this.unchanged = unchanged;
+        }
+    }
+
+    private final Storage storage;
+    private final boolean supportsUpsert;
+
+    private ItemMerge(Storage storage) {
+        this.storage = storage;
+        supportsUpsert = storage.getSqliteVersion().supportsUpsert();
+    }
+
+    /**
+     * Merge the items, values by column, inside the caller's transaction. The items must be
+     * valid for an insert and leave the change tracking columns to the merge.
+     */
+    public static Result merge(Storage storage, List<? extends Map<String, ?>> items) {
+        return new ItemMerge(storage).mergeAll(items);
+    }
+
+    private Result mergeAll(List<? extends Map<String, ?>> items) {
+        long[] insertedIds = new long[items.size()];
+        String[] insertedSkus = new String[items.size()];
+        long[] updatedIds = new long[items.size()];
+        int inserted = 0;
+        int updated = 0;
+        int unchanged = 0;
+        for (Map<String, ?> item : items) {
+            // Sorted, so items with the same columns share their statements
+            String[] columns = item.keySet().toArray(new String[item.size()]);
+            Arrays.sort(columns);
+            Object[] values = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                values[i] = item.get(columns[i]);
+            }
+            Object skuValue = item.get(Items.SKU);
+            String sku = skuValue == null ? null : skuValue.toString();
+
+            long id;
+            boolean wasInserted;
+            if (sku != null && supportsUpsert) {
+                if (!upsert(columns, values)) {
+                    unchanged++;
+                    continue;
+                }
+                Rows rows = storage.query(SQL_FIND_SKU, sku);
+                try {
+                    rows.next();
+                    id = rows.getLong(0);
+                    wasInserted = rows.getLong(1) == 1;
+                } finally {
+                    rows.close();
+                }
+            } else {
+                id = sku != null
+                        ? storage.queryForLong(SQL_MATCH_SKU, sku)
+                        : storage.queryForLong(SQL_MATCH_NAME, item.get(Items.SUPPLIER),
+                                item.get(Items.NAME));
+                wasInserted = id == 0;
+                if (wasInserted) {
+                    id = storage.executeInsert(sqlInsert(columns), insertArgs(values));
+                } else if (!updateIfChanged(columns, values, id)) {
+                    unchanged++;
+                    continue;
+                }
+            }
+
+            if (wasInserted) {
+                insertedIds[inserted] = id;
+                insertedSkus[inserted++] = sku;
+            } else {
+                updatedIds[updated++] = id;
+            }
+        }
+        return new Result(Arrays.copyOf(insertedIds, inserted),
+                Arrays.copyOf(insertedSkus, inserted), Arrays.copyOf(updatedIds, updated),
+                unchanged);
+    }
+
+    /**
+     * Insert the item, or update the item with its SKU if any value differs. Return whether
+     * a row was written.
+     */
+    private boolean upsert(String[] columns, Object[] values) {
+        StringBuilder set = new StringBuilder();
+        StringBuilder changed = new StringBuilder();
+        for (String column : columns) {
+            set.append(column).append(" = excluded.").append(column).append(", ");
+            if (changed.length() > 0) {
+                changed.append(" OR ");
+            }
+            changed.append(column).append(" IS NOT excluded.").append(column);
+        }
+        String sql = sqlInsert(columns) + " ON CONFLICT (" + Items.SKU + ") DO UPDATE SET "
+                + set + sqlChangeTracking("excluded." + Items.UPDATED_AT) + " WHERE " + changed;
+        return storage.executeUpdateDelete(sql, insertArgs(values)) != 0;
+    }
+
+    /**
+     * Update the item with the given id if any value differs. Return whether it was updated.
+     */
+    private boolean updateIfChanged(String[] columns, Object[] values, long id) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(Items.TABLE).append(" SET ");
+        StringBuilder changed = new StringBuilder();
+        for (String column : columns) {
+            sql.append(column).append(" = ?, ");
+            if (changed.length() > 0) {
+                changed.append(" OR ");
+            }
+            changed.append(column).append(" IS NOT ?");
+        }
+        sql.append(sqlChangeTracking("?")).append(" WHERE ").append(Items.ID)
+                .append(" = ? AND (").append(changed).append(')');
+
+        // The values, the time and id, then the values again for the comparison
+        Object[] args = new Object[values.length * 2 + 2];
+        System.arraycopy(values, 0, args, 0, values.length);
+        args[values.length] = System.currentTimeMillis();
+        args[values.length + 1] = id;
+        System.arraycopy(values, 0, args, values.length + 2, values.length);
+        return storage.executeUpdateDelete(sql.toString(), args) != 0;
+    }
+
+    // INSERT of the item's columns and the change tracking columns of a new item
+    private static String sqlInsert(String[] columns) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(Items.TABLE).append(" (");
+        StringBuilder values = new StringBuilder();
+        for (String column : columns) {
+            sql.append(column).append(", ");
+            values.append("?, ");
+        }
+        return sql.append(Items.SYNC_ID).append(", ")
+                .append(Items.VERSION).append(", ")
+                .append(Items.UPDATED_AT).append(", ")
+                .append(Items.DIRTY).append(") VALUES (").append(values)
+                .append("?, 1, ?, 1)").toString();
+    }
+
+    // Assignments marking a row changed locally, like the app's ChangeTracking.update
+    private static String sqlChangeTracking(String updatedAt) {
+        return Items.VERSION + " = " + Items.VERSION + " + 1, "
+                + Items.UPDATED_AT + " = " + updatedAt + ", "
+                + Items.DIRTY + " = 1";
+    }
+
+    // The values of an insert followed by the new sync id and the time
+    private static Object[] insertArgs(Object[] values) {
+        Object[] args = Arrays.copyOf(values, values.length + 2);
+        args[values.length] = InventorySchema.newSyncId();
+        args[values.length + 1] = System.currentTimeMillis();
+        return args;
+    }
+}
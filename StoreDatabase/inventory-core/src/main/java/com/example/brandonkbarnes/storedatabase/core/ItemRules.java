@@ -0,0 +1,97 @@
+package com.example.brandonkbarnes.storedatabase.core;
+
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.Items;
+
+import java.util.Map;
+
+/**
+ * Validation rules for items and categories, shared by every write path so all of them
+ * reject the same bad data. The app's InventoryValidator applies them to ContentValues and
+ * typed records.
+ */
+public final class ItemRules {
+
+    private ItemRules() {}
+
+    /**
+     * Check the values for a new item by column. Every required column must be present.
+     */
+    public static void validateInsert(Map<String, ?> values) {
+        requireName(asString(values.get(Items.NAME)));
+        requirePrice(asString(values.get(Items.PRICE)));
+        requireQuantity(asInteger(values.get(Items.QUANTITY)));
+        requireSupplierName(asString(values.get(Items.SUPPLIER)));
+        requireSupplierEmail(asString(values.get(Items.EMAIL)));
+        requireSupplierPhone(asString(values.get(Items.PHONE)));
+        checkSku(asString(values.get(Items.SKU)));
+    }
+
+    public static void requireName(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Item requires a name");
+        }
+    }
+
+    public static void requirePrice(String price) {
+        if (price == null) {
+            throw new IllegalArgumentException("Item requires a price");
+        }
+    }
+
+    // The quantity must be present and greater than or equal to zero
+    public static void requireQuantity(Integer quantity) {
+        if (quantity == null || quantity < 0) {
+            throw new IllegalArgumentException("Item requires valid quantity");
+        }
+    }
+
+    public static void requireSupplierName(String supName) {
+        if (supName == null) {
+            throw new IllegalArgumentException("Item requires a supplier name");
+        }
+    }
+
+    public static void requireSupplierEmail(String supEmail) {
+        if (supEmail == null) {
+            throw new IllegalArgumentException("Item requires a supplier email");
+        }
+    }
+
+    public static void requireSupplierPhone(String supPhone) {
+        if (supPhone == null) {
+            throw new IllegalArgumentException("Item requires a supplier phone number");
+        }
+    }
+
+    // The SKU is optional, but an empty one would take the unique value "" for one item
+    public static void checkSku(String sku) {
+        if (sku != null && sku.trim().isEmpty()) {
+            throw new IllegalArgumentException("Item SKU must not be blank");
+        }
+    }
+
+    public static void requireCategoryName(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Category requires a name");
+        }
+    }
+
+    private static String asString(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    // Like ContentValues.getAsInteger: numbers are truncated, text is parsed, else null
+    private static Integer asInteger(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        if (value instanceof CharSequence) {
+            try {
+                return Integer.valueOf(value.toString());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,326 @@
+package com.example.brandonkbarnes.storedatabase.core;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link Storage} on a JDBC connection to SQLite, e.g. sqlite-jdbc, for running the schema
+ * and queries on a plain JVM. Prepared statements are kept per SQL, the least recently used
+ * closed first, like the statement cache of an Android connection.
+ */
+public final class JdbcStorage implements Storage {
+
+    // Prepared statements kept, the size of the app's statement cache
+    private static final int MAX_STATEMENTS = 100;
+
+    private final Connection connection;
+
+    private final Map<String, PreparedStatement> statements =
+            new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() <= MAX_STATEMENTS) {
+                return false;
+            }
+            closeQuietly(eldest.getValue());
+            return true;
+        }
+    };
+
+    // Nesting depth of the open transactions
+    private int depth;
+
+    // Whether the innermost transaction was marked successful
+    private boolean successful;
+
+    // Whether an inner transaction ended without being marked successful
+    private boolean failed;
+
+    private SqliteVersion version;
+
+    /**
+     * Use an open connection. Closing the storage closes the connection.
+     */
+    public JdbcStorage(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Open a connection to the database at the JDBC URL, e.g. "jdbc:sqlite::memory:" or
+     * "jdbc:sqlite:/tmp/store.db".
+     */
+    public static JdbcStorage open(String url) {
+        try {
+            return new JdbcStorage(DriverManager.getConnection(url));
+        } catch (SQLException e) {
+            throw new StorageException("Can't open " + url, e);
+        }
+    }
+
+    /**
+     * Return the underlying connection, e.g. for EXPLAIN QUERY PLAN in tests.
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    @Override
+    public void execute(String sql, Object... args) {
+        try {
+            if (args.length == 0) {
+                // Schema changes run once, so aren't worth keeping compiled
+                Statement statement = connection.createStatement();
+                try {
+                    statement.execute(sql);
+                } finally {
+                    statement.close();
+                }
+            } else {
+                bind(sql, args).execute();
+            }
+        } catch (SQLException e) {
+            throw new StorageException(sql, e);
+        }
+    }
+
+    @Override
+    public long executeInsert(String sql, Object... args) {
+        try {
+            if (bind(sql, args).executeUpdate() == 0) {
+                return -1;
+            }
+        } catch (SQLException e) {
+            throw new StorageException(sql, e);
+        }
+        return queryForLong("SELECT last_insert_rowid()");
+    }
+
+    @Override
+    public int executeUpdateDelete(String sql, Object... args) {
+        try {
+            return bind(sql, args).executeUpdate();
+        } catch (SQLException e) {
+            throw new StorageException(sql, e);
+        }
+    }
+
+    @Override
+    public long queryForLong(String sql, Object... args) {
+        try {
+            ResultSet resultSet = bind(sql, args).executeQuery();
+            try {
+                if (!resultSet.next()) {
+                    throw new StorageException("No rows for " + sql);
+                }
+                return resultSet.getLong(1);
+            } finally {
+                resultSet.close();
+            }
+        } catch (SQLException e) {
+            throw new StorageException(sql, e);
+        }
+    }
+
+    @Override
+    public Rows query(String sql, Object... args) {
+        try {
+            return new ResultSetRows(bind(sql, args).executeQuery());
+        } catch (SQLException e) {
+            throw new StorageException(sql, e);
+        }
+    }
+
+    @Override
+    public void beginTransaction() {
+        try {
+            if (depth == 0) {
+                connection.setAutoCommit(false);
+                failed = false;
+            }
+        } catch (SQLException e) {
+            throw new StorageException("Can't begin a transaction", e);
+        }
+        depth++;
+        successful = false;
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        if (depth == 0) {
+            throw new IllegalStateException("No transaction");
+        }
+        successful = true;
+    }
+
+    @Override
+    public void endTransaction() {
+        if (depth == 0) {
+            throw new IllegalStateException("No transaction");
+        }
+        if (!successful) {
+            failed = true;
+        }
+        // The enclosing transaction has to be marked successful again after this one
+        successful = false;
+        if (--depth != 0) {
+            return;
+        }
+        try {
+            if (failed) {
+                connection.rollback();
+            } else {
+                connection.commit();
+            }
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            throw new StorageException("Can't end the transaction", e);
+        }
+    }
+
+    @Override
+    public SqliteVersion getSqliteVersion() {
+        if (version == null) {
+            Rows rows = query("SELECT sqlite_version()");
+            try {
+                rows.next();
+                version = SqliteVersion.parse(rows.getString(0));
+            } finally {
+                rows.close();
+            }
+        }
+        return version;
+    }
+
+    @Override
+    public void close() {
+        for (PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new StorageException("Can't close the connection", e);
+        }
+    }
+
+    private PreparedStatement bind(String sql, Object[] args) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        }
+        statement.clearParameters();
+        for (int i = 0; i < args.length; i++) {
+            bindValue(statement, i + 1, args[i]);
+        }
+        return statement;
+    }
+
+    private static void bindValue(PreparedStatement statement, int index, Object value)
+            throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.NULL);
+        } else if (value instanceof Double || value instanceof Float) {
+            statement.setDouble(index, ((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            statement.setLong(index, ((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            statement.setLong(index, (Boolean) value ? 1 : 0);
+        } else if (value instanceof byte[]) {
+            statement.setBytes(index, (byte[]) value);
+        } else {
+            statement.setString(index, value.toString());
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // Nothing to do, the statement is being dropped
+        }
+    }
+
+    /**
+     * Rows of a result set, with the columns numbered from 0 instead of 1.
+     */
+    private static final class ResultSetRows implements Rows {
+
+        private final ResultSet resultSet;
+
+        ResultSetRows(ResultSet resultSet) {
+            this.resultSet = resultSet;
+        }
+
+        @Override
+        public boolean next() {
+            try {
+                return resultSet.next();
+            } catch (SQLException e) {
+                throw new StorageException("Can't read the next row", e);
+            }
+        }
+
+        @Override
+        public int getColumnCount() {
+            try {
+                return resultSet.getMetaData().getColumnCount();
+            } catch (SQLException e) {
+                throw new StorageException("Can't read the columns", e);
+            }
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            try {
+                return resultSet.getObject(column + 1) == null;
+            } catch (SQLException e) {
+                throw new StorageException("Can't read column " + column, e);
+            }
+        }
+
+        @Override
+        public long getLong(int column) {
+            try {
+                return resultSet.getLong(column + 1);
+            } catch (SQLException e) {
+                throw new StorageException("Can't read column " + column, e);
+            }
+        }
+
+        @Override
+        public double getDouble(int column) {
+            try {
+                return resultSet.getDouble(column + 1);
+            } catch (SQLException e) {
+                throw new StorageException("Can't read column " + column, e);
+            }
+        }
+
+        @Override
+        public String getString(int column) {
+            try {
+                return resultSet.getString(column + 1);
+            } catch (SQLException e) {
+                throw new StorageException("Can't read column " + column, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                resultSet.close();
+            } catch (SQLException e) {
+                throw new StorageException("Can't close the rows", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.brandonkbarnes.storedatabase.core;
+
+/**
+ * Rows of a {@link Storage} query, read forward once. Columns are numbered from 0, like the
+ * columns of an Android Cursor.
+ */
+public interface Rows {
+
+    /**
+     * Move to the next row. Return false when there are no more rows.
+     */
+    boolean next();
+
+    int getColumnCount();
+
+    boolean isNull(int column);
+
+    long getLong(int column);
+
+    double getDouble(int column);
+
+    String getString(int column);
+
+    void close();
+}
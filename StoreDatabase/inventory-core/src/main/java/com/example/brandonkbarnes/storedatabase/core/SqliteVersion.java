@@ -0,0 +1,68 @@
+package com.example.brandonkbarnes.storedatabase.core;
+
+/**
+ * Version of a SQLite library, telling which SQL features it supports. Android's minimum SDK
+ * ships SQLite 3.7, so newer syntax has to be used conditionally with a fallback.
+ */
+public final class SqliteVersion {
+
+    private final int major;
+    private final int minor;
+    private final int patch;
+
+    public SqliteVersion(int major, int minor, int patch) {
+        this.major = major;
+        this.minor = minor;
+        this.patch = patch;
+    }
+
+    /**
+     * Parse a version as returned by sqlite_version(), e.g. "3.22.0".
+     */
+    public static SqliteVersion parse(String version) {
+        String[] parts = version.trim().split("\\.");
+        int[] numbers = new int[3];
+        for (int i = 0; i < numbers.length && i < parts.length; i++) {
+            numbers[i] = Integer.parseInt(parts[i]);
+        }
+        return new SqliteVersion(numbers[0], numbers[1], numbers[2]);
+    }
+
+    /**
+     * Return whether this version is at least the given version.
+     */
+    public boolean isAtLeast(int major, int minor, int patch) {
+        if (this.major != major) {
+            return this.major > major;
+        }
+        if (this.minor != minor) {
+            return this.minor > minor;
+        }
+        return this.patch >= patch;
+    }
+
+    /** Indexes on expressions, added in SQLite 3.9.0. */
+    public boolean supportsExpressionIndexes() {
+        return isAtLeast(3, 9, 0);
+    }
+
+    /** PRAGMA optimize, added in SQLite 3.18.0. */
+    public boolean supportsOptimize() {
+        return isAtLeast(3, 18, 0);
+    }
+
+    /** INSERT ... ON CONFLICT DO UPDATE, added in SQLite 3.24.0. */
+    public boolean supportsUpsert() {
+        return isAtLeast(3, 24, 0);
+    }
+
+    /** VACUUM INTO, added in SQLite 3.27.0. */
+    public boolean supportsVacuumInto() {
+        return isAtLeast(3, 27, 0);
+    }
+
+    @Override
+    public String toString() {
+        return major + "." + minor + "." + patch;
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.brandonkbarnes.storedatabase.core;
+
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.Items;
+
+import java.util.Arrays;
+
+/**
+ * Reconciles a stocktake, the counted quantities of items by SKU, with the inventory table.
+ *
+ * The counts are loaded into a temporary table, many rows per INSERT, and compared with the
+ * items in one join on the SKU index. {@link #apply} then sets the counted quantity of the
+ * items that differ in one UPDATE, so items whose count already matches aren't written, keep
+ * their version and aren't synced again. Temporary tables belong to one connection, so run
+ * each call inside a transaction, which keeps it on the connection that writes.
+ */
+public final class StockCount {
+
+    private static final String TABLE = "temp.stock_count";
+    private static final String SKU = "sku";
+    private static final String COUNTED = "counted";
+
+    // Rows per INSERT, two arguments each, below SQLite's limit of 999 arguments
+    private static final int ROWS_PER_INSERT = 400;
+
+    private static final String SQL_CREATE = "CREATE TEMP TABLE IF NOT EXISTS stock_count ("
+            + SKU + " TEXT PRIMARY KEY NOT NULL, "
+            + COUNTED + " INTEGER NOT NULL)";
+
+    // Counted items whose stored quantity differs. CROSS JOIN keeps the counts as the outer
+    // loop, each SKU a seek on the SKU index, so a small count doesn't scan the catalog.
+    private static final String SQL_DIFFERENCES = "SELECT i." + Items.ID + ", c." + SKU
+            + ", i." + Items.NAME + ", i." + Items.QUANTITY + ", c." + COUNTED + " FROM "
+            + TABLE + " c CROSS JOIN " + Items.TABLE + " i ON i." + Items.SKU + " = c." + SKU
+            + " WHERE i." + Items.DELETED + " = 0 AND i." + Items.QUANTITY + " != c."
+            + COUNTED;
+
+    // Counted SKUs that no item has
+    private static final String SQL_UNKNOWN = "SELECT " + SKU + " FROM " + TABLE
+            + " WHERE NOT EXISTS (SELECT 1 FROM " + Items.TABLE + " WHERE " + Items.SKU
+            + " = " + TABLE + "." + SKU + " AND " + Items.DELETED + " = 0)";
+
+    private static final String SQL_APPLY = "UPDATE " + Items.TABLE + " SET "
+            + Items.QUANTITY + " = (SELECT " + COUNTED + " FROM " + TABLE + " WHERE " + SKU
+            + " = " + Items.TABLE + "." + Items.SKU + "), "
+            + Items.VERSION + " = " + Items.VERSION + " + 1, "
+            + Items.UPDATED_AT + " = ?, "
+            + Items.DIRTY + " = 1 WHERE " + Items.ID + " IN (SELECT i." + Items.ID + " FROM "
+            + TABLE + " c CROSS JOIN " + Items.TABLE + " i ON i." + Items.SKU + " = c." + SKU
+            + " WHERE i." + Items.DELETED + " = 0 AND i." + Items.QUANTITY + " != c."
+            + COUNTED + ")";
+
+    /** Items whose count differs from the stored quantity, and the SKUs nothing matched */
+    public static final class Report {
+
+        /** Ids of the items that differ */
+        public final long[] ids;
+
+        /** Their SKUs, in the same order */
+        public final String[] skus;
+
+        /** Their names */
+        public final String[] names;
+
+        /** Their stored quantities, before {@link #apply} */
+        public final int[] stored;
+
+        /** Their counted quantities */
+        public final int[] counted;
+
+        /** Counted SKUs no item has */
+        public final String[] unknownSkus;
+
+        /** Number of items whose count matched */
+        public final int matching;
+
+        private Report(long[] ids, String[] skus, String[] names, int[] stored, int[] counted,
+                       String[] unknownSkus, int matching) {
+            this.ids = ids;
+            this.skus = skus;
+            this.names = names;
+            this.stored = stored;
+            this.counted = counted;
+            this.unknownSkus = unknownSkus;
+            this.matching = matching;
+        }
+    }
+
+    private StockCount() {}
+
+    /**
+     * Compare the counts with the items inside the caller's transaction, writing nothing
+     * but the temporary table. The SKUs must be distinct and the counts zero or more.
+     */
+    public static Report compare(Storage storage, String[] skus, int[] counts) {
+        load(storage, skus, counts);
+        try {
+            return report(storage, skus.length);
+        } finally {
+            clear(storage);
+        }
+    }
+
+    /**
+     * Set the counted quantities of the items that differ inside the caller's transaction,
+     * as a local change, and return what was changed.
+     */
+    public static Report apply(Storage storage, String[] skus, int[] counts) {
+        load(storage, skus, counts);
+        try {
+            Report report = report(storage, skus.length);
+            if (report.ids.length != 0) {
+                storage.executeUpdateDelete(SQL_APPLY, System.currentTimeMillis());
+            }
+            return report;
+        } finally {
+            clear(storage);
+        }
+    }
+
+    /**
+     * Fill the temporary table with the counts, replacing an earlier stocktake.
+     */
+    private static void load(Storage storage, String[] skus, int[] counts) {
+        if (skus.length != counts.length) {
+            throw new IllegalArgumentException("Stock count requires a count per SKU");
+        }
+        storage.execute(SQL_CREATE);
+        clear(storage);
+
+        Object[] args = new Object[ROWS_PER_INSERT * 2];
+        for (int start = 0; start < skus.length; start += ROWS_PER_INSERT) {
+            int rows = Math.min(ROWS_PER_INSERT, skus.length - start);
+            // Full batches share one statement, only the last one is compiled separately
+            if (rows != ROWS_PER_INSERT) {
+                args = new Object[rows * 2];
+            }
+            for (int i = 0; i < rows; i++) {
+                if (skus[start + i] == null) {
+                    throw new IllegalArgumentException("Stock count requires a SKU per count");
+                }
+                ItemRules.checkSku(skus[start + i]);
+                ItemRules.requireQuantity(counts[start + i]);
+                args[i * 2] = skus[start + i];
+                args[i * 2 + 1] = counts[start + i];
+            }
+            storage.executeInsert(sqlInsert(rows), args);
+        }
+    }
+
+    // Empty the temporary table, which otherwise holds the counts until the connection closes
+    private static void clear(Storage storage) {
+        storage.execute("DELETE FROM " + TABLE);
+    }
+
+    private static String sqlInsert(int rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(TABLE).append(" (")
+                .append(SKU).append(", ").append(COUNTED).append(") VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?, ?)" : ", (?, ?)");
+        }
+        return sql.toString();
+    }
+
+    private static Report report(Storage storage, int counted) {
+        int capacity = 16;
+        long[] ids = new long[capacity];
+        String[] skus = new String[capacity];
+        String[] names = new String[capacity];
+        int[] stored = new int[capacity];
+        int[] counts = new int[capacity];
+        int size = 0;
+        Rows rows = storage.query(SQL_DIFFERENCES);
+        try {
+            while (rows.next()) {
+                if (size == capacity) {
+                    capacity *= 2;
+                    ids = Arrays.copyOf(ids, capacity);
+                    skus = Arrays.copyOf(skus, capacity);
+                    names = Arrays.copyOf(names, capacity);
+                    stored = Arrays.copyOf(stored, capacity);
+                    counts = Arrays.copyOf(counts, capacity);
+                }
+                ids[size] = rows.getLong(0);
+                skus[size] = rows.getString(1);
+                names[size] = rows.getString(2);
+                stored[size] = (int) rows.getLong(3);
+                counts[size] = (int) rows.getLong(4);
+                size++;
+            }
+        } finally {
+            rows.close();
+        }
+
+        String[] unknown = new String[16];
+        int unknownSize = 0;
+        rows = storage.query(SQL_UNKNOWN);
+        try {
+            while (rows.next()) {
+                if (unknownSize == unknown.length) {
+                    unknown = Arrays.copyOf(unknown, unknownSize * 2);
+                }
+                unknown[unknownSize++] = rows.getString(0);
+            }
+        } finally {
+            rows.close();
+        }
+
+        return new Report(Arrays.copyOf(ids, size), Arrays.copyOf(skus, size),
+                Arrays.copyOf(names, size), Arrays.copyOf(stored, size),
+                Arrays.copyOf(counts, size), Arrays.copyOf(unknown, unknownSize),
+                counted - size - unknownSize);
+    }
+}
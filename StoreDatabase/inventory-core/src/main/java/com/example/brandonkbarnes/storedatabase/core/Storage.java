@@ -0,0 +1,64 @@
+package com.example.brandonkbarnes.storedatabase.core;
+
+/**
+ * Connection to a store database, the little of SQLite the schema and queries of this module
+ * need. The app implements it on top of Android's SQLiteDatabase, and {@link JdbcStorage} on
+ * top of sqlite-jdbc for tests and benchmarks on a plain JVM.
+ *
+ * Arguments are bound by type: null, numbers, booleans as 0 or 1, byte arrays as blobs and
+ * anything else as text. Statements may be compiled once per SQL and reused, so SQL that is
+ * run often should be built the same way each time.
+ */
+public interface Storage {
+
+    /**
+     * Run a statement that returns no rows.
+     */
+    void execute(String sql, Object... args);
+
+    /**
+     * Run an INSERT and return the row id of the new row, or -1 if none was inserted.
+     */
+    long executeInsert(String sql, Object... args);
+
+    /**
+     * Run an UPDATE or DELETE and return the number of rows it changed.
+     */
+    int executeUpdateDelete(String sql, Object... args);
+
+    /**
+     * Run a query and return the first column of its first row as a number.
+     */
+    long queryForLong(String sql, Object... args);
+
+    /**
+     * Run a query and return its rows, which the caller must close.
+     */
+    Rows query(String sql, Object... args);
+
+    /**
+     * Begin a transaction. Transactions nest, and the outermost one commits only if every
+     * transaction in it was marked successful.
+     */
+    void beginTransaction();
+
+    /**
+     * Mark the current transaction successful. No more statements should run before it ends.
+     */
+    void setTransactionSuccessful();
+
+    /**
+     * End the current transaction.
+     */
+    void endTransaction();
+
+    /**
+     * Return the version of the SQLite library behind this storage.
+     */
+    SqliteVersion getSqliteVersion();
+
+    /**
+     * Release the compiled statements, and the connection if this storage opened it.
+     */
+    void close();
+}
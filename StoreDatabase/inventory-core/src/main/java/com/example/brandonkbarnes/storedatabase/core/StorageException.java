@@ -0,0 +1,18 @@
+package com.example.brandonkbarnes.storedatabase.core;
+
+/**
+ * Failure of a {@link Storage} statement, unchecked like Android's SQLException so callers
+ * handle errors the same way on either implementation.
+ */
+public class StorageException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public StorageException(String message) {
+        super(message);
+    }
+
+    public StorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
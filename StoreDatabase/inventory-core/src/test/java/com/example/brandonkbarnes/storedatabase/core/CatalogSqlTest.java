@@ -0,0 +1,119 @@
+package com.example.brandonkbarnes.storedatabase.core;
+
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.Items;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks on sqlite-jdbc that the catalog orders and the name suggestions are served from a
+ * covering index without a temporary B-tree, and that the suggestions find the right names.
+ */
+public class CatalogSqlTest {
+
+    private static final String SQL_CATALOG = "SELECT " + Items.ID + ", " + Items.NAME + ", "
+            + Items.PRICE + ", " + Items.QUANTITY + " FROM " + Items.TABLE + " WHERE "
+            + CatalogSql.NOT_DELETED + " ORDER BY ";
+
+    private Storage storage;
+
+    @Before
+    public void setUp() {
+        storage = JdbcStorage.open("jdbc:sqlite::memory:");
+        InventorySchema.create(storage);
+
+        // Give the planner statistics of a realistic catalog, not of an empty table
+        storage.beginTransaction();
+        try {
+            for (int i = 0; i < 1000; i++) {
+                storage.executeInsert("INSERT INTO " + Items.TABLE + " (" + Items.NAME + ", "
+                        + Items.PRICE + ", " + Items.QUANTITY + ", " + Items.SUPPLIER + ", "
+                        + Items.EMAIL + ", " + Items.PHONE + ") VALUES (?, ?, ?, ?, ?, ?)",
+                        "Item " + i, String.format(Locale.US, "$%d.99", i % 97), i % 13,
+                        "Supplier " + (i % 20), "supplier@example.com", "555-0100");
+            }
+            storage.setTransactionSuccessful();
+        } finally {
+            storage.endTransaction();
+        }
+        storage.execute("ANALYZE");
+    }
+
+    @After
+    public void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    public void catalogOrdersUseCoveringIndexes() {
+        assertCovered(SQL_CATALOG + CatalogSql.ORDER_BY_NAME, "inventory_name_cover");
+        assertCovered(SQL_CATALOG + CatalogSql.ORDER_BY_QUANTITY, "inventory_quantity_cover");
+        assertCovered(SQL_CATALOG + CatalogSql.ORDER_BY_PRICE, "inventory_price_cover");
+        assertCovered(SQL_CATALOG + CatalogSql.ORDER_BY_ADDED, "inventory_added_cover");
+    }
+
+    @Test
+    public void priceValueMatchesCast() {
+        String[] prices = { "$1,299.00", "3.00 USD", " 3.5x", "abc", "", ".5", "5.", "-2.5",
+                "+4", "1.2.3", "1e3x", "1e", "1e+", "0x10", "$-0", "9e999" };
+        for (String price : prices) {
+            Rows rows = storage.query("SELECT " + CatalogSql.PRICE_VALUE + " FROM (SELECT ? AS "
+                    + Items.PRICE + ")", price);
+            try {
+                assertTrue(rows.next());
+                assertEquals(price, rows.getDouble(0), CatalogSql.priceValue(price), 0);
+            } finally {
+                rows.close();
+            }
+        }
+    }
+
+    @Test
+    public void suggestionsUseCoveringIndexes() {
+        assertCovered(CatalogSql.SQL_NAME_SUGGESTIONS, "inventory_name_cover",
+                (Object[]) CatalogSql.prefixRange("ite"));
+        assertCovered(CatalogSql.SQL_SUPPLIER_SUGGESTIONS, "inventory_supplier_suggest",
+                (Object[]) CatalogSql.prefixRange("sup"));
+    }
+
+    @Test
+    public void supplierSuggestionsIgnoreCase() {
+        Rows rows = storage.query(CatalogSql.SQL_SUPPLIER_SUGGESTIONS,
+                (Object[]) CatalogSql.prefixRange("supplier 1"));
+        try {
+            // Supplier 1 and Supplier 10 to 19
+            int count = 0;
+            while (rows.next()) {
+                assertTrue(rows.getString(1).startsWith("Supplier 1"));
+                assertEquals("555-0100", rows.getString(3));
+                count++;
+            }
+            assertEquals(CatalogSql.MAX_SUGGESTIONS, count);
+        } finally {
+            rows.close();
+        }
+    }
+
+    /**
+     * Assert that the query reads only the given index and doesn't sort.
+     */
+    private void assertCovered(String sql, String index, Object... args) {
+        Rows rows = storage.query("EXPLAIN QUERY PLAN " + sql, args);
+        StringBuilder plan = new StringBuilder();
+        try {
+            // The last column of each row describes one step of the plan
+            while (rows.next()) {
+                plan.append(rows.getString(rows.getColumnCount() - 1)).append('\n');
+            }
+        } finally {
+            rows.close();
+        }
+        assertTrue(plan.toString(), plan.toString().contains("COVERING INDEX " + index));
+        assertFalse(plan.toString(), plan.toString().contains("TEMP B-TREE"));
+    }
+}
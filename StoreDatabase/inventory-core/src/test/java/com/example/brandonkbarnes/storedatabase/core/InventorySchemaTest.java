@@ -0,0 +1,112 @@
+package com.example.brandonkbarnes.storedatabase.core;
+
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.Categories;
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.CategorySuppliers;
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.ItemCategories;
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.Items;
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.PriceHistory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the schema on sqlite-jdbc: a new database gets every table and index, and the
+ * triggers keep the price history and the category counts as items change.
+ */
+public class InventorySchemaTest {
+
+    private static final String SQL_INSERT_ITEM = "INSERT INTO " + Items.TABLE + " ("
+            + Items.NAME + ", " + Items.PRICE + ", " + Items.QUANTITY + ", " + Items.SUPPLIER
+            + ", " + Items.EMAIL + ", " + Items.PHONE + ") VALUES (?, ?, 1, ?, '', '')";
+
+    private Storage storage;
+
+    @Before
+    public void setUp() {
+        storage = JdbcStorage.open("jdbc:sqlite::memory:");
+        InventorySchema.create(storage);
+    }
+
+    @After
+    public void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    public void createsEveryIndex() {
+        for (String index : new String[] { "inventory_sync_id", "inventory_dirty",
+                "inventory_sku", "inventory_name_cover", "inventory_supplier_cover",
+                "inventory_quantity_cover", "inventory_price_cover", "inventory_added_cover",
+                "inventory_supplier_suggest", "price_history_item", "categories_name",
+                "item_category_category" }) {
+            assertEquals(index, 1, storage.queryForLong(
+                    "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name = ?",
+                    index));
+        }
+    }
+
+    @Test
+    public void priceChangesAreRecorded() {
+        long id = insertItem("Widget", "$1.00", "Acme");
+        storage.executeUpdateDelete("UPDATE " + Items.TABLE + " SET " + Items.PRICE
+                + " = '$2.00' WHERE " + Items.ID + " = ?", id);
+
+        assertEquals(2, storage.queryForLong("SELECT COUNT(*) FROM " + PriceHistory.TABLE
+                + " WHERE " + PriceHistory.ITEM_ID + " = ?", id));
+        assertEquals(1, storage.queryForLong("SELECT COUNT(*) FROM " + PriceHistory.TABLE
+                + " WHERE " + PriceHistory.ITEM_ID + " = ? AND " + PriceHistory.VALID_TO
+                + " IS NULL AND " + PriceHistory.PRICE + " = '$2.00'", id));
+    }
+
+    @Test
+    public void categoryCountsFollowTheItems() {
+        long category = storage.executeInsert("INSERT INTO " + Categories.TABLE + " ("
+                + Categories.NAME + ") VALUES ('Tools')");
+        long hammer = insertItem("Hammer", "$9.00", "Acme");
+        long saw = insertItem("Saw", "$19.00", "Acme");
+        putInCategory(hammer, category);
+        putInCategory(saw, category);
+        assertCounts(category, 2, 2, 0);
+
+        // Changing supplier moves the item to the other supplier's count
+        storage.executeUpdateDelete("UPDATE " + Items.TABLE + " SET " + Items.SUPPLIER
+                + " = 'Bolt' WHERE " + Items.ID + " = ?", saw);
+        assertCounts(category, 2, 1, 1);
+
+        // Deleted items stop counting, and purging them doesn't count them out twice
+        storage.executeUpdateDelete("UPDATE " + Items.TABLE + " SET " + Items.DELETED
+                + " = 1 WHERE " + Items.ID + " = ?", saw);
+        assertCounts(category, 1, 1, 0);
+        storage.executeUpdateDelete("DELETE FROM " + Items.TABLE + " WHERE " + Items.ID
+                + " = ?", saw);
+        assertCounts(category, 1, 1, 0);
+        assertEquals(1, storage.queryForLong("SELECT COUNT(*) FROM " + ItemCategories.TABLE));
+    }
+
+    private long insertItem(String name, String price, String supplier) {
+        return storage.executeInsert(SQL_INSERT_ITEM, name, price, supplier);
+    }
+
+    private void putInCategory(long item, long category) {
+        storage.executeInsert("INSERT INTO " + ItemCategories.TABLE + " ("
+                + ItemCategories.ITEM_ID + ", " + ItemCategories.CATEGORY_ID + ") VALUES (?, ?)",
+                item, category);
+    }
+
+    private void assertCounts(long category, long total, long acme, long bolt) {
+        assertEquals(total, storage.queryForLong("SELECT " + Categories.ITEM_COUNT + " FROM "
+                + Categories.TABLE + " WHERE " + Categories.ID + " = ?", category));
+        assertEquals(acme, supplierCount(category, "Acme"));
+        assertEquals(bolt, supplierCount(category, "Bolt"));
+    }
+
+    private long supplierCount(long category, String supplier) {
+        return storage.queryForLong("SELECT IFNULL(SUM(" + CategorySuppliers.ITEM_COUNT
+                + "), 0) FROM " + CategorySuppliers.TABLE + " WHERE "
+                + CategorySuppliers.CATEGORY_ID + " = ? AND " + CategorySuppliers.SUPPLIER
+                + " = ?", category, supplier);
+    }
+}
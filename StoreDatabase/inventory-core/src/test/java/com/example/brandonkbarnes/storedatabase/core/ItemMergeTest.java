@@ -0,0 +1,185 @@
+package com.example.brandonkbarnes.storedatabase.core;
+
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.Items;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Merges a large price list on sqlite-jdbc, both with SQLite's upsert and with the UPDATE or
+ * INSERT fallback of devices older than SQLite 3.24. Merging the same list twice must write
+ * nothing the second time. The size defaults to 100,000 items and can be set with
+ * -Ddataset.items; the times are printed for comparing runs.
+ */
+public class ItemMergeTest {
+
+    private static final int ITEMS = Integer.getInteger("dataset.items", 100000);
+
+    private Storage storage;
+
+    @Before
+    public void setUp() {
+        storage = JdbcStorage.open("jdbc:sqlite::memory:");
+        InventorySchema.create(storage);
+    }
+
+    @After
+    public void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    public void upsertMergeIsIdempotent() {
+        assumeTrue(storage.getSqliteVersion().supportsUpsert());
+        assertIdempotent(storage, "upsert");
+    }
+
+    @Test
+    public void fallbackMergeIsIdempotent() {
+        assertIdempotent(withVersion(storage, new SqliteVersion(3, 7, 11)), "fallback");
+    }
+
+    @Test
+    public void changedItemsAreUpdated() {
+        merge(storage, priceList("$1.00"));
+
+        // Every other item gets a new price, and one more item is added
+        List<Map<String, Object>> items = priceList("$1.00");
+        for (int i = 0; i < ITEMS; i += 2) {
+            items.get(i).put(Items.PRICE, "$2.00");
+        }
+        items.add(item(ITEMS, "$3.00"));
+        assertCounts(merge(storage, items), 1, ITEMS / 2, ITEMS / 2);
+
+        assertEquals(ITEMS / 2, storage.queryForLong("SELECT COUNT(*) FROM " + Items.TABLE
+                + " WHERE " + Items.PRICE + " = '$2.00' AND " + Items.VERSION + " = 2"));
+        assertEquals(ITEMS + 1, storage.queryForLong("SELECT COUNT(*) FROM " + Items.TABLE));
+    }
+
+    private void assertIdempotent(Storage storage, String name) {
+        List<Map<String, Object>> items = priceList("$1.00");
+        long start = System.nanoTime();
+        assertCounts(merge(storage, items), ITEMS, 0, 0);
+        long inserted = System.nanoTime();
+        assertCounts(merge(storage, items), 0, 0, ITEMS);
+        long merged = System.nanoTime();
+        System.out.printf(Locale.US, "%s merge of %d items: %d ms new, %d ms unchanged%n",
+                name, ITEMS, (inserted - start) / 1000000, (merged - inserted) / 1000000);
+
+        // Nothing was written the second time
+        assertEquals(ITEMS, storage.queryForLong("SELECT COUNT(*) FROM " + Items.TABLE
+                + " WHERE " + Items.VERSION + " = 1"));
+    }
+
+    private static ItemMerge.Result merge(Storage storage, List<Map<String, Object>> items) {
+        storage.beginTransaction();
+        try {
+            ItemMerge.Result result = ItemMerge.merge(storage, items);
+            storage.setTransactionSuccessful();
+            return result;
+        } finally {
+            storage.endTransaction();
+        }
+    }
+
+    /**
+     * Items with SKUs on even indexes, and without on odd ones, so both keys are merged on.
+     */
+    private static List<Map<String, Object>> priceList(String price) {
+        List<Map<String, Object>> items = new ArrayList<Map<String, Object>>(ITEMS + 1);
+        for (int i = 0; i < ITEMS; i++) {
+            items.add(item(i, price));
+        }
+        return items;
+    }
+
+    private static Map<String, Object> item(int i, String price) {
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put(Items.NAME, "Item " + i);
+        values.put(Items.PRICE, price);
+        values.put(Items.QUANTITY, 5);
+        values.put(Items.SUPPLIER, "Supplier " + (i % 4));
+        values.put(Items.EMAIL, "supplier@example.com");
+        values.put(Items.PHONE, "555-0100");
+        if (i % 2 == 0) {
+            values.put(Items.SKU, String.format(Locale.US, "%012d", i));
+        }
+        ItemRules.validateInsert(values);
+        return values;
+    }
+
+    private static void assertCounts(ItemMerge.Result result, int inserted, int updated,
+                                     int unchanged) {
+        assertEquals(inserted, result.insertedIds.length);
+        assertEquals(updated, result.updatedIds.length);
+        assertEquals(unchanged, result.unchanged);
+    }
+
+    /**
+     * Return the storage reporting another SQLite version, to take the code paths of older
+     * devices.
+     */
+    private static Storage withVersion(final Storage storage, final SqliteVersion version) {
+        return new Storage() {
+            @Override
+            public void execute(String sql, Object... args) {
+                storage.execute(sql, args);
+            }
+
+            @Override
+            public long executeInsert(String sql, Object... args) {
+                return storage.executeInsert(sql, args);
+            }
+
+            @Override
+            public int executeUpdateDelete(String sql, Object... args) {
+                return storage.executeUpdateDelete(sql, args);
+            }
+
+            @Override
+            public long queryForLong(String sql, Object... args) {
+                return storage.queryForLong(sql, args);
+            }
+
+            @Override
+            public Rows query(String sql, Object... args) {
+                return storage.query(sql, args);
+            }
+
+            @Override
+            public void beginTransaction() {
+                storage.beginTransaction();
+            }
+
+            @Override
+            public void setTransactionSuccessful() {
+                storage.setTransactionSuccessful();
+            }
+
+            @Override
+            public void endTransaction() {
+                storage.endTransaction();
+            }
+
+            @Override
+            public SqliteVersion getSqliteVersion() {
+                return version;
+            }
+
+            @Override
+            public void close() {
+                storage.close();
+            }
+        };
+    }
+}
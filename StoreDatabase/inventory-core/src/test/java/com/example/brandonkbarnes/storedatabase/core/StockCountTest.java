@@ -0,0 +1,116 @@
+package com.example.brandonkbarnes.storedatabase.core;
+
+import com.example.brandonkbarnes.storedatabase.core.InventorySchema.Items;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reconciles a large stocktake on sqlite-jdbc. Only the items whose count differs are
+ * written, and applying the same count again writes nothing. The size defaults to 50,000
+ * counted items and can be set with -Ddataset.counts; the times are printed for comparing
+ * runs.
+ */
+public class StockCountTest {
+
+    private static final int COUNTS = Integer.getInteger("dataset.counts", 50000);
+
+    // Every DIFFERENT-th item was miscounted in the database
+    private static final int DIFFERENT = 10;
+
+    private static final String SQL_INSERT_ITEM = "INSERT INTO " + Items.TABLE + " ("
+            + Items.NAME + ", " + Items.PRICE + ", " + Items.QUANTITY + ", " + Items.SUPPLIER
+            + ", " + Items.EMAIL + ", " + Items.PHONE + ", " + Items.SKU + ", " + Items.SYNC_ID
+            + ", " + Items.VERSION + ", " + Items.UPDATED_AT + ", " + Items.DIRTY
+            + ") VALUES (?, '$1.00', ?, 'Acme', '', '', ?, ?, 1, 0, 0)";
+
+    private Storage storage;
+
+    @Before
+    public void setUp() {
+        storage = JdbcStorage.open("jdbc:sqlite::memory:");
+        InventorySchema.create(storage);
+        storage.beginTransaction();
+        try {
+            for (int i = 0; i < COUNTS; i++) {
+                storage.executeInsert(SQL_INSERT_ITEM, "Item " + i,
+                        i % DIFFERENT == 0 ? 7 : 5, sku(i), InventorySchema.newSyncId());
+            }
+            storage.setTransactionSuccessful();
+        } finally {
+            storage.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    public void onlyDifferencesAreApplied() {
+        // Every item counted 5, plus two SKUs nothing has
+        String[] skus = new String[COUNTS + 2];
+        int[] counts = new int[COUNTS + 2];
+        for (int i = 0; i < skus.length; i++) {
+            skus[i] = sku(i);
+            counts[i] = 5;
+        }
+        int different = (COUNTS + DIFFERENT - 1) / DIFFERENT;
+
+        long start = System.nanoTime();
+        StockCount.Report report = run(false, skus, counts);
+        long compared = System.nanoTime();
+        assertEquals(different, report.ids.length);
+        assertEquals(2, report.unknownSkus.length);
+        assertEquals(COUNTS - different, report.matching);
+        for (int i = 0; i < report.ids.length; i++) {
+            assertEquals(7, report.stored[i]);
+            assertEquals(5, report.counted[i]);
+        }
+        // Comparing writes nothing
+        assertEquals(0, dirtyItems());
+
+        long applying = System.nanoTime();
+        assertEquals(different, run(true, skus, counts).ids.length);
+        long applied = System.nanoTime();
+        System.out.printf(Locale.US, "stock count of %d items: %d ms compared, %d ms applied%n",
+                COUNTS, (compared - start) / 1000000, (applied - applying) / 1000000);
+
+        assertEquals(different, dirtyItems());
+        assertEquals(0, storage.queryForLong("SELECT COUNT(*) FROM " + Items.TABLE + " WHERE "
+                + Items.QUANTITY + " != 5"));
+
+        // Nothing differs any more
+        StockCount.Report again = run(true, skus, counts);
+        assertEquals(0, again.ids.length);
+        assertEquals(COUNTS, again.matching);
+        assertEquals(different, dirtyItems());
+    }
+
+    private StockCount.Report run(boolean apply, String[] skus, int[] counts) {
+        storage.beginTransaction();
+        try {
+            StockCount.Report report = apply ? StockCount.apply(storage, skus, counts)
+                    : StockCount.compare(storage, skus, counts);
+            storage.setTransactionSuccessful();
+            return report;
+        } finally {
+            storage.endTransaction();
+        }
+    }
+
+    private long dirtyItems() {
+        return storage.queryForLong("SELECT COUNT(*) FROM " + Items.TABLE + " WHERE "
+                + Items.DIRTY + " = 1 AND " + Items.VERSION + " = 2");
+    }
+
+    private static String sku(int i) {
+        return String.format(Locale.US, "%012d", i);
+    }
+}